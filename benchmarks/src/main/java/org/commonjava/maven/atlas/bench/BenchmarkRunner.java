@@ -0,0 +1,54 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of the benchmarks jar. Accepts the usual JMH command line (e.g. a benchmark regex,
+ * <code>-f</code>, <code>-wi</code>, <code>-rf json</code>) and always adds the GC profiler, so every result carries
+ * allocation rate and bytes allocated per operation next to its score:
+ *
+ * <pre>
+ * mvn -P benchmarks -pl benchmarks -am package
+ * java -jar benchmarks/target/benchmarks.jar [jmh options] [benchmark regex]
+ * </pre>
+ */
+public final class BenchmarkRunner
+{
+
+    private BenchmarkRunner()
+    {
+    }
+
+    public static void main( final String[] args )
+        throws RunnerException, CommandLineOptionException
+    {
+        final CommandLineOptions cmdline = new CommandLineOptions( args );
+        final Options options = new OptionsBuilder().parent( cmdline )
+                                                    .addProfiler( GCProfiler.class )
+                                                    .build();
+
+        new Runner( options ).run();
+    }
+
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.commonjava.maven.atlas.ident.version.RangeVersionSpec;
+import org.commonjava.maven.atlas.ident.version.SingleVersion;
+import org.commonjava.maven.atlas.ident.version.VersionSpec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Checks a fixed sample of corpus versions against a fixed sample of ranges, and of compound specs, every pair per
+ * invocation. Scores are per containment check.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 2 )
+public class RangeContainsBenchmark
+{
+
+    private static final int SPECS = 50;
+
+    private static final int VERSIONS = 200;
+
+    private RangeVersionSpec[] ranges;
+
+    private VersionSpec[] compounds;
+
+    private SingleVersion[] versions;
+
+    @Setup
+    public void setup()
+    {
+        final List<RangeVersionSpec> allRanges = VersionCorpus.ranges();
+        final List<VersionSpec> allCompounds = VersionCorpus.specs( VersionCorpus.COMPOUND );
+
+        ranges = new RangeVersionSpec[SPECS];
+        compounds = new VersionSpec[SPECS];
+        for ( int i = 0; i < SPECS; i++ )
+        {
+            ranges[i] = allRanges.get( i % allRanges.size() );
+            compounds[i] = allCompounds.get( i % allCompounds.size() );
+        }
+
+        // spread the sample across numeric, qualified and snapshot versions
+        final List<SingleVersion> allVersions = VersionCorpus.singleVersions();
+        versions = new SingleVersion[VERSIONS];
+        for ( int i = 0; i < VERSIONS; i++ )
+        {
+            versions[i] = allVersions.get( i * allVersions.size() / VERSIONS );
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation( SPECS * VERSIONS )
+    public int rangeContains()
+    {
+        int matches = 0;
+        for ( final RangeVersionSpec range : ranges )
+        {
+            for ( final SingleVersion version : versions )
+            {
+                if ( range.contains( version ) )
+                {
+                    matches++;
+                }
+            }
+        }
+
+        return matches;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation( SPECS * VERSIONS )
+    public int compoundContains()
+    {
+        int matches = 0;
+        for ( final VersionSpec compound : compounds )
+        {
+            for ( final SingleVersion version : versions )
+            {
+                if ( compound.contains( version ) )
+                {
+                    matches++;
+                }
+            }
+        }
+
+        return matches;
+    }
+
+}
@@ -0,0 +1,185 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.bench;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.commonjava.maven.atlas.ident.util.VersionUtils;
+import org.commonjava.maven.atlas.ident.version.RangeVersionSpec;
+import org.commonjava.maven.atlas.ident.version.SingleVersion;
+import org.commonjava.maven.atlas.ident.version.VersionSpec;
+
+/**
+ * The version expressions in <code>version-corpus.txt</code>, grouped by kind: numeric, qualified, snapshot, range
+ * and compound. The file is read once per JVM; every benchmark fork gets its own copy.
+ */
+public final class VersionCorpus
+{
+
+    public static final String NUMERIC = "numeric";
+
+    public static final String QUALIFIED = "qualified";
+
+    public static final String SNAPSHOT = "snapshot";
+
+    public static final String RANGE = "range";
+
+    public static final String COMPOUND = "compound";
+
+    private static final String RESOURCE = "version-corpus.txt";
+
+    private static Map<String, List<String>> groups;
+
+    private VersionCorpus()
+    {
+    }
+
+    /**
+     * @return the raw expressions of one kind, in file order
+     */
+    public static synchronized List<String> expressions( final String kind )
+    {
+        if ( groups == null )
+        {
+            groups = load();
+        }
+
+        final List<String> result = groups.get( kind );
+        if ( result == null )
+        {
+            throw new IllegalArgumentException( "No versions of kind '" + kind + "' in " + RESOURCE );
+        }
+
+        return result;
+    }
+
+    /**
+     * @return every numeric, qualified and snapshot version, parsed
+     */
+    public static List<SingleVersion> singleVersions()
+    {
+        final List<SingleVersion> result = new ArrayList<SingleVersion>();
+        for ( final String kind : new String[] { NUMERIC, QUALIFIED, SNAPSHOT } )
+        {
+            for ( final String expr : expressions( kind ) )
+            {
+                result.add( VersionUtils.createSingleVersion( expr ) );
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * @return every range, parsed
+     */
+    public static List<RangeVersionSpec> ranges()
+    {
+        final List<RangeVersionSpec> result = new ArrayList<RangeVersionSpec>();
+        for ( final String expr : expressions( RANGE ) )
+        {
+            result.add( VersionUtils.createRange( expr ) );
+        }
+
+        return result;
+    }
+
+    /**
+     * @return every expression of one kind, parsed with {@link VersionUtils#createFromSpec(String)}
+     */
+    public static List<VersionSpec> specs( final String kind )
+    {
+        final List<VersionSpec> result = new ArrayList<VersionSpec>();
+        for ( final String expr : expressions( kind ) )
+        {
+            result.add( VersionUtils.createFromSpec( expr ) );
+        }
+
+        return result;
+    }
+
+    private static Map<String, List<String>> load()
+    {
+        final InputStream in = VersionCorpus.class.getClassLoader()
+                                                  .getResourceAsStream( RESOURCE );
+        if ( in == null )
+        {
+            throw new IllegalStateException( "Cannot find " + RESOURCE + " on the classpath." );
+        }
+
+        final Map<String, List<String>> result = new LinkedHashMap<String, List<String>>();
+        try
+        {
+            final BufferedReader reader = new BufferedReader( new InputStreamReader( in, Charset.forName( "UTF-8" ) ) );
+            List<String> current = null;
+            String line;
+            while ( ( line = reader.readLine() ) != null )
+            {
+                line = line.trim();
+                if ( line.length() < 1 || line.startsWith( "#" ) )
+                {
+                    continue;
+                }
+
+                if ( line.matches( "\\[[a-z]+\\]" ) )
+                {
+                    current = new ArrayList<String>();
+                    result.put( line.substring( 1, line.length() - 1 ), current );
+                }
+                else if ( current == null )
+                {
+                    throw new IllegalStateException( RESOURCE + " has a version before the first group: " + line );
+                }
+                else
+                {
+                    current.add( line );
+                }
+            }
+        }
+        catch ( final IOException e )
+        {
+            throw new IllegalStateException( "Failed to read " + RESOURCE + ": " + e.getMessage(), e );
+        }
+        finally
+        {
+            try
+            {
+                in.close();
+            }
+            catch ( final IOException e )
+            {
+                // nothing useful to do
+            }
+        }
+
+        for ( final Map.Entry<String, List<String>> entry : result.entrySet() )
+        {
+            entry.setValue( Collections.unmodifiableList( entry.getValue() ) );
+        }
+
+        return result;
+    }
+
+}
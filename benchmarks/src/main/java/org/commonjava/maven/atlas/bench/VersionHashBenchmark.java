@@ -0,0 +1,100 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.bench;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.commonjava.maven.atlas.ident.version.RangeVersionSpec;
+import org.commonjava.maven.atlas.ident.version.SingleVersion;
+import org.commonjava.maven.atlas.ident.version.VersionSpec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Hashes every parsed single version and range in the corpus, and builds a hash set of the single versions, which
+ * also exercises {@link SingleVersion#equals(Object)} on collisions. Scores are per invocation over the whole corpus.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 2 )
+public class VersionHashBenchmark
+{
+
+    private SingleVersion[] versions;
+
+    private RangeVersionSpec[] ranges;
+
+    @Setup
+    public void setup()
+    {
+        final List<SingleVersion> allVersions = VersionCorpus.singleVersions();
+        versions = allVersions.toArray( new SingleVersion[allVersions.size()] );
+
+        final List<RangeVersionSpec> allRanges = VersionCorpus.ranges();
+        ranges = allRanges.toArray( new RangeVersionSpec[allRanges.size()] );
+    }
+
+    @Benchmark
+    public int hashSingleVersions()
+    {
+        int hash = 0;
+        for ( final SingleVersion version : versions )
+        {
+            hash += version.hashCode();
+        }
+
+        return hash;
+    }
+
+    @Benchmark
+    public int hashRanges()
+    {
+        int hash = 0;
+        for ( final RangeVersionSpec range : ranges )
+        {
+            hash += range.hashCode();
+        }
+
+        return hash;
+    }
+
+    @Benchmark
+    public Set<VersionSpec> hashSetOfSingleVersions()
+    {
+        final Set<VersionSpec> set = new HashSet<VersionSpec>( versions.length * 2 );
+        for ( final SingleVersion version : versions )
+        {
+            set.add( version );
+        }
+
+        return set;
+    }
+
+}
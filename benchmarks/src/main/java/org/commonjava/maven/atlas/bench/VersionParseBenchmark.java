@@ -0,0 +1,80 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.commonjava.maven.atlas.ident.util.VersionUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Parses a fixed batch of corpus expressions of one kind per invocation, through
+ * {@link VersionUtils#createFromSpec(String)}. Scores are per expression.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 2 )
+public class VersionParseBenchmark
+{
+
+    private static final int BATCH = 100;
+
+    @Param( { VersionCorpus.NUMERIC, VersionCorpus.QUALIFIED, VersionCorpus.SNAPSHOT, VersionCorpus.RANGE,
+        VersionCorpus.COMPOUND } )
+    public String kind;
+
+    private String[] expressions;
+
+    @Setup
+    public void setup()
+    {
+        final List<String> all = VersionCorpus.expressions( kind );
+
+        // cycle through the group so every kind parses the same number of expressions
+        expressions = new String[BATCH];
+        for ( int i = 0; i < BATCH; i++ )
+        {
+            expressions[i] = all.get( i % all.size() );
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation( BATCH )
+    public void createFromSpec( final Blackhole bh )
+    {
+        for ( final String expr : expressions )
+        {
+            bh.consume( VersionUtils.createFromSpec( expr ) );
+        }
+    }
+
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.bench;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.commonjava.maven.atlas.ident.version.SingleVersion;
+import org.commonjava.maven.atlas.ident.version.VersionSpec;
+import org.commonjava.maven.atlas.ident.version.VersionSpecComparisons;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Sorts a shuffled array of parsed single versions, drawn from the corpus with repeats, using
+ * {@link VersionSpecComparisons#comparator()} and the natural ordering. The array is shuffled once per trial, and each
+ * invocation sorts a fresh copy of it, so every sort starts from the same disorder without a per-invocation setup
+ * (whose overhead would swamp the smaller sizes). {@link #copyOnly()} measures the copy on its own.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 2 )
+public class VersionSortBenchmark
+{
+
+    @Param( { "1000", "10000", "100000" } )
+    public int size;
+
+    private VersionSpec[] shuffled;
+
+    @Setup
+    public void load()
+    {
+        final List<SingleVersion> versions = VersionCorpus.singleVersions();
+
+        final List<VersionSpec> list = new ArrayList<VersionSpec>( size );
+        for ( int i = 0; i < size; i++ )
+        {
+            list.add( versions.get( i % versions.size() ) );
+        }
+
+        Collections.shuffle( list, new Random( 20121L ) );
+        shuffled = list.toArray( new VersionSpec[size] );
+    }
+
+    @Benchmark
+    public VersionSpec[] copyOnly()
+    {
+        return Arrays.copyOf( shuffled, shuffled.length );
+    }
+
+    @Benchmark
+    public VersionSpec[] sortWithComparator()
+    {
+        final VersionSpec[] copy = Arrays.copyOf( shuffled, shuffled.length );
+        Arrays.sort( copy, VersionSpecComparisons.comparator() );
+        return copy;
+    }
+
+    @Benchmark
+    public VersionSpec[] sortNatural()
+    {
+        final VersionSpec[] copy = Arrays.copyOf( shuffled, shuffled.length );
+        Arrays.sort( copy );
+        return copy;
+    }
+
+}
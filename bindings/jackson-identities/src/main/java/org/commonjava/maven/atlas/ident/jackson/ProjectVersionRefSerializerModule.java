@@ -21,6 +21,9 @@ import java.util.HashSet;
 import java.util.Set;
 
 import org.commonjava.maven.atlas.ident.ref.*;
+import org.commonjava.maven.atlas.ident.version.RangeVersionSpec;
+import org.commonjava.maven.atlas.ident.version.SingleVersion;
+import org.commonjava.maven.atlas.ident.version.VersionSpec;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -44,17 +47,50 @@ public class ProjectVersionRefSerializerModule
 
     public static final ProjectVersionRefSerializerModule INSTANCE = new ProjectVersionRefSerializerModule();
 
+    public static final int DEFAULT_INTERN_CACHE_SIZE = 100000;
+
     public ProjectVersionRefSerializerModule()
+    {
+        this( 0 );
+    }
+
+    /**
+     * @param internCacheSize when greater than zero, deserialized refs with the same string form are shared, holding at
+     * most this many refs per ref class
+     */
+    public ProjectVersionRefSerializerModule( final int internCacheSize )
+    {
+        this( internCacheSize, null );
+    }
+
+    /**
+     * @param internCacheSize when greater than zero, deserialized refs with the same string form are shared, holding at
+     * most this many refs per ref class
+     * @param versionCache when not null, deserialized refs carry their version spec, parsed once per distinct version
+     * through this cache; version specs read on their own always go through it (or the shared cache, if null)
+     */
+    public ProjectVersionRefSerializerModule( final int internCacheSize, final VersionSpecCache versionCache )
     {
         super( "ProjectRef (with variants) Serializer" );
 
         for ( Class<? extends ProjectRef> cls: REF_CLASSES )
         {
-            register( cls );
+            register( cls, internCacheSize, versionCache );
         }
+
+        final VersionSpecCache specCache = versionCache == null ? VersionSpecCache.shared() : versionCache;
+        registerSpec( VersionSpec.class, specCache );
+        registerSpec( SingleVersion.class, specCache );
+        registerSpec( RangeVersionSpec.class, specCache );
     }
 
-    private <T extends ProjectRef> void register( Class<T> cls )
+    private <T extends VersionSpec> void registerSpec( Class<T> cls, VersionSpecCache cache )
+    {
+        addSerializer( cls, new VersionSpecSerializer<T>( cls ) );
+        addDeserializer( cls, new VersionSpecDeserializer<T>( cls, cache ) );
+    }
+
+    private <T extends ProjectRef> void register( Class<T> cls, int internCacheSize, VersionSpecCache versionCache )
     {
         Logger logger = LoggerFactory.getLogger( getClass() );
         logger.debug( "Registering {} serializers/deserialers", cls.getSimpleName() );
@@ -62,8 +98,18 @@ public class ProjectVersionRefSerializerModule
         addSerializer( cls, new ProjectRefSerializer<T>( cls, false ) );
         addKeySerializer( cls, new ProjectRefSerializer<T>( cls, true ) );
 
-        addDeserializer( cls, new ProjectRefDeserializer<T>( cls ) );
-        addKeyDeserializer( cls, new ProjectRefKeyDeserializer<T>( cls ) );
+        RefParser<T> parser = SerializerIdentityUtils.resolveParser( cls );
+        if ( versionCache != null )
+        {
+            parser = parser.withVersionSpecs( versionCache );
+        }
+        if ( internCacheSize > 0 )
+        {
+            parser = parser.interning( internCacheSize );
+        }
+
+        addDeserializer( cls, new ProjectRefDeserializer<T>( cls, parser ) );
+        addKeyDeserializer( cls, new ProjectRefKeyDeserializer<T>( parser ) );
     }
 
     @Override
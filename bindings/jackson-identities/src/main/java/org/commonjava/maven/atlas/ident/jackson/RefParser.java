@@ -0,0 +1,168 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.ident.jackson;
+
+import org.commonjava.maven.atlas.ident.ref.ArtifactRef;
+import org.commonjava.maven.atlas.ident.ref.ProjectRef;
+import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
+import org.commonjava.maven.atlas.ident.ref.SimpleArtifactRef;
+import org.commonjava.maven.atlas.ident.ref.SimpleProjectVersionRef;
+import org.commonjava.maven.atlas.ident.version.InvalidVersionSpecificationException;
+import org.commonjava.maven.atlas.ident.version.VersionSpec;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Parses the string form of one kind of ref. Instances are resolved once per ref class via
+ * {@link SerializerIdentityUtils#parserFor(Class)} and reused for every value, instead of looking up and invoking a
+ * parse method reflectively each time.
+ */
+public abstract class RefParser<T extends ProjectRef>
+        implements Serializable
+{
+    private static final long serialVersionUID = 1L;
+
+    public abstract T parse( String value )
+            throws IOException;
+
+    /**
+     * Wrap this parser so that repeated strings yield the same ref instance. Useful when the same few hundred
+     * coordinates recur throughout a large document. At most maxEntries refs are held; the cache is cleared once it
+     * fills up.
+     */
+    public RefParser<T> interning( final int maxEntries )
+    {
+        return new InterningRefParser<T>( this, maxEntries );
+    }
+
+    /**
+     * Wrap this parser so that versioned refs come back with their {@link VersionSpec} already attached, taken from
+     * the given cache, instead of parsing the version string again on first use of each ref. A version that can't be
+     * parsed is left as a plain string, to fail only if and when it's used, as it would without this wrapper.
+     */
+    public RefParser<T> withVersionSpecs( final VersionSpecCache cache )
+    {
+        return new VersionSpecRefParser<T>( this, cache );
+    }
+
+    private static final class VersionSpecRefParser<T extends ProjectRef>
+            extends RefParser<T>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final RefParser<T> delegate;
+
+        private final transient VersionSpecCache cache;
+
+        VersionSpecRefParser( final RefParser<T> delegate, final VersionSpecCache cache )
+        {
+            this.delegate = delegate;
+            this.cache = cache;
+        }
+
+        @Override
+        @SuppressWarnings( "unchecked" )
+        public T parse( final String value )
+                throws IOException
+        {
+            final T ref = delegate.parse( value );
+
+            // only rebuild the classes the stock parsers produce, so the result is the same class as without the spec
+            final Class<?> cls = ref.getClass();
+            if ( cls != SimpleProjectVersionRef.class && cls != SimpleArtifactRef.class )
+            {
+                return ref;
+            }
+
+            final ProjectVersionRef versioned = (ProjectVersionRef) ref;
+            if ( versioned.getVersionSpecRaw() != null )
+            {
+                return ref;
+            }
+
+            final String version = versioned.getVersionStringRaw();
+            final VersionSpec spec;
+            try
+            {
+                spec = ( cache == null ? VersionSpecCache.shared() : cache ).parse( version );
+            }
+            catch ( final InvalidVersionSpecificationException e )
+            {
+                return ref;
+            }
+
+            final SimpleProjectVersionRef withSpec =
+                    new SimpleProjectVersionRef( ref.getGroupId(), ref.getArtifactId(), spec, version );
+            if ( cls == SimpleProjectVersionRef.class )
+            {
+                return (T) withSpec;
+            }
+
+            final ArtifactRef artifact = (ArtifactRef) ref;
+            return (T) new SimpleArtifactRef( withSpec, artifact.getTypeAndClassifier() );
+        }
+    }
+
+    private static final class InterningRefParser<T extends ProjectRef>
+            extends RefParser<T>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final RefParser<T> delegate;
+
+        private final int maxEntries;
+
+        private final ConcurrentMap<String, T> refs = new ConcurrentHashMap<String, T>();
+
+        InterningRefParser( final RefParser<T> delegate, final int maxEntries )
+        {
+            this.delegate = delegate;
+            this.maxEntries = maxEntries;
+        }
+
+        @Override
+        public T parse( final String value )
+                throws IOException
+        {
+            T ref = refs.get( value );
+            if ( ref == null )
+            {
+                ref = delegate.parse( value );
+                if ( refs.size() >= maxEntries )
+                {
+                    refs.clear();
+                }
+
+                final T existing = refs.putIfAbsent( value, ref );
+                if ( existing != null )
+                {
+                    ref = existing;
+                }
+            }
+
+            return ref;
+        }
+
+        @Override
+        public RefParser<T> interning( final int maxEntries )
+        {
+            return this;
+        }
+    }
+}
@@ -18,58 +18,160 @@ package org.commonjava.maven.atlas.ident.jackson;
 import org.commonjava.maven.atlas.ident.ref.*;
 
 import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 
 /**
  * Created by jdcasey on 8/26/15.
  */
 public final class SerializerIdentityUtils
 {
+    private static final RefParser<ProjectRef> PROJECT_REF = new RefParser<ProjectRef>()
+    {
+        @Override
+        public ProjectRef parse( final String value )
+                throws IOException
+        {
+            try
+            {
+                return SimpleProjectRef.parse( value );
+            }
+            catch ( final RuntimeException e )
+            {
+                throw parseFailure( value, SimpleProjectRef.class, e );
+            }
+        }
+    };
+
+    private static final RefParser<ProjectVersionRef> PROJECT_VERSION_REF = new RefParser<ProjectVersionRef>()
+    {
+        @Override
+        public ProjectVersionRef parse( final String value )
+                throws IOException
+        {
+            try
+            {
+                return SimpleProjectVersionRef.parse( value );
+            }
+            catch ( final RuntimeException e )
+            {
+                throw parseFailure( value, SimpleProjectVersionRef.class, e );
+            }
+        }
+    };
+
+    private static final RefParser<ArtifactRef> ARTIFACT_REF = new RefParser<ArtifactRef>()
+    {
+        @Override
+        public ArtifactRef parse( final String value )
+                throws IOException
+        {
+            try
+            {
+                return SimpleArtifactRef.parse( value );
+            }
+            catch ( final RuntimeException e )
+            {
+                throw parseFailure( value, SimpleArtifactRef.class, e );
+            }
+        }
+    };
+
+    private static final RefParser<VersionlessArtifactRef> VERSIONLESS_ARTIFACT_REF =
+            new RefParser<VersionlessArtifactRef>()
+            {
+                @Override
+                public VersionlessArtifactRef parse( final String value )
+                        throws IOException
+                {
+                    try
+                    {
+                        return SimpleVersionlessArtifactRef.parse( value );
+                    }
+                    catch ( final RuntimeException e )
+                    {
+                        throw parseFailure( value, SimpleVersionlessArtifactRef.class, e );
+                    }
+                }
+            };
+
     private SerializerIdentityUtils(){}
 
     public static <T extends ProjectRef> T parse( final String value, final Class<T> type )
             throws IOException
     {
-        Class<?> realType = null;
+        return parserFor( type ).parse( value );
+    }
+
+    /**
+     * Resolve the parser for the given ref type once, so callers can reuse it for every value.
+     */
+    @SuppressWarnings( "unchecked" )
+    public static <T extends ProjectRef> RefParser<T> parserFor( final Class<T> type )
+            throws IOException
+    {
+        final RefParser<?> parser;
         if ( ArtifactRef.class.isAssignableFrom( type ) )
         {
-            realType = SimpleArtifactRef.class;
+            parser = ARTIFACT_REF;
         }
         else if ( VersionlessArtifactRef.class.isAssignableFrom( type ) )
         {
-            realType = SimpleVersionlessArtifactRef.class;
+            parser = VERSIONLESS_ARTIFACT_REF;
         }
         else if ( ProjectVersionRef.class.isAssignableFrom( type ) )
         {
-            realType = SimpleProjectVersionRef.class;
+            parser = PROJECT_VERSION_REF;
         }
         else if ( ProjectRef.class.isAssignableFrom( type ) )
         {
-            realType = SimpleProjectRef.class;
+            parser = PROJECT_REF;
         }
         else
         {
             throw new IOException( "Cannot find acceptable deserialization target class to parse: " + type.getSimpleName() );
         }
 
-        try
+        // the general parsers above already produce the requested interface types; only check exact classes
+        if ( type.isInterface() )
         {
-            final Method parseMethod = realType.getMethod( "parse", String.class );
-            return type.cast( parseMethod.invoke( null, value ) );
+            return (RefParser<T>) parser;
         }
-        catch ( final NoSuchMethodException e )
+
+        return new RefParser<T>()
         {
-            throw new IOException( "Failed to lookup/invoke parse() method on " + type.getSimpleName(), e );
-        }
-        catch ( final IllegalAccessException e )
+            @Override
+            public T parse( final String value )
+                    throws IOException
+            {
+                final Object ref = parser.parse( value );
+                if ( !type.isInstance( ref ) )
+                {
+                    throw new IOException( "Parsed '" + value + "' as " + ref.getClass().getSimpleName()
+                                                   + ", which is not a " + type.getSimpleName() );
+                }
+
+                return type.cast( ref );
+            }
+        };
+    }
+
+    /**
+     * Like {@link #parserFor(Class)}, for use where no checked exception can be thrown (such as constructors).
+     */
+    static <T extends ProjectRef> RefParser<T> resolveParser( final Class<T> type )
+    {
+        try
         {
-            throw new IOException( "Failed to lookup/invoke parse() method on " + type.getSimpleName(), e );
+            return parserFor( type );
         }
-        catch ( final InvocationTargetException e )
+        catch ( final IOException e )
         {
-            throw new IOException( "Failed to lookup/invoke parse() method on " + type.getSimpleName(), e );
+            throw new IllegalArgumentException( e.getMessage(), e );
         }
     }
 
+    private static IOException parseFailure( final String value, final Class<?> type, final RuntimeException e )
+    {
+        return new IOException( "Failed to parse '" + value + "' as " + type.getSimpleName() + ": " + e.getMessage(), e );
+    }
+
 }
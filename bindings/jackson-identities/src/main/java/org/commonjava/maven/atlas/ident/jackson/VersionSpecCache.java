@@ -0,0 +1,89 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.ident.jackson;
+
+import org.commonjava.maven.atlas.ident.util.VersionUtils;
+import org.commonjava.maven.atlas.ident.version.InvalidVersionSpecificationException;
+import org.commonjava.maven.atlas.ident.version.VersionSpec;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Parsed {@link VersionSpec}s keyed by their string form, shared by the version deserializers and by ref parsers
+ * created with {@link RefParser#withVersionSpecs(VersionSpecCache)}. Parsed specs are immutable, so one instance
+ * serves every ref with the same version. At most maxEntries specs are held; the cache is cleared once it fills up.
+ */
+public final class VersionSpecCache
+{
+    public static final int DEFAULT_SIZE = 10000;
+
+    private static final VersionSpecCache SHARED = new VersionSpecCache( DEFAULT_SIZE );
+
+    private final int maxEntries;
+
+    private final ConcurrentMap<String, VersionSpec> specs = new ConcurrentHashMap<String, VersionSpec>();
+
+    public VersionSpecCache( final int maxEntries )
+    {
+        if ( maxEntries < 1 )
+        {
+            throw new IllegalArgumentException( "Cache size must be positive: " + maxEntries );
+        }
+
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * The process-wide cache used when no other is configured.
+     */
+    public static VersionSpecCache shared()
+    {
+        return SHARED;
+    }
+
+    public VersionSpec parse( final String version )
+            throws InvalidVersionSpecificationException
+    {
+        VersionSpec spec = specs.get( version );
+        if ( spec == null )
+        {
+            spec = VersionUtils.createFromSpec( version );
+            if ( specs.size() >= maxEntries )
+            {
+                specs.clear();
+            }
+
+            final VersionSpec existing = specs.putIfAbsent( version, spec );
+            if ( existing != null )
+            {
+                spec = existing;
+            }
+        }
+
+        return spec;
+    }
+
+    public int size()
+    {
+        return specs.size();
+    }
+
+    public void clear()
+    {
+        specs.clear();
+    }
+}
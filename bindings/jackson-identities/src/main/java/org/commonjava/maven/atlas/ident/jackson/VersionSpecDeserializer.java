@@ -0,0 +1,77 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.ident.jackson;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdScalarDeserializer;
+import org.commonjava.maven.atlas.ident.version.InvalidVersionSpecificationException;
+import org.commonjava.maven.atlas.ident.version.VersionSpec;
+
+import java.io.IOException;
+
+/**
+ * Reads a {@link VersionSpec} (or one of its concrete kinds) from its string form through a {@link VersionSpecCache},
+ * so each distinct version is parsed once.
+ */
+public class VersionSpecDeserializer<T extends VersionSpec>
+        extends StdScalarDeserializer<T>
+{
+    private static final long serialVersionUID = 1L;
+
+    private final Class<T> specCls;
+
+    private final VersionSpecCache cache;
+
+    public VersionSpecDeserializer( final Class<T> specCls )
+    {
+        this( specCls, VersionSpecCache.shared() );
+    }
+
+    public VersionSpecDeserializer( final Class<T> specCls, final VersionSpecCache cache )
+    {
+        super( specCls );
+        this.specCls = specCls;
+        this.cache = cache;
+    }
+
+    @Override
+    public T deserialize( final JsonParser jp, final DeserializationContext ctxt )
+            throws IOException, JsonProcessingException
+    {
+        final String value = jp.getText();
+
+        final VersionSpec spec;
+        try
+        {
+            spec = cache.parse( value );
+        }
+        catch ( final InvalidVersionSpecificationException e )
+        {
+            throw ctxt.weirdStringException( value, specCls, e.getMessage() );
+        }
+
+        if ( !specCls.isInstance( spec ) )
+        {
+            throw ctxt.weirdStringException( value, specCls,
+                                             "parsed as " + spec.getClass().getSimpleName() + ", not "
+                                                     + specCls.getSimpleName() );
+        }
+
+        return specCls.cast( spec );
+    }
+}
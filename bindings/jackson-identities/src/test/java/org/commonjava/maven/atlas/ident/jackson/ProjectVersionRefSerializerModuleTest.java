@@ -16,17 +16,30 @@
 package org.commonjava.maven.atlas.ident.jackson;
 
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.junit.Assert.assertThat;
 
+import java.io.IOException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+import org.commonjava.maven.atlas.ident.ref.ArtifactRef;
 import org.commonjava.maven.atlas.ident.ref.ProjectRef;
+import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
+import org.commonjava.maven.atlas.ident.ref.SimpleArtifactRef;
 import org.commonjava.maven.atlas.ident.ref.SimpleProjectRef;
+import org.commonjava.maven.atlas.ident.ref.SimpleProjectVersionRef;
+import org.commonjava.maven.atlas.ident.version.RangeVersionSpec;
+import org.commonjava.maven.atlas.ident.version.SingleVersion;
+import org.commonjava.maven.atlas.ident.version.VersionSpec;
 import org.junit.Before;
 import org.junit.Test;
 
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 public class ProjectVersionRefSerializerModuleTest
@@ -72,4 +85,87 @@ public class ProjectVersionRefSerializerModuleTest
         assertThat( result.get( pr ), equalTo( value ) );
     }
 
+    @Test
+    public void internedRefsAreShared()
+        throws Exception
+    {
+        final ObjectMapper interning = new ObjectMapper();
+        interning.registerModule( new ProjectVersionRefSerializerModule( 10 ) );
+
+        final List<ProjectVersionRef> result =
+            interning.readValue( "[\"org.foo:bar:1\",\"org.foo:bar:1\",\"org.foo:baz:1\"]",
+                                 new TypeReference<List<ProjectVersionRef>>()
+                                 {
+                                 } );
+
+        assertThat( result.get( 0 ), sameInstance( result.get( 1 ) ) );
+        assertThat( result.get( 2 ), equalTo( (ProjectVersionRef) new SimpleProjectVersionRef( "org.foo", "baz", "1" ) ) );
+    }
+
+    @Test
+    public void parserResolvesConcreteTypes()
+        throws Exception
+    {
+        final ArtifactRef artifact = SerializerIdentityUtils.parserFor( SimpleArtifactRef.class )
+                                                            .parse( "org.foo:bar:pom:1" );
+
+        assertThat( artifact.getType(), equalTo( "pom" ) );
+    }
+
+    @Test( expected = IOException.class )
+    public void invalidRefFailsWithIOException()
+        throws Exception
+    {
+        mapper.readValue( "\"not-a-ref\"", ProjectVersionRef.class );
+    }
+
+    @Test
+    public void versionSpecsRoundTripThroughCache()
+        throws Exception
+    {
+        final VersionSpecCache cache = new VersionSpecCache( 10 );
+        final ObjectMapper caching = new ObjectMapper();
+        caching.registerModule( new ProjectVersionRefSerializerModule( 0, cache ) );
+
+        final VersionSpec single = caching.readValue( "\"1.0-SNAPSHOT\"", VersionSpec.class );
+        assertThat( single, instanceOf( SingleVersion.class ) );
+        assertThat( caching.readValue( "\"1.0-SNAPSHOT\"", SingleVersion.class ), sameInstance( (Object) single ) );
+
+        final RangeVersionSpec range = caching.readValue( "\"[1.0,2.0)\"", RangeVersionSpec.class );
+        assertThat( caching.writeValueAsString( range ), equalTo( "\"[1.0,2.0)\"" ) );
+        assertThat( cache.size(), equalTo( 2 ) );
+    }
+
+    @Test( expected = JsonMappingException.class )
+    public void rangeIsNotASingleVersion()
+        throws Exception
+    {
+        mapper.readValue( "\"[1.0,2.0)\"", SingleVersion.class );
+    }
+
+    @Test
+    public void refsCarryCachedVersionSpecs()
+        throws Exception
+    {
+        final VersionSpecCache cache = new VersionSpecCache( 10 );
+        final ObjectMapper caching = new ObjectMapper();
+        caching.registerModule( new ProjectVersionRefSerializerModule( 0, cache ) );
+
+        final List<ProjectVersionRef> result =
+            caching.readValue( "[\"org.foo:bar:1.0\",\"org.foo:baz:1.0\",\"org.foo:bad:[1.0\"]",
+                               new TypeReference<List<ProjectVersionRef>>()
+                               {
+                               } );
+
+        assertThat( result.get( 0 ).getVersionSpecRaw(), sameInstance( cache.parse( "1.0" ) ) );
+        assertThat( result.get( 1 ).getVersionSpecRaw(), sameInstance( result.get( 0 ).getVersionSpecRaw() ) );
+        assertThat( result.get( 0 ).toString(), equalTo( "org.foo:bar:1.0" ) );
+        assertThat( result.get( 2 ).getVersionSpecRaw(), nullValue() );
+
+        final ArtifactRef artifact = caching.readValue( "\"org.foo:bar:jar:1.0:tests\"", ArtifactRef.class );
+        assertThat( artifact.getVersionSpecRaw(), sameInstance( cache.parse( "1.0" ) ) );
+        assertThat( artifact.getClassifier(), equalTo( "tests" ) );
+        assertThat( artifact, equalTo( (ArtifactRef) SimpleArtifactRef.parse( "org.foo:bar:jar:1.0:tests" ) ) );
+    }
+
 }
@@ -54,8 +54,12 @@ public class SimpleProjectVersionRef
         this( ref.getGroupId(), ref.getArtifactId(), versionSpec );
     }
 
-    SimpleProjectVersionRef( final String groupId, final String artifactId, final VersionSpec versionSpec,
-                             final String versionString )
+    /**
+     * Create a ref carrying both forms of its version, for callers that already hold the parsed spec for the string
+     * (for instance from a parse cache), so that {@link #getVersionSpec()} doesn't parse it again.
+     */
+    public SimpleProjectVersionRef( final String groupId, final String artifactId, final VersionSpec versionSpec,
+                                    final String versionString )
     {
         super( groupId, artifactId );
         if ( versionSpec == null && StringUtils.isEmpty( versionString ) )
@@ -0,0 +1,121 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.graph.diff;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.List;
+
+import org.commonjava.maven.atlas.graph.model.EProjectDirectRelationships;
+import org.commonjava.maven.atlas.graph.model.PersistentEProjectGraph;
+import org.commonjava.maven.atlas.graph.model.SimpleEProjectGraph;
+import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
+
+/**
+ * The differences between two {@link org.commonjava.maven.atlas.graph.model.EProjectGraph}s: projects that appeared,
+ * projects that disappeared, and per-project relationship changes for projects present in both.
+ */
+public final class GraphChangeSet
+    implements Serializable
+{
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<EProjectDirectRelationships> addedProjects;
+
+    private final List<ProjectVersionRef> removedProjects;
+
+    private final List<ProjectChangeSet> modifiedProjects;
+
+    GraphChangeSet( final List<EProjectDirectRelationships> addedProjects,
+                    final List<ProjectVersionRef> removedProjects, final List<ProjectChangeSet> modifiedProjects )
+    {
+        this.addedProjects = Collections.unmodifiableList( addedProjects );
+        this.removedProjects = Collections.unmodifiableList( removedProjects );
+        this.modifiedProjects = Collections.unmodifiableList( modifiedProjects );
+    }
+
+    public List<EProjectDirectRelationships> getAddedProjects()
+    {
+        return addedProjects;
+    }
+
+    public List<ProjectVersionRef> getRemovedProjects()
+    {
+        return removedProjects;
+    }
+
+    public List<ProjectChangeSet> getModifiedProjects()
+    {
+        return modifiedProjects;
+    }
+
+    public boolean isEmpty()
+    {
+        return addedProjects.isEmpty() && removedProjects.isEmpty() && modifiedProjects.isEmpty();
+    }
+
+    /**
+     * Replay these changes on the given graph. Modified projects missing from the target graph are created from their
+     * added and changed relationships.
+     */
+    public void applyTo( final SimpleEProjectGraph graph )
+    {
+        for ( final ProjectVersionRef ref : removedProjects )
+        {
+            graph.remove( ref );
+        }
+
+        for ( final EProjectDirectRelationships rels : addedProjects )
+        {
+            graph.add( rels );
+        }
+
+        for ( final ProjectChangeSet changes : modifiedProjects )
+        {
+            graph.add( changes.applyTo( graph.getDirectRelationships( changes.getProject() ) ) );
+        }
+    }
+
+    /**
+     * @return a new revision of the given persistent graph with these changes applied
+     */
+    public PersistentEProjectGraph applyTo( final PersistentEProjectGraph graph )
+    {
+        PersistentEProjectGraph result = graph;
+        for ( final ProjectVersionRef ref : removedProjects )
+        {
+            result = result.without( ref );
+        }
+
+        result = result.withAll( addedProjects );
+
+        for ( final ProjectChangeSet changes : modifiedProjects )
+        {
+            result = result.with( changes.applyTo( result.getDirectRelationships( changes.getProject() ) ) );
+        }
+
+        return result;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format( "GraphChangeSet [added=%s, removed=%s, modified=%s]", addedProjects.size(),
+                              removedProjects.size(), modifiedProjects.size() );
+    }
+
+}
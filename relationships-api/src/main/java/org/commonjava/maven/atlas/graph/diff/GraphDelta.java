@@ -0,0 +1,348 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.graph.diff;
+
+import java.io.Serializable;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.commonjava.maven.atlas.graph.model.EProjectDirectRelationships;
+import org.commonjava.maven.atlas.graph.model.PersistentEProjectGraph;
+import org.commonjava.maven.atlas.graph.model.SimpleEProjectGraph;
+import org.commonjava.maven.atlas.graph.rel.ProjectRelationship;
+import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
+
+/**
+ * One numbered entry in a graph change log, as recorded by {@link GraphDeltaRecorder}. Replicas that replay the entries
+ * in sequence order end up with the same relationships as the recorded graph, without shipping whole projects.
+ * <br/>
+ * Relationships are matched by {@link ProjectRelationship#equals}, which ignores sources. Replaying an entry that was
+ * already applied leaves the project as it was, so a replica may safely re-read the tail of a log.
+ */
+public final class GraphDelta
+    implements Serializable
+{
+
+    private static final long serialVersionUID = 1L;
+
+    public enum Op
+    {
+        /** The project exists, declared by the given source; its relationships are kept if it already existed. */
+        ADD_PROJECT,
+        REMOVE_PROJECT,
+        /** Add the relationship, replacing an equal one. */
+        ADD,
+        REMOVE,
+        /** Replace the previous relationship with the new one. */
+        MODIFY,
+        /** Add source URIs to an existing relationship. */
+        ADD_SOURCES;
+    }
+
+    private final long sequence;
+
+    private final Op op;
+
+    private final ProjectVersionRef project;
+
+    private final URI source;
+
+    private final ProjectRelationship<?, ?> relationship;
+
+    private final ProjectRelationship<?, ?> previous;
+
+    private final Set<URI> sources;
+
+    private GraphDelta( final long sequence, final Op op, final ProjectVersionRef project, final URI source,
+                        final ProjectRelationship<?, ?> relationship, final ProjectRelationship<?, ?> previous,
+                        final Collection<URI> sources )
+    {
+        this.sequence = sequence;
+        this.op = op;
+        this.project = project.asProjectVersionRef();
+        this.source = source;
+        this.relationship = relationship;
+        this.previous = previous;
+        this.sources =
+            sources == null ? Collections.<URI> emptySet()
+                            : Collections.unmodifiableSet( new LinkedHashSet<URI>( sources ) );
+    }
+
+    public static GraphDelta addProject( final long sequence, final ProjectVersionRef project, final URI source )
+    {
+        return new GraphDelta( sequence, Op.ADD_PROJECT, project, source, null, null, null );
+    }
+
+    public static GraphDelta removeProject( final long sequence, final ProjectVersionRef project )
+    {
+        return new GraphDelta( sequence, Op.REMOVE_PROJECT, project, null, null, null, null );
+    }
+
+    public static GraphDelta add( final long sequence, final ProjectRelationship<?, ?> rel )
+    {
+        return new GraphDelta( sequence, Op.ADD, rel.getDeclaring(), null, rel, null, null );
+    }
+
+    public static GraphDelta remove( final long sequence, final ProjectRelationship<?, ?> rel )
+    {
+        return new GraphDelta( sequence, Op.REMOVE, rel.getDeclaring(), null, rel, null, null );
+    }
+
+    public static GraphDelta modify( final long sequence, final ProjectRelationship<?, ?> previous,
+                                     final ProjectRelationship<?, ?> rel )
+    {
+        return new GraphDelta( sequence, Op.MODIFY, rel.getDeclaring(), null, rel, previous, null );
+    }
+
+    public static GraphDelta addSources( final long sequence, final ProjectRelationship<?, ?> rel,
+                                         final Collection<URI> sources )
+    {
+        return new GraphDelta( sequence, Op.ADD_SOURCES, rel.getDeclaring(), null, rel, null, sources );
+    }
+
+    public long getSequence()
+    {
+        return sequence;
+    }
+
+    public Op getOp()
+    {
+        return op;
+    }
+
+    public ProjectVersionRef getProject()
+    {
+        return project;
+    }
+
+    /**
+     * @return the project's source, for {@link Op#ADD_PROJECT}; null otherwise
+     */
+    public URI getSource()
+    {
+        return source;
+    }
+
+    /**
+     * @return the relationship added, removed or given sources, or the new form of a modified one; null for project
+     * operations
+     */
+    public ProjectRelationship<?, ?> getRelationship()
+    {
+        return relationship;
+    }
+
+    /**
+     * @return the replaced relationship, for {@link Op#MODIFY}; null otherwise
+     */
+    public ProjectRelationship<?, ?> getPrevious()
+    {
+        return previous;
+    }
+
+    /**
+     * @return the added source URIs, for {@link Op#ADD_SOURCES}; empty otherwise
+     */
+    public Set<URI> getSources()
+    {
+        return sources;
+    }
+
+    /**
+     * Apply this entry to one revision of its project.
+     *
+     * @param base the project's current relationships, or null if it isn't known yet
+     * @return the updated project, or null if it was removed
+     */
+    public EProjectDirectRelationships applyTo( final EProjectDirectRelationships base )
+    {
+        return apply( base, Collections.singletonList( this ) );
+    }
+
+    public void applyTo( final SimpleEProjectGraph graph )
+    {
+        final EProjectDirectRelationships result = applyTo( graph.getDirectRelationships( project ) );
+        if ( result == null )
+        {
+            graph.remove( project );
+        }
+        else
+        {
+            graph.add( result );
+        }
+    }
+
+    /**
+     * @return a new revision of the given persistent graph with this entry applied
+     */
+    public PersistentEProjectGraph applyTo( final PersistentEProjectGraph graph )
+    {
+        final EProjectDirectRelationships result = applyTo( graph.getDirectRelationships( project ) );
+        return result == null ? graph.without( project ) : graph.with( result );
+    }
+
+    /**
+     * Apply consecutive entries for one project, rebuilding it once rather than after every entry.
+     *
+     * @param base the project's current relationships, or null if it isn't known yet
+     * @return the updated project, or null if it was removed
+     * @throws IllegalArgumentException if the entries belong to more than one project
+     */
+    public static EProjectDirectRelationships apply( final EProjectDirectRelationships base,
+                                                     final List<GraphDelta> deltas )
+    {
+        if ( deltas.isEmpty() )
+        {
+            return base;
+        }
+
+        final ProjectVersionRef project = deltas.get( 0 )
+                                                .getProject();
+
+        boolean exists = base != null;
+        URI source = base == null ? null : base.getSource();
+        final List<ProjectRelationship<?, ?>> rels = new ArrayList<ProjectRelationship<?, ?>>();
+        if ( base != null )
+        {
+            rels.addAll( RelationshipDiffer.keyed( base )
+                                           .values() );
+        }
+
+        for ( final GraphDelta delta : deltas )
+        {
+            if ( !project.equals( delta.getProject() ) )
+            {
+                throw new IllegalArgumentException( "Delta " + delta + " does not belong to project " + project );
+            }
+
+            final ProjectRelationship<?, ?> rel = delta.getRelationship();
+            switch ( delta.getOp() )
+            {
+                case ADD_PROJECT:
+                {
+                    source = delta.getSource();
+                    exists = true;
+                    break;
+                }
+                case REMOVE_PROJECT:
+                {
+                    rels.clear();
+                    exists = false;
+                    break;
+                }
+                case ADD:
+                {
+                    upsert( rels, rel );
+                    break;
+                }
+                case REMOVE:
+                {
+                    final int idx = rels.indexOf( rel );
+                    if ( idx > -1 )
+                    {
+                        rels.remove( idx );
+                    }
+                    break;
+                }
+                case MODIFY:
+                {
+                    final int idx = rels.indexOf( delta.getPrevious() );
+                    if ( idx > -1 )
+                    {
+                        rels.remove( idx );
+                        rels.add( idx, rel );
+                    }
+                    else
+                    {
+                        upsert( rels, rel );
+                    }
+                    break;
+                }
+                case ADD_SOURCES:
+                {
+                    final int idx = rels.indexOf( rel );
+                    if ( idx > -1 )
+                    {
+                        rels.set( idx, rels.get( idx )
+                                           .addSources( delta.getSources() ) );
+                    }
+                    else
+                    {
+                        rels.add( rel.addSources( delta.getSources() ) );
+                    }
+                    break;
+                }
+            }
+
+            if ( !exists && delta.getOp() != Op.REMOVE_PROJECT )
+            {
+                exists = true;
+            }
+
+            if ( source == null && rel != null )
+            {
+                final Iterator<URI> it = rel.getSources()
+                                            .iterator();
+                source = it.hasNext() ? it.next() : null;
+            }
+        }
+
+        if ( !exists )
+        {
+            return null;
+        }
+
+        return new EProjectDirectRelationships.Builder( source, project ).withRelationships( rels )
+                                                                         .build();
+    }
+
+    private static void upsert( final List<ProjectRelationship<?, ?>> rels, final ProjectRelationship<?, ?> rel )
+    {
+        final int idx = rels.indexOf( rel );
+        if ( idx > -1 )
+        {
+            rels.set( idx, rel );
+        }
+        else
+        {
+            rels.add( rel );
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        switch ( op )
+        {
+            case ADD_PROJECT:
+            case REMOVE_PROJECT:
+                return String.format( "#%d %s %s", sequence, op, project );
+            case MODIFY:
+                return String.format( "#%d %s %s -> %s", sequence, op, previous, relationship );
+            case ADD_SOURCES:
+                return String.format( "#%d %s %s %s", sequence, op, relationship, sources );
+            default:
+                return String.format( "#%d %s %s", sequence, op, relationship );
+        }
+    }
+
+}
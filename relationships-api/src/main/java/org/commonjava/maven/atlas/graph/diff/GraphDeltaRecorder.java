@@ -0,0 +1,188 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.graph.diff;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.commonjava.maven.atlas.graph.model.EProjectDirectRelationships;
+import org.commonjava.maven.atlas.graph.model.EProjectGraph;
+import org.commonjava.maven.atlas.graph.model.EProjectGraphListener;
+import org.commonjava.maven.atlas.graph.model.SimpleEProjectGraph;
+import org.commonjava.maven.atlas.graph.rel.ProjectRelationship;
+import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
+
+/**
+ * Listens to a {@link SimpleEProjectGraph} and records each mutation as numbered {@link GraphDelta}s, to be drained
+ * and shipped to replicas. Each changed project is diffed against the revision last seen by the recorder with
+ * {@link RelationshipDiffer}; relationships that only gained sources are recorded as {@link GraphDelta.Op#ADD_SOURCES}
+ * rather than in full.
+ */
+public final class GraphDeltaRecorder
+    implements EProjectGraphListener
+{
+
+    private final SimpleEProjectGraph graph;
+
+    private final Map<ProjectVersionRef, EProjectDirectRelationships> known =
+        new HashMap<ProjectVersionRef, EProjectDirectRelationships>();
+
+    private List<GraphDelta> pending = new ArrayList<GraphDelta>();
+
+    private long sequence;
+
+    /**
+     * Start recording changes to the given graph. Its current contents are taken as already shipped.
+     *
+     * @param lastSequence the sequence number of the last entry already shipped; recording continues after it
+     */
+    public GraphDeltaRecorder( final SimpleEProjectGraph graph, final long lastSequence )
+    {
+        this.graph = graph;
+        this.sequence = lastSequence;
+
+        for ( final ProjectVersionRef ref : graph.getProjects() )
+        {
+            known.put( ref, graph.getDirectRelationships( ref ) );
+        }
+
+        graph.addListener( this );
+    }
+
+    /**
+     * Stop listening to the graph. Entries recorded so far can still be drained.
+     */
+    public void detach()
+    {
+        graph.removeListener( this );
+    }
+
+    /**
+     * @return entries recorded since the last call, in sequence order
+     */
+    public synchronized List<GraphDelta> drain()
+    {
+        final List<GraphDelta> result = pending;
+        pending = new ArrayList<GraphDelta>();
+
+        return result;
+    }
+
+    /**
+     * @return the sequence number of the latest recorded entry
+     */
+    public synchronized long getSequence()
+    {
+        return sequence;
+    }
+
+    @Override
+    public synchronized void projectChanged( final EProjectGraph graph, final ProjectVersionRef ref )
+    {
+        final EProjectDirectRelationships after = graph.getDirectRelationships( ref );
+        final EProjectDirectRelationships before = after == null ? known.remove( ref ) : known.put( ref, after );
+
+        if ( after == null )
+        {
+            if ( before != null )
+            {
+                pending.add( GraphDelta.removeProject( ++sequence, ref ) );
+            }
+
+            return;
+        }
+
+        if ( before == after )
+        {
+            return;
+        }
+
+        if ( before == null || !equal( before.getSource(), after.getSource() ) )
+        {
+            pending.add( GraphDelta.addProject( ++sequence, ref, after.getSource() ) );
+        }
+
+        final Set<RelationshipKey> changedKeys = new HashSet<RelationshipKey>();
+        for ( final RelationshipChange change : RelationshipDiffer.diff( before, after )
+                                                                  .getChanges() )
+        {
+            changedKeys.add( change.getKey() );
+            switch ( change.getKind() )
+            {
+                case ADDED:
+                {
+                    pending.add( GraphDelta.add( ++sequence, change.getAfter() ) );
+                    break;
+                }
+                case REMOVED:
+                {
+                    pending.add( GraphDelta.remove( ++sequence, change.getBefore() ) );
+                    break;
+                }
+                default:
+                {
+                    pending.add( GraphDelta.modify( ++sequence, change.getBefore(), change.getAfter() ) );
+                }
+            }
+        }
+
+        if ( before != null )
+        {
+            recordSourceChanges( before, after, changedKeys );
+        }
+    }
+
+    private void recordSourceChanges( final EProjectDirectRelationships before, final EProjectDirectRelationships after,
+                                      final Set<RelationshipKey> changedKeys )
+    {
+        final Map<RelationshipKey, ProjectRelationship<?, ?>> old = RelationshipDiffer.keyed( before );
+        for ( final Map.Entry<RelationshipKey, ProjectRelationship<?, ?>> entry : RelationshipDiffer.keyed( after )
+                                                                                                    .entrySet() )
+        {
+            final ProjectRelationship<?, ?> now = entry.getValue();
+            final ProjectRelationship<?, ?> was = old.get( entry.getKey() );
+            if ( was == null || was == now || changedKeys.contains( entry.getKey() )
+                || was.getSources()
+                      .equals( now.getSources() ) )
+            {
+                continue;
+            }
+
+            if ( now.getSources()
+                    .containsAll( was.getSources() ) )
+            {
+                final List<URI> added = new ArrayList<URI>( now.getSources() );
+                added.removeAll( was.getSources() );
+                pending.add( GraphDelta.addSources( ++sequence, now, added ) );
+            }
+            else
+            {
+                pending.add( GraphDelta.modify( ++sequence, was, now ) );
+            }
+        }
+    }
+
+    private static boolean equal( final Object first, final Object second )
+    {
+        return first == null ? second == null : first.equals( second );
+    }
+
+}
@@ -0,0 +1,128 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.graph.diff;
+
+import java.io.Serializable;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.commonjava.maven.atlas.graph.model.EProjectDirectRelationships;
+import org.commonjava.maven.atlas.graph.rel.ProjectRelationship;
+import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
+
+/**
+ * The relationship changes between two revisions of one project, as computed by
+ * {@link RelationshipDiffer#diff(EProjectDirectRelationships, EProjectDirectRelationships)}.
+ */
+public final class ProjectChangeSet
+    implements Serializable
+{
+
+    private static final long serialVersionUID = 1L;
+
+    private final ProjectVersionRef project;
+
+    private final URI source;
+
+    private final List<RelationshipChange> changes;
+
+    ProjectChangeSet( final ProjectVersionRef project, final URI source, final List<RelationshipChange> changes )
+    {
+        this.project = project;
+        this.source = source;
+        this.changes = Collections.unmodifiableList( changes );
+    }
+
+    public ProjectVersionRef getProject()
+    {
+        return project;
+    }
+
+    /**
+     * @return the source of the newer revision
+     */
+    public URI getSource()
+    {
+        return source;
+    }
+
+    public List<RelationshipChange> getChanges()
+    {
+        return changes;
+    }
+
+    public boolean isEmpty()
+    {
+        return changes.isEmpty();
+    }
+
+    /**
+     * Replay these changes on top of the given relationships (usually the same project held in another graph).
+     * Relationships not mentioned in the change set are kept in their original order; changed ones are replaced in
+     * place and added ones are appended.
+     *
+     * @param base relationships to update, or null to build the project from the added and changed relationships alone
+     */
+    public EProjectDirectRelationships applyTo( final EProjectDirectRelationships base )
+    {
+        final Map<RelationshipKey, RelationshipChange> pending = new HashMap<RelationshipKey, RelationshipChange>();
+        for ( final RelationshipChange change : changes )
+        {
+            pending.put( change.getKey(), change );
+        }
+
+        final List<ProjectRelationship<?, ?>> result = new ArrayList<ProjectRelationship<?, ?>>();
+        if ( base != null )
+        {
+            for ( final Map.Entry<RelationshipKey, ProjectRelationship<?, ?>> entry : RelationshipDiffer.keyed( base )
+                                                                                                        .entrySet() )
+            {
+                final RelationshipChange change = pending.remove( entry.getKey() );
+                if ( change == null || change.getKind() == RelationshipChange.Kind.ADDED )
+                {
+                    // an ADDED change for a key the base already has replaces it, like any other upsert
+                    result.add( change == null ? entry.getValue() : change.getAfter() );
+                }
+                else if ( change.getKind() == RelationshipChange.Kind.CHANGED )
+                {
+                    result.add( change.getAfter() );
+                }
+            }
+        }
+
+        for ( final RelationshipChange change : changes )
+        {
+            if ( change.getAfter() != null && pending.containsKey( change.getKey() ) )
+            {
+                result.add( change.getAfter() );
+            }
+        }
+
+        return new EProjectDirectRelationships.Builder( source, project ).withRelationships( result )
+                                                                         .build();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format( "ProjectChangeSet [%s: %s]", project, changes );
+    }
+
+}
@@ -0,0 +1,133 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.graph.diff;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+import org.commonjava.maven.atlas.graph.rel.ProjectRelationship;
+
+/**
+ * A single relationship-level difference between two revisions of a project.
+ */
+public final class RelationshipChange
+    implements Serializable
+{
+
+    private static final long serialVersionUID = 1L;
+
+    public enum Kind
+    {
+        ADDED, REMOVED, CHANGED;
+    }
+
+    /**
+     * Attributes compared for {@link Kind#CHANGED} relationships. Sources are provenance rather than content, and are
+     * ignored.
+     */
+    public enum Attribute
+    {
+        TARGET, INDEX, INHERITED, MIXIN, SCOPE, OPTIONAL, EXCLUDES, REPORTING;
+    }
+
+    private final Kind kind;
+
+    private final ProjectRelationship<?, ?> before;
+
+    private final ProjectRelationship<?, ?> after;
+
+    private final Set<Attribute> attributes;
+
+    private final RelationshipKey key;
+
+    private RelationshipChange( final RelationshipKey key, final Kind kind, final ProjectRelationship<?, ?> before,
+                                final ProjectRelationship<?, ?> after, final Set<Attribute> attributes )
+    {
+        this.key = key;
+        this.kind = kind;
+        this.before = before;
+        this.after = after;
+        this.attributes =
+            attributes == null ? Collections.<Attribute> emptySet() : Collections.unmodifiableSet( attributes );
+    }
+
+    static RelationshipChange added( final RelationshipKey key, final ProjectRelationship<?, ?> rel )
+    {
+        return new RelationshipChange( key, Kind.ADDED, null, rel, null );
+    }
+
+    static RelationshipChange removed( final RelationshipKey key, final ProjectRelationship<?, ?> rel )
+    {
+        return new RelationshipChange( key, Kind.REMOVED, rel, null, null );
+    }
+
+    static RelationshipChange changed( final RelationshipKey key, final ProjectRelationship<?, ?> before,
+                                       final ProjectRelationship<?, ?> after, final EnumSet<Attribute> attributes )
+    {
+        return new RelationshipChange( key, Kind.CHANGED, before, after, attributes );
+    }
+
+    RelationshipKey getKey()
+    {
+        return key;
+    }
+
+    public Kind getKind()
+    {
+        return kind;
+    }
+
+    /**
+     * @return the relationship as it was, or null if it was added
+     */
+    public ProjectRelationship<?, ?> getBefore()
+    {
+        return before;
+    }
+
+    /**
+     * @return the relationship as it is now, or null if it was removed
+     */
+    public ProjectRelationship<?, ?> getAfter()
+    {
+        return after;
+    }
+
+    /**
+     * @return the attributes that differ, for {@link Kind#CHANGED}; empty otherwise
+     */
+    public Set<Attribute> getChangedAttributes()
+    {
+        return attributes;
+    }
+
+    @Override
+    public String toString()
+    {
+        switch ( kind )
+        {
+            case ADDED:
+                return "+ " + after;
+            case REMOVED:
+                return "- " + before;
+            default:
+                return "~ " + before + " -> " + after + " " + attributes;
+        }
+    }
+
+}
@@ -0,0 +1,244 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.graph.diff;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.commonjava.maven.atlas.graph.diff.RelationshipChange.Attribute;
+import org.commonjava.maven.atlas.graph.model.EProjectDirectRelationships;
+import org.commonjava.maven.atlas.graph.model.EProjectGraph;
+import org.commonjava.maven.atlas.graph.rel.DependencyRelationship;
+import org.commonjava.maven.atlas.graph.rel.PluginDependencyRelationship;
+import org.commonjava.maven.atlas.graph.rel.PluginRelationship;
+import org.commonjava.maven.atlas.graph.rel.ProjectRelationship;
+import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
+
+/**
+ * Computes relationship-level differences between two revisions of a project, or between two whole graphs. Both sides
+ * are keyed by {@link RelationshipKey} in hash maps, so a diff is linear in the number of relationships rather than
+ * the quadratic cost of matching with {@link List#contains(Object)}.
+ */
+public final class RelationshipDiffer
+{
+
+    private RelationshipDiffer()
+    {
+    }
+
+    /**
+     * Diff two revisions of the same project. Relationships are matched on type, managed flag, versionless target
+     * (and plugin, for plugin-level dependencies); a matched pair whose version, scope, index or other attributes
+     * differ is reported as {@link RelationshipChange.Kind#CHANGED}.
+     *
+     * @param before the old revision, or null if the project is new
+     * @param after the new revision, or null if the project was removed
+     */
+    public static ProjectChangeSet diff( final EProjectDirectRelationships before,
+                                         final EProjectDirectRelationships after )
+    {
+        final EProjectDirectRelationships ref = after == null ? before : after;
+        if ( ref == null )
+        {
+            throw new IllegalArgumentException( "At least one revision of the project is required." );
+        }
+
+        final Map<RelationshipKey, ProjectRelationship<?, ?>> old =
+            before == null ? new LinkedHashMap<RelationshipKey, ProjectRelationship<?, ?>>() : keyed( before );
+
+        final List<RelationshipChange> changes = new ArrayList<RelationshipChange>();
+        if ( after != null )
+        {
+            for ( final Map.Entry<RelationshipKey, ProjectRelationship<?, ?>> entry : keyed( after ).entrySet() )
+            {
+                final ProjectRelationship<?, ?> now = entry.getValue();
+                final ProjectRelationship<?, ?> was = old.remove( entry.getKey() );
+                if ( was == null )
+                {
+                    changes.add( RelationshipChange.added( entry.getKey(), now ) );
+                }
+                else if ( was != now )
+                {
+                    final EnumSet<Attribute> attrs = compare( was, now );
+                    if ( !attrs.isEmpty() )
+                    {
+                        changes.add( RelationshipChange.changed( entry.getKey(), was, now, attrs ) );
+                    }
+                }
+            }
+        }
+
+        for ( final Map.Entry<RelationshipKey, ProjectRelationship<?, ?>> entry : old.entrySet() )
+        {
+            changes.add( RelationshipChange.removed( entry.getKey(), entry.getValue() ) );
+        }
+
+        return new ProjectChangeSet( ref.getProjectRef()
+                                        .asProjectVersionRef(), ref.getSource(), changes );
+    }
+
+    /**
+     * Diff two graphs. Projects held by the same {@link EProjectDirectRelationships} instance on both sides are
+     * skipped without inspecting their relationships.
+     */
+    public static GraphChangeSet diff( final EProjectGraph before, final EProjectGraph after )
+    {
+        final List<EProjectDirectRelationships> added = new ArrayList<EProjectDirectRelationships>();
+        final List<ProjectVersionRef> removed = new ArrayList<ProjectVersionRef>();
+        final List<ProjectChangeSet> modified = new ArrayList<ProjectChangeSet>();
+
+        for ( final ProjectVersionRef ref : before.getProjects() )
+        {
+            final EProjectDirectRelationships now = after.getDirectRelationships( ref );
+            if ( now == null )
+            {
+                removed.add( ref );
+                continue;
+            }
+
+            final EProjectDirectRelationships was = before.getDirectRelationships( ref );
+            if ( was != now )
+            {
+                final ProjectChangeSet changes = diff( was, now );
+                if ( !changes.isEmpty() )
+                {
+                    modified.add( changes );
+                }
+            }
+        }
+
+        for ( final ProjectVersionRef ref : after.getProjects() )
+        {
+            if ( !before.containsProject( ref ) )
+            {
+                added.add( after.getDirectRelationships( ref ) );
+            }
+        }
+
+        return new GraphChangeSet( added, removed, modified );
+    }
+
+    /**
+     * Key every relationship of a project, in declaration order: parent, BOMs, dependencies, managed dependencies,
+     * plugins, managed plugins, plugin-level dependencies, extensions.
+     */
+    static Map<RelationshipKey, ProjectRelationship<?, ?>> keyed( final EProjectDirectRelationships rels )
+    {
+        final Map<RelationshipKey, ProjectRelationship<?, ?>> result =
+            new LinkedHashMap<RelationshipKey, ProjectRelationship<?, ?>>();
+
+        if ( rels.getParent() != null )
+        {
+            put( rels.getParent(), result );
+        }
+
+        putAll( rels.getBoms(), result );
+        putAll( rels.getDependencies(), result );
+        putAll( rels.getManagedDependencies(), result );
+        putAll( rels.getPlugins(), result );
+        putAll( rels.getManagedPlugins(), result );
+        for ( final List<PluginDependencyRelationship> pdeps : rels.getPluginDependencies()
+                                                                   .values() )
+        {
+            putAll( pdeps, result );
+        }
+        putAll( rels.getExtensions(), result );
+
+        return result;
+    }
+
+    private static void putAll( final List<? extends ProjectRelationship<?, ?>> rels,
+                                final Map<RelationshipKey, ProjectRelationship<?, ?>> result )
+    {
+        for ( final ProjectRelationship<?, ?> rel : rels )
+        {
+            put( rel, result );
+        }
+    }
+
+    private static void put( final ProjectRelationship<?, ?> rel,
+                             final Map<RelationshipKey, ProjectRelationship<?, ?>> result )
+    {
+        RelationshipKey key = RelationshipKey.of( rel );
+        while ( result.containsKey( key ) )
+        {
+            key = key.next();
+        }
+
+        result.put( key, rel );
+    }
+
+    private static EnumSet<Attribute> compare( final ProjectRelationship<?, ?> was, final ProjectRelationship<?, ?> now )
+    {
+        final EnumSet<Attribute> attrs = EnumSet.noneOf( Attribute.class );
+        if ( !was.getTargetArtifact()
+                 .equals( now.getTargetArtifact() ) )
+        {
+            attrs.add( Attribute.TARGET );
+        }
+        if ( was.getIndex() != now.getIndex() )
+        {
+            attrs.add( Attribute.INDEX );
+        }
+        if ( was.isInherited() != now.isInherited() )
+        {
+            attrs.add( Attribute.INHERITED );
+        }
+        if ( was.isMixin() != now.isMixin() )
+        {
+            attrs.add( Attribute.MIXIN );
+        }
+
+        if ( was instanceof DependencyRelationship && now instanceof DependencyRelationship )
+        {
+            final DependencyRelationship w = (DependencyRelationship) was;
+            final DependencyRelationship n = (DependencyRelationship) now;
+            if ( w.getScope() != n.getScope() )
+            {
+                attrs.add( Attribute.SCOPE );
+            }
+            if ( w.isOptional() != n.isOptional() )
+            {
+                attrs.add( Attribute.OPTIONAL );
+            }
+            if ( !w.getExcludes()
+                   .equals( n.getExcludes() ) )
+            {
+                attrs.add( Attribute.EXCLUDES );
+            }
+        }
+        else if ( was instanceof PluginRelationship && now instanceof PluginRelationship )
+        {
+            if ( ( (PluginRelationship) was ).isReporting() != ( (PluginRelationship) now ).isReporting() )
+            {
+                attrs.add( Attribute.REPORTING );
+            }
+        }
+        else if ( was instanceof PluginDependencyRelationship && now instanceof PluginDependencyRelationship )
+        {
+            if ( ( (PluginDependencyRelationship) was ).isOptional() != ( (PluginDependencyRelationship) now ).isOptional() )
+            {
+                attrs.add( Attribute.OPTIONAL );
+            }
+        }
+
+        return attrs;
+    }
+
+}
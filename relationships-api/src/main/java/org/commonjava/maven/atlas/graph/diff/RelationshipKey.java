@@ -0,0 +1,127 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.graph.diff;
+
+import java.io.Serializable;
+
+import org.commonjava.maven.atlas.graph.rel.PluginDependencyRelationship;
+import org.commonjava.maven.atlas.graph.rel.ProjectRelationship;
+import org.commonjava.maven.atlas.graph.rel.RelationshipType;
+import org.commonjava.maven.atlas.ident.ref.ProjectRef;
+import org.commonjava.maven.atlas.ident.ref.SimpleVersionlessArtifactRef;
+
+/**
+ * Identifies a relationship within its declaring project independently of its version and other attributes, so that two
+ * revisions of a project can be matched up by hashing. The key is the relationship type, managed flag, versionless
+ * target artifact and (for plugin-level dependencies) the owning plugin. A project has at most one parent, so parents
+ * are keyed on type alone and a new parent shows up as a change. Repeated declarations of the same key are told apart
+ * by their ordinal.
+ */
+final class RelationshipKey
+    implements Serializable
+{
+
+    private static final long serialVersionUID = 1L;
+
+    private final RelationshipType type;
+
+    private final boolean managed;
+
+    private final ProjectRef target;
+
+    private final ProjectRef plugin;
+
+    private final int ordinal;
+
+    private final int hash;
+
+    private RelationshipKey( final RelationshipType type, final boolean managed, final ProjectRef target,
+                             final ProjectRef plugin, final int ordinal )
+    {
+        this.type = type;
+        this.managed = managed;
+        this.target = target;
+        this.plugin = plugin;
+        this.ordinal = ordinal;
+
+        final int prime = 31;
+        int result = type.hashCode();
+        result = prime * result + ( managed ? 1231 : 1237 );
+        result = prime * result + ( target == null ? 0 : target.hashCode() );
+        result = prime * result + ( plugin == null ? 0 : plugin.hashCode() );
+        result = prime * result + ordinal;
+        this.hash = result;
+    }
+
+    static RelationshipKey of( final ProjectRelationship<?, ?> rel )
+    {
+        return of( rel, 0 );
+    }
+
+    static RelationshipKey of( final ProjectRelationship<?, ?> rel, final int ordinal )
+    {
+        final RelationshipType type = rel.getType();
+        if ( type == RelationshipType.PARENT )
+        {
+            return new RelationshipKey( type, false, null, null, ordinal );
+        }
+
+        final ProjectRef plugin =
+            rel instanceof PluginDependencyRelationship ? ( (PluginDependencyRelationship) rel ).getPlugin()
+                                                                                                  .asProjectRef()
+                            : null;
+
+        return new RelationshipKey( type, rel.isManaged(), new SimpleVersionlessArtifactRef( rel.getTargetArtifact() ),
+                                    plugin, ordinal );
+    }
+
+    RelationshipKey next()
+    {
+        return new RelationshipKey( type, managed, target, plugin, ordinal + 1 );
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return hash;
+    }
+
+    @Override
+    public boolean equals( final Object obj )
+    {
+        if ( this == obj )
+        {
+            return true;
+        }
+        if ( !( obj instanceof RelationshipKey ) )
+        {
+            return false;
+        }
+
+        final RelationshipKey other = (RelationshipKey) obj;
+        return hash == other.hash && type == other.type && managed == other.managed && ordinal == other.ordinal
+            && ( target == null ? other.target == null : target.equals( other.target ) )
+            && ( plugin == null ? other.plugin == null : plugin.equals( other.plugin ) );
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format( "%s%s %s%s#%s", type, managed ? " (managed)" : "", target == null ? "" : target,
+                              plugin == null ? "" : " in " + plugin, ordinal );
+    }
+
+}
@@ -0,0 +1,122 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.graph.filter;
+
+import org.commonjava.maven.atlas.graph.rel.DependencyRelationship;
+import org.commonjava.maven.atlas.graph.rel.PluginDependencyRelationship;
+import org.commonjava.maven.atlas.graph.rel.ProjectRelationship;
+import org.commonjava.maven.atlas.graph.rel.RelationshipType;
+import org.commonjava.maven.atlas.ident.DependencyScope;
+
+/**
+ * Packs the attributes of a relationship that filters care about into one int, for evaluation by {@link EdgeFilter}.
+ * Every attribute group is one-hot encoded, so a packed edge has exactly one bit set in each group:
+ * <ul>
+ * <li>bits 0-5: relationship type, by ordinal</li>
+ * <li>bits 6-14: dependency scope by ordinal, or bit 14 for relationships without a scope</li>
+ * <li>bits 15-16, 17-18, 19-20, 21-22: managed, inherited, mixin and optional, each as a (false, true) pair</li>
+ * </ul>
+ */
+public final class EdgeBits
+{
+
+    static final int TYPE_SHIFT = 0;
+
+    static final int TYPE_MASK = ( ( 1 << RelationshipType.values().length ) - 1 ) << TYPE_SHIFT;
+
+    static final int SCOPE_SHIFT = 6;
+
+    static final int NO_SCOPE = 1 << ( SCOPE_SHIFT + DependencyScope.values().length );
+
+    static final int SCOPE_MASK = ( ( 1 << ( DependencyScope.values().length + 1 ) ) - 1 ) << SCOPE_SHIFT;
+
+    static final int MANAGED_SHIFT = 15;
+
+    static final int MANAGED_MASK = 3 << MANAGED_SHIFT;
+
+    static final int INHERITED_SHIFT = 17;
+
+    static final int INHERITED_MASK = 3 << INHERITED_SHIFT;
+
+    static final int MIXIN_SHIFT = 19;
+
+    static final int MIXIN_MASK = 3 << MIXIN_SHIFT;
+
+    static final int OPTIONAL_SHIFT = 21;
+
+    static final int OPTIONAL_MASK = 3 << OPTIONAL_SHIFT;
+
+    static final int[] GROUPS = { TYPE_MASK, SCOPE_MASK, MANAGED_MASK, INHERITED_MASK, MIXIN_MASK, OPTIONAL_MASK };
+
+    static final int ALL = TYPE_MASK | SCOPE_MASK | MANAGED_MASK | INHERITED_MASK | MIXIN_MASK | OPTIONAL_MASK;
+
+    private EdgeBits()
+    {
+    }
+
+    public static int pack( final ProjectRelationship<?, ?> rel )
+    {
+        DependencyScope scope = null;
+        boolean optional = false;
+        if ( rel instanceof DependencyRelationship )
+        {
+            final DependencyRelationship dep = (DependencyRelationship) rel;
+            scope = dep.getScope();
+            optional = dep.isOptional();
+        }
+        else if ( rel instanceof PluginDependencyRelationship )
+        {
+            optional = ( (PluginDependencyRelationship) rel ).isOptional();
+        }
+
+        return pack( rel.getType(), scope, rel.isManaged(), rel.isInherited(), rel.isMixin(), optional );
+    }
+
+    public static int pack( final RelationshipType type, final DependencyScope scope, final boolean managed,
+                            final boolean inherited, final boolean mixin, final boolean optional )
+    {
+        return pack( type.ordinal(), scope == null ? -1 : scope.ordinal(), managed, inherited, mixin, optional );
+    }
+
+    /**
+     * Pack from ordinals, for stores that keep attributes in encoded form already.
+     *
+     * @param scopeOrdinal {@link DependencyScope} ordinal, or -1 for none
+     */
+    public static int pack( final int typeOrdinal, final int scopeOrdinal, final boolean managed,
+                            final boolean inherited, final boolean mixin, final boolean optional )
+    {
+        return 1 << ( TYPE_SHIFT + typeOrdinal ) | ( scopeOrdinal < 0 ? NO_SCOPE : 1 << ( SCOPE_SHIFT + scopeOrdinal ) )
+            | bit( MANAGED_SHIFT, managed ) | bit( INHERITED_SHIFT, inherited ) | bit( MIXIN_SHIFT, mixin )
+            | bit( OPTIONAL_SHIFT, optional );
+    }
+
+    static int typeBit( final RelationshipType type )
+    {
+        return 1 << ( TYPE_SHIFT + type.ordinal() );
+    }
+
+    static int scopeBit( final DependencyScope scope )
+    {
+        return 1 << ( SCOPE_SHIFT + scope.ordinal() );
+    }
+
+    static int bit( final int shift, final boolean value )
+    {
+        return 1 << ( value ? shift + 1 : shift );
+    }
+
+}
@@ -0,0 +1,334 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.graph.filter;
+
+import static org.commonjava.maven.atlas.graph.filter.EdgeBits.ALL;
+import static org.commonjava.maven.atlas.graph.filter.EdgeBits.GROUPS;
+import static org.commonjava.maven.atlas.graph.filter.EdgeBits.INHERITED_MASK;
+import static org.commonjava.maven.atlas.graph.filter.EdgeBits.INHERITED_SHIFT;
+import static org.commonjava.maven.atlas.graph.filter.EdgeBits.MANAGED_MASK;
+import static org.commonjava.maven.atlas.graph.filter.EdgeBits.MANAGED_SHIFT;
+import static org.commonjava.maven.atlas.graph.filter.EdgeBits.MIXIN_MASK;
+import static org.commonjava.maven.atlas.graph.filter.EdgeBits.MIXIN_SHIFT;
+import static org.commonjava.maven.atlas.graph.filter.EdgeBits.NO_SCOPE;
+import static org.commonjava.maven.atlas.graph.filter.EdgeBits.OPTIONAL_MASK;
+import static org.commonjava.maven.atlas.graph.filter.EdgeBits.OPTIONAL_SHIFT;
+import static org.commonjava.maven.atlas.graph.filter.EdgeBits.SCOPE_MASK;
+import static org.commonjava.maven.atlas.graph.filter.EdgeBits.TYPE_MASK;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.commonjava.maven.atlas.graph.rel.ProjectRelationship;
+import org.commonjava.maven.atlas.graph.rel.RelationshipType;
+import org.commonjava.maven.atlas.ident.DependencyScope;
+
+/**
+ * Immutable relationship predicate compiled to bitmasks over {@link EdgeBits}-packed edges.
+ * <br/>
+ * A filter is held in disjunctive normal form: a list of terms, each term a mask of the attribute values it allows.
+ * Because a packed edge has exactly one bit set per attribute group, an edge satisfies a term when it has no bits
+ * outside the term's mask, i.e. <code>(edge &amp; ~term) == 0</code>. Simple filters and their conjunctions are a
+ * single term, so testing an edge is one AND and one compare; {@link #or} and {@link #not} may add terms.
+ * <br/>
+ * Attribute filters only constrain the relationships the attribute applies to: scope filters pass relationships that
+ * have no scope (parents, plugins and so on), and {@link #optional(boolean) optional(false)} passes everything not
+ * marked optional. Combine with {@link #types} to exclude other relationship types.
+ */
+public final class EdgeFilter
+{
+
+    private static final EdgeFilter ALL_EDGES = new EdgeFilter( new int[] { ALL } );
+
+    private static final EdgeFilter NO_EDGES = new EdgeFilter( new int[0] );
+
+    private final int[] terms;
+
+    private EdgeFilter( final int[] terms )
+    {
+        this.terms = terms;
+    }
+
+    public static EdgeFilter all()
+    {
+        return ALL_EDGES;
+    }
+
+    public static EdgeFilter none()
+    {
+        return NO_EDGES;
+    }
+
+    public static EdgeFilter types( final RelationshipType... types )
+    {
+        int allowed = 0;
+        for ( final RelationshipType type : types )
+        {
+            allowed |= EdgeBits.typeBit( type );
+        }
+
+        return restrict( TYPE_MASK, allowed );
+    }
+
+    /**
+     * Accept relationships with any of the given scopes, or no scope at all.
+     */
+    public static EdgeFilter scopes( final DependencyScope... scopes )
+    {
+        int allowed = NO_SCOPE;
+        for ( final DependencyScope scope : scopes )
+        {
+            allowed |= EdgeBits.scopeBit( scope );
+        }
+
+        return restrict( SCOPE_MASK, allowed );
+    }
+
+    /**
+     * Accept relationships whose scope is implied by the given one (see {@link DependencyScope#implies}), or that have
+     * no scope. The implication set is resolved once, here, rather than for each edge.
+     */
+    public static EdgeFilter scopesImpliedBy( final DependencyScope scope )
+    {
+        int allowed = NO_SCOPE;
+        for ( final DependencyScope candidate : DependencyScope.values() )
+        {
+            if ( scope.implies( candidate ) )
+            {
+                allowed |= EdgeBits.scopeBit( candidate );
+            }
+        }
+
+        return restrict( SCOPE_MASK, allowed );
+    }
+
+    public static EdgeFilter managed( final boolean managed )
+    {
+        return restrict( MANAGED_MASK, EdgeBits.bit( MANAGED_SHIFT, managed ) );
+    }
+
+    public static EdgeFilter inherited( final boolean inherited )
+    {
+        return restrict( INHERITED_MASK, EdgeBits.bit( INHERITED_SHIFT, inherited ) );
+    }
+
+    public static EdgeFilter mixin( final boolean mixin )
+    {
+        return restrict( MIXIN_MASK, EdgeBits.bit( MIXIN_SHIFT, mixin ) );
+    }
+
+    public static EdgeFilter optional( final boolean optional )
+    {
+        return restrict( OPTIONAL_MASK, EdgeBits.bit( OPTIONAL_SHIFT, optional ) );
+    }
+
+    private static EdgeFilter restrict( final int group, final int allowed )
+    {
+        return of( new int[] { ( ALL & ~group ) | ( allowed & group ) } );
+    }
+
+    public EdgeFilter and( final EdgeFilter other )
+    {
+        if ( this == ALL_EDGES )
+        {
+            return other;
+        }
+        else if ( other == ALL_EDGES )
+        {
+            return this;
+        }
+
+        final int[] result = new int[terms.length * other.terms.length];
+        int i = 0;
+        for ( final int mine : terms )
+        {
+            for ( final int theirs : other.terms )
+            {
+                result[i++] = mine & theirs;
+            }
+        }
+
+        return of( result );
+    }
+
+    public EdgeFilter or( final EdgeFilter other )
+    {
+        final int[] result = Arrays.copyOf( terms, terms.length + other.terms.length );
+        System.arraycopy( other.terms, 0, result, terms.length, other.terms.length );
+
+        return of( result );
+    }
+
+    public EdgeFilter not()
+    {
+        EdgeFilter result = ALL_EDGES;
+        for ( final int term : terms )
+        {
+            // not(a AND b AND ...) == not(a) OR not(b) OR ..., one group at a time
+            final int[] negated = new int[GROUPS.length];
+            int n = 0;
+            for ( final int group : GROUPS )
+            {
+                if ( ( term & group ) != group )
+                {
+                    negated[n++] = ( ALL & ~group ) | ( ~term & group );
+                }
+            }
+
+            result = result.and( of( Arrays.copyOf( negated, n ) ) );
+        }
+
+        return result;
+    }
+
+    public boolean accept( final int edge )
+    {
+        for ( final int term : terms )
+        {
+            if ( ( edge & ~term ) == 0 )
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    public boolean accept( final ProjectRelationship<?, ?> rel )
+    {
+        return accept( EdgeBits.pack( rel ) );
+    }
+
+    /**
+     * @return the number of terms in this filter's normal form; useful for seeing what composition costs
+     */
+    public int getTermCount()
+    {
+        return terms.length;
+    }
+
+    /**
+     * Normalize a set of terms: drop terms that can't match anything, merge terms that differ in a single attribute
+     * group (their union is then exact), and drop terms contained in another term.
+     */
+    private static EdgeFilter of( final int[] candidates )
+    {
+        final List<Integer> kept = new ArrayList<Integer>( candidates.length );
+        for ( final int term : candidates )
+        {
+            if ( satisfiable( term ) )
+            {
+                kept.add( term );
+            }
+        }
+
+        boolean changed = true;
+        while ( changed )
+        {
+            changed = false;
+            for ( int i = 0; i < kept.size() && !changed; i++ )
+            {
+                for ( int j = i + 1; j < kept.size() && !changed; j++ )
+                {
+                    final int a = kept.get( i );
+                    final int b = kept.get( j );
+                    if ( ( a & ~b ) == 0 || ( b & ~a ) == 0 || differInOneGroup( a, b ) )
+                    {
+                        // containment is a special case of the union being exact
+                        kept.set( i, a | b );
+                        kept.remove( j );
+                        changed = true;
+                    }
+                }
+            }
+        }
+
+        if ( kept.isEmpty() )
+        {
+            return NO_EDGES;
+        }
+        else if ( kept.size() == 1 && kept.get( 0 ) == ALL )
+        {
+            return ALL_EDGES;
+        }
+
+        final int[] result = new int[kept.size()];
+        for ( int i = 0; i < result.length; i++ )
+        {
+            result[i] = kept.get( i );
+        }
+
+        return new EdgeFilter( result );
+    }
+
+    private static boolean differInOneGroup( final int a, final int b )
+    {
+        int differing = 0;
+        for ( final int group : GROUPS )
+        {
+            if ( ( a & group ) != ( b & group ) && ++differing > 1 )
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean satisfiable( final int term )
+    {
+        for ( final int group : GROUPS )
+        {
+            if ( ( term & group ) == 0 )
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public boolean equals( final Object obj )
+    {
+        return obj instanceof EdgeFilter && Arrays.equals( terms, ( (EdgeFilter) obj ).terms );
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Arrays.hashCode( terms );
+    }
+
+    @Override
+    public String toString()
+    {
+        final StringBuilder sb = new StringBuilder( "EdgeFilter [" );
+        for ( int i = 0; i < terms.length; i++ )
+        {
+            if ( i > 0 )
+            {
+                sb.append( " | " );
+            }
+            sb.append( Integer.toBinaryString( terms[i] ) );
+        }
+
+        return sb.append( ']' )
+                 .toString();
+    }
+
+}
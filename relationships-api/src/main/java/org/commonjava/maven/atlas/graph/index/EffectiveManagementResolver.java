@@ -0,0 +1,284 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.graph.index;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.commonjava.maven.atlas.graph.model.EProjectDirectRelationships;
+import org.commonjava.maven.atlas.graph.model.EProjectGraph;
+import org.commonjava.maven.atlas.graph.model.EProjectGraphListener;
+import org.commonjava.maven.atlas.graph.rel.BomRelationship;
+import org.commonjava.maven.atlas.graph.rel.DependencyRelationship;
+import org.commonjava.maven.atlas.graph.rel.ParentRelationship;
+import org.commonjava.maven.atlas.graph.util.PersistentHashMap;
+import org.commonjava.maven.atlas.ident.DependencyScope;
+import org.commonjava.maven.atlas.ident.ref.ArtifactRef;
+import org.commonjava.maven.atlas.ident.ref.ProjectRef;
+import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
+import org.commonjava.maven.atlas.ident.ref.SimpleVersionlessArtifactRef;
+import org.commonjava.maven.atlas.ident.ref.VersionlessArtifactRef;
+
+/**
+ * Resolves and caches the effective dependency management of each project in an {@link EProjectGraph}, following Maven
+ * precedence:
+ * <ol>
+ * <li>the project's own managed dependencies (first declaration wins)</li>
+ * <li>managed dependencies declared in the parent chain (nearest parent wins)</li>
+ * <li>managed dependencies imported from the project's own BOMs, in declaration order (first BOM wins)</li>
+ * <li>managed dependencies imported from the parent chain's BOMs (nearest parent first)</li>
+ * </ol>
+ * That is, everything declared explicitly anywhere in the inheritance chain beats anything imported, as Maven applies
+ * imports only to the already inherited model. Each project's declared and imported management are memoized as
+ * {@link PersistentHashMap}s derived from its parent's, so descendants share all unchanged entries with their ancestors
+ * instead of copying them. Once a project is resolved, looking up a managed dependency is two hash lookups.
+ * <br/>
+ * Call {@link #invalidate(ProjectVersionRef)} when a project's relationships change (or register this resolver as an
+ * {@link EProjectGraphListener}); the project and everything that inherits from or imports it are evicted. Parent or
+ * BOM cycles are broken at the repeated project.
+ */
+public final class EffectiveManagementResolver
+    implements EProjectGraphListener
+{
+
+    private final EProjectGraph graph;
+
+    private final ConcurrentHashMap<ProjectVersionRef, Management> cache =
+        new ConcurrentHashMap<ProjectVersionRef, Management>();
+
+    // guarded by this
+    private final Map<ProjectVersionRef, Set<ProjectVersionRef>> dependents =
+        new HashMap<ProjectVersionRef, Set<ProjectVersionRef>>();
+
+    // guarded by this
+    private final Set<ProjectVersionRef> resolving = new HashSet<ProjectVersionRef>();
+
+    public EffectiveManagementResolver( final EProjectGraph graph )
+    {
+        this.graph = graph;
+    }
+
+    /**
+     * Retrieve the managed dependency that applies to the given reference within the given project, or null. If the
+     * reference doesn't carry a type and classifier (it isn't an {@link ArtifactRef} or {@link VersionlessArtifactRef}),
+     * the jar artifact is assumed, as in a Maven dependency declaration.
+     */
+    public DependencyRelationship getManagedDependency( final ProjectVersionRef project, final ProjectRef ref )
+    {
+        return getEffectiveManagementMap( project ).get( keyFor( ref ) );
+    }
+
+    public ArtifactRef getManagedVersion( final ProjectVersionRef project, final ProjectRef ref )
+    {
+        final DependencyRelationship managed = getManagedDependency( project, ref );
+        return managed == null ? null : managed.getTarget();
+    }
+
+    public DependencyScope getManagedScope( final ProjectVersionRef project, final ProjectRef ref )
+    {
+        final DependencyRelationship managed = getManagedDependency( project, ref );
+        return managed == null ? null : managed.getScope();
+    }
+
+    /**
+     * Read-only view of the effective dependency management for the given project.
+     */
+    public Map<VersionlessArtifactRef, DependencyRelationship> getEffectiveManagement( final ProjectVersionRef project )
+    {
+        return getEffectiveManagementMap( project ).asMap();
+    }
+
+    public PersistentHashMap<VersionlessArtifactRef, DependencyRelationship> getEffectiveManagementMap( final ProjectVersionRef project )
+    {
+        final ProjectVersionRef key = project.asProjectVersionRef();
+        final Management cached = cache.get( key );
+        if ( cached != null )
+        {
+            return cached.effective;
+        }
+
+        synchronized ( this )
+        {
+            return resolve( key ).effective;
+        }
+    }
+
+    /**
+     * Evict the given project, and every project inheriting from or importing it, from the cache.
+     */
+    public synchronized void invalidate( final ProjectVersionRef project )
+    {
+        final List<ProjectVersionRef> pending = new ArrayList<ProjectVersionRef>();
+        final Set<ProjectVersionRef> seen = new HashSet<ProjectVersionRef>();
+        pending.add( project.asProjectVersionRef() );
+
+        while ( !pending.isEmpty() )
+        {
+            final ProjectVersionRef ref = pending.remove( pending.size() - 1 );
+            if ( !seen.add( ref ) )
+            {
+                continue;
+            }
+
+            cache.remove( ref );
+
+            final Set<ProjectVersionRef> deps = dependents.remove( ref );
+            if ( deps != null )
+            {
+                pending.addAll( deps );
+            }
+        }
+    }
+
+    public synchronized void invalidateAll()
+    {
+        cache.clear();
+        dependents.clear();
+    }
+
+    @Override
+    public void projectChanged( final EProjectGraph graph, final ProjectVersionRef ref )
+    {
+        invalidate( ref );
+    }
+
+    private Management resolve( final ProjectVersionRef ref )
+    {
+        final Management cached = cache.get( ref );
+        if ( cached != null )
+        {
+            return cached;
+        }
+
+        if ( !resolving.add( ref ) )
+        {
+            // parent / BOM cycle; contribute nothing from the repeated project.
+            return Management.EMPTY;
+        }
+
+        try
+        {
+            PersistentHashMap<VersionlessArtifactRef, DependencyRelationship> declared = PersistentHashMap.empty();
+            PersistentHashMap<VersionlessArtifactRef, DependencyRelationship> imported = PersistentHashMap.empty();
+
+            final EProjectDirectRelationships rels = graph.getDirectRelationships( ref );
+            if ( rels != null )
+            {
+                final List<DependencyRelationship> managed = rels.getManagedDependencies();
+
+                // own imports first, in declaration order; later ones only fill gaps
+                for ( final BomRelationship bom : rels.getBoms() )
+                {
+                    imported = imported.plusAllIfAbsent( resolve( dependsOn( ref, bom.getTarget() ) ).effective );
+                }
+
+                for ( final DependencyRelationship dep : managed )
+                {
+                    if ( dep.isBOM() )
+                    {
+                        imported = imported.plusAllIfAbsent( resolve( dependsOn( ref, dep.getTarget() ) ).effective );
+                    }
+                }
+
+                final ParentRelationship parent = rels.getParent();
+                if ( parent != null && !parent.isTerminus() )
+                {
+                    final Management inherited = resolve( dependsOn( ref, parent.getTarget() ) );
+                    declared = inherited.declared;
+                    imported = imported.plusAllIfAbsent( inherited.imported );
+                }
+
+                // walk backwards so the first declaration of a duplicated key is the one that sticks.
+                for ( int i = managed.size() - 1; i >= 0; i-- )
+                {
+                    final DependencyRelationship dep = managed.get( i );
+                    if ( !dep.isBOM() )
+                    {
+                        declared = declared.plus( keyFor( dep.getTarget() ), dep );
+                    }
+                }
+            }
+
+            final Management result = new Management( declared, imported );
+            cache.put( ref, result );
+            return result;
+        }
+        finally
+        {
+            resolving.remove( ref );
+        }
+    }
+
+    private ProjectVersionRef dependsOn( final ProjectVersionRef dependent, final ProjectVersionRef target )
+    {
+        final ProjectVersionRef ref = target.asProjectVersionRef();
+
+        Set<ProjectVersionRef> deps = dependents.get( ref );
+        if ( deps == null )
+        {
+            deps = new HashSet<ProjectVersionRef>();
+            dependents.put( ref, deps );
+        }
+        deps.add( dependent );
+
+        return ref;
+    }
+
+    private static VersionlessArtifactRef keyFor( final ProjectRef ref )
+    {
+        if ( ref instanceof VersionlessArtifactRef )
+        {
+            return (VersionlessArtifactRef) ref;
+        }
+        else if ( ref instanceof ArtifactRef )
+        {
+            return new SimpleVersionlessArtifactRef( (ArtifactRef) ref );
+        }
+
+        return ref.asVersionlessJarArtifact();
+    }
+
+    /**
+     * Resolved management of one project: what its inheritance chain declares, what the chain imports from BOMs, and
+     * the two merged with declarations first.
+     */
+    private static final class Management
+    {
+        static final Management EMPTY =
+            new Management( PersistentHashMap.<VersionlessArtifactRef, DependencyRelationship> empty(),
+                            PersistentHashMap.<VersionlessArtifactRef, DependencyRelationship> empty() );
+
+        final PersistentHashMap<VersionlessArtifactRef, DependencyRelationship> declared;
+
+        final PersistentHashMap<VersionlessArtifactRef, DependencyRelationship> imported;
+
+        final PersistentHashMap<VersionlessArtifactRef, DependencyRelationship> effective;
+
+        Management( final PersistentHashMap<VersionlessArtifactRef, DependencyRelationship> declared,
+                    final PersistentHashMap<VersionlessArtifactRef, DependencyRelationship> imported )
+        {
+            this.declared = declared;
+            this.imported = imported;
+            this.effective = declared.plusAllIfAbsent( imported );
+        }
+    }
+
+}
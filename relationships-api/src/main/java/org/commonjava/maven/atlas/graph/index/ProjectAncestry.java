@@ -0,0 +1,201 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.graph.index;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
+
+/**
+ * Immutable link in a parent chain, as produced by {@link ProjectAncestryIndex}. Each node points at its parent's node,
+ * so projects sharing a parent share the entire remaining chain rather than holding copies of it. Iteration starts at
+ * the project itself and walks toward the root-most ancestor.
+ */
+public final class ProjectAncestry
+    implements Iterable<ProjectVersionRef>
+{
+
+    private final ProjectVersionRef project;
+
+    private final ProjectAncestry parent;
+
+    private final ProjectAncestry root;
+
+    private final int size;
+
+    private final ProjectVersionRef missingParent;
+
+    private final boolean cyclic;
+
+    private volatile List<ProjectVersionRef> list;
+
+    ProjectAncestry( final ProjectVersionRef project, final ProjectAncestry parent )
+    {
+        this.project = project;
+        this.parent = parent;
+        this.root = parent.root;
+        this.size = parent.size + 1;
+        this.missingParent = null;
+        this.cyclic = false;
+    }
+
+    ProjectAncestry( final ProjectVersionRef project, final ProjectVersionRef missingParent, final boolean cyclic )
+    {
+        this.project = project;
+        this.parent = null;
+        this.root = this;
+        this.size = 1;
+        this.missingParent = missingParent;
+        this.cyclic = cyclic;
+    }
+
+    public ProjectVersionRef getProject()
+    {
+        return project;
+    }
+
+    /**
+     * @return the ancestry of this project's parent, or null if this is the root-most project in the chain
+     */
+    public ProjectAncestry getParent()
+    {
+        return parent;
+    }
+
+    /**
+     * @return the root-most project in the chain
+     */
+    public ProjectVersionRef getRootProject()
+    {
+        return root.project;
+    }
+
+    /**
+     * @return the number of projects in the chain, including this one
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @return true if the chain ended on a project with no parent or a terminal parent relationship
+     */
+    public boolean isComplete()
+    {
+        return root.missingParent == null && !root.cyclic;
+    }
+
+    /**
+     * @return the parent declared by the root-most project but not available in the graph, or null
+     */
+    public ProjectVersionRef getMissingParent()
+    {
+        return root.missingParent;
+    }
+
+    /**
+     * @return true if the chain was cut short because a project turned up in its own ancestry
+     */
+    public boolean isCyclic()
+    {
+        return root.cyclic;
+    }
+
+    public boolean contains( final ProjectVersionRef ref )
+    {
+        final ProjectVersionRef key = ref.asProjectVersionRef();
+        ProjectAncestry node = this;
+        while ( node != null )
+        {
+            if ( node.project.equals( key ) )
+            {
+                return true;
+            }
+            node = node.parent;
+        }
+
+        return false;
+    }
+
+    /**
+     * @return the chain as an unmodifiable list, this project first. Built on first use and then retained.
+     */
+    public List<ProjectVersionRef> toList()
+    {
+        List<ProjectVersionRef> result = list;
+        if ( result == null )
+        {
+            final ProjectVersionRef[] refs = new ProjectVersionRef[size];
+            int i = 0;
+            for ( final ProjectVersionRef ref : this )
+            {
+                refs[i++] = ref;
+            }
+
+            result = Collections.unmodifiableList( Arrays.asList( refs ) );
+            list = result;
+        }
+
+        return result;
+    }
+
+    @Override
+    public Iterator<ProjectVersionRef> iterator()
+    {
+        return new Iterator<ProjectVersionRef>()
+        {
+            private ProjectAncestry next = ProjectAncestry.this;
+
+            @Override
+            public boolean hasNext()
+            {
+                return next != null;
+            }
+
+            @Override
+            public ProjectVersionRef next()
+            {
+                if ( next == null )
+                {
+                    throw new NoSuchElementException();
+                }
+
+                final ProjectVersionRef ref = next.project;
+                next = next.parent;
+                return ref;
+            }
+
+            @Override
+            public void remove()
+            {
+                throw new UnsupportedOperationException( "Project ancestry is immutable." );
+            }
+        };
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format( "ProjectAncestry %s%s%s", toList(), isCyclic() ? " (cyclic)" : "",
+                              getMissingParent() == null ? "" : " (missing: " + getMissingParent() + ")" );
+    }
+
+}
@@ -0,0 +1,386 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.graph.index;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.commonjava.maven.atlas.graph.model.EProjectDirectRelationships;
+import org.commonjava.maven.atlas.graph.model.EProjectGraph;
+import org.commonjava.maven.atlas.graph.model.EProjectGraphListener;
+import org.commonjava.maven.atlas.graph.rel.ParentRelationship;
+import org.commonjava.maven.atlas.graph.rel.PluginDependencyRelationship;
+import org.commonjava.maven.atlas.graph.rel.ProjectRelationship;
+import org.commonjava.maven.atlas.graph.rel.RelationshipType;
+import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
+
+/**
+ * Memoizes the parent chain of each project in an {@link EProjectGraph}. Chains are stored as linked
+ * {@link ProjectAncestry} nodes, so siblings (and every descendant of a shared ancestor) reuse the same tail instead of
+ * each holding a full copy. A chain ends at a project without a parent or with a terminal parent relationship
+ * ({@link ParentRelationship#isTerminus()}), at a parent missing from the graph, or just before a project would repeat.
+ * <br/>
+ * Register this index as an {@link EProjectGraphListener} (or call {@link #invalidate(ProjectVersionRef)}) to keep it
+ * in step with graph changes; a change evicts the project and all of its cached descendants.
+ */
+public final class ProjectAncestryIndex
+    implements EProjectGraphListener
+{
+
+    private static final RelationshipType[] INHERITABLE_TYPES = { RelationshipType.BOM, RelationshipType.DEPENDENCY,
+        RelationshipType.PLUGIN, RelationshipType.PLUGIN_DEP, RelationshipType.EXTENSION };
+
+    private final EProjectGraph graph;
+
+    private final ConcurrentHashMap<ProjectVersionRef, ProjectAncestry> cache =
+        new ConcurrentHashMap<ProjectVersionRef, ProjectAncestry>();
+
+    // guarded by this
+    private final Map<ProjectVersionRef, Set<ProjectVersionRef>> children =
+        new HashMap<ProjectVersionRef, Set<ProjectVersionRef>>();
+
+    public ProjectAncestryIndex( final EProjectGraph graph )
+    {
+        this.graph = graph;
+    }
+
+    /**
+     * @return the parent chain starting at the given project, or null if the project isn't in the graph
+     */
+    public ProjectAncestry getAncestry( final ProjectVersionRef project )
+    {
+        final ProjectVersionRef key = project.asProjectVersionRef();
+        final ProjectAncestry cached = cache.get( key );
+        if ( cached != null )
+        {
+            return cached;
+        }
+
+        synchronized ( this )
+        {
+            return resolve( key );
+        }
+    }
+
+    /**
+     * Live view of the relationships the given project inherits from its ancestors, nearest ancestor first and in
+     * declaration order within each ancestor. Nothing is copied: the view walks the cached ancestry and the ancestors'
+     * own relationship lists on each iteration. Overrides between levels are not applied here; see
+     * {@link EffectiveManagementResolver} for merged dependency management.
+     *
+     * @param types relationship types to include; defaults to everything but {@link RelationshipType#PARENT}
+     */
+    public Collection<ProjectRelationship<?, ?>> getInheritedRelationships( final ProjectVersionRef project,
+                                                                           final RelationshipType... types )
+    {
+        final ProjectAncestry ancestry = getAncestry( project );
+        if ( ancestry == null || ancestry.getParent() == null )
+        {
+            return Collections.emptySet();
+        }
+
+        final Set<RelationshipType> selected =
+            types == null || types.length < 1 ? EnumSet.noneOf( RelationshipType.class ) : EnumSet.of( types[0], types );
+        if ( selected.isEmpty() )
+        {
+            Collections.addAll( selected, INHERITABLE_TYPES );
+        }
+
+        return new InheritedRelationships( graph, ancestry.getParent(),
+                                           selected.toArray( new RelationshipType[selected.size()] ) );
+    }
+
+    /**
+     * Evict the given project and every cached project that has it as an ancestor.
+     */
+    public synchronized void invalidate( final ProjectVersionRef project )
+    {
+        final List<ProjectVersionRef> pending = new ArrayList<ProjectVersionRef>();
+        final Set<ProjectVersionRef> seen = new HashSet<ProjectVersionRef>();
+        pending.add( project.asProjectVersionRef() );
+
+        while ( !pending.isEmpty() )
+        {
+            final ProjectVersionRef ref = pending.remove( pending.size() - 1 );
+            if ( !seen.add( ref ) )
+            {
+                continue;
+            }
+
+            cache.remove( ref );
+
+            final Set<ProjectVersionRef> kids = children.remove( ref );
+            if ( kids != null )
+            {
+                pending.addAll( kids );
+            }
+        }
+    }
+
+    public synchronized void invalidateAll()
+    {
+        cache.clear();
+        children.clear();
+    }
+
+    @Override
+    public void projectChanged( final EProjectGraph graph, final ProjectVersionRef ref )
+    {
+        invalidate( ref );
+    }
+
+    private ProjectAncestry resolve( final ProjectVersionRef ref )
+    {
+        ProjectAncestry node = cache.get( ref );
+        if ( node != null || !graph.containsProject( ref ) )
+        {
+            return node;
+        }
+
+        // walk up until we hit a cached chain or the end of the line, then build nodes back down.
+        final List<ProjectVersionRef> walk = new ArrayList<ProjectVersionRef>();
+        final Set<ProjectVersionRef> seen = new HashSet<ProjectVersionRef>();
+        ProjectVersionRef missing = null;
+        int cycleStart = -1;
+
+        ProjectVersionRef current = ref;
+        while ( true )
+        {
+            walk.add( current );
+            seen.add( current );
+
+            final ParentRelationship parent = graph.getDirectRelationships( current )
+                                                   .getParent();
+            if ( parent == null || parent.isTerminus() )
+            {
+                break;
+            }
+
+            final ProjectVersionRef p = parent.getTarget()
+                                              .asProjectVersionRef();
+            addChild( p, current );
+
+            node = cache.get( p );
+            if ( node != null )
+            {
+                break;
+            }
+            else if ( seen.contains( p ) )
+            {
+                cycleStart = walk.indexOf( p );
+                break;
+            }
+            else if ( !graph.containsProject( p ) )
+            {
+                missing = p;
+                break;
+            }
+
+            current = p;
+        }
+
+        for ( int i = walk.size() - 1; i >= 0; i-- )
+        {
+            final ProjectVersionRef r = walk.get( i );
+            node = node == null ? new ProjectAncestry( r, missing, cycleStart > -1 ) : new ProjectAncestry( r, node );
+
+            // projects on a cycle get a different (truncated) chain depending on where the walk entered it, so
+            // only cache the ones leading into the cycle.
+            if ( cycleStart < 0 || i < cycleStart )
+            {
+                cache.put( r, node );
+            }
+        }
+
+        return node;
+    }
+
+    private void addChild( final ProjectVersionRef parent, final ProjectVersionRef child )
+    {
+        Set<ProjectVersionRef> kids = children.get( parent );
+        if ( kids == null )
+        {
+            kids = new HashSet<ProjectVersionRef>();
+            children.put( parent, kids );
+        }
+        kids.add( child );
+    }
+
+    private static final class InheritedRelationships
+        extends AbstractCollection<ProjectRelationship<?, ?>>
+    {
+        private final EProjectGraph graph;
+
+        private final ProjectAncestry ancestors;
+
+        private final RelationshipType[] types;
+
+        InheritedRelationships( final EProjectGraph graph, final ProjectAncestry ancestors,
+                                final RelationshipType[] types )
+        {
+            this.graph = graph;
+            this.ancestors = ancestors;
+            this.types = types;
+        }
+
+        @Override
+        public Iterator<ProjectRelationship<?, ?>> iterator()
+        {
+            return new Iterator<ProjectRelationship<?, ?>>()
+            {
+                private ProjectAncestry ancestor = ancestors;
+
+                private final List<List<? extends ProjectRelationship<?, ?>>> lists =
+                    new ArrayList<List<? extends ProjectRelationship<?, ?>>>();
+
+                private int listIdx;
+
+                private Iterator<? extends ProjectRelationship<?, ?>> current;
+
+                @Override
+                public boolean hasNext()
+                {
+                    while ( current == null || !current.hasNext() )
+                    {
+                        if ( listIdx < lists.size() )
+                        {
+                            current = lists.get( listIdx++ )
+                                           .iterator();
+                        }
+                        else if ( ancestor != null )
+                        {
+                            lists.clear();
+                            listIdx = 0;
+                            collect( ancestor, lists );
+                            ancestor = ancestor.getParent();
+                        }
+                        else
+                        {
+                            return false;
+                        }
+                    }
+
+                    return true;
+                }
+
+                @Override
+                public ProjectRelationship<?, ?> next()
+                {
+                    if ( !hasNext() )
+                    {
+                        throw new NoSuchElementException();
+                    }
+
+                    return current.next();
+                }
+
+                @Override
+                public void remove()
+                {
+                    throw new UnsupportedOperationException( "Inherited relationships are read-only." );
+                }
+            };
+        }
+
+        @Override
+        public int size()
+        {
+            final List<List<? extends ProjectRelationship<?, ?>>> lists =
+                new ArrayList<List<? extends ProjectRelationship<?, ?>>>();
+
+            int size = 0;
+            for ( ProjectAncestry a = ancestors; a != null; a = a.getParent() )
+            {
+                lists.clear();
+                collect( a, lists );
+                for ( final List<? extends ProjectRelationship<?, ?>> list : lists )
+                {
+                    size += list.size();
+                }
+            }
+
+            return size;
+        }
+
+        private void collect( final ProjectAncestry ancestor, final List<List<? extends ProjectRelationship<?, ?>>> lists )
+        {
+            final EProjectDirectRelationships rels = graph.getDirectRelationships( ancestor.getProject() );
+            if ( rels == null )
+            {
+                return;
+            }
+
+            for ( final RelationshipType type : types )
+            {
+                switch ( type )
+                {
+                    case PARENT:
+                    {
+                        if ( rels.getParent() != null )
+                        {
+                            lists.add( Collections.singletonList( rels.getParent() ) );
+                        }
+                        break;
+                    }
+                    case BOM:
+                    {
+                        lists.add( rels.getBoms() );
+                        break;
+                    }
+                    case DEPENDENCY:
+                    {
+                        lists.add( rels.getDependencies() );
+                        lists.add( rels.getManagedDependencies() );
+                        break;
+                    }
+                    case PLUGIN:
+                    {
+                        lists.add( rels.getPlugins() );
+                        lists.add( rels.getManagedPlugins() );
+                        break;
+                    }
+                    case PLUGIN_DEP:
+                    {
+                        for ( final List<PluginDependencyRelationship> pdeps : rels.getPluginDependencies()
+                                                                                   .values() )
+                        {
+                            lists.add( pdeps );
+                        }
+                        break;
+                    }
+                    case EXTENSION:
+                    {
+                        lists.add( rels.getExtensions() );
+                        break;
+                    }
+                    default:
+                }
+            }
+        }
+    }
+
+}
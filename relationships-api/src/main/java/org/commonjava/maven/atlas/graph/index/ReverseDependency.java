@@ -0,0 +1,63 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.graph.index;
+
+import org.commonjava.maven.atlas.graph.rel.ProjectRelationship;
+import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
+import org.commonjava.maven.atlas.ident.version.VersionSpec;
+
+/**
+ * One entry in a {@link ReverseDependencyIndex}: a project that declares a relationship to the indexed target, along
+ * with the version it declared.
+ */
+public final class ReverseDependency
+{
+
+    private final ProjectRelationship<?, ?> relationship;
+
+    private final VersionSpec versionSpec;
+
+    ReverseDependency( final ProjectRelationship<?, ?> relationship, final VersionSpec versionSpec )
+    {
+        this.relationship = relationship;
+        this.versionSpec = versionSpec;
+    }
+
+    public ProjectVersionRef getDeclaring()
+    {
+        return relationship.getDeclaring();
+    }
+
+    public ProjectRelationship<?, ?> getRelationship()
+    {
+        return relationship;
+    }
+
+    /**
+     * @return the declared version (single, range or compound), or null if the declared version could not be parsed
+     */
+    public VersionSpec getVersionSpec()
+    {
+        return versionSpec;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format( "ReverseDependency [%s -> %s]", relationship.getDeclaring(), relationship.getTarget() );
+    }
+
+}
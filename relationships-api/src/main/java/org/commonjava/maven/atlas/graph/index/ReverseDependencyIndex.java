@@ -0,0 +1,371 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.graph.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.commonjava.maven.atlas.graph.model.EProjectDirectRelationships;
+import org.commonjava.maven.atlas.graph.model.EProjectGraph;
+import org.commonjava.maven.atlas.graph.model.EProjectGraphListener;
+import org.commonjava.maven.atlas.graph.rel.ParentRelationship;
+import org.commonjava.maven.atlas.graph.rel.ProjectRelationship;
+import org.commonjava.maven.atlas.graph.rel.RelationshipType;
+import org.commonjava.maven.atlas.ident.ref.ProjectRef;
+import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
+import org.commonjava.maven.atlas.ident.version.InvalidVersionSpecificationException;
+import org.commonjava.maven.atlas.ident.version.RangeVersionSpec;
+import org.commonjava.maven.atlas.ident.version.SingleVersion;
+import org.commonjava.maven.atlas.ident.version.VersionSpec;
+import org.commonjava.maven.atlas.ident.version.VersionSpecComparisons;
+
+/**
+ * Reverse index from a target {@link ProjectRef} to the projects declaring relationships on it, with the version each
+ * one declared. Managed relationships and terminal parents are not indexed, since they don't pull anything in.
+ * <br/>
+ * Version queries avoid testing every declaration: single-version declarations are bucketed by base version, and
+ * ranges with a release lower bound are kept sorted by that bound so only ranges starting at or below the queried
+ * version are checked. Ranges without a usable lower bound and compound specs are always checked.
+ * <br/>
+ * The index is built from the graph on construction and kept current incrementally via {@link #add}, {@link #remove}
+ * or by registering it as an {@link EProjectGraphListener}.
+ */
+public final class ReverseDependencyIndex
+    implements EProjectGraphListener
+{
+
+    private final Set<RelationshipType> types;
+
+    private final Map<ProjectRef, TargetEntry> targets = new HashMap<ProjectRef, TargetEntry>();
+
+    private final Map<ProjectVersionRef, List<ReverseDependency>> byDeclaring =
+        new HashMap<ProjectVersionRef, List<ReverseDependency>>();
+
+    /**
+     * Index {@link RelationshipType#DEPENDENCY} relationships of all projects currently in the graph.
+     */
+    public ReverseDependencyIndex( final EProjectGraph graph )
+    {
+        this( graph, RelationshipType.DEPENDENCY );
+    }
+
+    public ReverseDependencyIndex( final EProjectGraph graph, final RelationshipType... types )
+    {
+        this.types =
+            types.length == 0 ? EnumSet.of( RelationshipType.DEPENDENCY ) : EnumSet.copyOf( Arrays.asList( types ) );
+        if ( graph != null )
+        {
+            for ( final ProjectVersionRef ref : graph.getProjects() )
+            {
+                add( graph.getDirectRelationships( ref ) );
+            }
+        }
+    }
+
+    /**
+     * Index (or re-index) the relationships declared by one project, replacing anything indexed for it before.
+     */
+    public synchronized void add( final EProjectDirectRelationships rels )
+    {
+        final ProjectVersionRef declaring = rels.getProjectRef()
+                                                .asProjectVersionRef();
+        remove( declaring );
+
+        final List<ReverseDependency> entries = new ArrayList<ReverseDependency>();
+        for ( final ProjectRelationship<?, ?> rel : rels.getExactAllRelationships() )
+        {
+            if ( !types.contains( rel.getType() ) || rel.isManaged()
+                || ( rel instanceof ParentRelationship && ( (ParentRelationship) rel ).isTerminus() ) )
+            {
+                continue;
+            }
+
+            final ProjectVersionRef target = rel.getTarget();
+            VersionSpec spec;
+            try
+            {
+                spec = target.getVersionSpec();
+            }
+            catch ( final InvalidVersionSpecificationException e )
+            {
+                spec = null;
+            }
+
+            final ReverseDependency entry = new ReverseDependency( rel, spec );
+            final ProjectRef key = target.asProjectRef();
+
+            TargetEntry te = targets.get( key );
+            if ( te == null )
+            {
+                te = new TargetEntry();
+                targets.put( key, te );
+            }
+
+            te.add( entry );
+            entries.add( entry );
+        }
+
+        if ( !entries.isEmpty() )
+        {
+            byDeclaring.put( declaring, entries );
+        }
+    }
+
+    /**
+     * Drop everything indexed for the given declaring project.
+     */
+    public synchronized void remove( final ProjectVersionRef declaring )
+    {
+        final List<ReverseDependency> entries = byDeclaring.remove( declaring.asProjectVersionRef() );
+        if ( entries == null )
+        {
+            return;
+        }
+
+        for ( final ReverseDependency entry : entries )
+        {
+            final ProjectRef key = entry.getRelationship()
+                                        .getTarget()
+                                        .asProjectRef();
+            final TargetEntry te = targets.get( key );
+            if ( te != null && te.remove( entry ) )
+            {
+                targets.remove( key );
+            }
+        }
+    }
+
+    @Override
+    public void projectChanged( final EProjectGraph graph, final ProjectVersionRef ref )
+    {
+        final EProjectDirectRelationships rels = graph.getDirectRelationships( ref );
+        if ( rels == null )
+        {
+            remove( ref );
+        }
+        else
+        {
+            add( rels );
+        }
+    }
+
+    /**
+     * @return every indexed declaration targeting any version of the given project
+     */
+    public synchronized List<ReverseDependency> getDependents( final ProjectRef target )
+    {
+        final TargetEntry te = targets.get( target.asProjectRef() );
+        if ( te == null )
+        {
+            return Collections.emptyList();
+        }
+
+        final List<ReverseDependency> result = new ArrayList<ReverseDependency>( te.size );
+        for ( final List<ReverseDependency> bucket : te.singles.values() )
+        {
+            result.addAll( bucket );
+        }
+        result.addAll( te.ranges );
+        result.addAll( te.unsorted );
+
+        return result;
+    }
+
+    /**
+     * @return the declarations whose version spec would accept the given concrete version of the target
+     */
+    public List<ReverseDependency> getDependents( final ProjectVersionRef version )
+    {
+        final VersionSpec spec = version.getVersionSpec();
+        if ( !spec.isSingle() )
+        {
+            throw new IllegalArgumentException( "Reverse dependency lookup requires a single version, not: " + version );
+        }
+
+        return getDependents( version.asProjectRef(), spec.getSingleVersion() );
+    }
+
+    /**
+     * @return the declarations whose version spec would accept the given concrete version of the target
+     */
+    public synchronized List<ReverseDependency> getDependents( final ProjectRef target, final SingleVersion version )
+    {
+        final TargetEntry te = targets.get( target.asProjectRef() );
+        if ( te == null )
+        {
+            return Collections.emptyList();
+        }
+
+        final List<ReverseDependency> result = new ArrayList<ReverseDependency>();
+
+        final List<ReverseDependency> bucket = te.singles.get( version.getBaseVersion() );
+        if ( bucket != null )
+        {
+            addMatches( bucket, 0, bucket.size(), version, result );
+        }
+
+        addMatches( te.ranges, 0, te.rangesStartingAtOrBelow( version ), version, result );
+        addMatches( te.unsorted, 0, te.unsorted.size(), version, result );
+
+        return result;
+    }
+
+    /**
+     * @return the number of distinct targets with at least one declaration
+     */
+    public synchronized int getTargetCount()
+    {
+        return targets.size();
+    }
+
+    private static void addMatches( final List<ReverseDependency> candidates, final int from, final int to,
+                                    final SingleVersion version, final List<ReverseDependency> result )
+    {
+        for ( int i = from; i < to; i++ )
+        {
+            final ReverseDependency candidate = candidates.get( i );
+            final VersionSpec spec = candidate.getVersionSpec();
+            if ( spec != null && spec.contains( version ) )
+            {
+                result.add( candidate );
+            }
+        }
+    }
+
+    private static final class TargetEntry
+    {
+        private final Map<SingleVersion, List<ReverseDependency>> singles =
+            new HashMap<SingleVersion, List<ReverseDependency>>();
+
+        // ranges with a release lower bound, sorted by that bound
+        private final List<ReverseDependency> ranges = new ArrayList<ReverseDependency>();
+
+        private final List<ReverseDependency> unsorted = new ArrayList<ReverseDependency>();
+
+        private int size;
+
+        void add( final ReverseDependency entry )
+        {
+            size++;
+
+            final VersionSpec spec = entry.getVersionSpec();
+            if ( spec instanceof SingleVersion )
+            {
+                final SingleVersion base = ( (SingleVersion) spec ).getBaseVersion();
+                List<ReverseDependency> bucket = singles.get( base );
+                if ( bucket == null )
+                {
+                    bucket = new ArrayList<ReverseDependency>( 2 );
+                    singles.put( base, bucket );
+                }
+                bucket.add( entry );
+            }
+            else if ( spec instanceof RangeVersionSpec && isSortable( (RangeVersionSpec) spec ) )
+            {
+                // insert after any ranges with an equal lower bound, keeping declaration order stable
+                final SingleVersion lower = ( (RangeVersionSpec) spec ).getLowerBound();
+                ranges.add( rangesStartingAtOrBelow( lower ), entry );
+            }
+            else
+            {
+                unsorted.add( entry );
+            }
+        }
+
+        /**
+         * @return true if the target no longer has any entries
+         */
+        boolean remove( final ReverseDependency entry )
+        {
+            final VersionSpec spec = entry.getVersionSpec();
+            boolean removed;
+            if ( spec instanceof SingleVersion )
+            {
+                final SingleVersion base = ( (SingleVersion) spec ).getBaseVersion();
+                final List<ReverseDependency> bucket = singles.get( base );
+                removed = bucket != null && removeIdentity( bucket, entry );
+                if ( bucket != null && bucket.isEmpty() )
+                {
+                    singles.remove( base );
+                }
+            }
+            else
+            {
+                removed = removeIdentity( ranges, entry ) || removeIdentity( unsorted, entry );
+            }
+
+            if ( removed )
+            {
+                size--;
+            }
+
+            return size < 1;
+        }
+
+        /**
+         * @return the number of leading sorted ranges whose lower bound is at or below the given version
+         */
+        int rangesStartingAtOrBelow( final SingleVersion version )
+        {
+            int lo = 0;
+            int hi = ranges.size();
+            while ( lo < hi )
+            {
+                final int mid = ( lo + hi ) >>> 1;
+                final SingleVersion lower = ( (RangeVersionSpec) ranges.get( mid )
+                                                                       .getVersionSpec() ).getLowerBound();
+                if ( VersionSpecComparisons.compareTo( lower, version ) <= 0 )
+                {
+                    lo = mid + 1;
+                }
+                else
+                {
+                    hi = mid;
+                }
+            }
+
+            return lo;
+        }
+
+        private static boolean isSortable( final RangeVersionSpec range )
+        {
+            // snapshot lower bounds can match snapshots below them; see RangeVersionSpec.contains()
+            final SingleVersion lower = range.getLowerBound();
+            return lower != null && lower.isRelease();
+        }
+
+        private static boolean removeIdentity( final List<ReverseDependency> list, final ReverseDependency entry )
+        {
+            for ( int i = 0; i < list.size(); i++ )
+            {
+                if ( list.get( i ) == entry )
+                {
+                    list.remove( i );
+                    return true;
+                }
+            }
+
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,85 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.graph.jackson;
+
+/**
+ * Layout shared by {@link CompactRelationshipWriter} and {@link CompactRelationshipReader}. A compact dump is a plain
+ * JSON object with these fields, in this order:
+ * <ul>
+ * <li><b>format</b>, <b>version</b>: identify the layout.</li>
+ * <li><b>strings</b>: every distinct string used below (refs, URIs, type and scope names), each written once.</li>
+ * <li><b>lists</b>: every distinct list of string indexes (source URI sets, dependency excludes), each written
+ * once.</li>
+ * <li><b>relationships</b>: one int array per relationship, laid out as the ROW_* offsets below. String and list
+ * fields are indexes into the tables above, or {@link #NONE}. Trailing {@link #NONE} entries are left off.</li>
+ * </ul>
+ */
+final class CompactRelationshipFormat
+{
+
+    static final String FORMAT = "format";
+
+    static final String FORMAT_NAME = "atlas-relationships-compact";
+
+    static final String VERSION = "version";
+
+    static final int CURRENT_VERSION = 1;
+
+    static final String STRINGS = "strings";
+
+    static final String LISTS = "lists";
+
+    static final String RELATIONSHIPS = "relationships";
+
+    static final int NONE = -1;
+
+    static final int ROW_TYPE = 0;
+
+    static final int ROW_FLAGS = 1;
+
+    static final int ROW_DECLARING = 2;
+
+    static final int ROW_TARGET = 3;
+
+    static final int ROW_POM_LOCATION = 4;
+
+    static final int ROW_INDEX = 5;
+
+    static final int ROW_SOURCES = 6;
+
+    static final int ROW_SCOPE = 7;
+
+    static final int ROW_PLUGIN = 8;
+
+    static final int ROW_EXCLUDES = 9;
+
+    static final int ROW_LENGTH = 10;
+
+    static final int MANAGED = 1;
+
+    static final int INHERITED = 1 << 1;
+
+    static final int MIXIN = 1 << 2;
+
+    static final int OPTIONAL = 1 << 3;
+
+    static final int REPORTING = 1 << 4;
+
+    private CompactRelationshipFormat()
+    {
+    }
+
+}
@@ -0,0 +1,497 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.graph.jackson;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.commonjava.maven.atlas.graph.rel.ProjectRelationship;
+import org.commonjava.maven.atlas.graph.rel.RelationshipConstants;
+import org.commonjava.maven.atlas.graph.rel.RelationshipType;
+import org.commonjava.maven.atlas.graph.rel.SimpleBomRelationship;
+import org.commonjava.maven.atlas.graph.rel.SimpleDependencyRelationship;
+import org.commonjava.maven.atlas.graph.rel.SimpleExtensionRelationship;
+import org.commonjava.maven.atlas.graph.rel.SimpleParentRelationship;
+import org.commonjava.maven.atlas.graph.rel.SimplePluginDependencyRelationship;
+import org.commonjava.maven.atlas.graph.rel.SimplePluginRelationship;
+import org.commonjava.maven.atlas.ident.DependencyScope;
+import org.commonjava.maven.atlas.ident.ref.ArtifactRef;
+import org.commonjava.maven.atlas.ident.ref.ProjectRef;
+import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
+import org.commonjava.maven.atlas.ident.ref.SimpleArtifactRef;
+import org.commonjava.maven.atlas.ident.ref.SimpleProjectRef;
+import org.commonjava.maven.atlas.ident.ref.SimpleProjectVersionRef;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.commonjava.maven.atlas.graph.jackson.CompactRelationshipFormat.*;
+
+/**
+ * Reads relationships written by {@link CompactRelationshipWriter}, one at a time. The header tables are read up front;
+ * each table entry is parsed into a ref, URI or scope at most once and shared by every relationship that uses it.
+ */
+public final class CompactRelationshipReader
+        implements Closeable
+{
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private final JsonParser jp;
+
+    private final String[] strings;
+
+    private final int[][] lists;
+
+    // parsed forms of table entries, filled on first use; one cache per kind, since the same string or list may be
+    // read as more than one kind (e.g. "g:a" is both a valid project ref and a valid URI)
+    private final ProjectVersionRef[] versionRefs;
+
+    private final ArtifactRef[] artifactRefs;
+
+    private final ProjectRef[] projectRefs;
+
+    private final URI[] uris;
+
+    private final DependencyScope[] scopes;
+
+    private final List<?>[] uriLists;
+
+    private final List<?>[] refLists;
+
+    private final int[] row = new int[ROW_LENGTH];
+
+    private boolean done;
+
+    public CompactRelationshipReader( final InputStream in )
+            throws IOException
+    {
+        this( FACTORY.createParser( in ) );
+    }
+
+    public CompactRelationshipReader( final JsonParser jp )
+            throws IOException
+    {
+        this.jp = jp;
+
+        JsonToken token = jp.getCurrentToken() == null ? jp.nextToken() : jp.getCurrentToken();
+        expect( token, JsonToken.START_OBJECT );
+
+        String[] strings = null;
+        int[][] lists = null;
+        while ( ( token = jp.nextToken() ) == JsonToken.FIELD_NAME )
+        {
+            final String field = jp.getCurrentName();
+            token = jp.nextToken();
+
+            if ( FORMAT.equals( field ) )
+            {
+                if ( !FORMAT_NAME.equals( jp.getText() ) )
+                {
+                    throw new JsonParseException( "Not a compact relationship dump: " + jp.getText(),
+                                                  jp.getCurrentLocation() );
+                }
+            }
+            else if ( VERSION.equals( field ) )
+            {
+                if ( jp.getIntValue() != CURRENT_VERSION )
+                {
+                    throw new JsonParseException( "Unsupported compact relationship format version: " + jp.getText(),
+                                                  jp.getCurrentLocation() );
+                }
+            }
+            else if ( STRINGS.equals( field ) )
+            {
+                strings = readStrings( jp );
+            }
+            else if ( LISTS.equals( field ) )
+            {
+                lists = readLists( jp );
+            }
+            else if ( RELATIONSHIPS.equals( field ) )
+            {
+                expect( token, JsonToken.START_ARRAY );
+                break;
+            }
+            else
+            {
+                jp.skipChildren();
+            }
+        }
+
+        if ( token != JsonToken.START_ARRAY || strings == null )
+        {
+            throw new JsonParseException( "Compact relationship dump must contain " + STRINGS + " before "
+                                                  + RELATIONSHIPS, jp.getCurrentLocation() );
+        }
+
+        this.strings = strings;
+        this.lists = lists == null ? new int[0][] : lists;
+        this.versionRefs = new ProjectVersionRef[strings.length];
+        this.artifactRefs = new ArtifactRef[strings.length];
+        this.projectRefs = new ProjectRef[strings.length];
+        this.uris = new URI[strings.length];
+        this.scopes = new DependencyScope[strings.length];
+        this.uriLists = new List<?>[this.lists.length];
+        this.refLists = new List<?>[this.lists.length];
+    }
+
+    public static List<ProjectRelationship<?, ?>> readAll( final InputStream in )
+            throws IOException
+    {
+        final CompactRelationshipReader reader = new CompactRelationshipReader( in );
+        try
+        {
+            final List<ProjectRelationship<?, ?>> result = new ArrayList<ProjectRelationship<?, ?>>();
+            ProjectRelationship<?, ?> rel;
+            while ( ( rel = reader.next() ) != null )
+            {
+                result.add( rel );
+            }
+
+            return result;
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+
+    /**
+     * @return the next relationship, or null once all have been read
+     */
+    public ProjectRelationship<?, ?> next()
+            throws IOException
+    {
+        if ( done )
+        {
+            return null;
+        }
+
+        JsonToken token = jp.nextToken();
+        if ( token == JsonToken.END_ARRAY )
+        {
+            done = true;
+            return null;
+        }
+
+        expect( token, JsonToken.START_ARRAY );
+
+        int length = 0;
+        while ( ( token = jp.nextToken() ) != JsonToken.END_ARRAY )
+        {
+            if ( length == ROW_LENGTH )
+            {
+                throw new JsonParseException( "Too many values in relationship row.", jp.getCurrentLocation() );
+            }
+
+            row[length++] = jp.getIntValue();
+        }
+
+        for ( int i = length; i < ROW_LENGTH; i++ )
+        {
+            row[i] = NONE;
+        }
+
+        return decode();
+    }
+
+    @Override
+    public void close()
+            throws IOException
+    {
+        jp.close();
+    }
+
+    private ProjectRelationship<?, ?> decode()
+            throws IOException
+    {
+        final RelationshipType type = RelationshipType.getType( string( row[ROW_TYPE] ) );
+        if ( type == null )
+        {
+            throw new JsonParseException( "Unknown relationship type: " + string( row[ROW_TYPE] ),
+                                          jp.getCurrentLocation() );
+        }
+
+        final int flags = row[ROW_FLAGS];
+        final boolean managed = ( flags & MANAGED ) != 0;
+        final boolean inherited = ( flags & INHERITED ) != 0;
+
+        final ProjectVersionRef declaring = versionRef( row[ROW_DECLARING] );
+        final URI pomLocation =
+                row[ROW_POM_LOCATION] == NONE ? RelationshipConstants.POM_ROOT_URI : uri( row[ROW_POM_LOCATION] );
+        final List<URI> sources = uriList( row[ROW_SOURCES] );
+        final int index = row[ROW_INDEX];
+
+        switch ( type )
+        {
+            case DEPENDENCY:
+            {
+                final DependencyScope scope =
+                        row[ROW_SCOPE] == NONE ? DependencyScope.compile : scope( row[ROW_SCOPE] );
+                final List<ProjectRef> excludes = refs( row[ROW_EXCLUDES] );
+
+                return new SimpleDependencyRelationship( sources, pomLocation, declaring,
+                                                         artifactRef( row[ROW_TARGET] ), scope, index, managed,
+                                                         inherited, ( flags & OPTIONAL ) != 0,
+                                                         excludes.toArray( new ProjectRef[excludes.size()] ) );
+            }
+            case EXTENSION:
+            {
+                return new SimpleExtensionRelationship( sources, pomLocation, declaring, versionRef( row[ROW_TARGET] ),
+                                                        index, inherited );
+            }
+            case PARENT:
+            {
+                return new SimpleParentRelationship( sources, declaring, versionRef( row[ROW_TARGET] ) );
+            }
+            case PLUGIN:
+            {
+                return new SimplePluginRelationship( sources, pomLocation, declaring, versionRef( row[ROW_TARGET] ),
+                                                     index, managed, ( flags & REPORTING ) != 0, inherited );
+            }
+            case PLUGIN_DEP:
+            {
+                if ( row[ROW_PLUGIN] == NONE )
+                {
+                    throw new JsonParseException( "No plugin reference found in plugin-dependency relationship!",
+                                                  jp.getCurrentLocation() );
+                }
+
+                return new SimplePluginDependencyRelationship( sources, pomLocation, declaring,
+                                                               projectRef( row[ROW_PLUGIN] ),
+                                                               artifactRef( row[ROW_TARGET] ), index, managed,
+                                                               inherited );
+            }
+            case BOM:
+            default:
+            {
+                return new SimpleBomRelationship( sources, pomLocation, declaring, versionRef( row[ROW_TARGET] ),
+                                                  index, inherited, ( flags & MIXIN ) != 0 );
+            }
+        }
+    }
+
+    private String string( final int idx )
+            throws IOException
+    {
+        if ( idx < 0 || idx >= strings.length )
+        {
+            throw new JsonParseException( "String table index out of range: " + idx, jp.getCurrentLocation() );
+        }
+
+        return strings[idx];
+    }
+
+    private ProjectVersionRef versionRef( final int idx )
+            throws IOException
+    {
+        final String value = string( idx );
+        ProjectVersionRef ref = versionRefs[idx];
+        if ( ref == null )
+        {
+            ref = SimpleProjectVersionRef.parse( value );
+            versionRefs[idx] = ref;
+        }
+
+        return ref;
+    }
+
+    private ArtifactRef artifactRef( final int idx )
+            throws IOException
+    {
+        final String value = string( idx );
+        ArtifactRef ref = artifactRefs[idx];
+        if ( ref == null )
+        {
+            ref = SimpleArtifactRef.parse( value );
+            artifactRefs[idx] = ref;
+        }
+
+        return ref;
+    }
+
+    private ProjectRef projectRef( final int idx )
+            throws IOException
+    {
+        final String value = string( idx );
+        ProjectRef ref = projectRefs[idx];
+        if ( ref == null )
+        {
+            ref = SimpleProjectRef.parse( value );
+            projectRefs[idx] = ref;
+        }
+
+        return ref;
+    }
+
+    private URI uri( final int idx )
+            throws IOException
+    {
+        final String value = string( idx );
+        URI uri = uris[idx];
+        if ( uri == null )
+        {
+            try
+            {
+                uri = new URI( value );
+            }
+            catch ( final URISyntaxException e )
+            {
+                throw new JsonParseException( "Invalid URI: '" + value + "': " + e.getMessage(),
+                                              jp.getCurrentLocation(), e );
+            }
+            uris[idx] = uri;
+        }
+
+        return uri;
+    }
+
+    private DependencyScope scope( final int idx )
+            throws IOException
+    {
+        final String value = string( idx );
+        DependencyScope scope = scopes[idx];
+        if ( scope == null )
+        {
+            scope = DependencyScope.getScope( value );
+            scopes[idx] = scope;
+        }
+
+        return scope;
+    }
+
+    @SuppressWarnings( "unchecked" )
+    private List<URI> uriList( final int idx )
+            throws IOException
+    {
+        if ( idx == NONE )
+        {
+            return Collections.emptyList();
+        }
+
+        checkList( idx );
+        List<URI> result = (List<URI>) uriLists[idx];
+        if ( result == null )
+        {
+            final int[] entries = lists[idx];
+            result = new ArrayList<URI>( entries.length );
+            for ( final int entry : entries )
+            {
+                result.add( uri( entry ) );
+            }
+
+            uriLists[idx] = result;
+        }
+
+        return result;
+    }
+
+    @SuppressWarnings( "unchecked" )
+    private List<ProjectRef> refs( final int idx )
+            throws IOException
+    {
+        if ( idx == NONE )
+        {
+            return Collections.emptyList();
+        }
+
+        checkList( idx );
+        List<ProjectRef> refs = (List<ProjectRef>) refLists[idx];
+        if ( refs == null )
+        {
+            final int[] entries = lists[idx];
+            refs = new ArrayList<ProjectRef>( entries.length );
+            for ( final int entry : entries )
+            {
+                refs.add( projectRef( entry ) );
+            }
+
+            refLists[idx] = refs;
+        }
+
+        return refs;
+    }
+
+    private void checkList( final int idx )
+            throws IOException
+    {
+        if ( idx < 0 || idx >= lists.length )
+        {
+            throw new JsonParseException( "List table index out of range: " + idx, jp.getCurrentLocation() );
+        }
+    }
+
+    private static String[] readStrings( final JsonParser jp )
+            throws IOException
+    {
+        expect( jp.getCurrentToken(), JsonToken.START_ARRAY );
+
+        final List<String> strings = new ArrayList<String>();
+        while ( jp.nextToken() != JsonToken.END_ARRAY )
+        {
+            strings.add( jp.getText() );
+        }
+
+        return strings.toArray( new String[strings.size()] );
+    }
+
+    private static int[][] readLists( final JsonParser jp )
+            throws IOException
+    {
+        expect( jp.getCurrentToken(), JsonToken.START_ARRAY );
+
+        final List<int[]> lists = new ArrayList<int[]>();
+        final List<Integer> current = new ArrayList<Integer>();
+        JsonToken token;
+        while ( ( token = jp.nextToken() ) != JsonToken.END_ARRAY )
+        {
+            expect( token, JsonToken.START_ARRAY );
+
+            current.clear();
+            while ( jp.nextToken() != JsonToken.END_ARRAY )
+            {
+                current.add( jp.getIntValue() );
+            }
+
+            final int[] list = new int[current.size()];
+            for ( int i = 0; i < list.length; i++ )
+            {
+                list[i] = current.get( i );
+            }
+            lists.add( list );
+        }
+
+        return lists.toArray( new int[lists.size()][] );
+    }
+
+    private static void expect( final JsonToken actual, final JsonToken expected )
+            throws IOException
+    {
+        if ( actual != expected )
+        {
+            throw new JsonParseException( "Expected " + expected + " but found " + actual, null );
+        }
+    }
+
+}
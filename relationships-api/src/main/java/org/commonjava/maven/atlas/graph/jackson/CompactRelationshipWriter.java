@@ -0,0 +1,344 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.graph.jackson;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.commonjava.maven.atlas.graph.model.EProjectDirectRelationships;
+import org.commonjava.maven.atlas.graph.model.EProjectGraph;
+import org.commonjava.maven.atlas.graph.rel.DependencyRelationship;
+import org.commonjava.maven.atlas.graph.rel.PluginDependencyRelationship;
+import org.commonjava.maven.atlas.graph.rel.PluginRelationship;
+import org.commonjava.maven.atlas.graph.rel.ProjectRelationship;
+import org.commonjava.maven.atlas.ident.ref.ProjectRef;
+import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import static org.commonjava.maven.atlas.graph.jackson.CompactRelationshipFormat.*;
+
+/**
+ * Writes relationships in the dictionary-compressed JSON layout described by {@link CompactRelationshipFormat}:
+ * repeated coordinates, URIs and source sets are written once in header tables, and each relationship becomes a short
+ * array of table indexes and packed flags.
+ * <br/>
+ * The relationships are iterated twice (once to build the tables, once to write the rows), so only the tables are held
+ * in memory, never the relationships themselves. The iterable must therefore be re-iterable and yield the same
+ * relationships both times; if the second pass needs a table entry the first didn't, or yields a different number of
+ * relationships, writing fails with an {@link IOException} and the output is incomplete.
+ */
+public final class CompactRelationshipWriter
+{
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private final Map<String, Integer> strings = new LinkedHashMap<String, Integer>();
+
+    private final Map<List<Integer>, Integer> lists = new LinkedHashMap<List<Integer>, Integer>();
+
+    // set once the tables are written; from then on every entry must already exist
+    private boolean sealed;
+
+    private CompactRelationshipWriter()
+    {
+    }
+
+    public static long write( final Iterable<? extends ProjectRelationship<?, ?>> relationships, final OutputStream out )
+            throws IOException
+    {
+        final JsonGenerator gen = FACTORY.createGenerator( out, JsonEncoding.UTF8 );
+        try
+        {
+            return write( relationships, gen );
+        }
+        finally
+        {
+            gen.close();
+        }
+    }
+
+    /**
+     * Write every relationship of every project in the graph, including terminal parents.
+     */
+    public static long write( final EProjectGraph graph, final OutputStream out )
+            throws IOException
+    {
+        return write( new GraphRelationships( graph ), out );
+    }
+
+    /**
+     * @param relationships iterated twice; see the class documentation
+     * @return the number of relationships written
+     * @throws IOException if the two passes over the relationships disagree
+     */
+    public static long write( final Iterable<? extends ProjectRelationship<?, ?>> relationships,
+                              final JsonGenerator gen )
+            throws IOException
+    {
+        final CompactRelationshipWriter writer = new CompactRelationshipWriter();
+        long expected = 0;
+        for ( final ProjectRelationship<?, ?> rel : relationships )
+        {
+            writer.row( rel );
+            expected++;
+        }
+        writer.sealed = true;
+
+        gen.writeStartObject();
+        gen.writeStringField( FORMAT, FORMAT_NAME );
+        gen.writeNumberField( VERSION, CURRENT_VERSION );
+
+        gen.writeArrayFieldStart( STRINGS );
+        for ( final String s : writer.strings.keySet() )
+        {
+            gen.writeString( s );
+        }
+        gen.writeEndArray();
+
+        gen.writeArrayFieldStart( LISTS );
+        for ( final List<Integer> list : writer.lists.keySet() )
+        {
+            gen.writeStartArray();
+            for ( final Integer i : list )
+            {
+                gen.writeNumber( i );
+            }
+            gen.writeEndArray();
+        }
+        gen.writeEndArray();
+
+        long count = 0;
+        gen.writeArrayFieldStart( RELATIONSHIPS );
+        for ( final ProjectRelationship<?, ?> rel : relationships )
+        {
+            final int[] row = writer.row( rel );
+
+            int length = ROW_LENGTH;
+            while ( row[length - 1] == NONE )
+            {
+                length--;
+            }
+
+            gen.writeStartArray();
+            for ( int i = 0; i < length; i++ )
+            {
+                gen.writeNumber( row[i] );
+            }
+            gen.writeEndArray();
+            count++;
+        }
+        gen.writeEndArray();
+
+        if ( count != expected )
+        {
+            throw new IOException( "Relationships changed between passes (or cannot be iterated twice): " + expected
+                + " in the first pass, " + count + " in the second." );
+        }
+
+        gen.writeEndObject();
+        gen.flush();
+
+        return count;
+    }
+
+    private int[] row( final ProjectRelationship<?, ?> rel )
+            throws IOException
+    {
+        final int[] row = new int[ROW_LENGTH];
+        row[ROW_TYPE] = string( rel.getType()
+                                   .name() );
+        row[ROW_DECLARING] = string( rel.getDeclaring()
+                                        .toString() );
+        row[ROW_TARGET] = string( rel.getTarget()
+                                     .toString() );
+        row[ROW_POM_LOCATION] = rel.getPomLocation() == null ? NONE : string( rel.getPomLocation()
+                                                                                 .toString() );
+        row[ROW_INDEX] = rel.getIndex();
+        row[ROW_SOURCES] = uriList( rel.getSources() );
+        row[ROW_SCOPE] = NONE;
+        row[ROW_PLUGIN] = NONE;
+        row[ROW_EXCLUDES] = NONE;
+
+        int flags = ( rel.isManaged() ? MANAGED : 0 ) | ( rel.isInherited() ? INHERITED : 0 )
+                | ( rel.isMixin() ? MIXIN : 0 );
+
+        if ( rel instanceof DependencyRelationship )
+        {
+            final DependencyRelationship dep = (DependencyRelationship) rel;
+            flags |= dep.isOptional() ? OPTIONAL : 0;
+            row[ROW_SCOPE] = string( dep.getScope()
+                                        .realName() );
+            row[ROW_EXCLUDES] = refList( dep.getExcludes() );
+        }
+        else if ( rel instanceof PluginRelationship )
+        {
+            flags |= ( (PluginRelationship) rel ).isReporting() ? REPORTING : 0;
+        }
+        else if ( rel instanceof PluginDependencyRelationship )
+        {
+            row[ROW_PLUGIN] = string( ( (PluginDependencyRelationship) rel ).getPlugin()
+                                                                              .asProjectRef()
+                                                                              .toString() );
+        }
+
+        row[ROW_FLAGS] = flags;
+        return row;
+    }
+
+    private int string( final String value )
+            throws IOException
+    {
+        Integer idx = strings.get( value );
+        if ( idx == null )
+        {
+            checkNotSealed( value );
+            idx = strings.size();
+            strings.put( value, idx );
+        }
+
+        return idx;
+    }
+
+    private int uriList( final Collection<URI> uris )
+            throws IOException
+    {
+        if ( uris == null || uris.isEmpty() )
+        {
+            return NONE;
+        }
+
+        final List<Integer> list = new ArrayList<Integer>( uris.size() );
+        for ( final URI uri : uris )
+        {
+            if ( uri != null )
+            {
+                list.add( string( uri.toString() ) );
+            }
+        }
+
+        return list( list );
+    }
+
+    private int refList( final Collection<ProjectRef> refs )
+            throws IOException
+    {
+        if ( refs == null || refs.isEmpty() )
+        {
+            return NONE;
+        }
+
+        final List<Integer> list = new ArrayList<Integer>( refs.size() );
+        for ( final ProjectRef ref : refs )
+        {
+            list.add( string( ref.asProjectRef()
+                                 .toString() ) );
+        }
+
+        return list( list );
+    }
+
+    private int list( final List<Integer> list )
+            throws IOException
+    {
+        Integer idx = lists.get( list );
+        if ( idx == null )
+        {
+            checkNotSealed( list );
+            idx = lists.size();
+            lists.put( list, idx );
+        }
+
+        return idx;
+    }
+
+    private void checkNotSealed( final Object entry )
+            throws IOException
+    {
+        if ( sealed )
+        {
+            throw new IOException( "Relationships changed between passes: no table entry for " + entry
+                + " was written in the first pass." );
+        }
+    }
+
+    private static final class GraphRelationships
+            implements Iterable<ProjectRelationship<?, ?>>
+    {
+        private final EProjectGraph graph;
+
+        GraphRelationships( final EProjectGraph graph )
+        {
+            this.graph = graph;
+        }
+
+        @Override
+        public Iterator<ProjectRelationship<?, ?>> iterator()
+        {
+            final Iterator<ProjectVersionRef> projects = graph.getProjects()
+                                                              .iterator();
+
+            return new Iterator<ProjectRelationship<?, ?>>()
+            {
+                private Iterator<ProjectRelationship<?, ?>> current;
+
+                @Override
+                public boolean hasNext()
+                {
+                    while ( current == null || !current.hasNext() )
+                    {
+                        if ( !projects.hasNext() )
+                        {
+                            return false;
+                        }
+
+                        final EProjectDirectRelationships rels = graph.getDirectRelationships( projects.next() );
+                        current = rels == null ? null : rels.relationshipIterator();
+                    }
+
+                    return true;
+                }
+
+                @Override
+                public ProjectRelationship<?, ?> next()
+                {
+                    if ( !hasNext() )
+                    {
+                        throw new NoSuchElementException();
+                    }
+
+                    return current.next();
+                }
+
+                @Override
+                public void remove()
+                {
+                    throw new UnsupportedOperationException( "Relationships are read-only." );
+                }
+            };
+        }
+    }
+
+}
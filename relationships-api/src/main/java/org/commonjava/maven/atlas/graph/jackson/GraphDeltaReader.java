@@ -0,0 +1,335 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.graph.jackson;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.commonjava.maven.atlas.graph.diff.GraphDelta;
+import org.commonjava.maven.atlas.graph.model.EProjectDirectRelationships;
+import org.commonjava.maven.atlas.graph.model.PersistentEProjectGraph;
+import org.commonjava.maven.atlas.graph.model.SimpleEProjectGraph;
+import org.commonjava.maven.atlas.graph.rel.ProjectRelationship;
+import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
+import org.commonjava.maven.atlas.ident.ref.SimpleProjectVersionRef;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.commonjava.maven.atlas.graph.jackson.SerializationConstants.*;
+
+/**
+ * Reads {@link GraphDelta}s written by {@link GraphDeltaWriter} and applies them to a replica.
+ * <br/>
+ * Entries at or before the replica's last applied sequence number are skipped, so a log can be re-read from an earlier
+ * point; a gap in the numbering means entries were lost and fails the read. Consecutive entries for the same project
+ * are applied together, rebuilding the project once.
+ * <br/>
+ * {@link #getLastSequence()} only covers entries that were actually applied, so after a failed {@link #applyTo} it
+ * still matches what the replica holds, and the replica can resume from there with a new reader.
+ * <br/>
+ * The mapper must have {@link ProjectRelationshipSerializerModule} and
+ * {@link org.commonjava.maven.atlas.ident.jackson.ProjectVersionRefSerializerModule} registered. Not thread-safe.
+ */
+public final class GraphDeltaReader
+        implements Closeable
+{
+    private final JsonParser jp;
+
+    private final ObjectReader relReader;
+
+    // last entry applied by applyTo()
+    private long lastSequence;
+
+    // last entry handed out by read(), which may be ahead of lastSequence
+    private long readSequence;
+
+    private GraphDelta next;
+
+    /**
+     * @param lastSequence the sequence number of the last entry the replica has applied (0 for a fresh replica)
+     */
+    public GraphDeltaReader( final ObjectMapper mapper, final InputStream in, final long lastSequence )
+            throws IOException
+    {
+        this.jp = mapper.getFactory().createParser( in );
+        this.relReader = mapper.reader( ProjectRelationship.class );
+        this.lastSequence = lastSequence;
+        this.readSequence = lastSequence;
+    }
+
+    /**
+     * Entries returned here are not counted by {@link #getLastSequence()}; callers applying them on their own track
+     * the sequence numbers of what they've applied themselves.
+     *
+     * @return the next entry after the last one read, or null at the end of the log
+     * @throws IOException if entries are missing between the last applied one and the next in the log
+     */
+    public GraphDelta read()
+            throws IOException
+    {
+        if ( next != null )
+        {
+            final GraphDelta result = next;
+            next = null;
+            return result;
+        }
+
+        GraphDelta delta;
+        do
+        {
+            delta = readEntry();
+            if ( delta == null )
+            {
+                return null;
+            }
+        }
+        while ( delta.getSequence() <= readSequence );
+
+        if ( delta.getSequence() != readSequence + 1 )
+        {
+            throw new IOException( "Missing graph deltas: expected sequence " + ( readSequence + 1 ) + " but found "
+                                           + delta.getSequence() );
+        }
+
+        readSequence = delta.getSequence();
+        return delta;
+    }
+
+    /**
+     * Apply the rest of the log to the given graph. Each project batch is applied as a whole or not at all; if one
+     * fails, the graph keeps every batch before it.
+     *
+     * @return the number of entries applied
+     */
+    public long applyTo( final SimpleEProjectGraph graph )
+            throws IOException
+    {
+        long count = 0;
+        List<GraphDelta> batch;
+        while ( !( batch = nextProjectBatch() ).isEmpty() )
+        {
+            final ProjectVersionRef project = batch.get( 0 ).getProject();
+            final EProjectDirectRelationships result =
+                    GraphDelta.apply( graph.getDirectRelationships( project ), batch );
+            if ( result == null )
+            {
+                graph.remove( project );
+            }
+            else
+            {
+                graph.add( result );
+            }
+
+            lastSequence = lastOf( batch );
+            count += batch.size();
+        }
+
+        return count;
+    }
+
+    /**
+     * Apply the rest of the log to the given persistent graph. If any batch fails, no revision is returned, so nothing
+     * counts as applied.
+     *
+     * @return the new revision of the graph
+     */
+    public PersistentEProjectGraph applyTo( final PersistentEProjectGraph graph )
+            throws IOException
+    {
+        PersistentEProjectGraph result = graph;
+        long applied = lastSequence;
+        List<GraphDelta> batch;
+        while ( !( batch = nextProjectBatch() ).isEmpty() )
+        {
+            final ProjectVersionRef project = batch.get( 0 ).getProject();
+            final EProjectDirectRelationships rels = GraphDelta.apply( result.getDirectRelationships( project ), batch );
+            result = rels == null ? result.without( project ) : result.with( rels );
+            applied = lastOf( batch );
+        }
+
+        lastSequence = applied;
+        return result;
+    }
+
+    /**
+     * @return the sequence number of the last entry applied by {@link #applyTo}, or the starting one if none was
+     */
+    public long getLastSequence()
+    {
+        return lastSequence;
+    }
+
+    @Override
+    public void close()
+            throws IOException
+    {
+        jp.close();
+    }
+
+    private static long lastOf( final List<GraphDelta> batch )
+    {
+        return batch.get( batch.size() - 1 )
+                    .getSequence();
+    }
+
+    private List<GraphDelta> nextProjectBatch()
+            throws IOException
+    {
+        final List<GraphDelta> batch = new ArrayList<GraphDelta>();
+        GraphDelta delta;
+        while ( ( delta = read() ) != null )
+        {
+            if ( !batch.isEmpty() && !batch.get( 0 ).getProject().equals( delta.getProject() ) )
+            {
+                next = delta;
+                break;
+            }
+
+            batch.add( delta );
+        }
+
+        return batch;
+    }
+
+    private GraphDelta readEntry()
+            throws IOException
+    {
+        JsonToken token = jp.nextToken();
+        if ( token == null )
+        {
+            return null;
+        }
+        else if ( token != JsonToken.START_OBJECT )
+        {
+            throw new JsonParseException( "Expected a graph delta object but found " + token,
+                                          jp.getCurrentLocation() );
+        }
+
+        long sequence = -1;
+        GraphDelta.Op op = null;
+        String project = null;
+        URI source = null;
+        ProjectRelationship<?, ?> relationship = null;
+        ProjectRelationship<?, ?> previous = null;
+        final List<URI> sources = new ArrayList<URI>();
+
+        while ( ( token = jp.nextToken() ) == JsonToken.FIELD_NAME )
+        {
+            final String field = jp.getCurrentName();
+            token = jp.nextToken();
+
+            if ( DELTA_SEQUENCE.equals( field ) )
+            {
+                sequence = jp.getLongValue();
+            }
+            else if ( DELTA_OP.equals( field ) )
+            {
+                try
+                {
+                    op = GraphDelta.Op.valueOf( jp.getText() );
+                }
+                catch ( final IllegalArgumentException e )
+                {
+                    throw new JsonParseException( "Unknown graph delta operation: " + jp.getText(),
+                                                  jp.getCurrentLocation() );
+                }
+            }
+            else if ( GAV.equals( field ) )
+            {
+                project = jp.getText();
+            }
+            else if ( SOURCE_URI.equals( field ) )
+            {
+                source = parseUri( jp.getText() );
+            }
+            else if ( DELTA_RELATIONSHIP.equals( field ) )
+            {
+                relationship = relReader.readValue( jp );
+            }
+            else if ( DELTA_PREVIOUS.equals( field ) )
+            {
+                previous = relReader.readValue( jp );
+            }
+            else if ( SOURCE_URIS.equals( field ) )
+            {
+                while ( jp.nextToken() != JsonToken.END_ARRAY )
+                {
+                    sources.add( parseUri( jp.getText() ) );
+                }
+            }
+            else
+            {
+                jp.skipChildren();
+            }
+        }
+
+        if ( sequence < 0 || op == null || project == null )
+        {
+            throw new JsonParseException( "Graph delta requires " + DELTA_SEQUENCE + ", " + DELTA_OP + " and " + GAV,
+                                          jp.getCurrentLocation() );
+        }
+
+        if ( relationship == null && op != GraphDelta.Op.ADD_PROJECT && op != GraphDelta.Op.REMOVE_PROJECT )
+        {
+            throw new JsonParseException( "Graph delta " + op + " requires " + DELTA_RELATIONSHIP,
+                                          jp.getCurrentLocation() );
+        }
+
+        switch ( op )
+        {
+            case ADD_PROJECT:
+                return GraphDelta.addProject( sequence, SimpleProjectVersionRef.parse( project ), source );
+            case REMOVE_PROJECT:
+                return GraphDelta.removeProject( sequence, SimpleProjectVersionRef.parse( project ) );
+            case ADD:
+                return GraphDelta.add( sequence, relationship );
+            case REMOVE:
+                return GraphDelta.remove( sequence, relationship );
+            case MODIFY:
+                if ( previous == null )
+                {
+                    throw new JsonParseException( "Graph delta " + op + " requires " + DELTA_PREVIOUS,
+                                                  jp.getCurrentLocation() );
+                }
+                return GraphDelta.modify( sequence, previous, relationship );
+            case ADD_SOURCES:
+            default:
+                return GraphDelta.addSources( sequence, relationship, sources );
+        }
+    }
+
+    private URI parseUri( final String value )
+            throws IOException
+    {
+        try
+        {
+            return new URI( value );
+        }
+        catch ( final URISyntaxException e )
+        {
+            throw new JsonParseException( "Invalid URI in graph delta: '" + value + "': " + e.getMessage(),
+                                          jp.getCurrentLocation(), e );
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.graph.jackson;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ser.DefaultSerializerProvider;
+import org.commonjava.maven.atlas.graph.diff.GraphDelta;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.Collection;
+
+import static org.commonjava.maven.atlas.graph.jackson.SerializationConstants.*;
+
+/**
+ * Writes {@link GraphDelta}s as newline-delimited JSON, one entry per line, for {@link GraphDeltaReader}. Relationships
+ * inside an entry use the same format as {@link ProjectRelationshipSerializer}.
+ * <br/>
+ * The mapper must have {@link org.commonjava.maven.atlas.ident.jackson.ProjectVersionRefSerializerModule}
+ * registered. Not thread-safe.
+ */
+public final class GraphDeltaWriter
+        implements Closeable, Flushable
+{
+    private final JsonGenerator gen;
+
+    private final RefSerializers refs;
+
+    private long lastSequence = -1;
+
+    public GraphDeltaWriter( final ObjectMapper mapper, final OutputStream out )
+            throws IOException
+    {
+        gen = mapper.getFactory().createGenerator( out, JsonEncoding.UTF8 );
+        gen.setCodec( mapper );
+        gen.setRootValueSeparator( null );
+
+        final DefaultSerializerProvider provider = ( (DefaultSerializerProvider) mapper.getSerializerProvider() ).createInstance(
+                mapper.getSerializationConfig(), mapper.getSerializerFactory() );
+
+        refs = new RefSerializers( provider );
+    }
+
+    /**
+     * @throws IOException if the entry's sequence number doesn't follow the last one written
+     */
+    public GraphDeltaWriter write( final GraphDelta delta )
+            throws IOException
+    {
+        if ( delta.getSequence() <= lastSequence )
+        {
+            throw new IOException( "Delta sequence must increase: " + delta.getSequence() + " written after "
+                                           + lastSequence );
+        }
+
+        gen.writeStartObject();
+        gen.writeNumberField( DELTA_SEQUENCE, delta.getSequence() );
+        gen.writeStringField( DELTA_OP, delta.getOp().name() );
+        gen.writeStringField( GAV, delta.getProject().toString() );
+
+        if ( delta.getSource() != null )
+        {
+            gen.writeStringField( SOURCE_URI, delta.getSource().toString() );
+        }
+
+        if ( delta.getRelationship() != null )
+        {
+            gen.writeFieldName( DELTA_RELATIONSHIP );
+            ProjectRelationshipSerializer.write( delta.getRelationship(), gen, refs );
+        }
+
+        if ( delta.getPrevious() != null )
+        {
+            gen.writeFieldName( DELTA_PREVIOUS );
+            ProjectRelationshipSerializer.write( delta.getPrevious(), gen, refs );
+        }
+
+        if ( !delta.getSources().isEmpty() )
+        {
+            gen.writeArrayFieldStart( SOURCE_URIS );
+            for ( final URI source : delta.getSources() )
+            {
+                gen.writeString( source.toString() );
+            }
+            gen.writeEndArray();
+        }
+
+        gen.writeEndObject();
+        gen.writeRaw( '\n' );
+
+        lastSequence = delta.getSequence();
+
+        return this;
+    }
+
+    public GraphDeltaWriter writeAll( final Collection<GraphDelta> deltas )
+            throws IOException
+    {
+        for ( final GraphDelta delta : deltas )
+        {
+            write( delta );
+        }
+
+        return this;
+    }
+
+    /**
+     * @return the sequence number of the last entry written, or -1 if none has been
+     */
+    public long getLastSequence()
+    {
+        return lastSequence;
+    }
+
+    @Override
+    public void flush()
+            throws IOException
+    {
+        gen.flush();
+    }
+
+    @Override
+    public void close()
+            throws IOException
+    {
+        gen.close();
+    }
+}
@@ -0,0 +1,379 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.graph.jackson;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.commonjava.maven.atlas.graph.rel.ProjectRelationship;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads newline-delimited JSON (one {@link ProjectRelationship} object per line, as written by
+ * {@link ProjectRelationshipWriter#lineDelimited(ObjectMapper, java.io.OutputStream)}) either as an iterator or in
+ * batches.
+ * <br/>
+ * Input is read in large blocks into one reusable buffer and lines are handed to one {@link ObjectReader} straight from
+ * that buffer. A line that fails to parse is reported to the {@link ErrorHandler} and skipped; blank lines are ignored.
+ * <br/>
+ * The mapper must have {@link ProjectRelationshipSerializerModule} and
+ * {@link org.commonjava.maven.atlas.ident.jackson.ProjectVersionRefSerializerModule} registered. Not thread-safe.
+ */
+public final class NdjsonRelationshipReader
+        implements Iterator<ProjectRelationship<?, ?>>, Closeable
+{
+
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    public static final int FILE_BUFFER_SIZE = 1024 * 1024;
+
+    private static final Charset UTF8 = Charset.forName( "UTF-8" );
+
+    /**
+     * Told about each line that couldn't be read as a relationship. Throw to stop reading.
+     */
+    public interface ErrorHandler
+    {
+        void badLine( long lineNumber, String line, Exception error )
+                throws IOException;
+    }
+
+    /**
+     * Receives relationships in batches from {@link #readBatches(int, BatchHandler)}. The list is reused between
+     * calls, so copy it if it needs to be kept.
+     */
+    public interface BatchHandler
+    {
+        void handle( List<ProjectRelationship<?, ?>> batch )
+                throws IOException;
+    }
+
+    /**
+     * Logs each bad line at WARN and carries on.
+     */
+    public static final ErrorHandler LOG_AND_SKIP = new ErrorHandler()
+    {
+        private final Logger logger = LoggerFactory.getLogger( NdjsonRelationshipReader.class );
+
+        @Override
+        public void badLine( final long lineNumber, final String line, final Exception error )
+        {
+            logger.warn( "Skipping unreadable relationship on line {}: {}", lineNumber, error.getMessage() );
+        }
+    };
+
+    private final ObjectReader reader;
+
+    private final ReadableByteChannel channel;
+
+    private ErrorHandler errorHandler = LOG_AND_SKIP;
+
+    private byte[] buf;
+
+    // unread bytes are buf[pos, limit)
+    private int pos;
+
+    private int limit;
+
+    private boolean eof;
+
+    private long lineNumber;
+
+    private long errorCount;
+
+    private ProjectRelationship<?, ?> next;
+
+    public NdjsonRelationshipReader( final ObjectMapper mapper, final InputStream in )
+    {
+        this( mapper, Channels.newChannel( in ), DEFAULT_BUFFER_SIZE );
+    }
+
+    public NdjsonRelationshipReader( final ObjectMapper mapper, final FileChannel channel )
+    {
+        this( mapper, channel, FILE_BUFFER_SIZE );
+    }
+
+    public NdjsonRelationshipReader( final ObjectMapper mapper, final ReadableByteChannel channel,
+                                     final int bufferSize )
+    {
+        if ( bufferSize < 1 )
+        {
+            throw new IllegalArgumentException( "Buffer size must be positive: " + bufferSize );
+        }
+
+        this.reader = mapper.reader( ProjectRelationship.class );
+        this.channel = channel;
+        this.buf = new byte[bufferSize];
+    }
+
+    public NdjsonRelationshipReader onError( final ErrorHandler errorHandler )
+    {
+        this.errorHandler = errorHandler == null ? LOG_AND_SKIP : errorHandler;
+        return this;
+    }
+
+    /**
+     * @return the next relationship, or null at the end of the input
+     */
+    public ProjectRelationship<?, ?> read()
+            throws IOException
+    {
+        if ( next != null )
+        {
+            final ProjectRelationship<?, ?> result = next;
+            next = null;
+            return result;
+        }
+
+        while ( true )
+        {
+            final int end = nextLineEnd();
+            if ( end < 0 )
+            {
+                return null;
+            }
+
+            final int start = pos;
+            pos = end < limit ? end + 1 : end;
+            lineNumber++;
+
+            int len = end - start;
+            while ( len > 0 && isWhitespace( buf[start + len - 1] ) )
+            {
+                len--;
+            }
+
+            int off = start;
+            while ( len > 0 && isWhitespace( buf[off] ) )
+            {
+                off++;
+                len--;
+            }
+
+            if ( len == 0 )
+            {
+                continue;
+            }
+
+            try
+            {
+                final ProjectRelationship<?, ?> rel = reader.readValue( buf, off, len );
+                if ( rel != null )
+                {
+                    return rel;
+                }
+
+                throw new IOException( "Line does not contain a relationship." );
+            }
+            catch ( final IOException e )
+            {
+                errorCount++;
+                errorHandler.badLine( lineNumber, new String( buf, off, len, UTF8 ), e );
+            }
+            catch ( final RuntimeException e )
+            {
+                errorCount++;
+                errorHandler.badLine( lineNumber, new String( buf, off, len, UTF8 ), e );
+            }
+        }
+    }
+
+    /**
+     * Read the rest of the input, handing relationships over in batches of up to {@code batchSize}.
+     *
+     * @return the number of relationships read
+     */
+    public long readBatches( final int batchSize, final BatchHandler handler )
+            throws IOException
+    {
+        if ( batchSize < 1 )
+        {
+            throw new IllegalArgumentException( "Batch size must be positive: " + batchSize );
+        }
+
+        final List<ProjectRelationship<?, ?>> batch = new ArrayList<ProjectRelationship<?, ?>>( batchSize );
+        long total = 0;
+        ProjectRelationship<?, ?> rel;
+        while ( ( rel = read() ) != null )
+        {
+            batch.add( rel );
+            total++;
+
+            if ( batch.size() == batchSize )
+            {
+                handler.handle( batch );
+                batch.clear();
+            }
+        }
+
+        if ( !batch.isEmpty() )
+        {
+            handler.handle( batch );
+        }
+
+        return total;
+    }
+
+    /**
+     * @throws IllegalStateException wrapping any {@link IOException} from the input or error handler
+     */
+    @Override
+    public boolean hasNext()
+    {
+        if ( next == null )
+        {
+            try
+            {
+                next = read();
+            }
+            catch ( final IOException e )
+            {
+                throw new IllegalStateException( "Failed to read relationship after line " + lineNumber + ": "
+                                                         + e.getMessage(), e );
+            }
+        }
+
+        return next != null;
+    }
+
+    @Override
+    public ProjectRelationship<?, ?> next()
+    {
+        if ( !hasNext() )
+        {
+            throw new NoSuchElementException();
+        }
+
+        final ProjectRelationship<?, ?> result = next;
+        next = null;
+        return result;
+    }
+
+    @Override
+    public void remove()
+    {
+        throw new UnsupportedOperationException( "NDJSON input is read-only." );
+    }
+
+    /**
+     * @return the number of lines read so far, including blank and bad ones
+     */
+    public long getLineNumber()
+    {
+        return lineNumber;
+    }
+
+    /**
+     * @return the number of lines reported to the error handler so far
+     */
+    public long getErrorCount()
+    {
+        return errorCount;
+    }
+
+    @Override
+    public void close()
+            throws IOException
+    {
+        channel.close();
+    }
+
+    /**
+     * Find the newline ending the line that starts at {@link #pos}, reading more input as needed. At the end of the
+     * input, an unterminated last line ends at {@link #limit}.
+     *
+     * @return the offset of the line end, or -1 if there is nothing left to read
+     */
+    private int nextLineEnd()
+            throws IOException
+    {
+        int scan = pos;
+        while ( true )
+        {
+            for ( ; scan < limit; scan++ )
+            {
+                if ( buf[scan] == '\n' )
+                {
+                    return scan;
+                }
+            }
+
+            if ( eof )
+            {
+                return pos < limit ? limit : -1;
+            }
+
+            scan -= pos;
+            fill();
+        }
+    }
+
+    // compact unread bytes to the front, growing the buffer for lines longer than it, then read one block
+    private void fill()
+            throws IOException
+    {
+        final int remaining = limit - pos;
+        if ( remaining == buf.length )
+        {
+            final byte[] grown = new byte[buf.length * 2];
+            System.arraycopy( buf, pos, grown, 0, remaining );
+            buf = grown;
+        }
+        else if ( pos > 0 )
+        {
+            System.arraycopy( buf, pos, buf, 0, remaining );
+        }
+
+        pos = 0;
+        limit = remaining;
+
+        final ByteBuffer bb = ByteBuffer.wrap( buf, limit, buf.length - limit );
+        int read;
+        do
+        {
+            read = channel.read( bb );
+        }
+        while ( read == 0 );
+
+        if ( read < 0 )
+        {
+            eof = true;
+        }
+        else
+        {
+            limit += read;
+        }
+    }
+
+    private static boolean isWhitespace( final byte b )
+    {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+    }
+
+}
@@ -0,0 +1,447 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.graph.jackson;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.commonjava.maven.atlas.graph.model.ConcurrentEProjectGraphBuilder;
+import org.commonjava.maven.atlas.graph.model.PersistentEProjectGraph;
+import org.commonjava.maven.atlas.graph.rel.ProjectRelationship;
+import org.commonjava.maven.atlas.ident.jackson.ProjectVersionRefSerializerModule;
+import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Loads a large NDJSON relationship file on several threads. The file is split into chunks at line boundaries; each
+ * chunk is read through positional reads on the shared {@link FileChannel} by its own
+ * {@link NdjsonRelationshipReader}, grouped by declaring project, and merged into a
+ * {@link ConcurrentEProjectGraphBuilder} as loose relationships, so a project's relationships may be spread over any
+ * number of chunks.
+ * <br/>
+ * Each chunk decodes through its own mapper, holding only a {@link ProjectRelationshipSerializerModule} that interns
+ * refs (see {@link #withRefInterning(int)}), so coordinates repeated within a chunk share one instance without the
+ * chunks contending on a shared cache.
+ * <br/>
+ * The loaded graph depends only on the file's contents, not on the chunk size, thread count or scheduling: the builder
+ * merges each project's contributions independently of their order, every copy of a repeated relationship reaches it
+ * (so their sources are unioned wherever the copies sit), and each contribution's project source is the least source
+ * URI of its relationships, so the least over the whole project whichever way the file was split.
+ * <br/>
+ * Bad lines go to the configured {@link NdjsonRelationshipReader.ErrorHandler} from several threads at once, so it
+ * must be thread-safe; the line numbers it sees are relative to the start of the chunk.
+ */
+public final class ParallelNdjsonLoader
+{
+
+    public static final long MIN_CHUNK_SIZE = 1024 * 1024;
+
+    // relationships held per chunk before they're handed to the builder
+    private static final int FLUSH_THRESHOLD = 10000;
+
+    private static final int SCAN_BUFFER_SIZE = 8 * 1024;
+
+    private final ObjectMapper mapper;
+
+    private final int threads;
+
+    private long chunkSize;
+
+    private int internCacheSize = ProjectVersionRefSerializerModule.DEFAULT_INTERN_CACHE_SIZE;
+
+    private NdjsonRelationshipReader.ErrorHandler errorHandler = NdjsonRelationshipReader.LOG_AND_SKIP;
+
+    public ParallelNdjsonLoader( final ObjectMapper mapper )
+    {
+        this( mapper, Runtime.getRuntime()
+                             .availableProcessors() );
+    }
+
+    public ParallelNdjsonLoader( final ObjectMapper mapper, final int threads )
+    {
+        if ( threads < 1 )
+        {
+            throw new IllegalArgumentException( "Thread count must be positive: " + threads );
+        }
+
+        this.mapper = mapper;
+        this.threads = threads;
+    }
+
+    /**
+     * Use a fixed chunk size instead of sizing chunks from the file length and thread count.
+     */
+    public ParallelNdjsonLoader withChunkSize( final long chunkSize )
+    {
+        if ( chunkSize < 1 )
+        {
+            throw new IllegalArgumentException( "Chunk size must be positive: " + chunkSize );
+        }
+
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    /**
+     * Hold at most this many interned refs per ref kind in each chunk; zero or less decodes through the given mapper
+     * as-is, without interning.
+     */
+    public ParallelNdjsonLoader withRefInterning( final int internCacheSize )
+    {
+        this.internCacheSize = internCacheSize;
+        return this;
+    }
+
+    public ParallelNdjsonLoader onError( final NdjsonRelationshipReader.ErrorHandler errorHandler )
+    {
+        this.errorHandler = errorHandler == null ? NdjsonRelationshipReader.LOG_AND_SKIP : errorHandler;
+        return this;
+    }
+
+    /**
+     * Load the file into a new builder and freeze it.
+     */
+    public PersistentEProjectGraph load( final File file )
+            throws IOException
+    {
+        final ConcurrentEProjectGraphBuilder builder = new ConcurrentEProjectGraphBuilder( threads );
+        load( file, builder );
+
+        return builder.freeze();
+    }
+
+    /**
+     * Load the file into the given builder, which may also be receiving relationships from elsewhere.
+     *
+     * @return the number of relationships read
+     */
+    public long load( final File file, final ConcurrentEProjectGraphBuilder builder )
+            throws IOException
+    {
+        final FileInputStream in = new FileInputStream( file );
+        try
+        {
+            final FileChannel channel = in.getChannel();
+            final long[] bounds = chunkBounds( channel );
+
+            final ExecutorService executor = Executors.newFixedThreadPool( Math.min( threads, bounds.length - 1 ) );
+            try
+            {
+                final List<Future<Long>> results = new ArrayList<Future<Long>>( bounds.length - 1 );
+                for ( int i = 1; i < bounds.length; i++ )
+                {
+                    results.add( executor.submit( new ChunkLoader( channel, bounds[i - 1], bounds[i], builder ) ) );
+                }
+
+                long total = 0;
+                for ( final Future<Long> result : results )
+                {
+                    total += await( result );
+                }
+
+                return total;
+            }
+            finally
+            {
+                executor.shutdownNow();
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    /**
+     * Chunk start offsets, each just after a newline, followed by the file length.
+     */
+    private long[] chunkBounds( final FileChannel channel )
+            throws IOException
+    {
+        final long size = channel.size();
+        final long chunk = chunkSize > 0 ? chunkSize : Math.max( MIN_CHUNK_SIZE, size / ( threads * 4L ) + 1 );
+
+        final List<Long> bounds = new ArrayList<Long>();
+        bounds.add( 0L );
+
+        final ByteBuffer scan = ByteBuffer.allocate( SCAN_BUFFER_SIZE );
+        long next = chunk;
+        while ( next < size )
+        {
+            final long bound = lineStartAtOrAfter( channel, next, size, scan );
+            if ( bound >= size )
+            {
+                break;
+            }
+
+            bounds.add( bound );
+            next = bound + chunk;
+        }
+
+        bounds.add( size );
+
+        final long[] result = new long[bounds.size()];
+        for ( int i = 0; i < result.length; i++ )
+        {
+            result[i] = bounds.get( i );
+        }
+
+        return result;
+    }
+
+    private static long lineStartAtOrAfter( final FileChannel channel, final long offset, final long size,
+                                            final ByteBuffer scan )
+            throws IOException
+    {
+        // a line starts at offset if the byte before it ends the previous line
+        long position = offset - 1;
+        while ( position < size )
+        {
+            scan.clear();
+            final int read = channel.read( scan, position );
+            if ( read < 0 )
+            {
+                break;
+            }
+
+            for ( int i = 0; i < read; i++ )
+            {
+                if ( scan.get( i ) == '\n' )
+                {
+                    return position + i + 1;
+                }
+            }
+
+            position += read;
+        }
+
+        return size;
+    }
+
+    private static long await( final Future<Long> result )
+            throws IOException
+    {
+        try
+        {
+            return result.get();
+        }
+        catch ( final InterruptedException e )
+        {
+            Thread.currentThread()
+                  .interrupt();
+            throw new InterruptedIOException( "Interrupted while loading relationships." );
+        }
+        catch ( final ExecutionException e )
+        {
+            final Throwable cause = e.getCause();
+            if ( cause instanceof IOException )
+            {
+                throw (IOException) cause;
+            }
+            else if ( cause instanceof RuntimeException )
+            {
+                throw (RuntimeException) cause;
+            }
+            else if ( cause instanceof Error )
+            {
+                throw (Error) cause;
+            }
+
+            throw new IOException( "Failed to load relationship chunk: " + cause, cause );
+        }
+    }
+
+    private final class ChunkLoader
+            implements Callable<Long>
+    {
+        private final FileChannel channel;
+
+        private final long start;
+
+        private final long end;
+
+        private final ConcurrentEProjectGraphBuilder builder;
+
+        private final Map<ProjectVersionRef, List<ProjectRelationship<?, ?>>> pending =
+                new LinkedHashMap<ProjectVersionRef, List<ProjectRelationship<?, ?>>>();
+
+        private int pendingCount;
+
+        ChunkLoader( final FileChannel channel, final long start, final long end,
+                     final ConcurrentEProjectGraphBuilder builder )
+        {
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+            this.builder = builder;
+        }
+
+        @Override
+        public Long call()
+                throws IOException
+        {
+            final int bufferSize = (int) Math.min( NdjsonRelationshipReader.FILE_BUFFER_SIZE, end - start + 1 );
+            ObjectMapper chunkMapper = mapper;
+            if ( internCacheSize > 0 )
+            {
+                // a fresh mapper rather than a copy: newer Jackson versions skip re-registering a module the copy
+                // already carries, which would leave the chunk decoding through the shared, non-interning one
+                chunkMapper = new ObjectMapper();
+                chunkMapper.registerModule( new ProjectRelationshipSerializerModule( internCacheSize ) );
+            }
+
+            final NdjsonRelationshipReader reader =
+                    new NdjsonRelationshipReader( chunkMapper, new RegionChannel( channel, start, end ),
+                                                  bufferSize ).onError( errorHandler );
+
+            long count = 0;
+            ProjectRelationship<?, ?> rel;
+            while ( ( rel = reader.read() ) != null )
+            {
+                add( rel );
+                count++;
+
+                if ( ++pendingCount >= FLUSH_THRESHOLD )
+                {
+                    flush();
+                }
+            }
+
+            flush();
+
+            return count;
+        }
+
+        private void add( final ProjectRelationship<?, ?> rel )
+        {
+            List<ProjectRelationship<?, ?>> rels = pending.get( rel.getDeclaring() );
+            if ( rels == null )
+            {
+                rels = new ArrayList<ProjectRelationship<?, ?>>();
+                pending.put( rel.getDeclaring(), rels );
+            }
+
+            rels.add( rel );
+        }
+
+        private void flush()
+        {
+            for ( final Map.Entry<ProjectVersionRef, List<ProjectRelationship<?, ?>>> entry : pending.entrySet() )
+            {
+                builder.add( leastSource( entry.getValue() ), entry.getKey(), entry.getValue() );
+            }
+
+            pending.clear();
+            pendingCount = 0;
+        }
+
+        private URI leastSource( final List<ProjectRelationship<?, ?>> rels )
+        {
+            URI least = null;
+            for ( final ProjectRelationship<?, ?> rel : rels )
+            {
+                for ( final URI source : rel.getSources() )
+                {
+                    if ( least == null || source.compareTo( least ) < 0 )
+                    {
+                        least = source;
+                    }
+                }
+            }
+
+            return least;
+        }
+    }
+
+    /**
+     * Reads one region of a shared file channel through positional reads, leaving the channel's own position alone.
+     */
+    private static final class RegionChannel
+            implements ReadableByteChannel
+    {
+        private final FileChannel channel;
+
+        private long position;
+
+        private final long end;
+
+        RegionChannel( final FileChannel channel, final long start, final long end )
+        {
+            this.channel = channel;
+            this.position = start;
+            this.end = end;
+        }
+
+        @Override
+        public int read( final ByteBuffer dst )
+                throws IOException
+        {
+            if ( position >= end )
+            {
+                return -1;
+            }
+
+            final int limit = dst.limit();
+            if ( dst.remaining() > end - position )
+            {
+                dst.limit( dst.position() + (int) ( end - position ) );
+            }
+
+            try
+            {
+                final int read = channel.read( dst, position );
+                if ( read > 0 )
+                {
+                    position += read;
+                }
+
+                return read;
+            }
+            finally
+            {
+                dst.limit( limit );
+            }
+        }
+
+        @Override
+        public boolean isOpen()
+        {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close()
+        {
+            // the channel is shared by every chunk and closed by the loader
+        }
+    }
+
+}
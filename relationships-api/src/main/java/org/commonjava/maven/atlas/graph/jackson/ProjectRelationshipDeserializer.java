@@ -15,11 +15,16 @@
  */
 package org.commonjava.maven.atlas.graph.jackson;
 
-import com.fasterxml.jackson.core.*;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
 import org.commonjava.maven.atlas.graph.rel.*;
 import org.commonjava.maven.atlas.ident.DependencyScope;
+import org.commonjava.maven.atlas.ident.jackson.RefParser;
+import org.commonjava.maven.atlas.ident.jackson.SerializerIdentityUtils;
 import org.commonjava.maven.atlas.ident.ref.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,12 +32,22 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
 
 import static org.commonjava.maven.atlas.graph.jackson.SerializationConstants.*;
 
 /**
  * Created by jdcasey on 8/26/15.
+ * <br/>
+ * Reads the relationship's fields straight off the token stream into locals, without building an intermediate map.
+ * Unknown fields (including nested objects and arrays) are skipped. Parser locations are only captured when a value
+ * turns out to be invalid.
+ * <br/>
+ * Refs are parsed through {@link RefParser}s resolved once per deserializer. When constructed with an intern cache
+ * size, repeated coordinates within everything this deserializer reads come back as one shared instance.
  */
 @SuppressWarnings( { "rawtypes", "unchecked" } )
 public final class ProjectRelationshipDeserializer<T extends ProjectRelationship>
@@ -40,157 +55,162 @@ public final class ProjectRelationshipDeserializer<T extends ProjectRelationship
 {
     private static final long serialVersionUID = 1L;
 
+    private static final Logger logger = LoggerFactory.getLogger( ProjectRelationshipDeserializer.class );
+
+    private final RefParser<ProjectVersionRef> versionRefs;
+
+    private final RefParser<ArtifactRef> artifactRefs;
+
+    private final RefParser<ProjectRef> projectRefs;
+
     public ProjectRelationshipDeserializer()
+    {
+        this( 0 );
+    }
+
+    /**
+     * @param internCacheSize when greater than zero, refs with the same string form are shared, holding at most this
+     * many refs per ref kind
+     */
+    public ProjectRelationshipDeserializer( final int internCacheSize )
     {
         super( ProjectRelationship.class );
+
+        this.versionRefs = parser( ProjectVersionRef.class, internCacheSize );
+        this.artifactRefs = parser( ArtifactRef.class, internCacheSize );
+        this.projectRefs = parser( ProjectRef.class, internCacheSize );
+    }
+
+    private static <R extends ProjectRef> RefParser<R> parser( final Class<R> type, final int internCacheSize )
+    {
+        final RefParser<R> parser;
+        try
+        {
+            parser = SerializerIdentityUtils.parserFor( type );
+        }
+        catch ( final IOException e )
+        {
+            throw new IllegalArgumentException( e.getMessage(), e );
+        }
+
+        return internCacheSize > 0 ? parser.interning( internCacheSize ) : parser;
     }
 
     @Override
     public T deserialize( final JsonParser jp, final DeserializationContext ctx )
             throws JsonProcessingException, IOException
     {
-        Map<String, Object> ast = new HashMap<String, Object>();
-        Map<String, JsonLocation> locations = new HashMap<String, JsonLocation>();
+        String typeName = null;
+        URI pomLocation = RelationshipConstants.POM_ROOT_URI;
+        final Collection<URI> sources = new LinkedHashSet<URI>();
+        String decl = null;
+        String tgt = null;
+        String plug = null;
+        String scp = null;
+        List<ProjectRef> excludes = null;
+        int index = 0;
 
-        JsonToken token = jp.getCurrentToken();
-        String currentField = null;
-        List<String> currentArry = null;
+        // handle null implicitly by defaulting to false.
+        boolean managed = false;
+        boolean inherited = false;
+        boolean mixin = false;
+        boolean optional = false;
+        boolean reporting = false;
 
-        Logger logger = LoggerFactory.getLogger( getClass() );
-        do
+        JsonToken token = jp.getCurrentToken();
+        if ( token == JsonToken.START_OBJECT )
         {
-            //                logger.info( "Token: {}", token );
-            switch ( token )
-            {
-                case START_ARRAY:
-                {
-                    //                        logger.info( "Starting array for field: {}", currentField );
-                    currentArry = new ArrayList<String>();
-                    break;
-                }
-                case END_ARRAY:
-                    //                        logger.info( "Ending array for field: {}", currentField );
-                    locations.put( currentField, jp.getCurrentLocation() );
-                    ast.put( currentField, currentArry );
-                    currentArry = null;
-                    break;
-                case FIELD_NAME:
-                    currentField = jp.getCurrentName();
-                    break;
-                case VALUE_STRING:
-                    if ( currentArry != null )
-                    {
-                        currentArry.add( jp.getText() );
-                    }
-                    else
-                    {
-                        locations.put( currentField, jp.getCurrentLocation() );
-                        ast.put( currentField, jp.getText() );
-                    }
-                    break;
-                case VALUE_NUMBER_INT:
-                    locations.put( currentField, jp.getCurrentLocation() );
-                    ast.put( currentField, jp.getIntValue() );
-                    break;
-                case VALUE_NUMBER_FLOAT:
-                    locations.put( currentField, jp.getCurrentLocation() );
-                    ast.put( currentField, jp.getFloatValue() );
-                    break;
-                case VALUE_TRUE:
-                    locations.put( currentField, jp.getCurrentLocation() );
-                    ast.put( currentField, Boolean.TRUE );
-                    break;
-                case VALUE_FALSE:
-                    locations.put( currentField, jp.getCurrentLocation() );
-                    ast.put( currentField, Boolean.FALSE );
-                    break;
-            }
-
             token = jp.nextToken();
         }
-        while ( token != JsonToken.END_OBJECT );
 
-        StringBuilder sb = new StringBuilder();
-        sb.append( "AST is:" );
-        for ( String field : ast.keySet() )
+        while ( token == JsonToken.FIELD_NAME )
         {
-            Object value = ast.get( field );
-            sb.append( "\n  " ).append( field ).append( " = " );
-            if ( value == null )
+            final String field = jp.getCurrentName();
+            token = jp.nextToken();
+
+            if ( RELATIONSHIP_TYPE.equals( field ) )
             {
-                sb.append( "null" );
+                typeName = readString( jp, token, field );
             }
-            else
+            else if ( DECLARING_REF.equals( field ) )
             {
-                sb.append( value ).append( "  (type: " ).append( value.getClass().getSimpleName() ).append( ")" );
+                decl = readString( jp, token, field );
             }
-        }
-
-        logger.debug( sb.toString() );
-
-        final RelationshipType type = RelationshipType.getType( (String) ast.get( RELATIONSHIP_TYPE ) );
-
-        final String uri = (String) ast.get( POM_LOCATION_URI );
-        URI pomLocation;
-        if ( uri == null )
-        {
-            pomLocation = RelationshipConstants.POM_ROOT_URI;
-        }
-        else
-        {
-            try
+            else if ( TARGET_REF.equals( field ) )
             {
-                pomLocation = new URI( uri );
+                tgt = readString( jp, token, field );
             }
-            catch ( final URISyntaxException e )
+            else if ( INDEX.equals( field ) )
             {
-                throw new JsonParseException( "Invalid " + POM_LOCATION_URI + ": '" + uri + "': " + e.getMessage(),
-                                              locations.get( POM_LOCATION_URI ), e );
+                index = readInt( jp, token, field );
             }
-        }
-
-        Collection<URI> sources = new HashSet<URI>();
-        List<String> srcs = (List<String>) ast.get( SOURCE_URIS );
-        if ( srcs != null )
-        {
-            for ( String u : srcs )
+            else if ( SOURCE_URIS.equals( field ) )
             {
-                try
-                {
-                    sources.add( new URI( u ) );
-                }
-                catch ( URISyntaxException e )
-                {
-                    throw new JsonParseException( "Failed to parse source URI: " + u,
-                                                  locations.get( SOURCE_URIS ) );
-                }
+                readSources( jp, token, sources );
+            }
+            else if ( POM_LOCATION_URI.equals( field ) )
+            {
+                final String uri = readString( jp, token, field );
+                pomLocation = uri == null ? RelationshipConstants.POM_ROOT_URI : parseUri( jp, uri, field );
+            }
+            else if ( MANAGED.equals( field ) )
+            {
+                managed = token == JsonToken.VALUE_TRUE;
+            }
+            else if ( INHERITED.equals( field ) )
+            {
+                inherited = token == JsonToken.VALUE_TRUE;
+            }
+            else if ( MIXIN.equals( field ) )
+            {
+                mixin = token == JsonToken.VALUE_TRUE;
+            }
+            else if ( OPTIONAL.equals( field ) )
+            {
+                optional = token == JsonToken.VALUE_TRUE;
+            }
+            else if ( REPORTING.equals( field ) )
+            {
+                reporting = token == JsonToken.VALUE_TRUE;
+            }
+            else if ( SCOPE.equals( field ) )
+            {
+                scp = readString( jp, token, field );
+            }
+            else if ( EXCLUDES.equals( field ) )
+            {
+                excludes = readExcludes( jp, token );
+            }
+            else if ( PLUGIN_REF.equals( field ) )
+            {
+                plug = readString( jp, token, field );
+            }
+            else
+            {
+                jp.skipChildren();
             }
-        }
 
-        String decl = (String) ast.get( DECLARING_REF );
-        final ProjectVersionRef declaring = SimpleProjectVersionRef.parse( decl );
+            token = jp.nextToken();
+        }
 
-        String tgt = (String) ast.get( TARGET_REF );
-        Integer index = (Integer) ast.get( INDEX );
-        if ( index == null )
+        if ( logger.isDebugEnabled() )
         {
-            index = 0;
+            logger.debug( "Relationship fields are:\n  {} = {}\n  {} = {}\n  {} = {}\n  {} = {}\n  {} = {}\n  {} = {}", new Object[] {
+                RELATIONSHIP_TYPE, typeName, DECLARING_REF, decl, TARGET_REF, tgt, INDEX, index, SOURCE_URIS, sources,
+                POM_LOCATION_URI, pomLocation } );
         }
 
-        // handle null implicitly by comparing to true.
-        boolean managed = Boolean.TRUE.equals( ast.get( MANAGED ) );
-        boolean inherited = Boolean.TRUE.equals( ast.get( INHERITED ) );
-        boolean mixin = Boolean.TRUE.equals( ast.get( MIXIN ) );
-        boolean optional = Boolean.TRUE.equals( ast.get( OPTIONAL ) );
+        final RelationshipType type = RelationshipType.getType( typeName );
+
+        final ProjectVersionRef declaring = versionRefs.parse( decl );
 
         ProjectRelationship<?, ?> rel = null;
         switch ( type )
         {
             case DEPENDENCY:
             {
-                final ArtifactRef target = SimpleArtifactRef.parse( tgt );
+                final ArtifactRef target = artifactRefs.parse( tgt );
 
-                String scp = (String) ast.get( SCOPE );
                 final DependencyScope scope;
                 if ( scp == null )
                 {
@@ -202,35 +222,35 @@ public final class ProjectRelationshipDeserializer<T extends ProjectRelationship
                 }
 
                 rel = new SimpleDependencyRelationship( sources, pomLocation, declaring, target, scope, index,
-                                                        managed, inherited, optional );
+                                                        managed, inherited, optional,
+                                                        excludes == null ? new ProjectRef[0]
+                                                                : excludes.toArray( new ProjectRef[excludes.size()] ) );
                 break;
             }
             case EXTENSION:
             {
-                final ProjectVersionRef target = SimpleProjectVersionRef.parse( tgt );
+                final ProjectVersionRef target = versionRefs.parse( tgt );
 
                 rel = new SimpleExtensionRelationship( sources, pomLocation, declaring, target, index, inherited );
                 break;
             }
             case PARENT:
             {
-                final ProjectVersionRef target = SimpleProjectVersionRef.parse( tgt );
+                final ProjectVersionRef target = versionRefs.parse( tgt );
 
                 rel = new SimpleParentRelationship( sources, declaring, target );
                 break;
             }
             case PLUGIN:
             {
-                final ProjectVersionRef target = SimpleProjectVersionRef.parse( tgt );
+                final ProjectVersionRef target = versionRefs.parse( tgt );
 
-                Boolean report = (Boolean) ast.get( REPORTING );
                 rel = new SimplePluginRelationship( sources, pomLocation, declaring, target, index, managed,
-                                                    Boolean.TRUE.equals( report ), inherited );
+                                                    reporting, inherited );
                 break;
             }
             case PLUGIN_DEP:
             {
-                String plug = (String) ast.get( PLUGIN_REF );
                 if ( plug == null )
                 {
                     throw new JsonParseException( "No plugin reference (field: " + PLUGIN_REF
@@ -238,8 +258,8 @@ public final class ProjectRelationshipDeserializer<T extends ProjectRelationship
                                                   jp.getCurrentLocation() );
                 }
 
-                final ProjectRef plugin = SimpleProjectRef.parse( plug );
-                final ArtifactRef target = SimpleArtifactRef.parse( tgt );
+                final ProjectRef plugin = projectRefs.parse( plug );
+                final ArtifactRef target = artifactRefs.parse( tgt );
 
                 rel = new SimplePluginDependencyRelationship( sources, pomLocation, declaring, plugin, target,
                                                               index, managed, inherited );
@@ -247,7 +267,7 @@ public final class ProjectRelationshipDeserializer<T extends ProjectRelationship
             }
             case BOM:
             {
-                final ProjectVersionRef target = SimpleProjectVersionRef.parse( tgt );
+                final ProjectVersionRef target = versionRefs.parse( tgt );
 
                 rel = new SimpleBomRelationship( sources, pomLocation, declaring, target, index, inherited, mixin );
                 break;
@@ -256,4 +276,119 @@ public final class ProjectRelationshipDeserializer<T extends ProjectRelationship
 
         return (T) rel;
     }
+
+    private static String readString( final JsonParser jp, final JsonToken token, final String field )
+            throws IOException
+    {
+        if ( token == JsonToken.VALUE_STRING )
+        {
+            return jp.getText();
+        }
+        else if ( token == JsonToken.VALUE_NULL )
+        {
+            return null;
+        }
+
+        throw new JsonParseException( "Expected a string value for " + field + ", but found: " + token,
+                                      jp.getCurrentLocation() );
+    }
+
+    private static int readInt( final JsonParser jp, final JsonToken token, final String field )
+            throws IOException
+    {
+        if ( token == JsonToken.VALUE_NUMBER_INT )
+        {
+            return jp.getIntValue();
+        }
+        else if ( token == JsonToken.VALUE_NULL )
+        {
+            return 0;
+        }
+
+        throw new JsonParseException( "Expected an integer value for " + field + ", but found: " + token,
+                                      jp.getCurrentLocation() );
+    }
+
+    private static void readSources( final JsonParser jp, final JsonToken token, final Collection<URI> sources )
+            throws IOException
+    {
+        if ( token != JsonToken.START_ARRAY )
+        {
+            jp.skipChildren();
+            return;
+        }
+
+        JsonToken t = jp.nextToken();
+        while ( t != JsonToken.END_ARRAY )
+        {
+            if ( t == JsonToken.VALUE_STRING )
+            {
+                final String u = jp.getText();
+                try
+                {
+                    sources.add( new URI( u ) );
+                }
+                catch ( final URISyntaxException e )
+                {
+                    throw new JsonParseException( "Failed to parse source URI: " + u, jp.getCurrentLocation() );
+                }
+            }
+            else
+            {
+                jp.skipChildren();
+            }
+
+            t = jp.nextToken();
+        }
+    }
+
+    private List<ProjectRef> readExcludes( final JsonParser jp, final JsonToken token )
+            throws IOException
+    {
+        if ( token != JsonToken.START_ARRAY )
+        {
+            jp.skipChildren();
+            return null;
+        }
+
+        final List<ProjectRef> excludes = new ArrayList<ProjectRef>();
+        JsonToken t = jp.nextToken();
+        while ( t != JsonToken.END_ARRAY )
+        {
+            if ( t == JsonToken.VALUE_STRING )
+            {
+                final String ex = jp.getText();
+                try
+                {
+                    excludes.add( projectRefs.parse( ex ) );
+                }
+                catch ( final IOException e )
+                {
+                    throw new JsonParseException( "Failed to parse excluded project: " + ex, jp.getCurrentLocation() );
+                }
+            }
+            else
+            {
+                jp.skipChildren();
+            }
+
+            t = jp.nextToken();
+        }
+
+        return excludes;
+    }
+
+    private static URI parseUri( final JsonParser jp, final String uri, final String field )
+            throws IOException
+    {
+        try
+        {
+            return new URI( uri );
+        }
+        catch ( final URISyntaxException e )
+        {
+            throw new JsonParseException( "Invalid " + field + ": '" + uri + "': " + e.getMessage(),
+                                          jp.getCurrentLocation(), e );
+        }
+    }
 }
@@ -23,10 +23,10 @@ import org.commonjava.maven.atlas.graph.rel.DependencyRelationship;
 import org.commonjava.maven.atlas.graph.rel.PluginDependencyRelationship;
 import org.commonjava.maven.atlas.graph.rel.PluginRelationship;
 import org.commonjava.maven.atlas.graph.rel.ProjectRelationship;
+import org.commonjava.maven.atlas.ident.ref.ProjectRef;
 
 import java.io.IOException;
 import java.net.URI;
-import java.util.Iterator;
 import java.util.Set;
 
 import static org.commonjava.maven.atlas.graph.jackson.SerializationConstants.*;
@@ -43,10 +43,20 @@ public final class ProjectRelationshipSerializer<T extends ProjectRelationship>
         super( cls );
     }
 
-    @SuppressWarnings( "incomplete-switch" )
     @Override
     public void serialize( final T value, final JsonGenerator gen, final SerializerProvider provider )
             throws IOException, JsonGenerationException
+    {
+        write( value, gen, new RefSerializers( provider ) );
+    }
+
+    /**
+     * Write one relationship as a JSON object. Shared with {@link ProjectRelationshipWriter}, which keeps one
+     * {@link RefSerializers} for a whole export.
+     */
+    @SuppressWarnings( "incomplete-switch" )
+    static void write( final ProjectRelationship<?, ?> value, final JsonGenerator gen, final RefSerializers refs )
+            throws IOException
     {
         gen.writeStartObject();
         gen.writeStringField( RELATIONSHIP_TYPE, value.getType().name() );
@@ -56,29 +66,29 @@ public final class ProjectRelationshipSerializer<T extends ProjectRelationship>
         Set<URI> sources = value.getSources();
         if ( sources != null )
         {
-            for ( Iterator<URI> iter = sources.iterator(); iter.hasNext(); )
+            boolean started = false;
+            for ( URI uri : sources )
             {
-                if ( iter.next() == null )
+                if ( uri == null )
                 {
-                    iter.remove();
+                    continue;
                 }
-            }
-            if ( !sources.isEmpty() )
-            {
-                gen.writeArrayFieldStart( SOURCE_URIS );
-                for ( URI uri : sources )
+
+                if ( !started )
                 {
-                    if ( uri == null )
-                    {
-                        continue;
-                    }
-                    gen.writeString( uri.toString() );
+                    gen.writeArrayFieldStart( SOURCE_URIS );
+                    started = true;
                 }
+                gen.writeString( uri.toString() );
+            }
+
+            if ( started )
+            {
                 gen.writeEndArray();
             }
         }
-        provider.defaultSerializeField( DECLARING_REF, value.getDeclaring(), gen );
-        provider.defaultSerializeField( TARGET_REF, value.getTarget(), gen );
+        refs.writeField( RefSerializers.DECLARING, DECLARING_REF, value.getDeclaring(), gen );
+        refs.writeField( RefSerializers.TARGET, TARGET_REF, value.getTarget(), gen );
 
         switch ( value.getType() )
         {
@@ -90,12 +100,23 @@ public final class ProjectRelationshipSerializer<T extends ProjectRelationship>
                 gen.writeStringField( SCOPE, ( (DependencyRelationship) value ).getScope().realName() );
                 gen.writeBooleanField( MANAGED, value.isManaged() );
                 gen.writeBooleanField( OPTIONAL, ( (DependencyRelationship) value ).isOptional() );
+
+                final Set<ProjectRef> excludes = ( (DependencyRelationship) value ).getExcludes();
+                if ( excludes != null && !excludes.isEmpty() )
+                {
+                    gen.writeArrayFieldStart( EXCLUDES );
+                    for ( final ProjectRef exclude : excludes )
+                    {
+                        gen.writeString( exclude.getGroupId() + ":" + exclude.getArtifactId() );
+                    }
+                    gen.writeEndArray();
+                }
                 break;
             }
             case PLUGIN_DEP:
             {
-                provider.defaultSerializeField( PLUGIN_REF, ( (PluginDependencyRelationship) value ).getPlugin(),
-                                                gen );
+                refs.writeField( RefSerializers.PLUGIN, PLUGIN_REF,
+                                 ( (PluginDependencyRelationship) value ).getPlugin(), gen );
                 gen.writeBooleanField( MANAGED, value.isManaged() );
                 break;
             }
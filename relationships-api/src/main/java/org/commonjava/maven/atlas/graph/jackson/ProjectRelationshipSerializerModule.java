@@ -45,24 +45,37 @@ public class ProjectRelationshipSerializerModule
     public static final ProjectRelationshipSerializerModule INSTANCE = new ProjectRelationshipSerializerModule();
 
     public ProjectRelationshipSerializerModule()
+    {
+        this( 0 );
+    }
+
+    /**
+     * @param internCacheSize when greater than zero, refs in deserialized relationships with the same string form are
+     * shared, holding at most this many refs per ref kind
+     */
+    public ProjectRelationshipSerializerModule( final int internCacheSize )
     {
         super( "ProjectRelationship<?> Serializer" );
 
+        // one deserializer for every relationship class, so they all share the intern cache
+        final ProjectRelationshipDeserializer<?> deserializer =
+                new ProjectRelationshipDeserializer<ProjectRelationship>( internCacheSize );
         for ( Class<? extends ProjectRelationship> cls : REL_CLASSES )
         {
-            register( cls );
+            register( cls, deserializer );
         }
         addKeySerializer( PluginKey.class, new PluginKeySerializer() );
         addKeyDeserializer( PluginKey.class, new PluginKeyDeserializer() );
     }
 
-    private <T extends ProjectRelationship> void register( Class<T> cls )
+    @SuppressWarnings( "unchecked" )
+    private <T extends ProjectRelationship> void register( Class<T> cls, ProjectRelationshipDeserializer<?> deserializer )
     {
         Logger logger = LoggerFactory.getLogger( getClass() );
         logger.debug( "Registering serializer/deserializer for: {}", cls.getSimpleName() );
 
         addSerializer( cls, new ProjectRelationshipSerializer<T>( cls ) );
-        addDeserializer( cls, new ProjectRelationshipDeserializer<T>() );
+        addDeserializer( cls, (ProjectRelationshipDeserializer<T>) deserializer );
     }
 
     @Override
@@ -0,0 +1,203 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.graph.jackson;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ser.DefaultSerializerProvider;
+import org.commonjava.maven.atlas.graph.model.EProjectDirectRelationships;
+import org.commonjava.maven.atlas.graph.model.EProjectGraph;
+import org.commonjava.maven.atlas.graph.rel.ProjectRelationship;
+import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+
+/**
+ * Streams relationships to a {@link JsonGenerator} as one JSON array, in the same per-relationship format as
+ * {@link ProjectRelationshipSerializer}, so the output reads back as a {@code List<ProjectRelationship>}.
+ * <br/>
+ * Relationships are written as they are handed over; nothing is collected first, so memory use doesn't grow with the
+ * size of the export. Ref serializers are looked up once from the mapper and reused for every relationship.
+ * <br/>
+ * {@link #lineDelimited(ObjectMapper, OutputStream)} writes the same objects one per line instead (NDJSON), for
+ * feeds read back with {@link NdjsonRelationshipReader}.
+ * <br/>
+ * The mapper must have {@link org.commonjava.maven.atlas.ident.jackson.ProjectVersionRefSerializerModule}
+ * registered. Not thread-safe.
+ */
+public final class ProjectRelationshipWriter
+        implements Closeable, Flushable
+{
+    private final JsonGenerator gen;
+
+    private final RefSerializers refs;
+
+    private final boolean lines;
+
+    private long count;
+
+    private boolean closed;
+
+    public ProjectRelationshipWriter( final ObjectMapper mapper, final OutputStream out )
+            throws IOException
+    {
+        this( mapper, mapper.getFactory().createGenerator( out, JsonEncoding.UTF8 ) );
+    }
+
+    public ProjectRelationshipWriter( final ObjectMapper mapper, final JsonGenerator gen )
+            throws IOException
+    {
+        this( mapper, gen, false );
+    }
+
+    private ProjectRelationshipWriter( final ObjectMapper mapper, final JsonGenerator gen, final boolean lines )
+            throws IOException
+    {
+        this.gen = gen;
+        this.lines = lines;
+        if ( gen.getCodec() == null )
+        {
+            gen.setCodec( mapper );
+        }
+
+        final DefaultSerializerProvider provider = ( (DefaultSerializerProvider) mapper.getSerializerProvider() ).createInstance(
+                mapper.getSerializationConfig(), mapper.getSerializerFactory() );
+
+        this.refs = new RefSerializers( provider );
+
+        if ( lines )
+        {
+            gen.setRootValueSeparator( null );
+        }
+        else
+        {
+            gen.writeStartArray();
+        }
+    }
+
+    /**
+     * Create a writer that emits one relationship object per line, with no enclosing array.
+     */
+    public static ProjectRelationshipWriter lineDelimited( final ObjectMapper mapper, final OutputStream out )
+            throws IOException
+    {
+        return new ProjectRelationshipWriter( mapper, mapper.getFactory().createGenerator( out, JsonEncoding.UTF8 ),
+                                              true );
+    }
+
+    public ProjectRelationshipWriter write( final ProjectRelationship<?, ?> rel )
+            throws IOException
+    {
+        if ( closed )
+        {
+            throw new IOException( "Relationship writer is closed." );
+        }
+
+        ProjectRelationshipSerializer.write( rel, gen, refs );
+        if ( lines )
+        {
+            gen.writeRaw( '\n' );
+        }
+        count++;
+
+        return this;
+    }
+
+    /**
+     * Write everything the iterator yields.
+     * @return the number of relationships written by this call
+     */
+    public long writeAll( final Iterator<? extends ProjectRelationship<?, ?>> relationships )
+            throws IOException
+    {
+        long written = 0;
+        while ( relationships.hasNext() )
+        {
+            write( relationships.next() );
+            written++;
+        }
+
+        return written;
+    }
+
+    /**
+     * Write every relationship of one project, including a terminal parent, straight from its lists.
+     */
+    public long writeAll( final EProjectDirectRelationships rels )
+            throws IOException
+    {
+        return writeAll( rels.relationshipIterator() );
+    }
+
+    /**
+     * Write every relationship of every project in the graph, one project at a time.
+     */
+    public long writeAll( final EProjectGraph graph )
+            throws IOException
+    {
+        long written = 0;
+        for ( final ProjectVersionRef ref : graph.getProjects() )
+        {
+            final EProjectDirectRelationships rels = graph.getDirectRelationships( ref );
+            if ( rels != null )
+            {
+                written += writeAll( rels );
+            }
+        }
+
+        return written;
+    }
+
+    /**
+     * @return the number of relationships written so far
+     */
+    public long getCount()
+    {
+        return count;
+    }
+
+    @Override
+    public void flush()
+            throws IOException
+    {
+        gen.flush();
+    }
+
+    /**
+     * Close the JSON array (if any) and the underlying generator.
+     */
+    @Override
+    public void close()
+            throws IOException
+    {
+        if ( closed )
+        {
+            return;
+        }
+
+        closed = true;
+        if ( !lines )
+        {
+            gen.writeEndArray();
+        }
+        gen.close();
+    }
+}
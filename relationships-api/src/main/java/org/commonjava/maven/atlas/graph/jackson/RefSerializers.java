@@ -0,0 +1,74 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.graph.jackson;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import org.commonjava.maven.atlas.ident.ref.ProjectRef;
+
+import java.io.IOException;
+
+/**
+ * Writes ref-valued fields through the serializers registered with a {@link SerializerProvider}, remembering the
+ * serializer found for the last ref class seen in each field so that long runs of relationships don't repeat the
+ * lookup.
+ */
+final class RefSerializers
+{
+    static final int DECLARING = 0;
+
+    static final int TARGET = 1;
+
+    static final int PLUGIN = 2;
+
+    private final SerializerProvider provider;
+
+    private final Class<?>[] classes = new Class<?>[3];
+
+    private final JsonSerializer<?>[] serializers = new JsonSerializer<?>[3];
+
+    RefSerializers( final SerializerProvider provider )
+    {
+        this.provider = provider;
+    }
+
+    SerializerProvider getProvider()
+    {
+        return provider;
+    }
+
+    @SuppressWarnings( "unchecked" )
+    void writeField( final int slot, final String name, final ProjectRef ref, final JsonGenerator gen )
+            throws IOException
+    {
+        gen.writeFieldName( name );
+        if ( ref == null )
+        {
+            provider.defaultSerializeNull( gen );
+            return;
+        }
+
+        final Class<?> cls = ref.getClass();
+        if ( classes[slot] != cls )
+        {
+            serializers[slot] = provider.findTypedValueSerializer( cls, true, null );
+            classes[slot] = cls;
+        }
+
+        ( (JsonSerializer<Object>) serializers[slot] ).serialize( ref, gen, provider );
+    }
+}
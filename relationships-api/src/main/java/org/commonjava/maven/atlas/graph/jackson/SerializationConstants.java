@@ -56,6 +56,8 @@ public final class SerializationConstants
 
     public static final String PLUGIN_REF = "plugin";
 
+    public static final String EXCLUDES = "excludes";
+
     public static final String JSON_VERSION = "jsonVersion";
 
     public static final int CURRENT_JSON_VERSION = 1;
@@ -72,4 +74,12 @@ public final class SerializationConstants
 
     public static final String GAVS = WEB_ROOTS;
 
+    public static final String DELTA_SEQUENCE = "seq";
+
+    public static final String DELTA_OP = "op";
+
+    public static final String DELTA_RELATIONSHIP = "relationship";
+
+    public static final String DELTA_PREVIOUS = "previous";
+
 }
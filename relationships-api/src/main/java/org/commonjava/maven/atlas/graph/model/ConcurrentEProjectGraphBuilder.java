@@ -0,0 +1,323 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.graph.model;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.commonjava.maven.atlas.graph.rel.ParentRelationship;
+import org.commonjava.maven.atlas.graph.rel.PluginDependencyRelationship;
+import org.commonjava.maven.atlas.graph.rel.ProjectRelationship;
+import org.commonjava.maven.atlas.graph.util.RelationshipMerger;
+import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
+
+/**
+ * Collects {@link EProjectDirectRelationships} from many ingest threads at once and merges them into a single graph.
+ * Projects are spread over a fixed set of lock stripes by hash, so threads contributing different projects rarely
+ * contend, and contributions for the same project are merged under that project's stripe.
+ * <br/>
+ * Relationships contributed more than once for a project (by {@link ProjectRelationship#equals}) are kept once,
+ * with the union of their source URIs, through a {@link RelationshipMerger} per project. The frozen graph does not depend
+ * on the order contributions arrive in: the merger orders each project's relationships (by index within each list)
+ * and picks the copy whose attributes win by a fixed tie-break, and the project source is the least of the contributed
+ * ones. A real parent wins over a terminal one; two different real parents for one project are rejected.
+ * <br/>
+ * {@link #freeze()} builds the final, immutable {@link PersistentEProjectGraph}; after that the builder rejects
+ * further contributions.
+ */
+public final class ConcurrentEProjectGraphBuilder
+{
+
+    private static final int DEFAULT_STRIPES = 64;
+
+    private final Object[] stripes;
+
+    private final ConcurrentHashMap<ProjectVersionRef, ProjectAccumulator> projects;
+
+    private volatile boolean frozen;
+
+    public ConcurrentEProjectGraphBuilder()
+    {
+        this( DEFAULT_STRIPES );
+    }
+
+    /**
+     * @param concurrency expected number of concurrently contributing threads; rounded up to a power of two
+     */
+    public ConcurrentEProjectGraphBuilder( final int concurrency )
+    {
+        int size = 1;
+        while ( size < concurrency )
+        {
+            size <<= 1;
+        }
+
+        stripes = new Object[size];
+        for ( int i = 0; i < size; i++ )
+        {
+            stripes[i] = new Object();
+        }
+
+        projects = new ConcurrentHashMap<ProjectVersionRef, ProjectAccumulator>( 256, 0.75f, size );
+    }
+
+    /**
+     * Merge the given relationships into the graph under construction. Safe to call from any number of threads.
+     *
+     * @throws IllegalStateException if the builder has been frozen
+     * @throws IllegalArgumentException if the project already has a different, non-terminal parent; nothing from the
+     *             rejected contribution is merged
+     */
+    public void add( final EProjectDirectRelationships rels )
+    {
+        final ProjectVersionRef ref = rels.getProjectRef();
+
+        synchronized ( stripeFor( ref ) )
+        {
+            accumulator( ref ).merge( rels );
+        }
+    }
+
+    /**
+     * Merge loose relationships declared by the given project, without first assembling them into an
+     * {@link EProjectDirectRelationships}. Repeats among them are merged like repeats across contributions, and plugin
+     * dependencies need not come with their plugin, as long as it is contributed before {@link #freeze()}. Safe to call
+     * from any number of threads.
+     *
+     * @param source the project source for this contribution; may be null
+     * @throws IllegalStateException if the builder has been frozen
+     * @throws IllegalArgumentException if the relationships include a parent conflicting with another one, or with the
+     *             project's existing parent; nothing from the rejected contribution is merged
+     */
+    public void add( final URI source, final ProjectVersionRef ref,
+                     final Collection<? extends ProjectRelationship<?, ?>> rels )
+    {
+        synchronized ( stripeFor( ref ) )
+        {
+            accumulator( ref ).merge( source, rels );
+        }
+    }
+
+    // caller holds the project's stripe
+    private ProjectAccumulator accumulator( final ProjectVersionRef ref )
+    {
+        if ( frozen )
+        {
+            throw new IllegalStateException( "Graph builder has been frozen; no more relationships may be added." );
+        }
+
+        ProjectAccumulator acc = projects.get( ref );
+        if ( acc == null )
+        {
+            acc = new ProjectAccumulator( ref );
+            projects.put( ref, acc );
+        }
+
+        return acc;
+    }
+
+    public void addAll( final Iterable<EProjectDirectRelationships> rels )
+    {
+        for ( final EProjectDirectRelationships r : rels )
+        {
+            add( r );
+        }
+    }
+
+    /**
+     * @return the number of distinct projects contributed so far
+     */
+    public int size()
+    {
+        return projects.size();
+    }
+
+    public boolean isFrozen()
+    {
+        return frozen;
+    }
+
+    /**
+     * Stop accepting contributions and build the merged graph. Waits for in-flight {@link #add} calls to finish.
+     */
+    public PersistentEProjectGraph freeze()
+    {
+        lockAllAndFreeze( 0 );
+
+        final List<EProjectDirectRelationships> result = new ArrayList<EProjectDirectRelationships>( projects.size() );
+        for ( final ProjectAccumulator acc : projects.values() )
+        {
+            result.add( acc.build() );
+        }
+
+        return PersistentEProjectGraph.empty()
+                                      .withAll( result );
+    }
+
+    private void lockAllAndFreeze( final int stripe )
+    {
+        if ( stripe == stripes.length )
+        {
+            frozen = true;
+            return;
+        }
+
+        synchronized ( stripes[stripe] )
+        {
+            lockAllAndFreeze( stripe + 1 );
+        }
+    }
+
+    private Object stripeFor( final ProjectVersionRef ref )
+    {
+        int h = ref.hashCode();
+        h ^= ( h >>> 16 );
+        return stripes[h & ( stripes.length - 1 )];
+    }
+
+    /**
+     * Everything contributed for one project. Only ever touched under the project's stripe. The result of
+     * {@link #build()} depends on the set of contributions, not on the order they arrived in.
+     */
+    private static final class ProjectAccumulator
+    {
+        private final ProjectVersionRef ref;
+
+        private URI source;
+
+        private ParentRelationship parent;
+
+        private final RelationshipMerger merger = new RelationshipMerger();
+
+        ProjectAccumulator( final ProjectVersionRef ref )
+        {
+            this.ref = ref;
+        }
+
+        void merge( final EProjectDirectRelationships rels )
+        {
+            // check the parent first, so a conflicting contribution is rejected before anything of it is merged
+            mergeParent( pickParent( parent, rels.getParent() ) );
+            mergeSource( rels.getSource() );
+
+            if ( rels.getParent() != null )
+            {
+                add( rels.getParent() );
+            }
+
+            addAll( rels.getBoms() );
+            addAll( rels.getDependencies() );
+            addAll( rels.getManagedDependencies() );
+            addAll( rels.getPlugins() );
+            addAll( rels.getManagedPlugins() );
+            for ( final List<PluginDependencyRelationship> pluginDeps : rels.getPluginDependencies()
+                                                                            .values() )
+            {
+                addAll( pluginDeps );
+            }
+            addAll( rels.getExtensions() );
+        }
+
+        private void mergeSource( final URI incoming )
+        {
+            if ( incoming != null && ( source == null || incoming.compareTo( source ) < 0 ) )
+            {
+                source = incoming;
+            }
+        }
+
+        void merge( final URI source, final Collection<? extends ProjectRelationship<?, ?>> rels )
+        {
+            ParentRelationship merged = parent;
+            for ( final ProjectRelationship<?, ?> rel : rels )
+            {
+                if ( rel instanceof ParentRelationship )
+                {
+                    merged = pickParent( merged, (ParentRelationship) rel );
+                }
+            }
+
+            mergeParent( merged );
+            mergeSource( source );
+            addAll( rels );
+        }
+
+        /**
+         * A real parent replaces a terminal one; two different real parents are a conflict.
+         */
+        private ParentRelationship pickParent( final ParentRelationship current, final ParentRelationship incoming )
+        {
+            if ( incoming == null )
+            {
+                return current;
+            }
+
+            if ( current == null || ( current.isTerminus() && !incoming.isTerminus() ) )
+            {
+                return incoming;
+            }
+            else if ( !incoming.isTerminus() && !current.equals( incoming ) )
+            {
+                throw new IllegalArgumentException( "Conflicting parents for " + ref + ": " + current.getTarget()
+                    + " (from " + current.getSources() + ") and " + incoming.getTarget() + " (from "
+                    + incoming.getSources() + ")." );
+            }
+
+            return current;
+        }
+
+        private void mergeParent( final ParentRelationship merged )
+        {
+            if ( merged != parent )
+            {
+                if ( parent != null )
+                {
+                    merger.remove( parent );
+                }
+                parent = merged;
+            }
+        }
+
+        private void addAll( final Collection<? extends ProjectRelationship<?, ?>> rels )
+        {
+            for ( final ProjectRelationship<?, ?> rel : rels )
+            {
+                add( rel );
+            }
+        }
+
+        private void add( final ProjectRelationship<?, ?> rel )
+        {
+            if ( rel instanceof ParentRelationship && !rel.equals( parent ) )
+            {
+                // a terminal parent superseded by a real one
+                return;
+            }
+
+            merger.add( rel );
+        }
+
+        EProjectDirectRelationships build()
+        {
+            return new EProjectDirectRelationships.Builder( source, ref ).withRelationships( merger.merge() )
+                                                                         .build();
+        }
+    }
+
+}
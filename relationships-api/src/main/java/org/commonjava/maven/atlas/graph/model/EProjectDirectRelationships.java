@@ -26,8 +26,11 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
@@ -73,6 +76,11 @@ public class EProjectDirectRelationships
 
     private Map<PluginKey, List<PluginDependencyRelationship>> pluginDependencies;
 
+    // combined views, built on first use; the lists above never change once constructed
+    private transient Set<ProjectRelationship<?, ?>> allRelationships;
+
+    private transient Set<ProjectRelationship<?, ?>> exactAllRelationships;
+
     public EProjectDirectRelationships() {}
 
     public EProjectDirectRelationships( final URI source,
@@ -162,39 +170,201 @@ public class EProjectDirectRelationships
         return boms;
     }
 
+    /**
+     * Every relationship except a terminal (self-referencing) parent, as an unmodifiable set in declaration order.
+     * The set is built once and shared between calls.
+     */
     @JsonIgnore
     @Override
     public Set<ProjectRelationship<?, ?>> getAllRelationships()
     {
-        final Set<ProjectRelationship<?, ?>> rels = getExactAllRelationships();
-        filterTerminalParents( rels );
+        Set<ProjectRelationship<?, ?>> result = allRelationships;
+        if ( result == null )
+        {
+            final Set<ProjectRelationship<?, ?>> rels =
+                new LinkedHashSet<ProjectRelationship<?, ?>>( getExactAllRelationships() );
+            filterTerminalParents( rels );
 
-        return rels;
+            result = Collections.unmodifiableSet( rels );
+            allRelationships = result;
+        }
+
+        return result;
     }
 
+    /**
+     * Every relationship, including a terminal parent, as an unmodifiable set in declaration order. The set is built
+     * once and shared between calls.
+     */
     @JsonIgnore
     @Override
     public Set<ProjectRelationship<?, ?>> getExactAllRelationships()
     {
-        final Set<ProjectRelationship<?, ?>> result = new HashSet<ProjectRelationship<?, ?>>();
+        Set<ProjectRelationship<?, ?>> result = exactAllRelationships;
+        if ( result == null )
+        {
+            final Set<ProjectRelationship<?, ?>> rels =
+                new LinkedHashSet<ProjectRelationship<?, ?>>( getRelationshipCount() * 4 / 3 + 1 );
+
+            final Iterator<ProjectRelationship<?, ?>> it = relationshipIterator();
+            while ( it.hasNext() )
+            {
+                rels.add( it.next() );
+            }
+
+            result = Collections.unmodifiableSet( rels );
+            exactAllRelationships = result;
+        }
+
+        return result;
+    }
+
+    /**
+     * Walk every relationship, including a terminal parent, in declaration order without copying: parent, BOMs,
+     * dependencies, managed dependencies, plugins, managed plugins, plugin dependencies, extensions.
+     */
+    public void accept( final EProjectRelationshipVisitor visitor )
+    {
         if ( parent != null )
         {
-            result.add( parent );
+            visitor.visitParent( parent );
         }
 
-        result.addAll( boms );
-        result.addAll( dependencies );
-        result.addAll( managedDependencies );
-        result.addAll( plugins );
-        result.addAll( managedPlugins );
-        result.addAll( extensions );
+        for ( final BomRelationship bom : boms )
+        {
+            visitor.visitBom( bom );
+        }
+
+        for ( final DependencyRelationship dep : dependencies )
+        {
+            visitor.visitDependency( dep );
+        }
+
+        for ( final DependencyRelationship dep : managedDependencies )
+        {
+            visitor.visitDependency( dep );
+        }
+
+        for ( final PluginRelationship plugin : plugins )
+        {
+            visitor.visitPlugin( plugin );
+        }
+
+        for ( final PluginRelationship plugin : managedPlugins )
+        {
+            visitor.visitPlugin( plugin );
+        }
 
         for ( final List<PluginDependencyRelationship> pluginRels : pluginDependencies.values() )
         {
-            result.addAll( pluginRels );
+            for ( final PluginDependencyRelationship pdr : pluginRels )
+            {
+                visitor.visitPluginDependency( pdr );
+            }
         }
 
-        return result;
+        for ( final ExtensionRelationship ext : extensions )
+        {
+            visitor.visitExtension( ext );
+        }
+    }
+
+    /**
+     * Iterate every relationship, including a terminal parent, in the same order as
+     * {@link #accept(EProjectRelationshipVisitor)}, directly over the underlying lists.
+     */
+    public Iterator<ProjectRelationship<?, ?>> relationshipIterator()
+    {
+        final List<List<? extends ProjectRelationship<?, ?>>> lists =
+            new ArrayList<List<? extends ProjectRelationship<?, ?>>>( 7 + pluginDependencies.size() );
+
+        if ( parent != null )
+        {
+            lists.add( Collections.singletonList( parent ) );
+        }
+
+        lists.add( boms );
+        lists.add( dependencies );
+        lists.add( managedDependencies );
+        lists.add( plugins );
+        lists.add( managedPlugins );
+        lists.addAll( pluginDependencies.values() );
+        lists.add( extensions );
+
+        return new ChainedIterator( lists );
+    }
+
+    /**
+     * Number of relationships, including a terminal parent, computed from the list sizes.
+     */
+    @JsonIgnore
+    public int getRelationshipCount()
+    {
+        return ( parent == null ? 0 : 1 ) + boms.size() + dependencies.size() + managedDependencies.size()
+            + plugins.size() + managedPlugins.size() + getPluginDependencyCount() + extensions.size();
+    }
+
+    @JsonIgnore
+    public int getPluginDependencyCount()
+    {
+        int count = 0;
+        for ( final List<PluginDependencyRelationship> pluginRels : pluginDependencies.values() )
+        {
+            count += pluginRels.size();
+        }
+
+        return count;
+    }
+
+    private static final class ChainedIterator
+        implements Iterator<ProjectRelationship<?, ?>>
+    {
+        private final List<List<? extends ProjectRelationship<?, ?>>> lists;
+
+        private int list;
+
+        private int index;
+
+        ChainedIterator( final List<List<? extends ProjectRelationship<?, ?>>> lists )
+        {
+            this.lists = lists;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            while ( list < lists.size() )
+            {
+                if ( index < lists.get( list )
+                                  .size() )
+                {
+                    return true;
+                }
+
+                list++;
+                index = 0;
+            }
+
+            return false;
+        }
+
+        @Override
+        public ProjectRelationship<?, ?> next()
+        {
+            if ( !hasNext() )
+            {
+                throw new NoSuchElementException();
+            }
+
+            return lists.get( list )
+                        .get( index++ );
+        }
+
+        @Override
+        public void remove()
+        {
+            throw new UnsupportedOperationException( "Relationships are read-only." );
+        }
     }
 
     public static final class Builder
@@ -220,6 +390,16 @@ public class EProjectDirectRelationships
         private final Map<PluginKey, List<PluginDependencyRelationship>> pluginDependencies =
             new HashMap<PluginKey, List<PluginDependencyRelationship>>();
 
+        // Hash indexes kept alongside the insertion-ordered lists above, so deduplication and plugin lookup stay
+        // constant-time when loading large projects. Relationship equality covers type and managed-ness, so one set
+        // serves every list.
+        private final Set<ProjectRelationship<?, ?>> seen = new HashSet<ProjectRelationship<?, ?>>();
+
+        private final Map<ProjectRef, PluginRelationship> pluginsByRef = new HashMap<ProjectRef, PluginRelationship>();
+
+        private final Map<ProjectRef, PluginRelationship> managedPluginsByRef =
+            new HashMap<ProjectRef, PluginRelationship>();
+
         public Builder( final URI source, final ProjectVersionRef projectRef, final String... activeProfiles )
         {
             this.source = source;
@@ -289,19 +469,18 @@ public class EProjectDirectRelationships
             for ( DependencyRelationship dep : deps )
             {
                 dep = adjustDeclaring( dep );
+                if ( !seen.add( dep ) )
+                {
+                    continue;
+                }
+
                 if ( dep.isManaged() )
                 {
-                    if ( !managedDependencies.contains( dep ) )
-                    {
-                        managedDependencies.add( dep );
-                    }
+                    managedDependencies.add( dep );
                 }
                 else
                 {
-                    if ( !dependencies.contains( dep ) )
-                    {
-                        dependencies.add( dep );
-                    }
+                    dependencies.add( dep );
                 }
             }
 
@@ -318,18 +497,27 @@ public class EProjectDirectRelationships
             for ( PluginRelationship plugin : plugins )
             {
                 plugin = adjustDeclaring( plugin );
+                if ( !seen.add( plugin ) )
+                {
+                    continue;
+                }
+
+                final ProjectRef pluginRef = plugin.getTarget()
+                                                   .asProjectRef();
                 if ( plugin.isManaged() )
                 {
-                    if ( !managedPlugins.contains( plugin ) )
+                    managedPlugins.add( plugin );
+                    if ( !managedPluginsByRef.containsKey( pluginRef ) )
                     {
-                        managedPlugins.add( plugin );
+                        managedPluginsByRef.put( pluginRef, plugin );
                     }
                 }
                 else
                 {
-                    if ( !this.plugins.contains( plugin ) )
+                    this.plugins.add( plugin );
+                    if ( !pluginsByRef.containsKey( pluginRef ) )
                     {
-                        this.plugins.add( plugin );
+                        pluginsByRef.put( pluginRef, plugin );
                     }
                 }
             }
@@ -347,38 +535,19 @@ public class EProjectDirectRelationships
             for ( PluginDependencyRelationship rel : pluginDeps )
             {
                 rel = adjustDeclaring( rel );
-                final ProjectRef pluginRef = rel.getPlugin();
+                final ProjectRef pluginRef = rel.getPlugin()
+                                                .asProjectRef();
 
-                PluginKey pk = null;
-                if ( rel.isManaged() )
-                {
-                    for ( final PluginRelationship pluginRel : managedPlugins )
-                    {
-                        if ( pluginRef.equals( pluginRel.getTarget() ) )
-                        {
-                            pk = new PluginKey( pluginRel );
-                            break;
-                        }
-                    }
-                }
-                else
-                {
-                    for ( final PluginRelationship pluginRel : plugins )
-                    {
-                        if ( pluginRef.equals( pluginRel.getTarget() ) )
-                        {
-                            pk = new PluginKey( pluginRel );
-                            break;
-                        }
-                    }
-                }
+                final PluginRelationship pluginRel =
+                    rel.isManaged() ? managedPluginsByRef.get( pluginRef ) : pluginsByRef.get( pluginRef );
 
-                if ( pk == null )
+                if ( pluginRel == null )
                 {
                     throw new IllegalArgumentException( "Orphaned plugin-level dependency found: " + rel
                         + ". Make sure you load plugin relationships BEFORE attempting to load plugin-dependency-relationships." );
                 }
 
+                final PluginKey pk = new PluginKey( pluginRel );
                 List<PluginDependencyRelationship> pdrs = pluginDependencies.get( pk );
                 if ( pdrs == null )
                 {
@@ -386,7 +555,7 @@ public class EProjectDirectRelationships
                     pluginDependencies.put( pk, pdrs );
                 }
 
-                if ( !pdrs.contains( rel ) )
+                if ( seen.add( rel ) )
                 {
                     pdrs.add( rel );
                 }
@@ -402,11 +571,12 @@ public class EProjectDirectRelationships
 
         public Builder withExtensions( final Collection<ExtensionRelationship> exts )
         {
-            for ( final ExtensionRelationship ext : exts )
+            for ( ExtensionRelationship ext : exts )
             {
-                if ( !extensions.contains( ext ) )
+                ext = adjustDeclaring( ext );
+                if ( seen.add( ext ) )
                 {
-                    extensions.add( adjustDeclaring( ext ) );
+                    extensions.add( ext );
                 }
             }
 
@@ -0,0 +1,39 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.graph.model;
+
+import java.util.Set;
+
+import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
+
+/**
+ * Read-only view of a set of projects and their direct relationships, keyed by the declaring project.
+ */
+public interface EProjectGraph
+{
+
+    /**
+     * Retrieve the direct relationships declared by the given project, or null if the project isn't in this graph.
+     */
+    EProjectDirectRelationships getDirectRelationships( ProjectVersionRef ref );
+
+    boolean containsProject( ProjectVersionRef ref );
+
+    Set<ProjectVersionRef> getProjects();
+
+    int size();
+
+}
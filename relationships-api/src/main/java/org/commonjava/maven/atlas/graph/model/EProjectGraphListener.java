@@ -0,0 +1,29 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.graph.model;
+
+import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
+
+/**
+ * Notified when the relationships stored for a project in a mutable {@link EProjectGraph} are added, replaced or
+ * removed. Used by caches and indexes derived from the graph to stay current.
+ */
+public interface EProjectGraphListener
+{
+
+    void projectChanged( EProjectGraph graph, ProjectVersionRef ref );
+
+}
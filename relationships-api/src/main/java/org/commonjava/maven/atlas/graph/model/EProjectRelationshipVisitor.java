@@ -0,0 +1,46 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.graph.model;
+
+import org.commonjava.maven.atlas.graph.rel.BomRelationship;
+import org.commonjava.maven.atlas.graph.rel.DependencyRelationship;
+import org.commonjava.maven.atlas.graph.rel.ExtensionRelationship;
+import org.commonjava.maven.atlas.graph.rel.ParentRelationship;
+import org.commonjava.maven.atlas.graph.rel.PluginDependencyRelationship;
+import org.commonjava.maven.atlas.graph.rel.PluginRelationship;
+
+/**
+ * Typed callback for walking the relationships of an {@link EProjectDirectRelationships} in place, via
+ * {@link EProjectDirectRelationships#accept(EProjectRelationshipVisitor)}. Managed dependencies and plugins are passed
+ * to the same methods as their unmanaged counterparts; check {@link org.commonjava.maven.atlas.graph.rel.ProjectRelationship#isManaged()}
+ * to tell them apart.
+ */
+public interface EProjectRelationshipVisitor
+{
+
+    void visitParent( ParentRelationship rel );
+
+    void visitBom( BomRelationship rel );
+
+    void visitDependency( DependencyRelationship rel );
+
+    void visitPlugin( PluginRelationship rel );
+
+    void visitPluginDependency( PluginDependencyRelationship rel );
+
+    void visitExtension( ExtensionRelationship rel );
+
+}
@@ -0,0 +1,128 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.graph.model;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+
+import org.commonjava.maven.atlas.graph.util.PersistentHashMap;
+import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
+
+/**
+ * Immutable {@link EProjectGraph}. Every update returns a new graph sharing all untouched structure with the old one
+ * (see {@link PersistentHashMap}), so an update costs O(log n) rather than a copy of the graph, and any number of
+ * threads may read a given instance without locking. See {@link SnapshotEProjectGraph} for publishing successive
+ * versions to concurrent readers.
+ */
+public final class PersistentEProjectGraph
+    implements EProjectGraph
+{
+
+    private static final PersistentEProjectGraph EMPTY =
+        new PersistentEProjectGraph( PersistentHashMap.<ProjectVersionRef, EProjectDirectRelationships> empty(), 0 );
+
+    private final PersistentHashMap<ProjectVersionRef, EProjectDirectRelationships> projects;
+
+    private final long version;
+
+    private PersistentEProjectGraph( final PersistentHashMap<ProjectVersionRef, EProjectDirectRelationships> projects,
+                                     final long version )
+    {
+        this.projects = projects;
+        this.version = version;
+    }
+
+    public static PersistentEProjectGraph empty()
+    {
+        return EMPTY;
+    }
+
+    /**
+     * @return the number of updates applied since the empty graph; useful for telling snapshots apart
+     */
+    public long getVersion()
+    {
+        return version;
+    }
+
+    /**
+     * @return a graph with the given relationships added, or replacing those previously stored for their project
+     */
+    public PersistentEProjectGraph with( final EProjectDirectRelationships rels )
+    {
+        final ProjectVersionRef ref = rels.getProjectRef()
+                                          .asProjectVersionRef();
+        if ( projects.get( ref ) == rels )
+        {
+            return this;
+        }
+
+        return new PersistentEProjectGraph( projects.plus( ref, rels ), version + 1 );
+    }
+
+    public PersistentEProjectGraph withAll( final Collection<EProjectDirectRelationships> rels )
+    {
+        PersistentHashMap<ProjectVersionRef, EProjectDirectRelationships> result = projects;
+        for ( final EProjectDirectRelationships r : rels )
+        {
+            result = result.plus( r.getProjectRef()
+                                   .asProjectVersionRef(), r );
+        }
+
+        return result == projects ? this : new PersistentEProjectGraph( result, version + 1 );
+    }
+
+    public PersistentEProjectGraph without( final ProjectVersionRef ref )
+    {
+        final PersistentHashMap<ProjectVersionRef, EProjectDirectRelationships> result =
+            projects.minus( ref.asProjectVersionRef() );
+
+        return result == projects ? this : new PersistentEProjectGraph( result, version + 1 );
+    }
+
+    @Override
+    public EProjectDirectRelationships getDirectRelationships( final ProjectVersionRef ref )
+    {
+        return projects.get( ref.asProjectVersionRef() );
+    }
+
+    @Override
+    public boolean containsProject( final ProjectVersionRef ref )
+    {
+        return projects.containsKey( ref.asProjectVersionRef() );
+    }
+
+    @Override
+    public Set<ProjectVersionRef> getProjects()
+    {
+        return Collections.unmodifiableSet( projects.asMap()
+                                                    .keySet() );
+    }
+
+    @Override
+    public int size()
+    {
+        return projects.size();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format( "PersistentEProjectGraph [version %s, %s projects]", version, projects.size() );
+    }
+
+}
@@ -0,0 +1,127 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.graph.model;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
+
+/**
+ * Simple, {@link HashMap}-backed {@link EProjectGraph}. This implementation is NOT threadsafe.
+ */
+public class SimpleEProjectGraph
+    implements EProjectGraph
+{
+
+    private final Map<ProjectVersionRef, EProjectDirectRelationships> projects =
+        new HashMap<ProjectVersionRef, EProjectDirectRelationships>();
+
+    private final List<EProjectGraphListener> listeners = new CopyOnWriteArrayList<EProjectGraphListener>();
+
+    public SimpleEProjectGraph()
+    {
+    }
+
+    public SimpleEProjectGraph( final Collection<EProjectDirectRelationships> projects )
+    {
+        for ( final EProjectDirectRelationships rels : projects )
+        {
+            add( rels );
+        }
+    }
+
+    /**
+     * Add (or replace) the direct relationships for the project they declare.
+     *
+     * @return the relationships previously stored for that project, or null
+     */
+    public EProjectDirectRelationships add( final EProjectDirectRelationships rels )
+    {
+        final ProjectVersionRef ref = rels.getProjectRef()
+                                          .asProjectVersionRef();
+        final EProjectDirectRelationships old = projects.put( ref, rels );
+        fireChanged( ref );
+
+        return old;
+    }
+
+    public EProjectDirectRelationships remove( final ProjectVersionRef ref )
+    {
+        final ProjectVersionRef key = ref.asProjectVersionRef();
+        final EProjectDirectRelationships old = projects.remove( key );
+        if ( old != null )
+        {
+            fireChanged( key );
+        }
+
+        return old;
+    }
+
+    public void addListener( final EProjectGraphListener listener )
+    {
+        listeners.add( listener );
+    }
+
+    public void removeListener( final EProjectGraphListener listener )
+    {
+        listeners.remove( listener );
+    }
+
+    private void fireChanged( final ProjectVersionRef ref )
+    {
+        for ( final EProjectGraphListener listener : listeners )
+        {
+            listener.projectChanged( this, ref );
+        }
+    }
+
+    @Override
+    public EProjectDirectRelationships getDirectRelationships( final ProjectVersionRef ref )
+    {
+        return projects.get( ref.asProjectVersionRef() );
+    }
+
+    @Override
+    public boolean containsProject( final ProjectVersionRef ref )
+    {
+        return projects.containsKey( ref.asProjectVersionRef() );
+    }
+
+    @Override
+    public Set<ProjectVersionRef> getProjects()
+    {
+        return Collections.unmodifiableSet( projects.keySet() );
+    }
+
+    @Override
+    public int size()
+    {
+        return projects.size();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format( "SimpleEProjectGraph [%s projects]", projects.size() );
+    }
+
+}
@@ -0,0 +1,192 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.graph.model;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
+
+/**
+ * Threadsafe, mutable {@link EProjectGraph} that publishes each revision as an immutable {@link PersistentEProjectGraph}
+ * through an {@link AtomicReference}. Readers never lock: {@link #snapshot()} returns the current revision, which
+ * stays consistent however long the reader holds it, and is reclaimed by the garbage collector once nobody does.
+ * Writers build the next revision from the current one and publish it with a compare-and-set, retrying if another
+ * writer got in first.
+ * <br/>
+ * The {@link EProjectGraph} methods on this class each read the latest revision; callers making several related
+ * queries should take a {@link #snapshot()} and query that instead.
+ */
+public class SnapshotEProjectGraph
+    implements EProjectGraph
+{
+
+    /**
+     * Derives a new graph revision from the current one. May be invoked more than once per update if writers race,
+     * so it should be free of side effects.
+     */
+    public interface Update
+    {
+        PersistentEProjectGraph apply( PersistentEProjectGraph current );
+    }
+
+    private final AtomicReference<PersistentEProjectGraph> current;
+
+    private final List<EProjectGraphListener> listeners = new CopyOnWriteArrayList<EProjectGraphListener>();
+
+    public SnapshotEProjectGraph()
+    {
+        this( PersistentEProjectGraph.empty() );
+    }
+
+    public SnapshotEProjectGraph( final PersistentEProjectGraph initial )
+    {
+        this.current = new AtomicReference<PersistentEProjectGraph>( initial );
+    }
+
+    /**
+     * @return the current revision of the graph
+     */
+    public PersistentEProjectGraph snapshot()
+    {
+        return current.get();
+    }
+
+    /**
+     * Atomically replace the graph with the result of the given update.
+     *
+     * @return the revision that was published
+     */
+    public PersistentEProjectGraph update( final Update update )
+    {
+        while ( true )
+        {
+            final PersistentEProjectGraph before = current.get();
+            final PersistentEProjectGraph after = update.apply( before );
+            if ( after == before || current.compareAndSet( before, after ) )
+            {
+                return after;
+            }
+        }
+    }
+
+    /**
+     * Add (or replace) the direct relationships for the project they declare.
+     *
+     * @return the relationships previously stored for that project, or null
+     */
+    public EProjectDirectRelationships add( final EProjectDirectRelationships rels )
+    {
+        final ProjectVersionRef ref = rels.getProjectRef()
+                                          .asProjectVersionRef();
+
+        PersistentEProjectGraph before;
+        PersistentEProjectGraph after;
+        do
+        {
+            before = current.get();
+            after = before.with( rels );
+        }
+        while ( after != before && !current.compareAndSet( before, after ) );
+
+        if ( after != before )
+        {
+            fireChanged( ref );
+        }
+
+        return before.getDirectRelationships( ref );
+    }
+
+    public EProjectDirectRelationships remove( final ProjectVersionRef ref )
+    {
+        final ProjectVersionRef key = ref.asProjectVersionRef();
+
+        PersistentEProjectGraph before;
+        PersistentEProjectGraph after;
+        do
+        {
+            before = current.get();
+            after = before.without( key );
+        }
+        while ( after != before && !current.compareAndSet( before, after ) );
+
+        if ( after != before )
+        {
+            fireChanged( key );
+        }
+
+        return before.getDirectRelationships( key );
+    }
+
+    /**
+     * Listeners are notified after {@link #add} and {@link #remove} publish a new revision. Changes made through
+     * {@link #update(Update)} are not reported project by project.
+     */
+    public void addListener( final EProjectGraphListener listener )
+    {
+        listeners.add( listener );
+    }
+
+    public void removeListener( final EProjectGraphListener listener )
+    {
+        listeners.remove( listener );
+    }
+
+    private void fireChanged( final ProjectVersionRef ref )
+    {
+        for ( final EProjectGraphListener listener : listeners )
+        {
+            listener.projectChanged( this, ref );
+        }
+    }
+
+    @Override
+    public EProjectDirectRelationships getDirectRelationships( final ProjectVersionRef ref )
+    {
+        return current.get()
+                      .getDirectRelationships( ref );
+    }
+
+    @Override
+    public boolean containsProject( final ProjectVersionRef ref )
+    {
+        return current.get()
+                      .containsProject( ref );
+    }
+
+    @Override
+    public Set<ProjectVersionRef> getProjects()
+    {
+        return current.get()
+                      .getProjects();
+    }
+
+    @Override
+    public int size()
+    {
+        return current.get()
+                      .size();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format( "SnapshotEProjectGraph [%s]", current.get() );
+    }
+
+}
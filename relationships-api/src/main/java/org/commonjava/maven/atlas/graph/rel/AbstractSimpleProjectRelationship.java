@@ -16,13 +16,17 @@
 package org.commonjava.maven.atlas.graph.rel;
 
 import org.commonjava.maven.atlas.ident.ref.ArtifactRef;
+import org.commonjava.maven.atlas.ident.ref.ProjectRef;
 import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
 import org.commonjava.maven.atlas.ident.ref.SimpleProjectVersionRef;
+import org.commonjava.maven.atlas.ident.version.InvalidVersionSpecificationException;
+import org.commonjava.maven.atlas.ident.version.VersionSpec;
 
 import java.io.Serializable;
-import java.lang.reflect.Constructor;
 import java.net.URI;
-import java.util.*;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
 
 import static org.commonjava.maven.atlas.graph.rel.RelationshipConstants.POM_ROOT_URI;
 
@@ -32,7 +36,24 @@ public abstract class AbstractSimpleProjectRelationship<R extends ProjectRelatio
 
     private static final long serialVersionUID = 1L;
 
-    private final List<URI> sources = new ArrayList<URI>();
+    private static final int MANAGED = 1;
+
+    private static final int INHERITED = 1 << 1;
+
+    private static final int MIXIN = 1 << 2;
+
+    /** Flag bit for {@link DependencyRelationship#isOptional()}; see {@link #hasFlag(int)}. */
+    protected static final int OPTIONAL = 1 << 3;
+
+    /** Flag bit for {@link PluginRelationship#isReporting()}; see {@link #hasFlag(int)}. */
+    protected static final int REPORTING = 1 << 4;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    // shared with every other relationship that has the same sources; see RelationshipInterner
+    private final Set<URI> sources;
 
     private final RelationshipType type;
 
@@ -42,18 +63,15 @@ public abstract class AbstractSimpleProjectRelationship<R extends ProjectRelatio
 
     private final int index;
 
-    private boolean managed = false;
-
-    private boolean inherited;
-
-    private boolean mixin;
+    private final int flags;
 
-    @SuppressWarnings( "rawtypes" )
-    private transient Constructor<? extends AbstractSimpleProjectRelationship> cloneCtor;
+    private final URI pomLocation;
 
-    private URI pomLocation;
+    // RelationshipComparator's leading criteria (type, then root POM location first), packed for a single int compare
+    private final int sortPrefix;
 
-    private final boolean cloneUsesLocation = true;
+    // lazily computed; 0 means not yet computed
+    private transient volatile long identityKey;
 
     protected AbstractSimpleProjectRelationship( final URI source, final RelationshipType type,
                                                  final ProjectVersionRef declaring, final T target, final int index,
@@ -108,21 +126,24 @@ public abstract class AbstractSimpleProjectRelationship<R extends ProjectRelatio
                                                  final RelationshipType type, final ProjectVersionRef declaring,
                                                  final T target, final int index, final boolean managed,
                                                  final boolean inherited, final boolean mixin )
+    {
+        this( sources, pomLocation, type, declaring, target, index, flags( managed, inherited, mixin ) );
+    }
+
+    /**
+     * @param flags {@link #flags(boolean, boolean, boolean)}, plus any subclass bits such as {@link #OPTIONAL}
+     */
+    protected AbstractSimpleProjectRelationship( final Collection<URI> sources, final URI pomLocation,
+                                                 final RelationshipType type, final ProjectVersionRef declaring,
+                                                 final T target, final int index, final int flags )
     {
         if ( sources == null )
         {
             throw new NullPointerException( "Source URIs cannot be null" );
         }
 
-        for ( URI u : sources )
-        {
-            if ( !this.sources.contains( u ) )
-            {
-                this.sources.add( u );
-            }
-        }
-
-        this.pomLocation = pomLocation;
+        this.sources = RelationshipInterner.internSources( sources );
+        this.pomLocation = RelationshipInterner.internLocation( pomLocation );
         if ( declaring == null || target == null )
         {
             throw new NullPointerException( "Neither declaring ref (" + declaring + ") nor target ref (" + target
@@ -133,42 +154,92 @@ public abstract class AbstractSimpleProjectRelationship<R extends ProjectRelatio
         this.declaring = declaring;
         this.target = target;
         this.index = index;
-        this.managed = managed;
-        this.inherited = inherited;
-        this.mixin = mixin;
+        this.flags = flags;
+        this.sortPrefix = sortPrefix( type, this.pomLocation );
     }
 
     public AbstractSimpleProjectRelationship( final ProjectRelationship<R, T> relationship )
     {
-        this.sources.addAll( relationship.getSources() );
+        this( relationship, 0 );
+    }
+
+    /**
+     * @param extraFlags subclass bits, such as {@link #OPTIONAL}, added to the copied ones
+     */
+    protected AbstractSimpleProjectRelationship( final ProjectRelationship<R, T> relationship, final int extraFlags )
+    {
+        this.sources = RelationshipInterner.internSources( relationship.getSources() );
         this.declaring = new SimpleProjectVersionRef( relationship.getDeclaring() );
-        this.pomLocation = relationship.getPomLocation();
+        this.pomLocation = RelationshipInterner.internLocation( relationship.getPomLocation() );
         this.index = relationship.getIndex();
-        this.managed = relationship.isManaged();
-        this.inherited = relationship.isInherited();
-        this.mixin = relationship.isMixin();
+        this.flags = flags( relationship.isManaged(), relationship.isInherited(), relationship.isMixin() ) | extraFlags;
         this.type = relationship.getType();
         this.target = cloneTarget( relationship.getTarget() );
+        this.sortPrefix = sortPrefix( type, pomLocation );
+    }
+
+    protected static int flags( final boolean managed, final boolean inherited, final boolean mixin )
+    {
+        return ( managed ? MANAGED : 0 ) | ( inherited ? INHERITED : 0 ) | ( mixin ? MIXIN : 0 );
+    }
+
+    protected final boolean hasFlag( final int flag )
+    {
+        return ( flags & flag ) != 0;
+    }
+
+    /**
+     * @return every flag bit, for building a copy through the flags constructor
+     */
+    protected final int getFlags()
+    {
+        return flags;
+    }
+
+    private static int sortPrefix( final RelationshipType type, final URI pomLocation )
+    {
+        return ( type.ordinal() << 1 ) | ( POM_ROOT_URI.equals( pomLocation ) ? 0 : 1 );
+    }
+
+    final int getSortPrefix()
+    {
+        return sortPrefix;
     }
 
     protected abstract T cloneTarget( T target );
 
+    /**
+     * @return this relationship's sources plus the given one, as a shared set suitable for building a copy
+     */
+    protected final Set<URI> sourcesWith( final URI source )
+    {
+        return RelationshipInterner.internSources( sources, Collections.singleton( source ) );
+    }
+
+    /**
+     * @return this relationship's sources plus the given ones, as a shared set suitable for building a copy
+     */
+    protected final Set<URI> sourcesWith( final Collection<URI> extra )
+    {
+        return RelationshipInterner.internSources( sources, extra );
+    }
+
     @Override
     public final boolean isManaged()
     {
-        return managed;
+        return ( flags & MANAGED ) != 0;
     }
 
     @Override
     public final boolean isInherited()
     {
-        return inherited;
+        return ( flags & INHERITED ) != 0;
     }
 
     @Override
     public final boolean isMixin()
     {
-        return mixin;
+        return ( flags & MIXIN ) != 0;
     }
 
     @Override
@@ -198,15 +269,110 @@ public abstract class AbstractSimpleProjectRelationship<R extends ProjectRelatio
     @Override
     public abstract ArtifactRef getTargetArtifact();
 
+    /**
+     * 64-bit hash of everything {@link #equals(Object)} compares, computed once per relationship. Versions are hashed
+     * in parsed form, as ref equality compares them, so "1" and "1.0.0" give the same key. Equal relationships always
+     * have equal keys; relationships with different keys are never equal. {@link #hashCode()} is derived from it.
+     */
+    public final long getIdentityKey()
+    {
+        long key = identityKey;
+        if ( key == 0 )
+        {
+            key = computeIdentityKey();
+            if ( key == 0 )
+            {
+                key = 1;
+            }
+
+            identityKey = key;
+        }
+
+        return key;
+    }
+
+    /**
+     * Subclasses that compare more fields in {@link #equals(Object)} mix them in here, on top of this result.
+     */
+    protected long computeIdentityKey()
+    {
+        long key = mixIdentity( FNV_OFFSET, type.ordinal() );
+        key = mixIdentity( key, declaring );
+        key = mixIdentity( key, target );
+        if ( target instanceof ArtifactRef )
+        {
+            final ArtifactRef artifact = (ArtifactRef) target;
+            key = mixIdentity( key, artifact.getType() );
+            key = mixIdentity( key, artifact.getClassifier() );
+        }
+
+        return key;
+    }
+
+    protected static long mixIdentity( final long key, final int value )
+    {
+        long h = key;
+        for ( int shift = 0; shift < 32; shift += 8 )
+        {
+            h ^= ( value >>> shift ) & 0xff;
+            h *= FNV_PRIME;
+        }
+
+        return h;
+    }
+
+    protected static long mixIdentity( final long key, final String value )
+    {
+        long h = key;
+        if ( value == null )
+        {
+            h ^= 0xff;
+            return h * FNV_PRIME;
+        }
+
+        for ( int i = 0; i < value.length(); i++ )
+        {
+            final char c = value.charAt( i );
+            h ^= c & 0xff;
+            h *= FNV_PRIME;
+            h ^= c >>> 8;
+            h *= FNV_PRIME;
+        }
+
+        // terminator, so "ab" + "c" and "a" + "bc" differ
+        h ^= 0xfe;
+        return h * FNV_PRIME;
+    }
+
+    protected static long mixIdentity( final long key, final ProjectRef ref )
+    {
+        long h = mixIdentity( key, ref.getGroupId() );
+        h = mixIdentity( h, ref.getArtifactId() );
+        if ( ref instanceof ProjectVersionRef )
+        {
+            final ProjectVersionRef pvr = (ProjectVersionRef) ref;
+            try
+            {
+                // same notion of version equality as SimpleProjectVersionRef.equals()
+                final VersionSpec spec = pvr.getVersionSpec();
+                h = mixIdentity( h, 1 );
+                h = mixIdentity( h, spec == null ? 0 : spec.hashCode() );
+            }
+            catch ( final InvalidVersionSpecificationException e )
+            {
+                h = mixIdentity( h, 2 );
+                h = mixIdentity( h, pvr.getVersionString() );
+            }
+        }
+
+        return h;
+    }
+
     @Override
-    public int hashCode()
+    public final int hashCode()
     {
-        final int prime = 31;
-        int result = 1;
-        result = prime * result + ( ( declaring == null ) ? 0 : declaring.hashCode() );
-        result = prime * result + ( ( target == null ) ? 0 : target.hashCode() );
-        result = prime * result + ( ( type == null ) ? 0 : type.hashCode() );
-        return result;
+        final long key = getIdentityKey();
+        return (int) ( key ^ ( key >>> 32 ) );
     }
 
     @Override
@@ -224,6 +390,11 @@ public abstract class AbstractSimpleProjectRelationship<R extends ProjectRelatio
         {
             return false;
         }
+        if ( obj instanceof AbstractSimpleProjectRelationship
+            && getIdentityKey() != ( (AbstractSimpleProjectRelationship<?, ?>) obj ).getIdentityKey() )
+        {
+            return false;
+        }
         final ProjectRelationship<?, ?> other = (ProjectRelationship<?, ?>) obj;
         if ( declaring == null )
         {
@@ -253,7 +424,7 @@ public abstract class AbstractSimpleProjectRelationship<R extends ProjectRelatio
     @Override
     public final Set<URI> getSources()
     {
-        return new HashSet<URI>( sources );
+        return sources;
     }
 
     @Override
@@ -48,6 +48,10 @@ public interface ProjectRelationship<R extends ProjectRelationship<R, T>, T exte
 
     boolean isManaged();
 
+    /**
+     * Unmodifiable, and possibly shared with other relationships; use {@link #addSource(URI)} or
+     * {@link #addSources(Collection)} to derive a relationship with more sources.
+     */
     Set<URI> getSources();
 
     R addSource( URI source );
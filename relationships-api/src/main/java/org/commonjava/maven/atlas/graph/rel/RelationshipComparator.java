@@ -32,6 +32,19 @@ public final class RelationshipComparator
     @Override
     public int compare( final ProjectRelationship<?, ?> one, final ProjectRelationship<?, ?> two )
     {
+        if ( one instanceof AbstractSimpleProjectRelationship && two instanceof AbstractSimpleProjectRelationship )
+        {
+            // same ordering as below, using the type/location prefix cached on each relationship
+            final int onePrefix = ( (AbstractSimpleProjectRelationship<?, ?>) one ).getSortPrefix();
+            final int twoPrefix = ( (AbstractSimpleProjectRelationship<?, ?>) two ).getSortPrefix();
+            if ( onePrefix != twoPrefix )
+            {
+                return onePrefix < twoPrefix ? -1 : 1;
+            }
+
+            return compareDeclaringAndIndex( one, two );
+        }
+
         if ( one.getType() == two.getType() )
         {
             if ( one.getPomLocation()
@@ -47,13 +60,7 @@ public final class RelationshipComparator
                 return 1;
             }
 
-            int res = one.getDeclaring().compareTo( two.getDeclaring() );
-            if ( res == 0 )
-            {
-                res = one.getIndex() - two.getIndex();
-            }
-
-            return res;
+            return compareDeclaringAndIndex( one, two );
         }
         else
         {
@@ -63,4 +70,16 @@ public final class RelationshipComparator
         }
     }
 
+    private int compareDeclaringAndIndex( final ProjectRelationship<?, ?> one, final ProjectRelationship<?, ?> two )
+    {
+        int res = one.getDeclaring() == two.getDeclaring() ? 0 : one.getDeclaring()
+                                                                    .compareTo( two.getDeclaring() );
+        if ( res == 0 )
+        {
+            res = one.getIndex() - two.getIndex();
+        }
+
+        return res;
+    }
+
 }
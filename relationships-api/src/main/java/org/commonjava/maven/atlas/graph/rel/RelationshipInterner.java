@@ -0,0 +1,225 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.graph.rel;
+
+import java.io.Serializable;
+import java.lang.ref.WeakReference;
+import java.net.URI;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import org.commonjava.maven.atlas.ident.ref.ProjectRef;
+
+/**
+ * Canonicalizes the source-URI sets, dependency exclude sets and POM locations held by relationships. Large graphs
+ * repeat the same handful of sources, excludes and locations across millions of edges, so each relationship refers to
+ * one shared, immutable instance instead of carrying its own copy. Entries are weakly held and disappear once no
+ * relationship refers to them.
+ * <br/>
+ * Sets are interned by their ordered contents, so a caller always gets back a set iterating in the order it passed in;
+ * sets with the same members in a different order are distinct instances, though still {@link Set#equals(Object)
+ * equal}. The tables are split into lock stripes by hash, so relationships built on many threads at once rarely wait
+ * on each other.
+ */
+public final class RelationshipInterner
+{
+
+    private static final int STRIPES = 64;
+
+    private static final Stripe<List<URI>, Set<URI>>[] SOURCE_SETS = stripes();
+
+    private static final Stripe<List<ProjectRef>, Set<ProjectRef>>[] EXCLUDE_SETS = stripes();
+
+    private static final Stripe<URI, URI>[] LOCATIONS = stripes();
+
+    private RelationshipInterner()
+    {
+    }
+
+    /**
+     * @return the shared, unmodifiable set holding the given sources in iteration order, without duplicates
+     */
+    public static Set<URI> internSources( final Collection<URI> sources )
+    {
+        return internSet( SOURCE_SETS, sources );
+    }
+
+    /**
+     * @return the shared set holding the given sources plus the extra ones
+     */
+    public static Set<URI> internSources( final Collection<URI> sources, final Collection<URI> extra )
+    {
+        if ( sources.containsAll( extra ) )
+        {
+            return internSources( sources );
+        }
+
+        final Set<URI> merged = new LinkedHashSet<URI>( sources );
+        merged.addAll( extra );
+
+        return internSources( merged );
+    }
+
+    /**
+     * @return the shared, unmodifiable set holding the given excludes in iteration order, without duplicates; the
+     *         empty set if there are none
+     */
+    public static Set<ProjectRef> internExcludes( final Collection<? extends ProjectRef> excludes )
+    {
+        if ( excludes.isEmpty() )
+        {
+            return Collections.emptySet();
+        }
+
+        return internSet( EXCLUDE_SETS, excludes );
+    }
+
+    /**
+     * @return the shared instance equal to the given POM location, or null if it is null
+     */
+    public static URI internLocation( final URI location )
+    {
+        if ( location == null )
+        {
+            return null;
+        }
+
+        final Stripe<URI, URI> stripe = stripeFor( LOCATIONS, location );
+        synchronized ( stripe )
+        {
+            final URI existing = stripe.get( location );
+            if ( existing != null )
+            {
+                return existing;
+            }
+
+            stripe.put( location, location );
+            return location;
+        }
+    }
+
+    private static <E> Set<E> internSet( final Stripe<List<E>, Set<E>>[] stripes,
+                                         final Collection<? extends E> members )
+    {
+        final List<E> ordered;
+        if ( members.size() == 1 )
+        {
+            ordered = Collections.<E> singletonList( members.iterator()
+                                                            .next() );
+        }
+        else
+        {
+            ordered = Collections.unmodifiableList( new ArrayList<E>( new LinkedHashSet<E>( members ) ) );
+        }
+
+        final Stripe<List<E>, Set<E>> stripe = stripeFor( stripes, ordered );
+        synchronized ( stripe )
+        {
+            final Set<E> existing = stripe.get( ordered );
+            if ( existing != null )
+            {
+                return existing;
+            }
+
+            // the set holds its key, so the entry lives exactly as long as some relationship uses the set
+            final Set<E> candidate = new InternedSet<E>( ordered );
+            stripe.put( ordered, candidate );
+            return candidate;
+        }
+    }
+
+    @SuppressWarnings( "unchecked" )
+    private static <K, V> Stripe<K, V>[] stripes()
+    {
+        final Stripe<K, V>[] stripes = new Stripe[STRIPES];
+        for ( int i = 0; i < STRIPES; i++ )
+        {
+            stripes[i] = new Stripe<K, V>();
+        }
+
+        return stripes;
+    }
+
+    private static <K, V> Stripe<K, V> stripeFor( final Stripe<K, V>[] stripes, final Object key )
+    {
+        int h = key.hashCode();
+        h ^= ( h >>> 16 );
+        return stripes[h & ( STRIPES - 1 )];
+    }
+
+    /**
+     * One weak table; callers synchronize on it.
+     */
+    private static final class Stripe<K, V>
+    {
+        private final Map<K, WeakReference<V>> entries = new WeakHashMap<K, WeakReference<V>>();
+
+        V get( final K key )
+        {
+            final WeakReference<V> ref = entries.get( key );
+            return ref == null ? null : ref.get();
+        }
+
+        void put( final K key, final V value )
+        {
+            entries.put( key, new WeakReference<V>( value ) );
+        }
+    }
+
+    /**
+     * Immutable set over an ordered, duplicate-free list. Source and exclude sets are small, so lookups scan the list.
+     */
+    private static final class InternedSet<E>
+        extends AbstractSet<E>
+        implements Serializable
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final List<E> members;
+
+        InternedSet( final List<E> members )
+        {
+            this.members = members;
+        }
+
+        @Override
+        public Iterator<E> iterator()
+        {
+            return members.iterator();
+        }
+
+        @Override
+        public int size()
+        {
+            return members.size();
+        }
+
+        @Override
+        public boolean contains( final Object o )
+        {
+            return members.contains( o );
+        }
+    }
+
+}
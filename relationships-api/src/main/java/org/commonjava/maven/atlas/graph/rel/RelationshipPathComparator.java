@@ -15,12 +15,15 @@
  */
 package org.commonjava.maven.atlas.graph.rel;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
 import java.util.Comparator;
 import java.util.List;
 
+/**
+ * Orders relationship paths so the "best" path sorts first: shorter paths win, then paths are compared by the
+ * relationship types of each step (root-most step first), then by {@link RelationshipComparator} for each step.
+ * <br/>
+ * This comparator is used on the hot path of graph mediation, so it must not allocate or log.
+ */
 public class RelationshipPathComparator
     implements Comparator<List<ProjectRelationship<?, ?>>>
 {
@@ -36,20 +39,20 @@ public class RelationshipPathComparator
     @Override
     public int compare( final List<ProjectRelationship<?, ?>> one, final List<ProjectRelationship<?, ?>> two )
     {
-        Logger logger = LoggerFactory.getLogger( getClass() );
-        logger.debug("Comparing:\nOne: {}\nTwo: {}", one, two);
+        final int oneLen = one.size();
+        final int twoLen = two.size();
 
-        final int commonLen = Math.min( one.size(), two.size() );
-
-        if ( one.size() > commonLen )
+        if ( oneLen > twoLen )
         {
             return 1;
         }
-        else if ( two.size() > commonLen )
+        else if ( twoLen > oneLen )
         {
             return -1;
         }
 
+        final int commonLen = oneLen;
+
         for ( int i = 0; i < commonLen; i++ )
         {
             final int result = compareRelTypes( one.get( i ), two.get( i ) );
@@ -71,12 +74,20 @@ public class RelationshipPathComparator
         return 0;
     }
 
-    private int compareRels( final ProjectRelationship<?, ?> one, final ProjectRelationship<?, ?> two )
+    /**
+     * Compare a single step of two paths of equal length, as {@link #compare(List, List)} does for the relationship
+     * at each position once the relationship types along both paths are equal.
+     */
+    public int compareRels( final ProjectRelationship<?, ?> one, final ProjectRelationship<?, ?> two )
     {
         return comp.compare( one, two );
     }
 
-    private int compareRelTypes( final ProjectRelationship<?, ?> one, final ProjectRelationship<?, ?> two )
+    /**
+     * Compare the relationship types of a single step of two paths of equal length, as {@link #compare(List, List)}
+     * does for each position before looking at anything else.
+     */
+    public int compareRelTypes( final ProjectRelationship<?, ?> one, final ProjectRelationship<?, ?> two )
     {
         return one.getType()
                   .ordinal() - two.getType()
@@ -112,8 +112,7 @@ public class SimpleBomRelationship
     @Override
     public BomRelationship addSource( final URI source )
     {
-        Set<URI> srcs = getSources();
-        srcs.add( source );
+        final Set<URI> srcs = sourcesWith( source );
         return new SimpleBomRelationship( srcs, getPomLocation(), getDeclaring(), getTarget(),
                                           getIndex(), isInherited(), isMixin() );
     }
@@ -121,8 +120,7 @@ public class SimpleBomRelationship
     @Override
     public BomRelationship addSources( final Collection<URI> sources )
     {
-        Set<URI> srcs = getSources();
-        srcs.addAll( sources );
+        final Set<URI> srcs = sourcesWith( sources );
         return new SimpleBomRelationship( srcs, getPomLocation(), getDeclaring(), getTarget(),
                                           getIndex(), isInherited(), isMixin() );
     }
@@ -25,9 +25,11 @@ import java.io.Serializable;
 import java.net.URI;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.Set;
 
+import static org.commonjava.maven.atlas.graph.rel.RelationshipConstants.POM_ROOT_URI;
+
 public final class SimpleDependencyRelationship
     extends AbstractSimpleProjectRelationship<DependencyRelationship, ArtifactRef>
     implements Serializable, DependencyRelationship
@@ -39,16 +41,13 @@ public final class SimpleDependencyRelationship
 
     private final Set<ProjectRef> excludes;
 
-    private boolean optional;
-
     public SimpleDependencyRelationship( final URI source, final ProjectVersionRef declaring, final ArtifactRef target,
                                          final DependencyScope scope, final int index, final boolean managed,
                                          final boolean inherited, final boolean optional, final ProjectRef... excludes )
     {
-        super( source, RelationshipType.DEPENDENCY, declaring, target, index, managed, inherited, false );
-        this.scope = scope == null ? DependencyScope.compile : scope;
-        this.optional = optional;
-        this.excludes = new HashSet<ProjectRef>( Arrays.asList( excludes ) );
+        this( Collections.singleton( source ), POM_ROOT_URI, declaring, target, scope, index,
+              dependencyFlags( managed, inherited, optional ),
+              RelationshipInterner.internExcludes( Arrays.asList( excludes ) ) );
     }
 
     public SimpleDependencyRelationship( final URI source, final URI pomLocation, final ProjectVersionRef declaring,
@@ -56,10 +55,9 @@ public final class SimpleDependencyRelationship
                                          final boolean managed, final boolean inherited, final boolean optional,
                                          final ProjectRef... excludes )
     {
-        super( source, pomLocation, RelationshipType.DEPENDENCY, declaring, target, index, managed, inherited, false );
-        this.scope = scope == null ? DependencyScope.compile : scope;
-        this.optional = optional;
-        this.excludes = new HashSet<ProjectRef>( Arrays.asList( excludes ) );
+        this( Collections.singleton( source ), pomLocation, declaring, target, scope, index,
+              dependencyFlags( managed, inherited, optional ),
+              RelationshipInterner.internExcludes( Arrays.asList( excludes ) ) );
     }
 
     public SimpleDependencyRelationship( final Collection<URI> sources, final ProjectVersionRef declaring,
@@ -67,10 +65,8 @@ public final class SimpleDependencyRelationship
                                          final boolean managed, final boolean inherited, final boolean optional,
                                          final ProjectRef... excludes )
     {
-        super( sources, RelationshipType.DEPENDENCY, declaring, target, index, managed, inherited, false );
-        this.scope = scope == null ? DependencyScope.compile : scope;
-        this.optional = optional;
-        this.excludes = new HashSet<ProjectRef>( Arrays.asList( excludes ) );
+        this( sources, POM_ROOT_URI, declaring, target, scope, index, dependencyFlags( managed, inherited, optional ),
+              RelationshipInterner.internExcludes( Arrays.asList( excludes ) ) );
     }
 
     public SimpleDependencyRelationship( final Collection<URI> sources, final URI pomLocation,
@@ -78,18 +74,31 @@ public final class SimpleDependencyRelationship
                                          final DependencyScope scope, final int index, final boolean managed,
                                          final boolean inherited, final boolean optional, final ProjectRef... excludes )
     {
-        super( sources, pomLocation, RelationshipType.DEPENDENCY, declaring, target, index, managed, inherited, false );
-        this.scope = scope == null ? DependencyScope.compile : scope;
-        this.optional = optional;
-        this.excludes = new HashSet<ProjectRef>( Arrays.asList( excludes ) );
+        this( sources, pomLocation, declaring, target, scope, index, dependencyFlags( managed, inherited, optional ),
+              RelationshipInterner.internExcludes( Arrays.asList( excludes ) ) );
     }
 
     public SimpleDependencyRelationship( final DependencyRelationship relationship )
     {
-        super( relationship );
+        super( relationship, relationship.isOptional() ? OPTIONAL : 0 );
         this.scope = relationship.getScope();
-        this.optional = relationship.isOptional();
-        this.excludes = new HashSet<ProjectRef>( relationship.getExcludes() );
+        this.excludes = RelationshipInterner.internExcludes( relationship.getExcludes() );
+    }
+
+    // excludes are already interned
+    private SimpleDependencyRelationship( final Collection<URI> sources, final URI pomLocation,
+                                          final ProjectVersionRef declaring, final ArtifactRef target,
+                                          final DependencyScope scope, final int index, final int flags,
+                                          final Set<ProjectRef> excludes )
+    {
+        super( sources, pomLocation, RelationshipType.DEPENDENCY, declaring, target, index, flags );
+        this.scope = scope == null ? DependencyScope.compile : scope;
+        this.excludes = excludes;
+    }
+
+    private static int dependencyFlags( final boolean managed, final boolean inherited, final boolean optional )
+    {
+        return flags( managed, inherited, false ) | ( optional ? OPTIONAL : 0 );
     }
 
     @Override
@@ -101,41 +110,36 @@ public final class SimpleDependencyRelationship
     @Override
     public boolean isOptional()
     {
-        return optional;
+        return hasFlag( OPTIONAL );
     }
 
     @Override
     public synchronized DependencyRelationship cloneFor( final ProjectVersionRef projectRef )
     {
         return new SimpleDependencyRelationship( getSources(), getPomLocation(), projectRef, getTarget(), scope, getIndex(),
-                                           isManaged(), isInherited(), optional );
+                                                 getFlags(), excludes );
     }
 
     @Override
     public DependencyRelationship addSource( final URI source )
     {
-        Set<URI> srcs = getSources();
-        srcs.add( source );
+        final Set<URI> srcs = sourcesWith( source );
         return new SimpleDependencyRelationship( srcs, getPomLocation(), getDeclaring(), getTarget(), scope, getIndex(),
-                                                 isManaged(), isInherited(), optional );
+                                                 getFlags(), excludes );
     }
 
     @Override
     public DependencyRelationship addSources( final Collection<URI> sources )
     {
-        Set<URI> srcs = getSources();
-        srcs.addAll( sources );
+        final Set<URI> srcs = sourcesWith( sources );
         return new SimpleDependencyRelationship( srcs, getPomLocation(), getDeclaring(), getTarget(), scope, getIndex(),
-                                                 isManaged(), isInherited(), optional );
+                                                 getFlags(), excludes );
     }
 
     @Override
-    public int hashCode()
+    protected long computeIdentityKey()
     {
-        final int prime = 31;
-        int result = super.hashCode();
-        result = prime * result + ( isManaged() ? 1231 : 1237 );
-        return result;
+        return mixIdentity( super.computeIdentityKey(), isManaged() ? 1 : 0 );
     }
 
     @Override
@@ -187,9 +191,8 @@ public final class SimpleDependencyRelationship
     {
         final ArtifactRef t = getTarget();
 
-        Set<ProjectRef> var = getExcludes();
-        return new SimpleDependencyRelationship( getSources(), getPomLocation(), ref, t, getScope(), getIndex(), isManaged(),
-                                                 isInherited(), optional, var.toArray( new ProjectRef[var.size()] ) );
+        return new SimpleDependencyRelationship( getSources(), getPomLocation(), ref, t, getScope(), getIndex(),
+                                                 getFlags(), excludes );
     }
 
     @Override
@@ -201,9 +204,8 @@ public final class SimpleDependencyRelationship
             (ArtifactRef) ( ( ref instanceof ArtifactRef ) ? ref : new SimpleArtifactRef( ref, t.getType(),
                                                                                     t.getClassifier() ) );
 
-        Set<ProjectRef> var = getExcludes();
-        return new SimpleDependencyRelationship( getSources(), getPomLocation(), d, t, getScope(), getIndex(), isManaged(),
-                                                 isInherited(), optional, var.toArray( new ProjectRef[var.size()] ) );
+        return new SimpleDependencyRelationship( getSources(), getPomLocation(), d, t, getScope(), getIndex(),
+                                                 getFlags(), excludes );
     }
 
     @Override
@@ -108,16 +108,14 @@ public final class SimpleExtensionRelationship
     @Override
     public ExtensionRelationship addSource( final URI source )
     {
-        Set<URI> srcs = getSources();
-        srcs.add( source );
+        final Set<URI> srcs = sourcesWith( source );
         return new SimpleExtensionRelationship( srcs, getPomLocation(), getDeclaring(), getTarget(), getIndex(), isInherited() );
     }
 
     @Override
     public ExtensionRelationship addSources( final Collection<URI> sources )
     {
-        Set<URI> srcs = getSources();
-        srcs.addAll( sources );
+        final Set<URI> srcs = sourcesWith( sources );
         return new SimpleExtensionRelationship( srcs, getPomLocation(), getDeclaring(), getTarget(), getIndex(), isInherited() );
     }
 }
@@ -116,16 +116,14 @@ public final class SimpleParentRelationship
     @Override
     public ParentRelationship addSource( final URI source )
     {
-        Set<URI> srcs = getSources();
-        srcs.add( source );
+        final Set<URI> srcs = sourcesWith( source );
         return new SimpleParentRelationship( srcs, getDeclaring(), getTarget() );
     }
 
     @Override
     public ParentRelationship addSources( final Collection<URI> sources )
     {
-        Set<URI> srcs = getSources();
-        srcs.addAll( sources );
+        final Set<URI> srcs = sourcesWith( sources );
         return new SimpleParentRelationship( srcs, getDeclaring(), getTarget() );
     }
 }
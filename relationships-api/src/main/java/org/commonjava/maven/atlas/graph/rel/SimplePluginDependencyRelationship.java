@@ -86,13 +86,16 @@ public final class SimplePluginDependencyRelationship
     }
 
     @Override
-    public int hashCode()
+    protected long computeIdentityKey()
     {
-        final int prime = 31;
-        int result = super.hashCode();
-        result = prime * result + ( isManaged() ? 1231 : 1237 );
-        result = prime * result + ( ( plugin == null ) ? 0 : plugin.hashCode() );
-        return result;
+        long key = mixIdentity( super.computeIdentityKey(), isManaged() ? 1 : 0 );
+        if ( plugin != null )
+        {
+            // equals() compares plugins as ProjectRefs, so leave out any version
+            key = mixIdentity( mixIdentity( key, plugin.getGroupId() ), plugin.getArtifactId() );
+        }
+
+        return key;
     }
 
     @Override
@@ -180,8 +183,7 @@ public final class SimplePluginDependencyRelationship
     @Override
     public PluginDependencyRelationship addSource( final URI source )
     {
-        Set<URI> srcs = getSources();
-        srcs.add( source );
+        final Set<URI> srcs = sourcesWith( source );
         return new SimplePluginDependencyRelationship( srcs, getPomLocation(), getDeclaring(), plugin, getTarget(),
                                                        getIndex(), isManaged(), isInherited() );
     }
@@ -189,8 +191,7 @@ public final class SimplePluginDependencyRelationship
     @Override
     public PluginDependencyRelationship addSources( final Collection<URI> sources )
     {
-        Set<URI> srcs = getSources();
-        srcs.addAll( sources );
+        final Set<URI> srcs = sourcesWith( sources );
         return new SimplePluginDependencyRelationship( srcs, getPomLocation(), getDeclaring(), plugin, getTarget(),
                                                        getIndex(), isManaged(), isInherited() );
     }
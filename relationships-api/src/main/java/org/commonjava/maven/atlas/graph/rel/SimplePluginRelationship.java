@@ -18,6 +18,7 @@ package org.commonjava.maven.atlas.graph.rel;
 import java.io.Serializable;
 import java.net.URI;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Set;
 
 import org.commonjava.maven.atlas.ident.ref.ArtifactRef;
@@ -25,6 +26,8 @@ import org.commonjava.maven.atlas.ident.ref.SimpleArtifactRef;
 import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
 import org.commonjava.maven.atlas.ident.ref.SimpleProjectVersionRef;
 
+import static org.commonjava.maven.atlas.graph.rel.RelationshipConstants.POM_ROOT_URI;
+
 public final class SimplePluginRelationship
     extends AbstractSimpleProjectRelationship<PluginRelationship, ProjectVersionRef>
     implements Serializable, PluginRelationship
@@ -32,8 +35,6 @@ public final class SimplePluginRelationship
 
     private static final long serialVersionUID = 1L;
 
-    private final boolean reporting;
-
     public SimplePluginRelationship( final URI source, final ProjectVersionRef declaring,
                                      final ProjectVersionRef target, final int index, final boolean managed,
                                      final boolean inherited )
@@ -45,8 +46,8 @@ public final class SimplePluginRelationship
                                      final ProjectVersionRef target, final int index, final boolean managed,
                                      final boolean reporting, final boolean inherited )
     {
-        super( source, RelationshipType.PLUGIN, declaring, target, index, managed, inherited, false );
-        this.reporting = reporting;
+        this( Collections.singleton( source ), POM_ROOT_URI, declaring, target, index,
+              pluginFlags( managed, reporting, inherited ) );
     }
 
     public SimplePluginRelationship( final URI source, final URI pomLocation, final ProjectVersionRef declaring,
@@ -60,37 +61,44 @@ public final class SimplePluginRelationship
                                      final ProjectVersionRef target, final int index, final boolean managed,
                                      final boolean reporting, final boolean inherited )
     {
-        super( source, pomLocation, RelationshipType.PLUGIN, declaring, target, index, managed, inherited, false );
-        this.reporting = reporting;
+        this( Collections.singleton( source ), pomLocation, declaring, target, index,
+              pluginFlags( managed, reporting, inherited ) );
     }
 
     public SimplePluginRelationship( final Collection<URI> sources, final URI pomLocation,
                                      final ProjectVersionRef declaring, final ProjectVersionRef target, final int index,
                                      final boolean managed, final boolean reporting, final boolean inherited )
     {
-        super( sources, pomLocation, RelationshipType.PLUGIN, declaring, target, index, managed, inherited, false );
-        this.reporting = reporting;
+        this( sources, pomLocation, declaring, target, index, pluginFlags( managed, reporting, inherited ) );
     }
 
     public SimplePluginRelationship( final PluginRelationship relationship )
     {
-        super( relationship );
-        this.reporting = relationship.isReporting();
+        super( relationship, relationship.isReporting() ? REPORTING : 0 );
+    }
+
+    private SimplePluginRelationship( final Collection<URI> sources, final URI pomLocation,
+                                      final ProjectVersionRef declaring, final ProjectVersionRef target,
+                                      final int index, final int flags )
+    {
+        super( sources, pomLocation, RelationshipType.PLUGIN, declaring, target, index, flags );
+    }
+
+    private static int pluginFlags( final boolean managed, final boolean reporting, final boolean inherited )
+    {
+        return flags( managed, inherited, false ) | ( reporting ? REPORTING : 0 );
     }
 
     @Override
     public final boolean isReporting()
     {
-        return reporting;
+        return hasFlag( REPORTING );
     }
 
     @Override
-    public int hashCode()
+    protected long computeIdentityKey()
     {
-        final int prime = 31;
-        int result = super.hashCode();
-        result = prime * result + ( isManaged() ? 1231 : 1237 );
-        return result;
+        return mixIdentity( super.computeIdentityKey(), isManaged() ? 1 : 0 );
     }
 
     @Override
@@ -136,7 +144,7 @@ public final class SimplePluginRelationship
     {
         final ProjectVersionRef t = getTarget();
 
-        return new SimplePluginRelationship( getSources(), getPomLocation(), ref, t, getIndex(), isManaged(), isReporting(), isInherited() );
+        return new SimplePluginRelationship( getSources(), getPomLocation(), ref, t, getIndex(), getFlags() );
     }
 
     @Override
@@ -144,31 +152,29 @@ public final class SimplePluginRelationship
     {
         final ProjectVersionRef d = getDeclaring();
 
-        return new SimplePluginRelationship( getSources(), getPomLocation(), d, ref, getIndex(), isManaged(), isReporting(), isInherited() );
+        return new SimplePluginRelationship( getSources(), getPomLocation(), d, ref, getIndex(), getFlags() );
     }
 
     @Override
     public synchronized PluginRelationship cloneFor( final ProjectVersionRef projectRef )
     {
         return new SimplePluginRelationship( getSources(), getPomLocation(), projectRef, getTarget(), getIndex(),
-                                             isManaged(), reporting, isInherited() );
+                                             getFlags() );
     }
 
     @Override
     public PluginRelationship addSource( final URI source )
     {
-        Set<URI> srcs = getSources();
-        srcs.add( source );
+        final Set<URI> srcs = sourcesWith( source );
         return new SimplePluginRelationship( srcs, getPomLocation(), getDeclaring(), getTarget(), getIndex(),
-                                             isManaged(), reporting, isInherited() );
+                                             getFlags() );
     }
 
     @Override
     public PluginRelationship addSources( final Collection<URI> sources )
     {
-        Set<URI> srcs = getSources();
-        srcs.addAll( sources );
+        final Set<URI> srcs = sourcesWith( sources );
         return new SimplePluginRelationship( srcs, getPomLocation(), getDeclaring(), getTarget(), getIndex(),
-                                             isManaged(), reporting, isInherited() );
+                                             getFlags() );
     }
 }
@@ -0,0 +1,57 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.graph.store;
+
+/**
+ * Stream layout shared by {@link BinaryRelationshipWriter} and {@link BinaryRelationshipReader}. A stream starts with
+ * a magic int and a varint format version, followed by tagged records and an end tag:
+ * <ul>
+ * <li><b>relationship</b>: type ordinal byte, flags byte ({@link MappedGraphFormat} flag bits), declaring ref, target
+ * ref (plus type and classifier strings for artifact targets), pom location, varint index, varint source count and
+ * source URIs, then a scope byte (ordinal + 1, 0 for none) and exclude list for dependencies, or the plugin
+ * groupId/artifactId for plugin dependencies.</li>
+ * <li><b>project</b>: source URI, project ref and a varint relationship count, followed by that many relationship
+ * bodies.</li>
+ * </ul>
+ * Strings, refs and URIs are dictionary-coded as they are first seen: a varint {@link #NULL_ENTRY} means null,
+ * {@link #NEW_ENTRY} means the value follows inline and takes the next id, and anything larger refers back to id
+ * (value - {@link #FIRST_ID}). Refs are written as groupId, artifactId and version strings; strings as a varint byte
+ * length and UTF-8 bytes.
+ */
+final class BinaryRelationshipFormat
+{
+
+    static final int STREAM_MAGIC = 0x41544231; // ATB1
+
+    static final int STREAM_VERSION = 1;
+
+    static final int END = 0;
+
+    static final int RELATIONSHIP = 1;
+
+    static final int PROJECT = 2;
+
+    static final int NULL_ENTRY = 0;
+
+    static final int NEW_ENTRY = 1;
+
+    static final int FIRST_ID = 2;
+
+    private BinaryRelationshipFormat()
+    {
+    }
+
+}
@@ -0,0 +1,467 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.graph.store;
+
+import static org.commonjava.maven.atlas.graph.store.BinaryRelationshipFormat.*;
+import static org.commonjava.maven.atlas.graph.store.MappedGraphFormat.*;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.commonjava.maven.atlas.graph.model.EProjectDirectRelationships;
+import org.commonjava.maven.atlas.graph.model.SimpleEProjectGraph;
+import org.commonjava.maven.atlas.graph.rel.ProjectRelationship;
+import org.commonjava.maven.atlas.graph.rel.RelationshipType;
+import org.commonjava.maven.atlas.graph.rel.SimpleBomRelationship;
+import org.commonjava.maven.atlas.graph.rel.SimpleDependencyRelationship;
+import org.commonjava.maven.atlas.graph.rel.SimpleExtensionRelationship;
+import org.commonjava.maven.atlas.graph.rel.SimpleParentRelationship;
+import org.commonjava.maven.atlas.graph.rel.SimplePluginDependencyRelationship;
+import org.commonjava.maven.atlas.graph.rel.SimplePluginRelationship;
+import org.commonjava.maven.atlas.ident.DependencyScope;
+import org.commonjava.maven.atlas.ident.ref.ArtifactRef;
+import org.commonjava.maven.atlas.ident.ref.ProjectRef;
+import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
+import org.commonjava.maven.atlas.ident.ref.SimpleArtifactRef;
+import org.commonjava.maven.atlas.ident.ref.SimpleProjectRef;
+import org.commonjava.maven.atlas.ident.ref.SimpleProjectVersionRef;
+
+/**
+ * Reads streams written by {@link BinaryRelationshipWriter}. Each dictionary entry is decoded once, so relationships
+ * that share a ref or URI share the same instance. See {@link BinaryRelationshipFormat} for the layout.
+ */
+public final class BinaryRelationshipReader
+    implements Closeable
+{
+
+    private static final RelationshipType[] TYPES = RelationshipType.values();
+
+    private static final DependencyScope[] SCOPES = DependencyScope.values();
+
+    private final InputStream in;
+
+    private final List<String> strings = new ArrayList<String>();
+
+    private final List<URI> uris = new ArrayList<URI>();
+
+    private final List<ProjectVersionRef> refs = new ArrayList<ProjectVersionRef>();
+
+    // relationships left in the project record being flattened by readRelationship()
+    private int pending;
+
+    private ProjectVersionRef pendingDeclaring;
+
+    private boolean done;
+
+    public BinaryRelationshipReader( final InputStream in )
+        throws IOException
+    {
+        // in-memory streams are read byte by byte just as cheaply without another 8K buffer in front of them
+        this.in = in instanceof BufferedInputStream || in instanceof ByteArrayInputStream ? in
+                        : new BufferedInputStream( in );
+
+        final int magic = readInt();
+        if ( magic != STREAM_MAGIC )
+        {
+            throw new IOException( "Not a binary relationship stream (magic: 0x" + Integer.toHexString( magic )
+                + ")" );
+        }
+
+        final int version = readVarInt();
+        if ( version != STREAM_VERSION )
+        {
+            throw new IOException( "Unsupported binary relationship format version: " + version );
+        }
+    }
+
+    /**
+     * Read every relationship in the stream, flattening project records, and close it.
+     */
+    public static List<ProjectRelationship<?, ?>> readAll( final InputStream in )
+        throws IOException
+    {
+        final BinaryRelationshipReader reader = new BinaryRelationshipReader( in );
+        try
+        {
+            final List<ProjectRelationship<?, ?>> result = new ArrayList<ProjectRelationship<?, ?>>();
+            ProjectRelationship<?, ?> rel;
+            while ( ( rel = reader.readRelationship() ) != null )
+            {
+                result.add( rel );
+            }
+
+            return result;
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+
+    /**
+     * Read a stream of project records, as written by {@link BinaryRelationshipWriter#write(
+     * org.commonjava.maven.atlas.graph.model.EProjectGraph, java.io.OutputStream)}, into a graph and close it.
+     */
+    public static SimpleEProjectGraph readGraph( final InputStream in )
+        throws IOException
+    {
+        final BinaryRelationshipReader reader = new BinaryRelationshipReader( in );
+        try
+        {
+            final SimpleEProjectGraph graph = new SimpleEProjectGraph();
+            EProjectDirectRelationships rels;
+            while ( ( rels = reader.readProject() ) != null )
+            {
+                graph.add( rels );
+            }
+
+            return graph;
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+
+    /**
+     * Read the next relationship. Project records are flattened into their relationships, in declaration order.
+     *
+     * @return the relationship, or null at the end of the stream
+     */
+    public ProjectRelationship<?, ?> readRelationship()
+        throws IOException
+    {
+        while ( pending == 0 )
+        {
+            final int tag = nextTag();
+            if ( tag == END )
+            {
+                return null;
+            }
+            else if ( tag == RELATIONSHIP )
+            {
+                return readBody();
+            }
+
+            readUri();
+            pendingDeclaring = readRef();
+            pending = readVarInt();
+        }
+
+        pending--;
+        return readBody();
+    }
+
+    /**
+     * Read the next project record.
+     *
+     * @return the project's direct relationships, or null at the end of the stream
+     * @throws IOException if the next record is a bare relationship or a project record is partly read
+     */
+    public EProjectDirectRelationships readProject()
+        throws IOException
+    {
+        if ( pending > 0 )
+        {
+            throw new IOException( "Cannot read a project while " + pending + " relationships of "
+                + pendingDeclaring + " remain unread." );
+        }
+
+        final int tag = nextTag();
+        if ( tag == END )
+        {
+            return null;
+        }
+        else if ( tag != PROJECT )
+        {
+            throw new IOException( "Expected a project record but found a bare relationship." );
+        }
+
+        final URI source = readUri();
+        final ProjectVersionRef ref = readRef();
+        final int count = readVarInt();
+
+        final List<ProjectRelationship<?, ?>> rels = new ArrayList<ProjectRelationship<?, ?>>( count );
+        for ( int i = 0; i < count; i++ )
+        {
+            rels.add( readBody() );
+        }
+
+        return new EProjectDirectRelationships.Builder( source, ref ).withRelationships( rels )
+                                                                     .build();
+    }
+
+    @Override
+    public void close()
+        throws IOException
+    {
+        in.close();
+    }
+
+    private int nextTag()
+        throws IOException
+    {
+        if ( done )
+        {
+            return END;
+        }
+
+        final int tag = readByte();
+        if ( tag == END )
+        {
+            done = true;
+        }
+        else if ( tag != RELATIONSHIP && tag != PROJECT )
+        {
+            throw new IOException( "Unknown record tag in binary relationship stream: " + tag );
+        }
+
+        return tag;
+    }
+
+    private ProjectRelationship<?, ?> readBody()
+        throws IOException
+    {
+        final int typeOrdinal = readByte();
+        if ( typeOrdinal >= TYPES.length )
+        {
+            throw new IOException( "Unknown relationship type in binary relationship stream: " + typeOrdinal );
+        }
+
+        final RelationshipType type = TYPES[typeOrdinal];
+        final int flags = readByte();
+        final boolean managed = ( flags & FLAG_MANAGED ) != 0;
+        final boolean inherited = ( flags & FLAG_INHERITED ) != 0;
+
+        final ProjectVersionRef declaring = readRef();
+        final ProjectVersionRef target = readRef();
+        final ArtifactRef artifact =
+            type == RelationshipType.DEPENDENCY || type == RelationshipType.PLUGIN_DEP ? readArtifact( target ) : null;
+
+        final URI pom = readUri();
+        final int index = readVarInt();
+
+        final int sourceCount = readVarInt();
+        final List<URI> sources = new ArrayList<URI>( sourceCount );
+        for ( int i = 0; i < sourceCount; i++ )
+        {
+            sources.add( readUri() );
+        }
+
+        switch ( type )
+        {
+            case PARENT:
+            {
+                return new SimpleParentRelationship( sources, declaring, target );
+            }
+            case BOM:
+            {
+                return new SimpleBomRelationship( sources, pom, declaring, target, index, inherited,
+                                                  ( flags & FLAG_MIXIN ) != 0 );
+            }
+            case DEPENDENCY:
+            {
+                final int scope = readByte();
+                if ( scope > SCOPES.length )
+                {
+                    throw new IOException( "Unknown dependency scope in binary relationship stream: " + scope );
+                }
+
+                final int excludeCount = readVarInt();
+                final ProjectRef[] excludes = new ProjectRef[excludeCount];
+                for ( int i = 0; i < excludeCount; i++ )
+                {
+                    excludes[i] = new SimpleProjectRef( readString(), readString() );
+                }
+
+                return new SimpleDependencyRelationship( sources, pom, declaring, artifact,
+                                                         scope == 0 ? null : SCOPES[scope - 1], index, managed,
+                                                         inherited, ( flags & FLAG_OPTIONAL ) != 0, excludes );
+            }
+            case PLUGIN:
+            {
+                return new SimplePluginRelationship( sources, pom, declaring, target, index, managed,
+                                                     ( flags & FLAG_REPORTING ) != 0, inherited );
+            }
+            case PLUGIN_DEP:
+            {
+                final ProjectRef plugin = new SimpleProjectRef( readString(), readString() );
+
+                return new SimplePluginDependencyRelationship( sources, pom, declaring, plugin, artifact, index,
+                                                               managed, inherited );
+            }
+            case EXTENSION:
+            default:
+            {
+                return new SimpleExtensionRelationship( sources, pom, declaring, target, index, inherited );
+            }
+        }
+    }
+
+    private ArtifactRef readArtifact( final ProjectVersionRef target )
+        throws IOException
+    {
+        final String type = readString();
+        final String classifier = readString();
+
+        return new SimpleArtifactRef( target, type, classifier );
+    }
+
+    private ProjectVersionRef readRef()
+        throws IOException
+    {
+        final int entry = readVarInt();
+        if ( entry == NULL_ENTRY )
+        {
+            return null;
+        }
+        else if ( entry != NEW_ENTRY )
+        {
+            return lookup( refs, entry, "ref" );
+        }
+
+        final ProjectVersionRef ref = new SimpleProjectVersionRef( readString(), readString(), readString() );
+        refs.add( ref );
+
+        return ref;
+    }
+
+    private URI readUri()
+        throws IOException
+    {
+        final int entry = readVarInt();
+        if ( entry == NULL_ENTRY )
+        {
+            return null;
+        }
+        else if ( entry != NEW_ENTRY )
+        {
+            return lookup( uris, entry, "URI" );
+        }
+
+        final String value = readUtf8();
+        try
+        {
+            final URI uri = new URI( value );
+            uris.add( uri );
+
+            return uri;
+        }
+        catch ( final URISyntaxException e )
+        {
+            throw new IOException( "Invalid URI in binary relationship stream: '" + value + "': " + e.getMessage() );
+        }
+    }
+
+    private String readString()
+        throws IOException
+    {
+        final int entry = readVarInt();
+        if ( entry == NULL_ENTRY )
+        {
+            return null;
+        }
+        else if ( entry != NEW_ENTRY )
+        {
+            return lookup( strings, entry, "string" );
+        }
+
+        final String value = readUtf8();
+        strings.add( value );
+
+        return value;
+    }
+
+    private static <T> T lookup( final List<T> dictionary, final int entry, final String kind )
+        throws IOException
+    {
+        final int id = entry - FIRST_ID;
+        if ( id < 0 || id >= dictionary.size() )
+        {
+            throw new IOException( "Undefined " + kind + " id in binary relationship stream: " + id );
+        }
+
+        return dictionary.get( id );
+    }
+
+    private String readUtf8()
+        throws IOException
+    {
+        final int length = readVarInt();
+        if ( length < 0 )
+        {
+            throw new IOException( "Invalid string length in binary relationship stream: " + length );
+        }
+
+        final byte[] bytes = new byte[length];
+        int off = 0;
+        while ( off < length )
+        {
+            final int read = in.read( bytes, off, length - off );
+            if ( read < 0 )
+            {
+                throw new EOFException( "Binary relationship stream ended inside a string." );
+            }
+            off += read;
+        }
+
+        return new String( bytes, UTF8 );
+    }
+
+    private int readVarInt()
+        throws IOException
+    {
+        int value = 0;
+        for ( int shift = 0; shift < 35; shift += 7 )
+        {
+            final int b = readByte();
+            value |= ( b & 0x7f ) << shift;
+            if ( ( b & 0x80 ) == 0 )
+            {
+                return value;
+            }
+        }
+
+        throw new IOException( "Malformed varint in binary relationship stream." );
+    }
+
+    private int readInt()
+        throws IOException
+    {
+        return readByte() << 24 | readByte() << 16 | readByte() << 8 | readByte();
+    }
+
+    private int readByte()
+        throws IOException
+    {
+        final int b = in.read();
+        if ( b < 0 )
+        {
+            throw new EOFException( "Binary relationship stream ended unexpectedly." );
+        }
+
+        return b;
+    }
+
+}
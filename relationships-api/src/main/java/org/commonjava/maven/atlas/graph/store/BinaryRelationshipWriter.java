@@ -0,0 +1,366 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.graph.store;
+
+import static org.commonjava.maven.atlas.graph.store.BinaryRelationshipFormat.*;
+import static org.commonjava.maven.atlas.graph.store.MappedGraphFormat.*;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.commonjava.maven.atlas.graph.model.EProjectDirectRelationships;
+import org.commonjava.maven.atlas.graph.model.EProjectGraph;
+import org.commonjava.maven.atlas.graph.rel.DependencyRelationship;
+import org.commonjava.maven.atlas.graph.rel.PluginDependencyRelationship;
+import org.commonjava.maven.atlas.graph.rel.PluginRelationship;
+import org.commonjava.maven.atlas.graph.rel.ProjectRelationship;
+import org.commonjava.maven.atlas.graph.rel.RelationshipType;
+import org.commonjava.maven.atlas.ident.ref.ArtifactRef;
+import org.commonjava.maven.atlas.ident.ref.ProjectRef;
+import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
+
+/**
+ * Streams relationships, and the direct relationships of whole projects, in the compact binary form read by
+ * {@link BinaryRelationshipReader}. See {@link BinaryRelationshipFormat} for the layout. Dictionaries grow for the life
+ * of the writer, so one writer should be used per stream.
+ */
+public final class BinaryRelationshipWriter
+    implements Closeable, Flushable
+{
+
+    private final OutputStream out;
+
+    private final Map<String, Integer> strings = new HashMap<String, Integer>();
+
+    private final Map<URI, Integer> uris = new HashMap<URI, Integer>();
+
+    private final Map<ProjectVersionRef, Integer> refs = new HashMap<ProjectVersionRef, Integer>();
+
+    // refs by id, to tell apart refs that are equal but spell their versions differently
+    private final List<ProjectVersionRef> refList = new ArrayList<ProjectVersionRef>();
+
+    private long count;
+
+    private boolean closed;
+
+    public BinaryRelationshipWriter( final OutputStream out )
+        throws IOException
+    {
+        this.out = out instanceof BufferedOutputStream ? out : new BufferedOutputStream( out );
+
+        writeInt( STREAM_MAGIC );
+        writeVarInt( STREAM_VERSION );
+    }
+
+    /**
+     * Write every project in the graph to the stream and close it.
+     *
+     * @return the number of relationships written
+     */
+    public static long write( final EProjectGraph graph, final OutputStream out )
+        throws IOException
+    {
+        final BinaryRelationshipWriter writer = new BinaryRelationshipWriter( out );
+        try
+        {
+            for ( final ProjectVersionRef ref : graph.getProjects() )
+            {
+                final EProjectDirectRelationships rels = graph.getDirectRelationships( ref );
+                if ( rels != null )
+                {
+                    writer.write( rels );
+                }
+            }
+        }
+        finally
+        {
+            writer.close();
+        }
+
+        return writer.getCount();
+    }
+
+    public void write( final ProjectRelationship<?, ?> rel )
+        throws IOException
+    {
+        checkOpen();
+
+        out.write( RELATIONSHIP );
+        writeBody( rel );
+    }
+
+    public void write( final EProjectDirectRelationships rels )
+        throws IOException
+    {
+        checkOpen();
+
+        out.write( PROJECT );
+        writeUri( rels.getSource() );
+        writeRef( rels.getProjectRef() );
+        writeVarInt( rels.getRelationshipCount() );
+
+        final Iterator<ProjectRelationship<?, ?>> it = rels.relationshipIterator();
+        while ( it.hasNext() )
+        {
+            writeBody( it.next() );
+        }
+    }
+
+    public void writeAll( final Collection<? extends ProjectRelationship<?, ?>> rels )
+        throws IOException
+    {
+        for ( final ProjectRelationship<?, ?> rel : rels )
+        {
+            write( rel );
+        }
+    }
+
+    /**
+     * @return the number of relationships written so far, including those inside project records
+     */
+    public long getCount()
+    {
+        return count;
+    }
+
+    @Override
+    public void flush()
+        throws IOException
+    {
+        out.flush();
+    }
+
+    /**
+     * Write the end tag and close the underlying stream.
+     */
+    @Override
+    public void close()
+        throws IOException
+    {
+        if ( closed )
+        {
+            return;
+        }
+
+        closed = true;
+        try
+        {
+            out.write( END );
+            out.flush();
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    private void checkOpen()
+        throws IOException
+    {
+        if ( closed )
+        {
+            throw new IOException( "Relationship writer is closed." );
+        }
+    }
+
+    private void writeBody( final ProjectRelationship<?, ?> rel )
+        throws IOException
+    {
+        int flags = 0;
+        if ( rel.isManaged() )
+        {
+            flags |= FLAG_MANAGED;
+        }
+        if ( rel.isInherited() )
+        {
+            flags |= FLAG_INHERITED;
+        }
+        if ( rel.isMixin() )
+        {
+            flags |= FLAG_MIXIN;
+        }
+        if ( rel instanceof DependencyRelationship && ( (DependencyRelationship) rel ).isOptional() )
+        {
+            flags |= FLAG_OPTIONAL;
+        }
+        if ( rel instanceof PluginRelationship && ( (PluginRelationship) rel ).isReporting() )
+        {
+            flags |= FLAG_REPORTING;
+        }
+
+        out.write( rel.getType()
+                      .ordinal() );
+        out.write( flags );
+        writeRef( rel.getDeclaring() );
+
+        writeRef( rel.getTarget() );
+        if ( rel.getType() == RelationshipType.DEPENDENCY || rel.getType() == RelationshipType.PLUGIN_DEP )
+        {
+            final ArtifactRef artifact = rel.getTargetArtifact();
+            writeString( artifact.getType() );
+            writeString( artifact.getClassifier() );
+        }
+
+        writeUri( rel.getPomLocation() );
+        writeVarInt( rel.getIndex() );
+
+        final Set<URI> sources = rel.getSources();
+        writeVarInt( sources.size() );
+        for ( final URI source : sources )
+        {
+            writeUri( source );
+        }
+
+        if ( rel instanceof DependencyRelationship )
+        {
+            final DependencyRelationship dep = (DependencyRelationship) rel;
+            out.write( dep.getScope() == null ? 0 : dep.getScope()
+                                                       .ordinal() + 1 );
+
+            final Set<ProjectRef> excludes = dep.getExcludes();
+            writeVarInt( excludes == null ? 0 : excludes.size() );
+            if ( excludes != null )
+            {
+                for ( final ProjectRef exclude : excludes )
+                {
+                    writeString( exclude.getGroupId() );
+                    writeString( exclude.getArtifactId() );
+                }
+            }
+        }
+        else if ( rel instanceof PluginDependencyRelationship )
+        {
+            final ProjectRef plugin = ( (PluginDependencyRelationship) rel ).getPlugin();
+            writeString( plugin.getGroupId() );
+            writeString( plugin.getArtifactId() );
+        }
+
+        count++;
+    }
+
+    private void writeRef( final ProjectVersionRef ref )
+        throws IOException
+    {
+        if ( ref == null )
+        {
+            writeVarInt( NULL_ENTRY );
+            return;
+        }
+
+        final Integer id = refs.get( ref );
+        if ( id != null && refList.get( id )
+                                  .getVersionString()
+                                  .equals( ref.getVersionString() ) )
+        {
+            writeVarInt( id + FIRST_ID );
+            return;
+        }
+
+        refs.put( ref, refList.size() );
+        refList.add( ref );
+
+        writeVarInt( NEW_ENTRY );
+        writeString( ref.getGroupId() );
+        writeString( ref.getArtifactId() );
+        writeString( ref.getVersionString() );
+    }
+
+    private void writeUri( final URI uri )
+        throws IOException
+    {
+        if ( uri == null )
+        {
+            writeVarInt( NULL_ENTRY );
+            return;
+        }
+
+        final Integer id = uris.get( uri );
+        if ( id != null )
+        {
+            writeVarInt( id + FIRST_ID );
+            return;
+        }
+
+        uris.put( uri, uris.size() );
+
+        writeVarInt( NEW_ENTRY );
+        writeUtf8( uri.toString() );
+    }
+
+    private void writeString( final String value )
+        throws IOException
+    {
+        if ( value == null )
+        {
+            writeVarInt( NULL_ENTRY );
+            return;
+        }
+
+        final Integer id = strings.get( value );
+        if ( id != null )
+        {
+            writeVarInt( id + FIRST_ID );
+            return;
+        }
+
+        strings.put( value, strings.size() );
+
+        writeVarInt( NEW_ENTRY );
+        writeUtf8( value );
+    }
+
+    private void writeUtf8( final String value )
+        throws IOException
+    {
+        final byte[] bytes = value.getBytes( UTF8 );
+        writeVarInt( bytes.length );
+        out.write( bytes );
+    }
+
+    // unsigned LEB128; negative values take the full five bytes
+    private void writeVarInt( int value )
+        throws IOException
+    {
+        while ( ( value & ~0x7f ) != 0 )
+        {
+            out.write( ( value & 0x7f ) | 0x80 );
+            value >>>= 7;
+        }
+
+        out.write( value );
+    }
+
+    private void writeInt( final int value )
+        throws IOException
+    {
+        out.write( value >>> 24 );
+        out.write( value >>> 16 );
+        out.write( value >>> 8 );
+        out.write( value );
+    }
+
+}
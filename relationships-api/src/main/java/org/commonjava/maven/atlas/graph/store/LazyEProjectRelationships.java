@@ -0,0 +1,459 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.graph.store;
+
+import static org.commonjava.maven.atlas.graph.util.RelationshipUtils.filterTerminalParents;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.commonjava.maven.atlas.graph.model.EProjectDirectRelationships;
+import org.commonjava.maven.atlas.graph.model.EProjectRelationshipCollection;
+import org.commonjava.maven.atlas.graph.model.PluginKey;
+import org.commonjava.maven.atlas.graph.rel.BomRelationship;
+import org.commonjava.maven.atlas.graph.rel.DependencyRelationship;
+import org.commonjava.maven.atlas.graph.rel.ExtensionRelationship;
+import org.commonjava.maven.atlas.graph.rel.ParentRelationship;
+import org.commonjava.maven.atlas.graph.rel.PluginDependencyRelationship;
+import org.commonjava.maven.atlas.graph.rel.PluginRelationship;
+import org.commonjava.maven.atlas.graph.rel.ProjectRelationship;
+import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
+
+/**
+ * Direct relationships of one project, kept in serialized form and decoded one category at a time. The project ref,
+ * source and parent are decoded up front; BOMs, dependencies, plugins and so on are each decoded from their own
+ * segment the first time they are asked for, so projects that are only located or walked up their parent chain never
+ * pay for the rest.
+ * <p>
+ * The serialized form, from {@link #toByteArray()}, is a big-endian int length for the head and for each category,
+ * followed by the segments themselves. The head is a {@link BinaryRelationshipWriter} stream holding one project
+ * record with at most the parent relationship; each non-empty category is a stream of bare relationship records, and
+ * an empty category has no bytes at all.
+ * </p>
+ * <p>
+ * Decoded categories are cached. Concurrent first calls may each decode the same segment, but both produce equal,
+ * unmodifiable lists, so the race is harmless.
+ * </p>
+ */
+public final class LazyEProjectRelationships
+    implements EProjectRelationshipCollection
+{
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int BOMS = 0;
+
+    private static final int DEPENDENCIES = 1;
+
+    private static final int MANAGED_DEPENDENCIES = 2;
+
+    private static final int PLUGINS = 3;
+
+    private static final int MANAGED_PLUGINS = 4;
+
+    private static final int PLUGIN_DEPENDENCIES = 5;
+
+    private static final int EXTENSIONS = 6;
+
+    private static final int CATEGORIES = 7;
+
+    private static final int HEADER_LENGTH = 4 * ( CATEGORIES + 1 );
+
+    private final byte[] data;
+
+    // start of each category segment in data, plus the end of the last one
+    private final int[] offsets;
+
+    private final URI source;
+
+    private final ProjectVersionRef projectRef;
+
+    private final ParentRelationship parent;
+
+    private transient volatile AtomicReferenceArray<List<?>> decoded;
+
+    private transient volatile Map<PluginKey, List<PluginDependencyRelationship>> pluginDependencies;
+
+    private transient volatile Set<ProjectRelationship<?, ?>> exactAllRelationships;
+
+    private LazyEProjectRelationships( final byte[] data, final int[] offsets,
+                                       final EProjectDirectRelationships head )
+    {
+        this.data = data;
+        this.offsets = offsets;
+        this.source = head.getSource();
+        this.projectRef = head.getProjectRef();
+        this.parent = head.getParent();
+    }
+
+    /**
+     * Serialize a project's relationships and wrap the result. Mostly useful to produce the bytes stored by
+     * {@link #toByteArray()}; loading should go through {@link #fromBytes(byte[])}.
+     */
+    public static LazyEProjectRelationships encode( final EProjectDirectRelationships rels )
+        throws IOException
+    {
+        final List<List<? extends ProjectRelationship<?, ?>>> categories =
+            new ArrayList<List<? extends ProjectRelationship<?, ?>>>( CATEGORIES );
+
+        categories.add( rels.getBoms() );
+        categories.add( rels.getDependencies() );
+        categories.add( rels.getManagedDependencies() );
+        categories.add( rels.getPlugins() );
+        categories.add( rels.getManagedPlugins() );
+
+        final List<PluginDependencyRelationship> pluginDeps = new ArrayList<PluginDependencyRelationship>();
+        for ( final List<PluginDependencyRelationship> pdrs : rels.getPluginDependencies()
+                                                                  .values() )
+        {
+            pluginDeps.addAll( pdrs );
+        }
+        categories.add( pluginDeps );
+        categories.add( rels.getExtensions() );
+
+        final byte[][] segments = new byte[CATEGORIES + 1][];
+
+        final EProjectDirectRelationships.Builder head =
+            new EProjectDirectRelationships.Builder( rels.getSource(), rels.getProjectRef() );
+        if ( rels.getParent() != null )
+        {
+            head.withParent( rels.getParent() );
+        }
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        BinaryRelationshipWriter writer = new BinaryRelationshipWriter( baos );
+        writer.write( head.build() );
+        writer.close();
+        segments[0] = baos.toByteArray();
+
+        for ( int i = 0; i < CATEGORIES; i++ )
+        {
+            final List<? extends ProjectRelationship<?, ?>> category = categories.get( i );
+            if ( category.isEmpty() )
+            {
+                segments[i + 1] = new byte[0];
+                continue;
+            }
+
+            baos = new ByteArrayOutputStream();
+            writer = new BinaryRelationshipWriter( baos );
+            writer.writeAll( category );
+            writer.close();
+            segments[i + 1] = baos.toByteArray();
+        }
+
+        baos = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream( baos );
+        for ( final byte[] segment : segments )
+        {
+            out.writeInt( segment.length );
+        }
+
+        for ( final byte[] segment : segments )
+        {
+            out.write( segment );
+        }
+        out.close();
+
+        return fromBytes( baos.toByteArray() );
+    }
+
+    /**
+     * Wrap bytes produced by {@link #toByteArray()}, decoding only the project ref, source and parent. The array is
+     * retained, not copied, and must not be modified afterward.
+     */
+    public static LazyEProjectRelationships fromBytes( final byte[] data )
+        throws IOException
+    {
+        if ( data.length < HEADER_LENGTH )
+        {
+            throw new IOException( "Truncated lazy relationship data: " + data.length + " bytes." );
+        }
+
+        final int headLength = readInt( data, 0 );
+        final int[] offsets = new int[CATEGORIES + 1];
+
+        int offset = HEADER_LENGTH + headLength;
+        for ( int i = 0; i < CATEGORIES; i++ )
+        {
+            offsets[i] = offset;
+            offset += readInt( data, 4 * ( i + 1 ) );
+        }
+        offsets[CATEGORIES] = offset;
+
+        if ( headLength <= 0 || offset != data.length )
+        {
+            throw new IOException( "Corrupt lazy relationship data: segment lengths do not add up to " + data.length
+                + " bytes." );
+        }
+
+        final BinaryRelationshipReader reader =
+            new BinaryRelationshipReader( new ByteArrayInputStream( data, HEADER_LENGTH, headLength ) );
+        final EProjectDirectRelationships head;
+        try
+        {
+            head = reader.readProject();
+        }
+        finally
+        {
+            reader.close();
+        }
+
+        if ( head == null )
+        {
+            throw new IOException( "Lazy relationship data has no project record." );
+        }
+
+        return new LazyEProjectRelationships( data, offsets, head );
+    }
+
+    /**
+     * The serialized form, suitable for {@link #fromBytes(byte[])}. The backing array is returned as-is and must not
+     * be modified.
+     */
+    public byte[] toByteArray()
+    {
+        return data;
+    }
+
+    public URI getSource()
+    {
+        return source;
+    }
+
+    public ProjectVersionRef getProjectRef()
+    {
+        return projectRef;
+    }
+
+    public ParentRelationship getParent()
+    {
+        return parent;
+    }
+
+    public List<BomRelationship> getBoms()
+    {
+        return category( BOMS );
+    }
+
+    public List<DependencyRelationship> getDependencies()
+    {
+        return category( DEPENDENCIES );
+    }
+
+    public List<DependencyRelationship> getManagedDependencies()
+    {
+        return category( MANAGED_DEPENDENCIES );
+    }
+
+    public List<PluginRelationship> getPlugins()
+    {
+        return category( PLUGINS );
+    }
+
+    public List<PluginRelationship> getManagedPlugins()
+    {
+        return category( MANAGED_PLUGINS );
+    }
+
+    public List<ExtensionRelationship> getExtensions()
+    {
+        return category( EXTENSIONS );
+    }
+
+    /**
+     * Plugin-level dependencies keyed by their plugin. Decoding these also decodes both plugin lists, which the keys
+     * come from.
+     */
+    public Map<PluginKey, List<PluginDependencyRelationship>> getPluginDependencies()
+    {
+        Map<PluginKey, List<PluginDependencyRelationship>> result = pluginDependencies;
+        if ( result == null )
+        {
+            final List<PluginDependencyRelationship> pdrs = category( PLUGIN_DEPENDENCIES );
+            if ( pdrs.isEmpty() )
+            {
+                result = Collections.emptyMap();
+            }
+            else
+            {
+                result = new EProjectDirectRelationships.Builder( source, projectRef ).withPlugins( getPlugins() )
+                                                                                      .withPlugins( getManagedPlugins() )
+                                                                                      .withPluginDependencies( pdrs )
+                                                                                      .build()
+                                                                                      .getPluginDependencies();
+            }
+
+            pluginDependencies = result;
+        }
+
+        return result;
+    }
+
+    public List<PluginDependencyRelationship> getPluginDependencies( final ProjectVersionRef plugin,
+                                                                     final boolean managed )
+    {
+        return getPluginDependencies().get( new PluginKey( plugin, managed ) );
+    }
+
+    /**
+     * Every relationship except a terminal (self-referencing) parent. Decodes every category.
+     */
+    @Override
+    public Set<ProjectRelationship<?, ?>> getAllRelationships()
+    {
+        final Set<ProjectRelationship<?, ?>> rels =
+            new LinkedHashSet<ProjectRelationship<?, ?>>( getExactAllRelationships() );
+        filterTerminalParents( rels );
+
+        return Collections.unmodifiableSet( rels );
+    }
+
+    /**
+     * Every relationship, including a terminal parent, in the same order as
+     * {@link EProjectDirectRelationships#getExactAllRelationships()}. Decodes every category.
+     */
+    @Override
+    public Set<ProjectRelationship<?, ?>> getExactAllRelationships()
+    {
+        Set<ProjectRelationship<?, ?>> result = exactAllRelationships;
+        if ( result == null )
+        {
+            final Set<ProjectRelationship<?, ?>> rels = new LinkedHashSet<ProjectRelationship<?, ?>>();
+            if ( parent != null )
+            {
+                rels.add( parent );
+            }
+
+            rels.addAll( getBoms() );
+            rels.addAll( getDependencies() );
+            rels.addAll( getManagedDependencies() );
+            rels.addAll( getPlugins() );
+            rels.addAll( getManagedPlugins() );
+            for ( final List<PluginDependencyRelationship> pdrs : getPluginDependencies().values() )
+            {
+                rels.addAll( pdrs );
+            }
+            rels.addAll( getExtensions() );
+
+            result = Collections.unmodifiableSet( rels );
+            exactAllRelationships = result;
+        }
+
+        return result;
+    }
+
+    /**
+     * Decode everything into a regular {@link EProjectDirectRelationships}, e.g. to add it to a graph.
+     */
+    public EProjectDirectRelationships toDirectRelationships()
+    {
+        return new EProjectDirectRelationships.Builder( source, projectRef ).withRelationships( getExactAllRelationships() )
+                                                                            .build();
+    }
+
+    /**
+     * @return how many categories have been decoded so far
+     */
+    int getDecodedCount()
+    {
+        final AtomicReferenceArray<List<?>> cache = decoded;
+        int count = 0;
+        for ( int i = 0; cache != null && i < CATEGORIES; i++ )
+        {
+            if ( cache.get( i ) != null )
+            {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    @SuppressWarnings( "unchecked" )
+    private <T extends ProjectRelationship<?, ?>> List<T> category( final int category )
+    {
+        AtomicReferenceArray<List<?>> cache = decoded;
+        if ( cache == null )
+        {
+            cache = new AtomicReferenceArray<List<?>>( CATEGORIES );
+            decoded = cache;
+        }
+
+        List<?> result = cache.get( category );
+        if ( result == null )
+        {
+            result = decode( category );
+            cache.set( category, result );
+        }
+
+        return (List<T>) result;
+    }
+
+    private List<ProjectRelationship<?, ?>> decode( final int category )
+    {
+        final int start = offsets[category];
+        final int length = offsets[category + 1] - start;
+        if ( length == 0 )
+        {
+            return Collections.emptyList();
+        }
+
+        final List<ProjectRelationship<?, ?>> rels = new ArrayList<ProjectRelationship<?, ?>>();
+        try
+        {
+            final BinaryRelationshipReader reader =
+                new BinaryRelationshipReader( new ByteArrayInputStream( data, start, length ) );
+            try
+            {
+                ProjectRelationship<?, ?> rel;
+                while ( ( rel = reader.readRelationship() ) != null )
+                {
+                    rels.add( rel );
+                }
+            }
+            finally
+            {
+                reader.close();
+            }
+        }
+        catch ( final IOException e )
+        {
+            throw new IllegalStateException( "Failed to decode relationships of " + projectRef + ": "
+                + e.getMessage(), e );
+        }
+
+        return Collections.unmodifiableList( rels );
+    }
+
+    private static int readInt( final byte[] data, final int offset )
+    {
+        return ( ( data[offset] & 0xff ) << 24 ) | ( ( data[offset + 1] & 0xff ) << 16 )
+            | ( ( data[offset + 2] & 0xff ) << 8 ) | ( data[offset + 3] & 0xff );
+    }
+
+}
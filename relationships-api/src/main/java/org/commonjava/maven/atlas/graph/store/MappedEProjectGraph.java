@@ -0,0 +1,547 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.graph.store;
+
+import static org.commonjava.maven.atlas.graph.store.MappedGraphFormat.*;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.AbstractList;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.commonjava.maven.atlas.graph.filter.EdgeBits;
+import org.commonjava.maven.atlas.graph.filter.EdgeFilter;
+import org.commonjava.maven.atlas.graph.model.EProjectDirectRelationships;
+import org.commonjava.maven.atlas.graph.model.EProjectGraph;
+import org.commonjava.maven.atlas.graph.rel.ProjectRelationship;
+import org.commonjava.maven.atlas.graph.rel.RelationshipType;
+import org.commonjava.maven.atlas.graph.rel.SimpleBomRelationship;
+import org.commonjava.maven.atlas.graph.rel.SimpleDependencyRelationship;
+import org.commonjava.maven.atlas.graph.rel.SimpleExtensionRelationship;
+import org.commonjava.maven.atlas.graph.rel.SimpleParentRelationship;
+import org.commonjava.maven.atlas.graph.rel.SimplePluginDependencyRelationship;
+import org.commonjava.maven.atlas.graph.rel.SimplePluginRelationship;
+import org.commonjava.maven.atlas.ident.DependencyScope;
+import org.commonjava.maven.atlas.ident.ref.ArtifactRef;
+import org.commonjava.maven.atlas.ident.ref.ProjectRef;
+import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
+import org.commonjava.maven.atlas.ident.ref.SimpleArtifactRef;
+import org.commonjava.maven.atlas.ident.ref.SimpleProjectRef;
+import org.commonjava.maven.atlas.ident.ref.SimpleProjectVersionRef;
+
+/**
+ * Read-only {@link EProjectGraph} over files written by {@link MappedEProjectGraphWriter}, accessed through
+ * memory-mapped buffers so the graph lives in the OS page cache rather than the Java heap. Project lookups are
+ * binary searches over the symbol table and the sorted node records; {@link ProjectRelationship} objects are only
+ * created when a caller asks for them, one record at a time.
+ * <br/>
+ * Each file is mapped in 1GB segments and addressed with <code>long</code> offsets, so file size is bounded only by
+ * the address space; the record counts and pool offsets in the format are ints, which the writer checks. Instances
+ * are safe for concurrent readers. {@link #close()} releases the file handles; the mappings themselves go away when
+ * the buffers are garbage collected.
+ */
+public class MappedEProjectGraph
+    implements EProjectGraph, Closeable
+{
+
+    private final List<MappedFile> files = new ArrayList<MappedFile>();
+
+    private final MappedFile strings;
+
+    private final MappedFile nodes;
+
+    private final MappedFile edges;
+
+    private final MappedFile pool;
+
+    private final int stringCount;
+
+    private final long stringData;
+
+    private final int nodeCount;
+
+    public MappedEProjectGraph( final File dir )
+        throws IOException
+    {
+        this( dir, MappedFile.DEFAULT_SEGMENT_BITS );
+    }
+
+    /**
+     * @param segmentBits log2 of the mapping segment size; small values let tests cross segment boundaries cheaply
+     */
+    MappedEProjectGraph( final File dir, final int segmentBits )
+        throws IOException
+    {
+        boolean ok = false;
+        try
+        {
+            strings = map( new File( dir, STRINGS ), STRINGS_MAGIC, segmentBits );
+            nodes = map( new File( dir, NODES ), NODES_MAGIC, segmentBits );
+            edges = map( new File( dir, EDGES ), EDGES_MAGIC, segmentBits );
+            pool = map( new File( dir, POOL ), POOL_MAGIC, segmentBits );
+            ok = true;
+        }
+        finally
+        {
+            if ( !ok )
+            {
+                close();
+            }
+        }
+
+        stringCount = strings.getInt( 8 );
+        stringData = HEADER_BYTES + ( stringCount + 1L ) * 4;
+        nodeCount = nodes.getInt( 8 );
+    }
+
+    private MappedFile map( final File file, final int magic, final int segmentBits )
+        throws IOException
+    {
+        final MappedFile mapped = new MappedFile( file, magic, segmentBits );
+        files.add( mapped );
+
+        return mapped;
+    }
+
+    @Override
+    public void close()
+        throws IOException
+    {
+        IOException error = null;
+        for ( final MappedFile file : files )
+        {
+            try
+            {
+                file.close();
+            }
+            catch ( final IOException e )
+            {
+                error = e;
+            }
+        }
+        files.clear();
+
+        if ( error != null )
+        {
+            throw error;
+        }
+    }
+
+    @Override
+    public EProjectDirectRelationships getDirectRelationships( final ProjectVersionRef ref )
+    {
+        final int node = findNode( ref );
+        if ( node < 0 )
+        {
+            return null;
+        }
+
+        final String source = string( nodeInt( node, NODE_SOURCE ) );
+        final EProjectDirectRelationships.Builder builder =
+            new EProjectDirectRelationships.Builder( source == null ? null : URI.create( source ), nodeRef( node ) );
+
+        return builder.withRelationships( new RelationshipList( node ) )
+                      .build();
+    }
+
+    /**
+     * Relationships declared by the given project, in declaration order, decoded from disk as each element is read.
+     * Unlike {@link #getDirectRelationships(ProjectVersionRef)}, nothing is built up front.
+     */
+    public List<ProjectRelationship<?, ?>> getRelationships( final ProjectVersionRef ref )
+    {
+        final int node = findNode( ref );
+        if ( node < 0 )
+        {
+            return Collections.emptyList();
+        }
+
+        return new RelationshipList( node );
+    }
+
+    /**
+     * Relationships declared by the given project that pass the filter. The filter is evaluated against each edge's
+     * packed attributes on disk, so only the matching relationships are decoded.
+     */
+    public List<ProjectRelationship<?, ?>> getRelationships( final ProjectVersionRef ref, final EdgeFilter filter )
+    {
+        final int node = findNode( ref );
+        if ( node < 0 )
+        {
+            return Collections.emptyList();
+        }
+
+        final ProjectVersionRef declaring = nodeRef( node );
+        final int first = nodeInt( node, NODE_FIRST_EDGE );
+        final int count = nodeInt( node, NODE_EDGE_COUNT );
+
+        final List<ProjectRelationship<?, ?>> result = new ArrayList<ProjectRelationship<?, ?>>();
+        for ( int edge = first; edge < first + count; edge++ )
+        {
+            if ( filter.accept( edgeBits( edge ) ) )
+            {
+                result.add( decode( declaring, edge ) );
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * @return the number of relationships declared by the given project, without decoding any of them
+     */
+    public int getRelationshipCount( final ProjectVersionRef ref )
+    {
+        final int node = findNode( ref );
+        return node < 0 ? 0 : nodeInt( node, NODE_EDGE_COUNT );
+    }
+
+    @Override
+    public boolean containsProject( final ProjectVersionRef ref )
+    {
+        return findNode( ref ) > -1;
+    }
+
+    @Override
+    public Set<ProjectVersionRef> getProjects()
+    {
+        return new AbstractSet<ProjectVersionRef>()
+        {
+            @Override
+            public boolean contains( final Object o )
+            {
+                return o instanceof ProjectVersionRef && containsProject( (ProjectVersionRef) o );
+            }
+
+            @Override
+            public Iterator<ProjectVersionRef> iterator()
+            {
+                return new Iterator<ProjectVersionRef>()
+                {
+                    private int next;
+
+                    @Override
+                    public boolean hasNext()
+                    {
+                        return next < nodeCount;
+                    }
+
+                    @Override
+                    public ProjectVersionRef next()
+                    {
+                        if ( next >= nodeCount )
+                        {
+                            throw new NoSuchElementException();
+                        }
+
+                        return nodeRef( next++ );
+                    }
+
+                    @Override
+                    public void remove()
+                    {
+                        throw new UnsupportedOperationException( "Mapped graphs are read-only." );
+                    }
+                };
+            }
+
+            @Override
+            public int size()
+            {
+                return nodeCount;
+            }
+        };
+    }
+
+    @Override
+    public int size()
+    {
+        return nodeCount;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format( "MappedEProjectGraph [%s projects, %s symbols]", nodeCount, stringCount );
+    }
+
+    private int findNode( final ProjectVersionRef ref )
+    {
+        final int g = symbol( ref.getGroupId() );
+        final int a = g < 0 ? NONE : symbol( ref.getArtifactId() );
+        final int v = a < 0 ? NONE : symbol( ref.getVersionString() );
+        if ( v < 0 )
+        {
+            return NONE;
+        }
+
+        int lo = 0;
+        int hi = nodeCount - 1;
+        while ( lo <= hi )
+        {
+            final int mid = ( lo + hi ) >>> 1;
+            int comp = nodeInt( mid, NODE_GROUP ) - g;
+            if ( comp == 0 )
+            {
+                comp = nodeInt( mid, NODE_ARTIFACT ) - a;
+            }
+            if ( comp == 0 )
+            {
+                comp = nodeInt( mid, NODE_VERSION ) - v;
+            }
+
+            if ( comp < 0 )
+            {
+                lo = mid + 1;
+            }
+            else if ( comp > 0 )
+            {
+                hi = mid - 1;
+            }
+            else
+            {
+                return mid;
+            }
+        }
+
+        return NONE;
+    }
+
+    private int nodeInt( final int node, final int field )
+    {
+        return nodes.getInt( HEADER_BYTES + ( (long) node * NODE_INTS + field ) * 4 );
+    }
+
+    private int edgeInt( final int edge, final int field )
+    {
+        return edges.getInt( HEADER_BYTES + ( (long) edge * EDGE_INTS + field ) * 4 );
+    }
+
+    private int poolInt( final int idx )
+    {
+        return pool.getInt( HEADER_BYTES + (long) idx * 4 );
+    }
+
+    private int edgeBits( final int edge )
+    {
+        final int header = edgeInt( edge, EDGE_HEADER );
+        final int flags = ( header >>> 8 ) & 0xff;
+
+        return EdgeBits.pack( header & 0xff, ( ( header >>> 16 ) & 0xff ) - 1, ( flags & FLAG_MANAGED ) != 0,
+                              ( flags & FLAG_INHERITED ) != 0, ( flags & FLAG_MIXIN ) != 0,
+                              ( flags & FLAG_OPTIONAL ) != 0 );
+    }
+
+    private ProjectVersionRef nodeRef( final int node )
+    {
+        return new SimpleProjectVersionRef( string( nodeInt( node, NODE_GROUP ) ),
+                                            string( nodeInt( node, NODE_ARTIFACT ) ),
+                                            string( nodeInt( node, NODE_VERSION ) ) );
+    }
+
+    private ProjectRelationship<?, ?> decode( final ProjectVersionRef declaring, final int edge )
+    {
+        final int header = edgeInt( edge, EDGE_HEADER );
+        final RelationshipType type = RelationshipType.values()[header & 0xff];
+        final int flags = ( header >>> 8 ) & 0xff;
+        final int scope = ( header >>> 16 ) & 0xff;
+
+        final int index = edgeInt( edge, EDGE_INDEX );
+        final boolean managed = ( flags & FLAG_MANAGED ) != 0;
+        final boolean inherited = ( flags & FLAG_INHERITED ) != 0;
+
+        final ProjectVersionRef target =
+            new SimpleProjectVersionRef( string( edgeInt( edge, EDGE_TARGET_GROUP ) ),
+                                         string( edgeInt( edge, EDGE_TARGET_ARTIFACT ) ),
+                                         string( edgeInt( edge, EDGE_TARGET_VERSION ) ) );
+
+        final String pomLocation = string( edgeInt( edge, EDGE_POM_LOCATION ) );
+        final URI pom = pomLocation == null ? null : URI.create( pomLocation );
+
+        final int poolOffset = edgeInt( edge, EDGE_POOL_OFFSET );
+        final int sourceCount = edgeInt( edge, EDGE_SOURCE_COUNT );
+        final List<URI> sources = new ArrayList<URI>( sourceCount );
+        for ( int i = 0; i < sourceCount; i++ )
+        {
+            sources.add( URI.create( string( poolInt( poolOffset + i ) ) ) );
+        }
+
+        switch ( type )
+        {
+            case PARENT:
+            {
+                return new SimpleParentRelationship( sources, declaring, target );
+            }
+            case BOM:
+            {
+                return new SimpleBomRelationship( sources, pom, declaring, target, index, inherited,
+                                                  ( flags & FLAG_MIXIN ) != 0 );
+            }
+            case DEPENDENCY:
+            {
+                final int excludeCount = edgeInt( edge, EDGE_EXCLUDE_COUNT );
+                final ProjectRef[] excludes = new ProjectRef[excludeCount];
+                for ( int i = 0; i < excludeCount; i++ )
+                {
+                    final int off = poolOffset + sourceCount + i * 2;
+                    excludes[i] = new SimpleProjectRef( string( poolInt( off ) ), string( poolInt( off + 1 ) ) );
+                }
+
+                return new SimpleDependencyRelationship( sources, pom, declaring, artifact( target, edge ),
+                                                         scope == 0 ? null : DependencyScope.values()[scope - 1],
+                                                         index, managed, inherited, ( flags & FLAG_OPTIONAL ) != 0,
+                                                         excludes );
+            }
+            case PLUGIN:
+            {
+                return new SimplePluginRelationship( sources, pom, declaring, target, index, managed,
+                                                     ( flags & FLAG_REPORTING ) != 0, inherited );
+            }
+            case PLUGIN_DEP:
+            {
+                final ProjectRef plugin = new SimpleProjectRef( string( edgeInt( edge, EDGE_PLUGIN_GROUP ) ),
+                                                                string( edgeInt( edge, EDGE_PLUGIN_ARTIFACT ) ) );
+
+                return new SimplePluginDependencyRelationship( sources, pom, declaring, plugin,
+                                                               artifact( target, edge ), index, managed, inherited );
+            }
+            case EXTENSION:
+            {
+                return new SimpleExtensionRelationship( sources, pom, declaring, target, index, inherited );
+            }
+            default:
+            {
+                throw new IllegalStateException( "Unknown relationship type in mapped graph: " + type );
+            }
+        }
+    }
+
+    private ArtifactRef artifact( final ProjectVersionRef target, final int edge )
+    {
+        return new SimpleArtifactRef( target, string( edgeInt( edge, EDGE_TARGET_TYPE ) ),
+                                      string( edgeInt( edge, EDGE_TARGET_CLASSIFIER ) ) );
+    }
+
+    private String string( final int sym )
+    {
+        if ( sym < 0 )
+        {
+            return null;
+        }
+
+        final int start = strings.getInt( HEADER_BYTES + (long) sym * 4 );
+        final int end = strings.getInt( HEADER_BYTES + ( sym + 1L ) * 4 );
+        final byte[] bytes = new byte[end - start];
+        for ( int i = 0; i < bytes.length; i++ )
+        {
+            bytes[i] = strings.get( stringData + start + i );
+        }
+
+        return new String( bytes, UTF8 );
+    }
+
+    private int symbol( final String value )
+    {
+        if ( value == null )
+        {
+            return NONE;
+        }
+
+        final byte[] bytes = value.getBytes( UTF8 );
+        int lo = 0;
+        int hi = stringCount - 1;
+        while ( lo <= hi )
+        {
+            final int mid = ( lo + hi ) >>> 1;
+            final int comp = compareSymbol( mid, bytes );
+            if ( comp < 0 )
+            {
+                lo = mid + 1;
+            }
+            else if ( comp > 0 )
+            {
+                hi = mid - 1;
+            }
+            else
+            {
+                return mid;
+            }
+        }
+
+        return NONE;
+    }
+
+    private int compareSymbol( final int sym, final byte[] bytes )
+    {
+        final int start = strings.getInt( HEADER_BYTES + (long) sym * 4 );
+        final int len = strings.getInt( HEADER_BYTES + ( sym + 1L ) * 4 ) - start;
+        final int min = Math.min( len, bytes.length );
+        for ( int i = 0; i < min; i++ )
+        {
+            final int a = strings.get( stringData + start + i ) & 0xff;
+            final int b = bytes[i] & 0xff;
+            if ( a != b )
+            {
+                return a - b;
+            }
+        }
+
+        return len - bytes.length;
+    }
+
+    private final class RelationshipList
+        extends AbstractList<ProjectRelationship<?, ?>>
+    {
+        private final int firstEdge;
+
+        private final int count;
+
+        private final ProjectVersionRef declaring;
+
+        RelationshipList( final int node )
+        {
+            this.firstEdge = nodeInt( node, NODE_FIRST_EDGE );
+            this.count = nodeInt( node, NODE_EDGE_COUNT );
+            this.declaring = nodeRef( node );
+        }
+
+        @Override
+        public ProjectRelationship<?, ?> get( final int idx )
+        {
+            if ( idx < 0 || idx >= count )
+            {
+                throw new IndexOutOfBoundsException( "Index: " + idx + ", size: " + count );
+            }
+
+            return decode( declaring, firstEdge + idx );
+        }
+
+        @Override
+        public int size()
+        {
+            return count;
+        }
+    }
+
+}
@@ -0,0 +1,443 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.graph.store;
+
+import static org.commonjava.maven.atlas.graph.store.MappedGraphFormat.*;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.commonjava.maven.atlas.graph.model.EProjectDirectRelationships;
+import org.commonjava.maven.atlas.graph.model.EProjectGraph;
+import org.commonjava.maven.atlas.graph.rel.DependencyRelationship;
+import org.commonjava.maven.atlas.graph.rel.PluginDependencyRelationship;
+import org.commonjava.maven.atlas.graph.rel.PluginRelationship;
+import org.commonjava.maven.atlas.graph.rel.ProjectRelationship;
+import org.commonjava.maven.atlas.ident.ref.ArtifactRef;
+import org.commonjava.maven.atlas.ident.ref.ProjectRef;
+import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
+
+/**
+ * Writes an {@link EProjectGraph} into the fixed-layout files read by {@link MappedEProjectGraph}. See
+ * {@link MappedGraphFormat} for the layout.
+ * <br/>
+ * The graph is read twice: once to collect the symbol table and project refs, and once, project by project, to
+ * stream the edges out. Only the symbols and refs are held in the heap, so a graph that is itself disk-backed can be
+ * written without loading it. The graph must not change while it is written; the writer fails if it notices. Counts
+ * and offsets that would overflow the format's int fields are rejected with an {@link IOException}.
+ */
+public final class MappedEProjectGraphWriter
+{
+
+    private final Set<String> strings = new HashSet<String>();
+
+    private Map<String, Integer> symbols;
+
+    private MappedEProjectGraphWriter()
+    {
+    }
+
+    /**
+     * Write the given graph into the given directory (created if necessary), replacing any graph files already there.
+     */
+    public static void write( final EProjectGraph graph, final File dir )
+        throws IOException
+    {
+        if ( !dir.isDirectory() && !dir.mkdirs() )
+        {
+            throw new IOException( "Cannot create graph directory: " + dir );
+        }
+
+        new MappedEProjectGraphWriter().doWrite( graph, dir );
+    }
+
+    private void doWrite( final EProjectGraph graph, final File dir )
+        throws IOException
+    {
+        // first pass: symbols and project refs only, so relationships never have to be held for the whole graph
+        final List<ProjectVersionRef> projects = new ArrayList<ProjectVersionRef>( graph.size() );
+        long edgeCount = 0;
+        for ( final ProjectVersionRef ref : graph.getProjects() )
+        {
+            final EProjectDirectRelationships rels = graph.getDirectRelationships( ref );
+            final List<ProjectRelationship<?, ?>> ordered = ordered( rels );
+
+            projects.add( rels.getProjectRef() );
+            collectStrings( rels, ordered );
+            edgeCount += ordered.size();
+        }
+
+        if ( edgeCount > Integer.MAX_VALUE )
+        {
+            throw new IOException( "Too many relationships for the mapped graph format: " + edgeCount );
+        }
+
+        final String[] sorted = writeStrings( new File( dir, STRINGS ) );
+        symbols = new HashMap<String, Integer>( sorted.length * 2 );
+        for ( int i = 0; i < sorted.length; i++ )
+        {
+            symbols.put( sorted[i], i );
+        }
+
+        Collections.sort( projects, new Comparator<ProjectVersionRef>()
+        {
+            @Override
+            public int compare( final ProjectVersionRef a, final ProjectVersionRef b )
+            {
+                int comp = sym( a.getGroupId() ) - sym( b.getGroupId() );
+                if ( comp == 0 )
+                {
+                    comp = sym( a.getArtifactId() ) - sym( b.getArtifactId() );
+                }
+                if ( comp == 0 )
+                {
+                    comp = sym( a.getVersionString() ) - sym( b.getVersionString() );
+                }
+
+                return comp;
+            }
+        } );
+
+        writeGraph( graph, dir, projects, (int) edgeCount );
+    }
+
+    /**
+     * Second pass: fetch each project again, in node order, and stream its edges and pool entries straight to disk.
+     */
+    private void writeGraph( final EProjectGraph graph, final File dir, final List<ProjectVersionRef> projects,
+                             final int edgeCount )
+        throws IOException
+    {
+        final File poolFile = new File( dir, POOL );
+
+        final DataOutputStream nodes = open( new File( dir, NODES ), NODES_MAGIC, projects.size() );
+        final DataOutputStream edges = open( new File( dir, EDGES ), EDGES_MAGIC, edgeCount );
+        // the pool size isn't known until the end; the header count is patched once it is
+        final DataOutputStream pool = open( poolFile, POOL_MAGIC, 0 );
+        final long[] poolSize = new long[1];
+        try
+        {
+            int edge = 0;
+            for ( final ProjectVersionRef ref : projects )
+            {
+                final EProjectDirectRelationships project = graph.getDirectRelationships( ref );
+                final List<ProjectRelationship<?, ?>> rels = project == null ? null : ordered( project );
+                if ( rels == null || (long) edge + rels.size() > edgeCount )
+                {
+                    throw new IOException( "Graph changed while it was being written (at project: " + ref + ")." );
+                }
+
+                nodes.writeInt( sym( ref.getGroupId() ) );
+                nodes.writeInt( sym( ref.getArtifactId() ) );
+                nodes.writeInt( sym( ref.getVersionString() ) );
+                nodes.writeInt( sym( project.getSource() ) );
+                nodes.writeInt( edge );
+                nodes.writeInt( rels.size() );
+
+                for ( final ProjectRelationship<?, ?> rel : rels )
+                {
+                    writeEdge( rel, edges, pool, poolSize );
+                }
+                edge += rels.size();
+            }
+
+            if ( edge != edgeCount )
+            {
+                throw new IOException( "Graph changed while it was being written: expected " + edgeCount
+                    + " relationships, found " + edge + "." );
+            }
+        }
+        finally
+        {
+            nodes.close();
+            edges.close();
+            pool.close();
+        }
+
+        final RandomAccessFile raf = new RandomAccessFile( poolFile, "rw" );
+        try
+        {
+            raf.seek( 8 );
+            raf.writeInt( (int) poolSize[0] );
+        }
+        finally
+        {
+            raf.close();
+        }
+    }
+
+    private void writeEdge( final ProjectRelationship<?, ?> rel, final DataOutputStream out,
+                            final DataOutputStream pool, final long[] poolSize )
+        throws IOException
+    {
+        int flags = 0;
+        int scope = 0;
+        if ( rel.isManaged() )
+        {
+            flags |= FLAG_MANAGED;
+        }
+        if ( rel.isInherited() )
+        {
+            flags |= FLAG_INHERITED;
+        }
+        if ( rel.isMixin() )
+        {
+            flags |= FLAG_MIXIN;
+        }
+
+        Set<ProjectRef> excludes = Collections.emptySet();
+        ProjectRef plugin = null;
+        if ( rel instanceof DependencyRelationship )
+        {
+            final DependencyRelationship dep = (DependencyRelationship) rel;
+            if ( dep.isOptional() )
+            {
+                flags |= FLAG_OPTIONAL;
+            }
+            if ( dep.getScope() != null )
+            {
+                scope = dep.getScope()
+                           .ordinal() + 1;
+            }
+            if ( dep.getExcludes() != null )
+            {
+                excludes = dep.getExcludes();
+            }
+        }
+        else if ( rel instanceof PluginRelationship )
+        {
+            if ( ( (PluginRelationship) rel ).isReporting() )
+            {
+                flags |= FLAG_REPORTING;
+            }
+        }
+        else if ( rel instanceof PluginDependencyRelationship )
+        {
+            plugin = ( (PluginDependencyRelationship) rel ).getPlugin();
+        }
+
+        final ProjectVersionRef target = rel.getTarget();
+        final ArtifactRef artifact = target instanceof ArtifactRef ? (ArtifactRef) target : null;
+        final Set<URI> sources = rel.getSources();
+
+        final long poolOffset = poolSize[0];
+        poolSize[0] += sources.size() + 2L * excludes.size();
+        if ( poolSize[0] > Integer.MAX_VALUE )
+        {
+            throw new IOException( "Too many sources and excludes for the mapped graph format (pool size: "
+                + poolSize[0] + ")." );
+        }
+
+        out.writeInt( rel.getType()
+                         .ordinal() | flags << 8 | scope << 16 );
+        out.writeInt( rel.getIndex() );
+        out.writeInt( sym( target.getGroupId() ) );
+        out.writeInt( sym( target.getArtifactId() ) );
+        out.writeInt( sym( target.getVersionString() ) );
+        out.writeInt( artifact == null ? NONE : sym( artifact.getType() ) );
+        out.writeInt( artifact == null ? NONE : sym( artifact.getClassifier() ) );
+        out.writeInt( plugin == null ? NONE : sym( plugin.getGroupId() ) );
+        out.writeInt( plugin == null ? NONE : sym( plugin.getArtifactId() ) );
+        out.writeInt( sym( rel.getPomLocation() ) );
+        out.writeInt( (int) poolOffset );
+        out.writeInt( sources.size() );
+        out.writeInt( excludes.size() );
+
+        for ( final URI source : sources )
+        {
+            pool.writeInt( sym( source ) );
+        }
+
+        for ( final ProjectRef ex : excludes )
+        {
+            pool.writeInt( sym( ex.getGroupId() ) );
+            pool.writeInt( sym( ex.getArtifactId() ) );
+        }
+    }
+
+    private void collectStrings( final EProjectDirectRelationships rels, final List<ProjectRelationship<?, ?>> ordered )
+    {
+        addRef( rels.getProjectRef() );
+        add( rels.getSource() );
+
+        for ( final ProjectRelationship<?, ?> rel : ordered )
+        {
+            final ProjectVersionRef target = rel.getTarget();
+            addRef( target );
+            if ( target instanceof ArtifactRef )
+            {
+                add( ( (ArtifactRef) target ).getType() );
+                add( ( (ArtifactRef) target ).getClassifier() );
+            }
+
+            add( rel.getPomLocation() );
+            for ( final URI source : rel.getSources() )
+            {
+                add( source );
+            }
+
+            if ( rel instanceof DependencyRelationship && ( (DependencyRelationship) rel ).getExcludes() != null )
+            {
+                for ( final ProjectRef ex : ( (DependencyRelationship) rel ).getExcludes() )
+                {
+                    add( ex.getGroupId() );
+                    add( ex.getArtifactId() );
+                }
+            }
+            else if ( rel instanceof PluginDependencyRelationship )
+            {
+                final ProjectRef plugin = ( (PluginDependencyRelationship) rel ).getPlugin();
+                add( plugin.getGroupId() );
+                add( plugin.getArtifactId() );
+            }
+        }
+    }
+
+    private void addRef( final ProjectVersionRef ref )
+    {
+        add( ref.getGroupId() );
+        add( ref.getArtifactId() );
+        add( ref.getVersionString() );
+    }
+
+    private void add( final Object value )
+    {
+        if ( value != null )
+        {
+            strings.add( value.toString() );
+        }
+    }
+
+    private int sym( final Object value )
+    {
+        if ( value == null )
+        {
+            return NONE;
+        }
+
+        final Integer sym = symbols.get( value.toString() );
+        if ( sym == null )
+        {
+            throw new IllegalStateException( "Graph changed while it was being written; no symbol for: " + value );
+        }
+
+        return sym;
+    }
+
+    private String[] writeStrings( final File file )
+        throws IOException
+    {
+        final byte[][] encoded = new byte[strings.size()][];
+        int i = 0;
+        for ( final String s : strings )
+        {
+            encoded[i++] = s.getBytes( UTF8 );
+        }
+
+        Arrays.sort( encoded, new Comparator<byte[]>()
+        {
+            @Override
+            public int compare( final byte[] first, final byte[] second )
+            {
+                return compareBytes( first, second );
+            }
+        } );
+
+        final String[] sorted = new String[encoded.length];
+        final DataOutputStream out = open( file, STRINGS_MAGIC, encoded.length );
+        try
+        {
+            long offset = 0;
+            for ( i = 0; i < encoded.length; i++ )
+            {
+                out.writeInt( (int) offset );
+                offset += encoded[i].length;
+                if ( offset > Integer.MAX_VALUE )
+                {
+                    throw new IOException( "Too much string data for the mapped graph format: more than "
+                        + Integer.MAX_VALUE + " bytes." );
+                }
+                sorted[i] = new String( encoded[i], UTF8 );
+            }
+            out.writeInt( (int) offset );
+
+            for ( final byte[] bytes : encoded )
+            {
+                out.write( bytes );
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+
+        return sorted;
+    }
+
+    private static DataOutputStream open( final File file, final int magic, final int count )
+        throws IOException
+    {
+        final DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( file ) ) );
+        out.writeInt( magic );
+        out.writeInt( VERSION );
+        out.writeInt( count );
+
+        return out;
+    }
+
+    /**
+     * Relationships in declaration order: parent, BOMs, dependencies, managed dependencies, plugins, managed plugins,
+     * plugin-level dependencies, extensions. Plugin-level dependencies must follow their plugins so the
+     * {@link EProjectDirectRelationships.Builder} can re-attach them on the way back in.
+     */
+    static List<ProjectRelationship<?, ?>> ordered( final EProjectDirectRelationships rels )
+    {
+        final List<ProjectRelationship<?, ?>> result = new ArrayList<ProjectRelationship<?, ?>>();
+        if ( rels.getParent() != null )
+        {
+            result.add( rels.getParent() );
+        }
+
+        result.addAll( rels.getBoms() );
+        result.addAll( rels.getDependencies() );
+        result.addAll( rels.getManagedDependencies() );
+        result.addAll( rels.getPlugins() );
+        result.addAll( rels.getManagedPlugins() );
+        for ( final List<PluginDependencyRelationship> pdeps : rels.getPluginDependencies()
+                                                                   .values() )
+        {
+            result.addAll( pdeps );
+        }
+        result.addAll( rels.getExtensions() );
+
+        return result;
+    }
+
+}
@@ -0,0 +1,130 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.graph.store;
+
+import static org.commonjava.maven.atlas.graph.store.MappedGraphFormat.*;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * One graph file, mapped read-only as a run of fixed-size segments so it can be larger than a single
+ * {@link MappedByteBuffer} allows, and addressed with <code>long</code> byte offsets. The segment size is a power of two
+ * and a multiple of four, and every int in the format sits at a multiple of four, so an int never straddles two
+ * segments.
+ */
+final class MappedFile
+    implements Closeable
+{
+
+    // 1GB segments
+    static final int DEFAULT_SEGMENT_BITS = 30;
+
+    private final File file;
+
+    private final RandomAccessFile raf;
+
+    private final MappedByteBuffer[] segments;
+
+    private final int shift;
+
+    private final long mask;
+
+    private final long size;
+
+    MappedFile( final File file, final int magic, final int segmentBits )
+        throws IOException
+    {
+        if ( segmentBits < 2 || segmentBits > 30 )
+        {
+            throw new IllegalArgumentException( "Segment size must be between 2^2 and 2^30 bytes; got 2^" + segmentBits );
+        }
+
+        this.file = file;
+        this.raf = new RandomAccessFile( file, "r" );
+        this.shift = segmentBits;
+        this.mask = ( 1L << segmentBits ) - 1;
+
+        boolean ok = false;
+        try
+        {
+            final FileChannel channel = raf.getChannel();
+            size = channel.size();
+
+            final long segmentSize = 1L << segmentBits;
+            segments = new MappedByteBuffer[(int) ( ( size + segmentSize - 1 ) >>> segmentBits )];
+            for ( int i = 0; i < segments.length; i++ )
+            {
+                final long start = (long) i << segmentBits;
+                segments[i] = channel.map( FileChannel.MapMode.READ_ONLY, start, Math.min( segmentSize, size - start ) );
+            }
+
+            if ( size < HEADER_BYTES || getInt( 0 ) != magic )
+            {
+                throw new IOException( "Not a mapped graph file: " + file );
+            }
+            if ( getInt( 4 ) != VERSION )
+            {
+                throw new IOException( "Unsupported mapped graph format version " + getInt( 4 ) + " in: " + file );
+            }
+
+            ok = true;
+        }
+        finally
+        {
+            if ( !ok )
+            {
+                raf.close();
+            }
+        }
+    }
+
+    int getInt( final long pos )
+    {
+        return segments[(int) ( pos >>> shift )].getInt( (int) ( pos & mask ) );
+    }
+
+    byte get( final long pos )
+    {
+        return segments[(int) ( pos >>> shift )].get( (int) ( pos & mask ) );
+    }
+
+    long size()
+    {
+        return size;
+    }
+
+    /**
+     * Releases the file handle; the mappings go away when the segments are garbage collected.
+     */
+    @Override
+    public void close()
+        throws IOException
+    {
+        raf.close();
+    }
+
+    @Override
+    public String toString()
+    {
+        return file.getPath();
+    }
+
+}
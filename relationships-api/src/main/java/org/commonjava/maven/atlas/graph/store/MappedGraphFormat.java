@@ -0,0 +1,136 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.graph.store;
+
+import java.nio.charset.Charset;
+
+/**
+ * File layout shared by {@link MappedEProjectGraphWriter} and {@link MappedEProjectGraph}. Every file starts with a
+ * three-int header (magic, format version, record count) followed by big-endian, fixed-width int records:
+ * <ul>
+ * <li><b>strings.dat</b>: count+1 byte offsets into the UTF-8 data that follows. Strings are sorted by their UTF-8
+ * bytes, so symbol ids order the same way as the strings they stand for and can be found by binary search.</li>
+ * <li><b>nodes.dat</b>: one record per project, sorted by (groupId, artifactId, version) symbol.</li>
+ * <li><b>edges.dat</b>: one record per relationship, grouped by declaring project in declaration order.</li>
+ * <li><b>pool.dat</b>: variable-length int lists (relationship sources and dependency excludes) referenced from
+ * edges.</li>
+ * </ul>
+ * Counts, symbol ids, string data offsets and pool offsets are ints; byte positions within a file are computed as
+ * longs, so only those fields bound the size of a graph.
+ */
+final class MappedGraphFormat
+{
+
+    static final Charset UTF8 = Charset.forName( "UTF-8" );
+
+    static final int VERSION = 1;
+
+    static final int HEADER_BYTES = 12;
+
+    static final int NONE = -1;
+
+    static final String STRINGS = "strings.dat";
+
+    static final String NODES = "nodes.dat";
+
+    static final String EDGES = "edges.dat";
+
+    static final String POOL = "pool.dat";
+
+    static final int STRINGS_MAGIC = 0x41545331; // ATS1
+
+    static final int NODES_MAGIC = 0x41544e31; // ATN1
+
+    static final int EDGES_MAGIC = 0x41544531; // ATE1
+
+    static final int POOL_MAGIC = 0x41545031; // ATP1
+
+    // node record: groupId, artifactId, version, source, first edge, edge count
+    static final int NODE_INTS = 6;
+
+    static final int NODE_GROUP = 0;
+
+    static final int NODE_ARTIFACT = 1;
+
+    static final int NODE_VERSION = 2;
+
+    static final int NODE_SOURCE = 3;
+
+    static final int NODE_FIRST_EDGE = 4;
+
+    static final int NODE_EDGE_COUNT = 5;
+
+    // edge record: header (type | flags << 8 | scope << 16), index, target g/a/v/type/classifier, plugin g/a,
+    // pom location, pool offset, source count, exclude count
+    static final int EDGE_INTS = 13;
+
+    static final int EDGE_HEADER = 0;
+
+    static final int EDGE_INDEX = 1;
+
+    static final int EDGE_TARGET_GROUP = 2;
+
+    static final int EDGE_TARGET_ARTIFACT = 3;
+
+    static final int EDGE_TARGET_VERSION = 4;
+
+    static final int EDGE_TARGET_TYPE = 5;
+
+    static final int EDGE_TARGET_CLASSIFIER = 6;
+
+    static final int EDGE_PLUGIN_GROUP = 7;
+
+    static final int EDGE_PLUGIN_ARTIFACT = 8;
+
+    static final int EDGE_POM_LOCATION = 9;
+
+    static final int EDGE_POOL_OFFSET = 10;
+
+    static final int EDGE_SOURCE_COUNT = 11;
+
+    static final int EDGE_EXCLUDE_COUNT = 12;
+
+    static final int FLAG_MANAGED = 1;
+
+    static final int FLAG_INHERITED = 1 << 1;
+
+    static final int FLAG_OPTIONAL = 1 << 2;
+
+    static final int FLAG_MIXIN = 1 << 3;
+
+    static final int FLAG_REPORTING = 1 << 4;
+
+    private MappedGraphFormat()
+    {
+    }
+
+    static int compareBytes( final byte[] first, final byte[] second )
+    {
+        final int len = Math.min( first.length, second.length );
+        for ( int i = 0; i < len; i++ )
+        {
+            final int a = first[i] & 0xff;
+            final int b = second[i] & 0xff;
+            if ( a != b )
+            {
+                return a - b;
+            }
+        }
+
+        return first.length - second.length;
+    }
+
+}
@@ -0,0 +1,95 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.graph.traverse;
+
+import org.commonjava.maven.atlas.graph.rel.ProjectRelationship;
+import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
+
+/**
+ * A relationship that was considered during mediation, but not selected.
+ */
+public final class DroppedCandidate
+{
+
+    public enum Reason
+    {
+        /** A version of the same project was already selected on a shallower level. */
+        NEARER_SELECTED,
+        /** Another path to the same project on the same level sorted ahead of this one. */
+        PATH_ORDER,
+        /** A dependency along the path excludes the target project. */
+        EXCLUDED,
+        /** Optional dependencies are not transitive. */
+        OPTIONAL;
+    }
+
+    private final ProjectRelationship<?, ?> relationship;
+
+    private final int depth;
+
+    private final Reason reason;
+
+    private final ProjectVersionRef selected;
+
+    public DroppedCandidate( final ProjectRelationship<?, ?> relationship, final int depth, final Reason reason,
+                             final ProjectVersionRef selected )
+    {
+        this.relationship = relationship;
+        this.depth = depth;
+        this.reason = reason;
+        this.selected = selected;
+    }
+
+    public ProjectRelationship<?, ?> getRelationship()
+    {
+        return relationship;
+    }
+
+    public ProjectVersionRef getCandidate()
+    {
+        return relationship.getTarget()
+                           .asProjectVersionRef();
+    }
+
+    /**
+     * Number of relationships between the root and the dropped target, inclusive.
+     */
+    public int getDepth()
+    {
+        return depth;
+    }
+
+    public Reason getReason()
+    {
+        return reason;
+    }
+
+    /**
+     * The version that won instead, or null if the candidate was dropped without a competing version.
+     */
+    public ProjectVersionRef getSelected()
+    {
+        return selected;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format( "DroppedCandidate [%s (depth=%s, reason=%s, selected=%s)]", relationship, depth, reason,
+                              selected );
+    }
+
+}
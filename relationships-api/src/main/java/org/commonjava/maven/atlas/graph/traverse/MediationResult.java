@@ -0,0 +1,133 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.graph.traverse;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.commonjava.maven.atlas.graph.rel.ProjectRelationship;
+import org.commonjava.maven.atlas.graph.traverse.NearestWinsMediator.PathNode;
+import org.commonjava.maven.atlas.ident.ref.ProjectRef;
+import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
+
+/**
+ * Outcome of {@link NearestWinsMediator#mediate(ProjectVersionRef)}: one selected version per {@link ProjectRef}
+ * (including the root), along with the candidates that lost. Dropped candidates are only reported when they would have
+ * selected a different version; reaching an already-selected version again through a worse path is not a conflict.
+ */
+public final class MediationResult
+{
+
+    private final ProjectVersionRef root;
+
+    private final Map<ProjectRef, PathNode> selected;
+
+    private final List<DroppedCandidate> dropped;
+
+    private final Set<ProjectVersionRef> missing;
+
+    private Map<ProjectRef, ProjectVersionRef> selectedVersions;
+
+    MediationResult( final ProjectVersionRef root, final Map<ProjectRef, PathNode> selected,
+                     final List<DroppedCandidate> dropped, final Set<ProjectVersionRef> missing )
+    {
+        this.root = root;
+        this.selected = selected;
+        this.dropped = Collections.unmodifiableList( dropped );
+        this.missing = Collections.unmodifiableSet( missing );
+    }
+
+    public ProjectVersionRef getRoot()
+    {
+        return root;
+    }
+
+    /**
+     * Selected versions, in the order they were selected (root first, then level by level).
+     */
+    public synchronized Map<ProjectRef, ProjectVersionRef> getSelectedVersions()
+    {
+        if ( selectedVersions == null )
+        {
+            final Map<ProjectRef, ProjectVersionRef> result = new LinkedHashMap<ProjectRef, ProjectVersionRef>();
+            for ( final Map.Entry<ProjectRef, PathNode> entry : selected.entrySet() )
+            {
+                result.put( entry.getKey(), entry.getValue().ref );
+            }
+
+            selectedVersions = Collections.unmodifiableMap( result );
+        }
+
+        return selectedVersions;
+    }
+
+    public ProjectVersionRef getSelected( final ProjectRef ref )
+    {
+        final PathNode node = selected.get( ref.asProjectRef() );
+        return node == null ? null : node.ref;
+    }
+
+    /**
+     * The relationship through which the selected version was reached, or null for the root (or unknown projects).
+     */
+    public ProjectRelationship<?, ?> getSelectedRelationship( final ProjectRef ref )
+    {
+        final PathNode node = selected.get( ref.asProjectRef() );
+        return node == null ? null : node.rel;
+    }
+
+    /**
+     * Number of relationships between the root and the selected version, or -1 if nothing was selected.
+     */
+    public int getDepth( final ProjectRef ref )
+    {
+        final PathNode node = selected.get( ref.asProjectRef() );
+        return node == null ? -1 : node.depth;
+    }
+
+    /**
+     * The winning path from the root to the selected version (empty for the root), or null if nothing was selected.
+     */
+    public List<ProjectRelationship<?, ?>> getPath( final ProjectRef ref )
+    {
+        final PathNode node = selected.get( ref.asProjectRef() );
+        return node == null ? null : node.toPath();
+    }
+
+    public List<DroppedCandidate> getDropped()
+    {
+        return dropped;
+    }
+
+    /**
+     * Selected projects whose relationships were not available in the graph, so they could not be expanded.
+     */
+    public Set<ProjectVersionRef> getMissing()
+    {
+        return missing;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format( "MediationResult [root=%s, selected=%s, dropped=%s, missing=%s]", root,
+                              selected.size(), dropped.size(), missing.size() );
+    }
+
+}
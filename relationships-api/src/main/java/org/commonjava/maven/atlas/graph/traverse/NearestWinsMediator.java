@@ -0,0 +1,382 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.graph.traverse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.commonjava.maven.atlas.graph.filter.EdgeFilter;
+import org.commonjava.maven.atlas.graph.model.EProjectDirectRelationships;
+import org.commonjava.maven.atlas.graph.model.EProjectGraph;
+import org.commonjava.maven.atlas.graph.model.PluginKey;
+import org.commonjava.maven.atlas.graph.rel.DependencyRelationship;
+import org.commonjava.maven.atlas.graph.rel.ParentRelationship;
+import org.commonjava.maven.atlas.graph.rel.PluginDependencyRelationship;
+import org.commonjava.maven.atlas.graph.rel.ProjectRelationship;
+import org.commonjava.maven.atlas.graph.rel.RelationshipPathComparator;
+import org.commonjava.maven.atlas.graph.rel.RelationshipType;
+import org.commonjava.maven.atlas.graph.traverse.DroppedCandidate.Reason;
+import org.commonjava.maven.atlas.ident.ref.ProjectRef;
+import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
+
+/**
+ * Maven-style "nearest wins" conflict resolution over an {@link EProjectGraph}. Starting at a root project, the graph
+ * is walked breadth-first, one level at a time, and exactly one version is selected for each {@link ProjectRef}:
+ * <ul>
+ * <li>a version selected on a shallower level always wins</li>
+ * <li>among candidates found on the same level, the one whose path sorts first according to
+ * {@link RelationshipPathComparator} wins</li>
+ * </ul>
+ * Only projects selected on a level are expanded on the next one, so losing versions never contribute relationships.
+ * Managed relationships and terminal parents are never followed. Optional dependencies are only followed from the
+ * root, and dependency exclusions apply to everything reached through the excluding dependency.
+ * <br/>
+ * Paths are kept as parent-linked nodes and compared in place, so no path lists are built during the walk. Instances
+ * are not threadsafe, but are cheap to create.
+ */
+public final class NearestWinsMediator
+{
+
+    private static final Set<RelationshipType> DEFAULT_TYPES =
+        Collections.unmodifiableSet( EnumSet.of( RelationshipType.PARENT, RelationshipType.DEPENDENCY ) );
+
+    private final EProjectGraph graph;
+
+    private final Set<RelationshipType> types;
+
+    private final EdgeFilter filter;
+
+    private final RelationshipPathComparator pathComparator = RelationshipPathComparator.INSTANCE;
+
+    /**
+     * Mediate over parent and (non-managed) dependency relationships.
+     */
+    public NearestWinsMediator( final EProjectGraph graph )
+    {
+        this( graph, EdgeFilter.all() );
+    }
+
+    /**
+     * Mediate over the given (non-managed) relationship types.
+     */
+    public NearestWinsMediator( final EProjectGraph graph, final RelationshipType... types )
+    {
+        this( graph, EdgeFilter.all(), types );
+    }
+
+    /**
+     * Mediate over the given (non-managed) relationship types, ignoring relationships rejected by the filter (for
+     * instance, <code>EdgeFilter.scopesImpliedBy( DependencyScope.runtime )</code> to leave out test and provided
+     * dependencies). Filtered relationships are treated as absent, not reported as dropped.
+     */
+    public NearestWinsMediator( final EProjectGraph graph, final EdgeFilter filter, final RelationshipType... types )
+    {
+        this.graph = graph;
+        this.filter = filter;
+        this.types =
+            types.length == 0 ? DEFAULT_TYPES
+                            : Collections.unmodifiableSet( EnumSet.copyOf( Arrays.asList( types ) ) );
+    }
+
+    public Set<RelationshipType> getRelationshipTypes()
+    {
+        return types;
+    }
+
+    public EdgeFilter getFilter()
+    {
+        return filter;
+    }
+
+    public MediationResult mediate( final ProjectVersionRef root )
+    {
+        final ProjectVersionRef rootRef = root.asProjectVersionRef();
+        final PathNode rootNode = new PathNode( null, null, rootRef, rootRef.asProjectRef() );
+
+        final Map<ProjectRef, PathNode> selected = new LinkedHashMap<ProjectRef, PathNode>();
+        final List<DroppedCandidate> dropped = new ArrayList<DroppedCandidate>();
+        final Set<ProjectVersionRef> missing = new LinkedHashSet<ProjectVersionRef>();
+
+        selected.put( rootNode.key, rootNode );
+
+        List<PathNode> frontier = Collections.singletonList( rootNode );
+        final Map<ProjectRef, PathNode> level = new HashMap<ProjectRef, PathNode>();
+        while ( !frontier.isEmpty() )
+        {
+            level.clear();
+            final LevelVisitor visitor = new LevelVisitor( selected, level, dropped );
+
+            for ( final PathNode node : frontier )
+            {
+                final EProjectDirectRelationships rels = graph.getDirectRelationships( node.ref );
+                if ( rels == null )
+                {
+                    missing.add( node.ref );
+                    continue;
+                }
+
+                visitor.expand( node, rels );
+            }
+
+            final List<PathNode> next = new ArrayList<PathNode>( visitor.order.size() );
+            for ( final ProjectRef key : visitor.order )
+            {
+                final PathNode winner = level.get( key );
+                selected.put( key, winner );
+                next.add( winner );
+            }
+
+            frontier = next;
+        }
+
+        return new MediationResult( rootRef, selected, dropped, missing );
+    }
+
+    /**
+     * Compare two paths of equal depth the way {@link RelationshipPathComparator} compares the equivalent relationship
+     * lists, but by walking the parent links of both nodes toward the root. The root-most difference in relationship
+     * types decides; failing that, the root-most difference between relationships does. Once the walk reaches a shared
+     * ancestor, the rest of the two paths are identical and can't change the result.
+     */
+    int comparePaths( final PathNode one, final PathNode two )
+    {
+        int typeResult = 0;
+        int relResult = 0;
+
+        PathNode a = one;
+        PathNode b = two;
+        while ( a != b && a.rel != null && b.rel != null )
+        {
+            final int t = pathComparator.compareRelTypes( a.rel, b.rel );
+            if ( t != 0 )
+            {
+                typeResult = t;
+            }
+
+            final int r = pathComparator.compareRels( a.rel, b.rel );
+            if ( r != 0 )
+            {
+                relResult = r;
+            }
+
+            a = a.parent;
+            b = b.parent;
+        }
+
+        return typeResult != 0 ? typeResult : relResult;
+    }
+
+    private final class LevelVisitor
+    {
+        private final Map<ProjectRef, PathNode> selected;
+
+        private final Map<ProjectRef, PathNode> level;
+
+        private final List<DroppedCandidate> dropped;
+
+        private final List<ProjectRef> order = new ArrayList<ProjectRef>();
+
+        LevelVisitor( final Map<ProjectRef, PathNode> selected, final Map<ProjectRef, PathNode> level,
+                      final List<DroppedCandidate> dropped )
+        {
+            this.selected = selected;
+            this.level = level;
+            this.dropped = dropped;
+        }
+
+        void expand( final PathNode node, final EProjectDirectRelationships rels )
+        {
+            if ( types.contains( RelationshipType.PARENT ) )
+            {
+                final ParentRelationship parent = rels.getParent();
+                if ( parent != null && !parent.isTerminus() )
+                {
+                    offer( node, parent );
+                }
+            }
+
+            if ( types.contains( RelationshipType.BOM ) )
+            {
+                offerAll( node, rels.getBoms() );
+            }
+
+            if ( types.contains( RelationshipType.DEPENDENCY ) )
+            {
+                offerAll( node, rels.getDependencies() );
+            }
+
+            if ( types.contains( RelationshipType.PLUGIN ) )
+            {
+                offerAll( node, rels.getPlugins() );
+            }
+
+            if ( types.contains( RelationshipType.PLUGIN_DEP ) )
+            {
+                for ( final Map.Entry<PluginKey, List<PluginDependencyRelationship>> entry : rels.getPluginDependencies()
+                                                                                                 .entrySet() )
+                {
+                    if ( !entry.getKey()
+                               .getManaged() )
+                    {
+                        offerAll( node, entry.getValue() );
+                    }
+                }
+            }
+
+            if ( types.contains( RelationshipType.EXTENSION ) )
+            {
+                offerAll( node, rels.getExtensions() );
+            }
+        }
+
+        private void offerAll( final PathNode node, final List<? extends ProjectRelationship<?, ?>> rels )
+        {
+            for ( int i = 0; i < rels.size(); i++ )
+            {
+                final ProjectRelationship<?, ?> rel = rels.get( i );
+                if ( !rel.isManaged() )
+                {
+                    offer( node, rel );
+                }
+            }
+        }
+
+        private void offer( final PathNode node, final ProjectRelationship<?, ?> rel )
+        {
+            if ( !filter.accept( rel ) )
+            {
+                return;
+            }
+
+            final ProjectVersionRef target = rel.getTarget()
+                                                .asProjectVersionRef();
+            final ProjectRef key = target.asProjectRef();
+
+            if ( node.depth > 0 && ( rel instanceof DependencyRelationship )
+                && ( (DependencyRelationship) rel ).isOptional() )
+            {
+                dropped.add( new DroppedCandidate( rel, node.depth + 1, Reason.OPTIONAL, null ) );
+                return;
+            }
+
+            if ( isExcluded( node, key ) )
+            {
+                dropped.add( new DroppedCandidate( rel, node.depth + 1, Reason.EXCLUDED, null ) );
+                return;
+            }
+
+            final PathNode nearer = selected.get( key );
+            if ( nearer != null )
+            {
+                if ( !nearer.ref.equals( target ) )
+                {
+                    dropped.add( new DroppedCandidate( rel, node.depth + 1, Reason.NEARER_SELECTED, nearer.ref ) );
+                }
+                return;
+            }
+
+            final PathNode incumbent = level.get( key );
+            if ( incumbent == null )
+            {
+                level.put( key, new PathNode( node, rel, target, key ) );
+                order.add( key );
+                return;
+            }
+
+            final PathNode candidate = new PathNode( node, rel, target, key );
+            if ( comparePaths( candidate, incumbent ) < 0 )
+            {
+                level.put( key, candidate );
+                if ( !incumbent.ref.equals( target ) )
+                {
+                    dropped.add( new DroppedCandidate( incumbent.rel, incumbent.depth, Reason.PATH_ORDER, target ) );
+                }
+            }
+            else if ( !incumbent.ref.equals( target ) )
+            {
+                dropped.add( new DroppedCandidate( rel, candidate.depth, Reason.PATH_ORDER, incumbent.ref ) );
+            }
+        }
+
+        private boolean isExcluded( final PathNode node, final ProjectRef key )
+        {
+            PathNode n = node;
+            while ( n.rel != null )
+            {
+                if ( n.rel instanceof DependencyRelationship )
+                {
+                    final Set<ProjectRef> excludes = ( (DependencyRelationship) n.rel ).getExcludes();
+                    if ( excludes != null && !excludes.isEmpty() && excludes.contains( key ) )
+                    {
+                        return true;
+                    }
+                }
+
+                n = n.parent;
+            }
+
+            return false;
+        }
+    }
+
+    /**
+     * One step of a mediated path, linked back toward the root (whose relationship is null).
+     */
+    static final class PathNode
+    {
+        final PathNode parent;
+
+        final ProjectRelationship<?, ?> rel;
+
+        final ProjectVersionRef ref;
+
+        final ProjectRef key;
+
+        final int depth;
+
+        PathNode( final PathNode parent, final ProjectRelationship<?, ?> rel, final ProjectVersionRef ref,
+                  final ProjectRef key )
+        {
+            this.parent = parent;
+            this.rel = rel;
+            this.ref = ref;
+            this.key = key;
+            this.depth = parent == null ? 0 : parent.depth + 1;
+        }
+
+        List<ProjectRelationship<?, ?>> toPath()
+        {
+            final ProjectRelationship<?, ?>[] path = new ProjectRelationship<?, ?>[depth];
+            PathNode n = this;
+            for ( int i = depth - 1; i >= 0; i-- )
+            {
+                path[i] = n.rel;
+                n = n.parent;
+            }
+
+            return Arrays.asList( path );
+        }
+    }
+
+}
@@ -0,0 +1,716 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.graph.util;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Immutable hash map (a hash array mapped trie) whose update operations return a new map that shares every untouched
+ * branch with the original. Lookups and updates cost at most seven levels of 32-way branching, and deriving a map
+ * from a large ancestor only copies the branches that actually change.
+ * <br/>
+ * Keys must not be null, and should have stable hashCode() / equals() implementations.
+ */
+public final class PersistentHashMap<K, V>
+    implements Iterable<Map.Entry<K, V>>
+{
+
+    private static final int BITS = 5;
+
+    private static final int MASK = ( 1 << BITS ) - 1;
+
+    @SuppressWarnings( "rawtypes" )
+    private static final PersistentHashMap EMPTY = new PersistentHashMap( null, 0 );
+
+    private final Node root;
+
+    private final int size;
+
+    private transient Map<K, V> mapView;
+
+    private PersistentHashMap( final Node root, final int size )
+    {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings( "unchecked" )
+    public static <K, V> PersistentHashMap<K, V> empty()
+    {
+        return EMPTY;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    @SuppressWarnings( "unchecked" )
+    public V get( final Object key )
+    {
+        if ( root == null || key == null )
+        {
+            return null;
+        }
+
+        final Leaf leaf = root.find( 0, hash( key ), key );
+        return leaf == null ? null : (V) leaf.value;
+    }
+
+    public boolean containsKey( final Object key )
+    {
+        return root != null && key != null && root.find( 0, hash( key ), key ) != null;
+    }
+
+    /**
+     * Return a map with the given mapping added, replacing any existing mapping for the key.
+     */
+    public PersistentHashMap<K, V> plus( final K key, final V value )
+    {
+        return assoc( key, value, false );
+    }
+
+    /**
+     * Return a map with the given mapping added, unless the key is already mapped (in which case this map is returned).
+     */
+    public PersistentHashMap<K, V> plusIfAbsent( final K key, final V value )
+    {
+        return assoc( key, value, true );
+    }
+
+    /**
+     * Return a map with all mappings of the given map added, replacing existing mappings for the same keys.
+     */
+    public PersistentHashMap<K, V> plusAll( final PersistentHashMap<K, V> other )
+    {
+        if ( other.isEmpty() )
+        {
+            return this;
+        }
+        else if ( isEmpty() )
+        {
+            return other;
+        }
+
+        PersistentHashMap<K, V> result = this;
+        for ( final Map.Entry<K, V> entry : other )
+        {
+            result = result.plus( entry.getKey(), entry.getValue() );
+        }
+
+        return result;
+    }
+
+    /**
+     * Return a map with the mappings of the given map added wherever this map doesn't already map the key. The larger
+     * of the two maps is used as the base, so the cost is proportional to the smaller one.
+     */
+    public PersistentHashMap<K, V> plusAllIfAbsent( final PersistentHashMap<K, V> other )
+    {
+        if ( other.isEmpty() )
+        {
+            return this;
+        }
+        else if ( isEmpty() )
+        {
+            return other;
+        }
+        else if ( size < other.size )
+        {
+            return other.plusAll( this );
+        }
+
+        PersistentHashMap<K, V> result = this;
+        for ( final Map.Entry<K, V> entry : other )
+        {
+            result = result.plusIfAbsent( entry.getKey(), entry.getValue() );
+        }
+
+        return result;
+    }
+
+    /**
+     * Return a map without any mapping for the given key.
+     */
+    public PersistentHashMap<K, V> minus( final Object key )
+    {
+        if ( root == null || key == null )
+        {
+            return this;
+        }
+
+        final Node newRoot = root.without( 0, hash( key ), key );
+        if ( newRoot == root )
+        {
+            return this;
+        }
+
+        return newRoot == null ? PersistentHashMap.<K, V> empty() : new PersistentHashMap<K, V>( newRoot, size - 1 );
+    }
+
+    private PersistentHashMap<K, V> assoc( final K key, final V value, final boolean onlyIfAbsent )
+    {
+        if ( key == null )
+        {
+            throw new NullPointerException( "PersistentHashMap does not support null keys." );
+        }
+
+        final int hash = hash( key );
+        final Leaf leaf = new Leaf( hash, key, value );
+        if ( root == null )
+        {
+            return new PersistentHashMap<K, V>( leaf, 1 );
+        }
+
+        final boolean[] added = new boolean[1];
+        final Node newRoot = root.assoc( 0, leaf, onlyIfAbsent, added );
+        if ( newRoot == root )
+        {
+            return this;
+        }
+
+        return new PersistentHashMap<K, V>( newRoot, added[0] ? size + 1 : size );
+    }
+
+    /**
+     * Read-only {@link Map} view of this map. Lookups go straight to the trie; nothing is copied.
+     */
+    public Map<K, V> asMap()
+    {
+        Map<K, V> view = mapView;
+        if ( view == null )
+        {
+            view = new MapView();
+            mapView = view;
+        }
+
+        return view;
+    }
+
+    @Override
+    public Iterator<Map.Entry<K, V>> iterator()
+    {
+        return new EntryIterator<K, V>( root );
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return asMap().hashCode();
+    }
+
+    @Override
+    public boolean equals( final Object obj )
+    {
+        if ( this == obj )
+        {
+            return true;
+        }
+        if ( !( obj instanceof PersistentHashMap ) )
+        {
+            return false;
+        }
+
+        return asMap().equals( ( (PersistentHashMap<?, ?>) obj ).asMap() );
+    }
+
+    @Override
+    public String toString()
+    {
+        return asMap().toString();
+    }
+
+    private static int hash( final Object key )
+    {
+        final int h = key.hashCode();
+        return h ^ ( h >>> 16 );
+    }
+
+    private static int fragment( final int shift, final int hash )
+    {
+        return ( hash >>> shift ) & MASK;
+    }
+
+    private static abstract class Node
+    {
+        abstract Leaf find( int shift, int hash, Object key );
+
+        abstract Node assoc( int shift, Leaf leaf, boolean onlyIfAbsent, boolean[] added );
+
+        /**
+         * @return the node without the key, this node if the key is absent, or null if the node would be empty
+         */
+        abstract Node without( int shift, int hash, Object key );
+    }
+
+    private static final class Leaf
+        extends Node
+        implements Map.Entry<Object, Object>
+    {
+        final int hash;
+
+        final Object key;
+
+        final Object value;
+
+        Leaf( final int hash, final Object key, final Object value )
+        {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+        }
+
+        boolean matches( final int hash, final Object key )
+        {
+            return this.hash == hash && ( this.key == key || this.key.equals( key ) );
+        }
+
+        @Override
+        Leaf find( final int shift, final int hash, final Object key )
+        {
+            return matches( hash, key ) ? this : null;
+        }
+
+        @Override
+        Node assoc( final int shift, final Leaf leaf, final boolean onlyIfAbsent, final boolean[] added )
+        {
+            if ( matches( leaf.hash, leaf.key ) )
+            {
+                if ( onlyIfAbsent || value == leaf.value )
+                {
+                    return this;
+                }
+
+                return leaf;
+            }
+
+            added[0] = true;
+            return merge( shift, this, leaf );
+        }
+
+        @Override
+        Node without( final int shift, final int hash, final Object key )
+        {
+            return matches( hash, key ) ? null : this;
+        }
+
+        @Override
+        public Object getKey()
+        {
+            return key;
+        }
+
+        @Override
+        public Object getValue()
+        {
+            return value;
+        }
+
+        @Override
+        public Object setValue( final Object value )
+        {
+            throw new UnsupportedOperationException( "PersistentHashMap is immutable." );
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return key.hashCode() ^ ( value == null ? 0 : value.hashCode() );
+        }
+
+        @Override
+        public boolean equals( final Object obj )
+        {
+            if ( !( obj instanceof Map.Entry ) )
+            {
+                return false;
+            }
+
+            final Map.Entry<?, ?> other = (Map.Entry<?, ?>) obj;
+            return key.equals( other.getKey() )
+                && ( value == null ? other.getValue() == null : value.equals( other.getValue() ) );
+        }
+
+        @Override
+        public String toString()
+        {
+            return key + "=" + value;
+        }
+    }
+
+    /**
+     * Combine two leaves with different keys into the smallest node that holds both.
+     */
+    private static Node merge( final int shift, final Leaf one, final Leaf two )
+    {
+        if ( one.hash == two.hash )
+        {
+            return new CollisionNode( one.hash, new Leaf[] { one, two } );
+        }
+
+        final int f1 = fragment( shift, one.hash );
+        final int f2 = fragment( shift, two.hash );
+        if ( f1 == f2 )
+        {
+            return new BitmapNode( 1 << f1, new Node[] { merge( shift + BITS, one, two ) } );
+        }
+
+        return f1 < f2 ? new BitmapNode( ( 1 << f1 ) | ( 1 << f2 ), new Node[] { one, two } )
+                        : new BitmapNode( ( 1 << f1 ) | ( 1 << f2 ), new Node[] { two, one } );
+    }
+
+    private static final class BitmapNode
+        extends Node
+    {
+        final int bitmap;
+
+        final Node[] children;
+
+        BitmapNode( final int bitmap, final Node[] children )
+        {
+            this.bitmap = bitmap;
+            this.children = children;
+        }
+
+        @Override
+        Leaf find( final int shift, final int hash, final Object key )
+        {
+            final int bit = 1 << fragment( shift, hash );
+            if ( ( bitmap & bit ) == 0 )
+            {
+                return null;
+            }
+
+            return children[Integer.bitCount( bitmap & ( bit - 1 ) )].find( shift + BITS, hash, key );
+        }
+
+        @Override
+        Node assoc( final int shift, final Leaf leaf, final boolean onlyIfAbsent, final boolean[] added )
+        {
+            final int bit = 1 << fragment( shift, leaf.hash );
+            final int idx = Integer.bitCount( bitmap & ( bit - 1 ) );
+            if ( ( bitmap & bit ) == 0 )
+            {
+                added[0] = true;
+
+                final Node[] updated = new Node[children.length + 1];
+                System.arraycopy( children, 0, updated, 0, idx );
+                updated[idx] = leaf;
+                System.arraycopy( children, idx, updated, idx + 1, children.length - idx );
+
+                return new BitmapNode( bitmap | bit, updated );
+            }
+
+            final Node child = children[idx];
+            final Node newChild = child.assoc( shift + BITS, leaf, onlyIfAbsent, added );
+            if ( newChild == child )
+            {
+                return this;
+            }
+
+            final Node[] updated = children.clone();
+            updated[idx] = newChild;
+            return new BitmapNode( bitmap, updated );
+        }
+
+        @Override
+        Node without( final int shift, final int hash, final Object key )
+        {
+            final int bit = 1 << fragment( shift, hash );
+            if ( ( bitmap & bit ) == 0 )
+            {
+                return this;
+            }
+
+            final int idx = Integer.bitCount( bitmap & ( bit - 1 ) );
+            final Node child = children[idx];
+            final Node newChild = child.without( shift + BITS, hash, key );
+            if ( newChild == child )
+            {
+                return this;
+            }
+
+            if ( newChild == null )
+            {
+                if ( children.length == 1 )
+                {
+                    return null;
+                }
+
+                final Node[] updated = new Node[children.length - 1];
+                System.arraycopy( children, 0, updated, 0, idx );
+                System.arraycopy( children, idx + 1, updated, idx, children.length - idx - 1 );
+
+                // a lone leaf doesn't need a branch of its own; let the parent hold it directly.
+                if ( updated.length == 1 && updated[0] instanceof Leaf )
+                {
+                    return updated[0];
+                }
+
+                return new BitmapNode( bitmap & ~bit, updated );
+            }
+
+            if ( children.length == 1 && newChild instanceof Leaf )
+            {
+                return newChild;
+            }
+
+            final Node[] updated = children.clone();
+            updated[idx] = newChild;
+            return new BitmapNode( bitmap, updated );
+        }
+    }
+
+    private static final class CollisionNode
+        extends Node
+    {
+        final int hash;
+
+        final Leaf[] leaves;
+
+        CollisionNode( final int hash, final Leaf[] leaves )
+        {
+            this.hash = hash;
+            this.leaves = leaves;
+        }
+
+        @Override
+        Leaf find( final int shift, final int hash, final Object key )
+        {
+            if ( hash != this.hash )
+            {
+                return null;
+            }
+
+            for ( final Leaf leaf : leaves )
+            {
+                if ( leaf.matches( hash, key ) )
+                {
+                    return leaf;
+                }
+            }
+
+            return null;
+        }
+
+        @Override
+        Node assoc( final int shift, final Leaf leaf, final boolean onlyIfAbsent, final boolean[] added )
+        {
+            if ( leaf.hash != hash )
+            {
+                // push this collision bucket down alongside the new leaf.
+                added[0] = true;
+                return split( shift, leaf );
+            }
+
+            for ( int i = 0; i < leaves.length; i++ )
+            {
+                if ( leaves[i].matches( leaf.hash, leaf.key ) )
+                {
+                    if ( onlyIfAbsent || leaves[i].value == leaf.value )
+                    {
+                        return this;
+                    }
+
+                    final Leaf[] updated = leaves.clone();
+                    updated[i] = leaf;
+                    return new CollisionNode( hash, updated );
+                }
+            }
+
+            added[0] = true;
+
+            final Leaf[] updated = new Leaf[leaves.length + 1];
+            System.arraycopy( leaves, 0, updated, 0, leaves.length );
+            updated[leaves.length] = leaf;
+            return new CollisionNode( hash, updated );
+        }
+
+        private Node split( final int shift, final Leaf leaf )
+        {
+            final int f1 = fragment( shift, hash );
+            final int f2 = fragment( shift, leaf.hash );
+            if ( f1 == f2 )
+            {
+                return new BitmapNode( 1 << f1, new Node[] { split( shift + BITS, leaf ) } );
+            }
+
+            return f1 < f2 ? new BitmapNode( ( 1 << f1 ) | ( 1 << f2 ), new Node[] { this, leaf } )
+                            : new BitmapNode( ( 1 << f1 ) | ( 1 << f2 ), new Node[] { leaf, this } );
+        }
+
+        @Override
+        Node without( final int shift, final int hash, final Object key )
+        {
+            if ( hash != this.hash )
+            {
+                return this;
+            }
+
+            for ( int i = 0; i < leaves.length; i++ )
+            {
+                if ( leaves[i].matches( hash, key ) )
+                {
+                    if ( leaves.length == 2 )
+                    {
+                        return leaves[1 - i];
+                    }
+
+                    final Leaf[] updated = new Leaf[leaves.length - 1];
+                    System.arraycopy( leaves, 0, updated, 0, i );
+                    System.arraycopy( leaves, i + 1, updated, i, leaves.length - i - 1 );
+                    return new CollisionNode( hash, updated );
+                }
+            }
+
+            return this;
+        }
+    }
+
+    private static final class EntryIterator<K, V>
+        implements Iterator<Map.Entry<K, V>>
+    {
+        private final List<Node> stack = new ArrayList<Node>();
+
+        private Leaf next;
+
+        EntryIterator( final Node root )
+        {
+            if ( root != null )
+            {
+                stack.add( root );
+            }
+
+            advance();
+        }
+
+        private void advance()
+        {
+            next = null;
+            while ( next == null && !stack.isEmpty() )
+            {
+                final Node node = stack.remove( stack.size() - 1 );
+                if ( node instanceof Leaf )
+                {
+                    next = (Leaf) node;
+                }
+                else if ( node instanceof BitmapNode )
+                {
+                    final Node[] children = ( (BitmapNode) node ).children;
+                    for ( int i = children.length - 1; i >= 0; i-- )
+                    {
+                        stack.add( children[i] );
+                    }
+                }
+                else
+                {
+                    final Leaf[] leaves = ( (CollisionNode) node ).leaves;
+                    for ( int i = leaves.length - 1; i >= 0; i-- )
+                    {
+                        stack.add( leaves[i] );
+                    }
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return next != null;
+        }
+
+        @Override
+        @SuppressWarnings( { "unchecked", "rawtypes" } )
+        public Map.Entry<K, V> next()
+        {
+            if ( next == null )
+            {
+                throw new NoSuchElementException();
+            }
+
+            final Map.Entry result = next;
+            advance();
+            return result;
+        }
+
+        @Override
+        public void remove()
+        {
+            throw new UnsupportedOperationException( "PersistentHashMap is immutable." );
+        }
+    }
+
+    private final class MapView
+        extends AbstractMap<K, V>
+    {
+        private Set<Map.Entry<K, V>> entries;
+
+        @Override
+        public V get( final Object key )
+        {
+            return PersistentHashMap.this.get( key );
+        }
+
+        @Override
+        public boolean containsKey( final Object key )
+        {
+            return PersistentHashMap.this.containsKey( key );
+        }
+
+        @Override
+        public int size()
+        {
+            return size;
+        }
+
+        @Override
+        public Set<Map.Entry<K, V>> entrySet()
+        {
+            if ( entries == null )
+            {
+                entries = new AbstractSet<Map.Entry<K, V>>()
+                {
+                    @Override
+                    public Iterator<Map.Entry<K, V>> iterator()
+                    {
+                        return PersistentHashMap.this.iterator();
+                    }
+
+                    @Override
+                    public int size()
+                    {
+                        return size;
+                    }
+                };
+            }
+
+            return entries;
+        }
+    }
+
+}
@@ -0,0 +1,232 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.graph.util;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.commonjava.maven.atlas.graph.rel.DependencyRelationship;
+import org.commonjava.maven.atlas.graph.rel.PluginRelationship;
+import org.commonjava.maven.atlas.graph.rel.ProjectRelationship;
+import org.commonjava.maven.atlas.graph.rel.RelationshipComparator;
+import org.commonjava.maven.atlas.ident.ref.ProjectRef;
+
+/**
+ * Combines relationships gathered from many places (for instance graph dumps from several repositories) so that each
+ * distinct relationship appears once, carrying the union of the sources it was seen with.
+ * <br/>
+ * Relationships are grouped by their identity ({@link ProjectRelationship#equals(Object)}: declaring project, target,
+ * type and managed-ness). Each group keeps one member to supply the non-identity attributes (index, POM location,
+ * scope, optional, excludes, ...), picked by a fixed tie-break rather than by arrival, and collects the other members'
+ * sources on the side; {@link #merge()} then builds at most one new relationship per group, instead of one per
+ * {@link ProjectRelationship#addSources(Collection)} call. The result depends only on the relationships added, not on
+ * the order they were added in.
+ * <br/>
+ * Not thread-safe.
+ */
+public final class RelationshipMerger
+{
+
+    /**
+     * Order of the merged relationships: {@link RelationshipComparator} (type, POM location, index), then target and
+     * managed-ness, which tell apart distinct relationships sharing an index.
+     */
+    private static final Comparator<ProjectRelationship<?, ?>> ORDER = new Comparator<ProjectRelationship<?, ?>>()
+    {
+        @Override
+        public int compare( final ProjectRelationship<?, ?> one, final ProjectRelationship<?, ?> two )
+        {
+            int comp = RelationshipComparator.INSTANCE.compare( one, two );
+            if ( comp == 0 )
+            {
+                comp = one.getTarget()
+                          .toString()
+                          .compareTo( two.getTarget()
+                                         .toString() );
+            }
+            if ( comp == 0 && one.isManaged() != two.isManaged() )
+            {
+                comp = one.isManaged() ? 1 : -1;
+            }
+
+            return comp;
+        }
+    };
+
+    /**
+     * Picks which member of a group supplies the non-identity attributes: the first by {@link #ORDER}, then by those
+     * attributes themselves.
+     */
+    private static final Comparator<ProjectRelationship<?, ?>> CANONICAL = new Comparator<ProjectRelationship<?, ?>>()
+    {
+        @Override
+        public int compare( final ProjectRelationship<?, ?> one, final ProjectRelationship<?, ?> two )
+        {
+            final int comp = ORDER.compare( one, two );
+            return comp != 0 ? comp : attributes( one ).compareTo( attributes( two ) );
+        }
+    };
+
+    private final Map<ProjectRelationship<?, ?>, Group> groups = new HashMap<ProjectRelationship<?, ?>, Group>();
+
+    public static List<ProjectRelationship<?, ?>> merge( final Collection<? extends ProjectRelationship<?, ?>> rels )
+    {
+        return new RelationshipMerger().addAll( rels )
+                                       .merge();
+    }
+
+    public RelationshipMerger add( final ProjectRelationship<?, ?> rel )
+    {
+        final Group group = groups.get( rel );
+        if ( group == null )
+        {
+            groups.put( rel, new Group( rel ) );
+            return this;
+        }
+
+        if ( group.sources == null )
+        {
+            group.sources = new TreeSet<URI>( group.rel.getSources() );
+        }
+        group.sources.addAll( rel.getSources() );
+
+        if ( CANONICAL.compare( rel, group.rel ) < 0 )
+        {
+            group.rel = rel;
+        }
+
+        return this;
+    }
+
+    public RelationshipMerger addAll( final Collection<? extends ProjectRelationship<?, ?>> rels )
+    {
+        for ( final ProjectRelationship<?, ?> rel : rels )
+        {
+            add( rel );
+        }
+
+        return this;
+    }
+
+    /**
+     * Drop the whole group the given relationship belongs to, along with the sources collected for it.
+     */
+    public RelationshipMerger remove( final ProjectRelationship<?, ?> rel )
+    {
+        groups.remove( rel );
+        return this;
+    }
+
+    public boolean contains( final ProjectRelationship<?, ?> rel )
+    {
+        return groups.containsKey( rel );
+    }
+
+    /**
+     * @return the number of distinct relationships seen so far
+     */
+    public int size()
+    {
+        return groups.size();
+    }
+
+    /**
+     * @return one relationship per group, ordered by type, POM location, index, target and managed-ness, each carrying
+     *         the union of its group's sources
+     */
+    public List<ProjectRelationship<?, ?>> merge()
+    {
+        final List<ProjectRelationship<?, ?>> result = new ArrayList<ProjectRelationship<?, ?>>( groups.size() );
+        for ( final Group group : groups.values() )
+        {
+            final ProjectRelationship<?, ?> rel = group.rel;
+            if ( group.sources == null || rel.getSources()
+                                              .containsAll( group.sources ) )
+            {
+                result.add( rel );
+            }
+            else
+            {
+                result.add( rel.addSources( group.sources ) );
+            }
+        }
+
+        Collections.sort( result, ORDER );
+
+        return result;
+    }
+
+    private static String attributes( final ProjectRelationship<?, ?> rel )
+    {
+        final StringBuilder sb = new StringBuilder();
+        sb.append( rel.getPomLocation() )
+          .append( '|' )
+          .append( rel.isInherited() )
+          .append( '|' )
+          .append( rel.isMixin() );
+
+        if ( rel instanceof DependencyRelationship )
+        {
+            final DependencyRelationship dep = (DependencyRelationship) rel;
+            sb.append( '|' )
+              .append( dep.getScope() )
+              .append( '|' )
+              .append( dep.isOptional() )
+              .append( '|' );
+
+            final Set<String> excludes = new TreeSet<String>();
+            if ( dep.getExcludes() != null )
+            {
+                for ( final ProjectRef ex : dep.getExcludes() )
+                {
+                    excludes.add( ex.toString() );
+                }
+            }
+            sb.append( excludes );
+        }
+        else if ( rel instanceof PluginRelationship )
+        {
+            sb.append( '|' )
+              .append( ( (PluginRelationship) rel ).isReporting() );
+        }
+
+        return sb.append( '|' )
+                 .append( rel.getSources() )
+                 .toString();
+    }
+
+    private static final class Group
+    {
+        private ProjectRelationship<?, ?> rel;
+
+        // null until a second member arrives; the union of every member's sources after that
+        private Set<URI> sources;
+
+        Group( final ProjectRelationship<?, ?> rel )
+        {
+            this.rel = rel;
+        }
+    }
+
+}
@@ -0,0 +1,66 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.graph;
+
+import static org.commonjava.maven.atlas.ident.util.IdentityUtils.projectVersion;
+
+import java.net.URI;
+
+import org.commonjava.maven.atlas.graph.model.EProjectDirectRelationships;
+import org.commonjava.maven.atlas.graph.rel.DependencyRelationship;
+import org.commonjava.maven.atlas.graph.rel.SimpleDependencyRelationship;
+import org.commonjava.maven.atlas.ident.DependencyScope;
+import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
+
+/**
+ * Relationship and project fixtures shared by the graph tests.
+ */
+public final class GraphFixtures
+{
+
+    public static final URI SOURCE = URI.create( "test:source" );
+
+    public static final ProjectVersionRef DECLARING = projectVersion( "org.test", "project", "1" );
+
+    private GraphFixtures()
+    {
+    }
+
+    /**
+     * A compile-scoped dependency of {@link #DECLARING} on org.dep:artifactId:1, at index 0.
+     */
+    public static DependencyRelationship dependency( final URI source, final String artifactId, final boolean managed )
+    {
+        return new SimpleDependencyRelationship( source, DECLARING,
+                                                 projectVersion( "org.dep", artifactId, "1" ).asJarArtifact(),
+                                                 DependencyScope.compile, 0, managed, false, false );
+    }
+
+    public static EProjectDirectRelationships.Builder project( final ProjectVersionRef ref )
+    {
+        return new EProjectDirectRelationships.Builder( SOURCE, ref );
+    }
+
+    /**
+     * {@link #DECLARING} from {@link #SOURCE}, with just the given dependencies.
+     */
+    public static EProjectDirectRelationships revision( final DependencyRelationship... deps )
+    {
+        return project( DECLARING ).withDependencies( deps )
+                                   .build();
+    }
+
+}
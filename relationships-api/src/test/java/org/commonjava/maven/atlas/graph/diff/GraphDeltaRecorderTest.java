@@ -0,0 +1,134 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.graph.diff;
+
+import static org.commonjava.maven.atlas.graph.GraphFixtures.DECLARING;
+import static org.commonjava.maven.atlas.graph.GraphFixtures.SOURCE;
+import static org.commonjava.maven.atlas.graph.GraphFixtures.revision;
+import static org.commonjava.maven.atlas.ident.util.IdentityUtils.projectVersion;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.commonjava.maven.atlas.graph.model.EProjectDirectRelationships;
+import org.commonjava.maven.atlas.graph.model.SimpleEProjectGraph;
+import org.commonjava.maven.atlas.graph.rel.SimpleDependencyRelationship;
+import org.commonjava.maven.atlas.ident.DependencyScope;
+import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
+import org.junit.Test;
+
+public class GraphDeltaRecorderTest
+{
+
+    private final URI source = SOURCE;
+
+    private final URI mirror = URI.create( "test:mirror" );
+
+    private final ProjectVersionRef project = DECLARING;
+
+    private final ProjectVersionRef other = projectVersion( "org.test", "other", "1" );
+
+    private SimpleDependencyRelationship dep( final String artifactId, final String version, final int idx )
+    {
+        return new SimpleDependencyRelationship( source, project, projectVersion( "org.test", artifactId, version ).asJarArtifact(),
+                                                 DependencyScope.compile, idx, false, false, false );
+    }
+
+    @Test
+    public void recordedDeltasKeepReplicaCurrent()
+    {
+        final SimpleEProjectGraph graph = new SimpleEProjectGraph();
+        graph.add( revision( dep( "kept", "1", 0 ), dep( "changed", "1", 1 ), dep( "dropped", "1", 2 ) ) );
+        graph.add( new EProjectDirectRelationships.Builder( source, other ).build() );
+
+        final SimpleEProjectGraph replica = new SimpleEProjectGraph();
+        replica.add( graph.getDirectRelationships( project ) );
+        replica.add( graph.getDirectRelationships( other ) );
+
+        final GraphDeltaRecorder recorder = new GraphDeltaRecorder( graph, 10 );
+        graph.add( revision( dep( "kept", "1", 0 ).addSource( mirror ), dep( "changed", "2", 1 ),
+                             dep( "new", "1", 2 ) ) );
+        graph.remove( other );
+        recorder.detach();
+        graph.add( revision() );
+
+        final List<GraphDelta> deltas = recorder.drain();
+        assertThat( recorder.getSequence(), equalTo( 15L ) );
+        assertThat( deltas.size(), equalTo( 5 ) );
+        assertThat( deltas.get( 0 ).getSequence(), equalTo( 11L ) );
+        assertThat( new HashSet<GraphDelta.Op>( Arrays.asList( deltas.get( 0 ).getOp(), deltas.get( 1 ).getOp(),
+                                                               deltas.get( 2 ).getOp(), deltas.get( 3 ).getOp() ) ),
+                    equalTo( new HashSet<GraphDelta.Op>( Arrays.asList( GraphDelta.Op.ADD, GraphDelta.Op.REMOVE,
+                                                                        GraphDelta.Op.MODIFY,
+                                                                        GraphDelta.Op.ADD_SOURCES ) ) ) );
+        assertThat( deltas.get( 4 ).getOp(), equalTo( GraphDelta.Op.REMOVE_PROJECT ) );
+        assertThat( recorder.drain().isEmpty(), equalTo( true ) );
+
+        for ( final GraphDelta delta : deltas )
+        {
+            delta.applyTo( replica );
+        }
+
+        assertThat( replica.getDirectRelationships( other ), nullValue() );
+
+        final EProjectDirectRelationships expected =
+            revision( dep( "kept", "1", 0 ).addSource( mirror ), dep( "changed", "2", 1 ), dep( "new", "1", 2 ) );
+        final EProjectDirectRelationships actual = replica.getDirectRelationships( project );
+        assertThat( RelationshipDiffer.diff( expected, actual )
+                                      .isEmpty(), equalTo( true ) );
+        assertThat( actual.getDependencies()
+                          .get( 0 )
+                          .getSources(), equalTo( expected.getDependencies()
+                                                          .get( 0 )
+                                                          .getSources() ) );
+    }
+
+    @Test
+    public void replayingDeltasIsHarmless()
+    {
+        final EProjectDirectRelationships base = revision( dep( "kept", "1", 0 ) );
+        final List<GraphDelta> deltas =
+            Arrays.asList( GraphDelta.add( 1, dep( "new", "1", 1 ) ),
+                           GraphDelta.modify( 2, dep( "kept", "1", 0 ), dep( "kept", "2", 0 ) ),
+                           GraphDelta.addSources( 3, dep( "kept", "2", 0 ), Arrays.asList( mirror ) ) );
+
+        final EProjectDirectRelationships once = GraphDelta.apply( base, deltas );
+        final EProjectDirectRelationships twice = GraphDelta.apply( once, deltas );
+
+        assertThat( twice.getDependencies(), equalTo( once.getDependencies() ) );
+        assertThat( twice.getDependencies()
+                         .get( 0 )
+                         .getSources(), equalTo( (Object) new HashSet<URI>( Arrays.asList( source, mirror ) ) ) );
+    }
+
+    @Test
+    public void relationshipDeltaCreatesMissingProject()
+    {
+        final EProjectDirectRelationships created = GraphDelta.add( 1, dep( "new", "1", 0 ) )
+                                                              .applyTo( (EProjectDirectRelationships) null );
+
+        assertThat( created.getProjectRef(), equalTo( project ) );
+        assertThat( created.getSource(), equalTo( source ) );
+        assertThat( created.getDependencies()
+                           .size(), equalTo( 1 ) );
+    }
+
+}
@@ -0,0 +1,127 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.graph.diff;
+
+import static org.commonjava.maven.atlas.graph.GraphFixtures.DECLARING;
+import static org.commonjava.maven.atlas.graph.GraphFixtures.SOURCE;
+import static org.commonjava.maven.atlas.graph.GraphFixtures.revision;
+import static org.commonjava.maven.atlas.ident.util.IdentityUtils.projectVersion;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.net.URI;
+import java.util.EnumSet;
+import java.util.List;
+
+import org.commonjava.maven.atlas.graph.diff.RelationshipChange.Attribute;
+import org.commonjava.maven.atlas.graph.diff.RelationshipChange.Kind;
+import org.commonjava.maven.atlas.graph.model.EProjectDirectRelationships;
+import org.commonjava.maven.atlas.graph.model.SimpleEProjectGraph;
+import org.commonjava.maven.atlas.graph.rel.SimpleDependencyRelationship;
+import org.commonjava.maven.atlas.ident.DependencyScope;
+import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
+import org.junit.Test;
+
+public class RelationshipDifferTest
+{
+
+    private final URI source = SOURCE;
+
+    private final ProjectVersionRef project = DECLARING;
+
+    private SimpleDependencyRelationship dep( final String artifactId, final String version,
+                                              final DependencyScope scope, final int idx )
+    {
+        return new SimpleDependencyRelationship( source, project, projectVersion( "org.test", artifactId, version ).asJarArtifact(),
+                                                 scope, idx, false, false, false );
+    }
+
+    @Test
+    public void reportsAddedRemovedAndChangedRelationships()
+    {
+        final EProjectDirectRelationships before =
+            revision( dep( "kept", "1", DependencyScope.compile, 0 ), dep( "changed", "1", DependencyScope.compile, 1 ),
+                      dep( "dropped", "1", DependencyScope.compile, 2 ) );
+        final EProjectDirectRelationships after =
+            revision( dep( "kept", "1", DependencyScope.compile, 0 ), dep( "changed", "2", DependencyScope.test, 1 ),
+                      dep( "new", "1", DependencyScope.runtime, 2 ) );
+
+        final List<RelationshipChange> changes = RelationshipDiffer.diff( before, after )
+                                                                   .getChanges();
+
+        assertThat( changes.size(), equalTo( 3 ) );
+
+        assertThat( changes.get( 0 )
+                           .getKind(), equalTo( Kind.CHANGED ) );
+        assertThat( changes.get( 0 )
+                           .getChangedAttributes(), equalTo( (Object) EnumSet.of( Attribute.TARGET, Attribute.SCOPE ) ) );
+
+        assertThat( changes.get( 1 )
+                           .getKind(), equalTo( Kind.ADDED ) );
+        assertThat( changes.get( 1 )
+                           .getAfter()
+                           .getTarget()
+                           .getArtifactId(), equalTo( "new" ) );
+
+        assertThat( changes.get( 2 )
+                           .getKind(), equalTo( Kind.REMOVED ) );
+        assertThat( changes.get( 2 )
+                           .getAfter(), nullValue() );
+    }
+
+    @Test
+    public void graphChangeSetAppliesToAnotherGraph()
+    {
+        final ProjectVersionRef other = projectVersion( "org.test", "other", "1" );
+        final ProjectVersionRef added = projectVersion( "org.test", "added", "1" );
+
+        final EProjectDirectRelationships before = revision( dep( "a", "1", DependencyScope.compile, 0 ) );
+        final EProjectDirectRelationships after =
+            revision( dep( "a", "1", DependencyScope.provided, 0 ), dep( "b", "1", DependencyScope.compile, 1 ) );
+
+        final SimpleEProjectGraph oldGraph = new SimpleEProjectGraph();
+        oldGraph.add( before );
+        oldGraph.add( new EProjectDirectRelationships.Builder( source, other ).build() );
+
+        final SimpleEProjectGraph newGraph = new SimpleEProjectGraph();
+        newGraph.add( after );
+        newGraph.add( new EProjectDirectRelationships.Builder( source, added ).build() );
+
+        final GraphChangeSet changes = RelationshipDiffer.diff( oldGraph, newGraph );
+        assertThat( changes.getAddedProjects()
+                           .size(), equalTo( 1 ) );
+        assertThat( changes.getRemovedProjects()
+                           .get( 0 ), equalTo( other ) );
+        assertThat( changes.getModifiedProjects()
+                           .size(), equalTo( 1 ) );
+
+        final SimpleEProjectGraph replica = new SimpleEProjectGraph();
+        replica.add( before );
+        replica.add( new EProjectDirectRelationships.Builder( source, other ).build() );
+
+        changes.applyTo( replica );
+
+        assertThat( replica.getProjects(), equalTo( newGraph.getProjects() ) );
+        assertThat( RelationshipDiffer.diff( replica, newGraph )
+                                      .isEmpty(), equalTo( true ) );
+        assertThat( replica.getDirectRelationships( project )
+                           .getDependencies()
+                           .get( 0 )
+                           .getScope(), equalTo( DependencyScope.provided ) );
+    }
+
+}
@@ -0,0 +1,101 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.graph.filter;
+
+import static org.commonjava.maven.atlas.graph.filter.EdgeFilter.managed;
+import static org.commonjava.maven.atlas.graph.filter.EdgeFilter.optional;
+import static org.commonjava.maven.atlas.graph.filter.EdgeFilter.scopes;
+import static org.commonjava.maven.atlas.graph.filter.EdgeFilter.scopesImpliedBy;
+import static org.commonjava.maven.atlas.graph.filter.EdgeFilter.types;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import org.commonjava.maven.atlas.graph.rel.RelationshipType;
+import org.commonjava.maven.atlas.ident.DependencyScope;
+import org.junit.Test;
+
+public class EdgeFilterTest
+{
+
+    private int dep( final DependencyScope scope, final boolean managed, final boolean optional )
+    {
+        return EdgeBits.pack( RelationshipType.DEPENDENCY, scope, managed, false, false, optional );
+    }
+
+    private final int plugin = EdgeBits.pack( RelationshipType.PLUGIN, null, false, false, false, false );
+
+    @Test
+    public void conjunctionCompilesToSingleTerm()
+    {
+        final EdgeFilter filter =
+            types( RelationshipType.DEPENDENCY ).and( managed( false ) )
+                                                .and( scopes( DependencyScope.compile, DependencyScope.runtime ) )
+                                                .and( optional( false ) );
+
+        assertThat( filter.getTermCount(), equalTo( 1 ) );
+        assertThat( filter.accept( dep( DependencyScope.compile, false, false ) ), equalTo( true ) );
+        assertThat( filter.accept( dep( DependencyScope.runtime, false, false ) ), equalTo( true ) );
+        assertThat( filter.accept( dep( DependencyScope.test, false, false ) ), equalTo( false ) );
+        assertThat( filter.accept( dep( DependencyScope.compile, true, false ) ), equalTo( false ) );
+        assertThat( filter.accept( dep( DependencyScope.compile, false, true ) ), equalTo( false ) );
+        assertThat( filter.accept( plugin ), equalTo( false ) );
+    }
+
+    @Test
+    public void impliedScopesMatchDependencyScopeImplies()
+    {
+        for ( final DependencyScope scope : DependencyScope.values() )
+        {
+            final EdgeFilter filter = scopesImpliedBy( scope );
+            for ( final DependencyScope candidate : DependencyScope.values() )
+            {
+                assertThat( scope + " -> " + candidate, filter.accept( dep( candidate, false, false ) ),
+                            equalTo( scope.implies( candidate ) ) );
+            }
+
+            assertThat( filter.accept( plugin ), equalTo( true ) );
+        }
+    }
+
+    @Test
+    public void orAndNotAreConsistent()
+    {
+        final EdgeFilter a = types( RelationshipType.DEPENDENCY ).and( scopes( DependencyScope.test ) );
+        final EdgeFilter b = managed( true );
+        final EdgeFilter either = a.or( b );
+        final EdgeFilter neither = either.not();
+
+        final int[] edges =
+            { dep( DependencyScope.test, false, false ), dep( DependencyScope.compile, true, false ),
+                dep( DependencyScope.compile, false, true ), plugin };
+
+        for ( final int edge : edges )
+        {
+            final boolean expected = a.accept( edge ) || b.accept( edge );
+            assertThat( either.accept( edge ), equalTo( expected ) );
+            assertThat( neither.accept( edge ), equalTo( !expected ) );
+            assertThat( neither.not()
+                               .accept( edge ), equalTo( expected ) );
+        }
+
+        assertThat( EdgeFilter.all()
+                              .not(), equalTo( EdgeFilter.none() ) );
+        assertThat( EdgeFilter.none()
+                              .not(), equalTo( EdgeFilter.all() ) );
+        assertThat( b.or( b.not() ), equalTo( EdgeFilter.all() ) );
+    }
+
+}
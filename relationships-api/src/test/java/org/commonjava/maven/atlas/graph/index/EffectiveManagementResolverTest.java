@@ -0,0 +1,164 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.graph.index;
+
+import static org.commonjava.maven.atlas.graph.GraphFixtures.SOURCE;
+import static org.commonjava.maven.atlas.graph.GraphFixtures.project;
+import static org.commonjava.maven.atlas.ident.util.IdentityUtils.projectVersion;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.net.URI;
+
+import org.commonjava.maven.atlas.graph.model.SimpleEProjectGraph;
+import org.commonjava.maven.atlas.graph.rel.SimpleBomRelationship;
+import org.commonjava.maven.atlas.graph.rel.SimpleDependencyRelationship;
+import org.commonjava.maven.atlas.ident.DependencyScope;
+import org.commonjava.maven.atlas.ident.ref.ProjectRef;
+import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
+import org.commonjava.maven.atlas.ident.ref.SimpleProjectRef;
+import org.junit.Test;
+
+public class EffectiveManagementResolverTest
+{
+
+    private final URI source = SOURCE;
+
+    private final SimpleEProjectGraph graph = new SimpleEProjectGraph();
+
+    private final ProjectRef lib = new SimpleProjectRef( "org.test", "lib" );
+
+    private SimpleDependencyRelationship managed( final ProjectVersionRef from, final ProjectVersionRef to,
+                                                  final DependencyScope scope, final int idx )
+    {
+        return new SimpleDependencyRelationship( source, from, to.asJarArtifact(), scope, idx, true, false, false );
+    }
+
+    @Test
+    public void ownManagementOverridesParentWhichOverridesBom()
+    {
+        final ProjectVersionRef bom = projectVersion( "org.test", "bom", "1" );
+        final ProjectVersionRef parent = projectVersion( "org.test", "parent", "1" );
+        final ProjectVersionRef child = projectVersion( "org.test", "child", "1" );
+        final ProjectVersionRef other = projectVersion( "org.test", "other", "1" );
+
+        graph.add( project( bom ).withDependencies( managed( bom, projectVersion( "org.test", "lib", "1.0" ),
+                                                             DependencyScope.compile, 0 ),
+                                                    managed( bom, projectVersion( "org.test", "other", "3.0" ),
+                                                             DependencyScope.runtime, 1 ) )
+                                 .build() );
+        graph.add( project( parent ).withBoms( new SimpleBomRelationship( source, parent, bom, 0, false, false ) )
+                                    .withDependencies( managed( parent, projectVersion( "org.test", "lib", "2.0" ),
+                                                                DependencyScope.test, 0 ) )
+                                    .build() );
+        graph.add( project( child ).withParent( parent )
+                                   .build() );
+
+        final EffectiveManagementResolver resolver = new EffectiveManagementResolver( graph );
+
+        assertThat( resolver.getManagedVersion( child, lib )
+                            .asProjectVersionRef(), equalTo( projectVersion( "org.test", "lib", "2.0" ) ) );
+        assertThat( resolver.getManagedScope( child, lib ), equalTo( DependencyScope.test ) );
+        assertThat( resolver.getManagedScope( child, other.asProjectRef() ), equalTo( DependencyScope.runtime ) );
+        assertThat( resolver.getManagedDependency( child, projectVersion( "org.test", "lib", "2.0" ).asPomArtifact() ),
+                    nullValue() );
+        assertThat( resolver.getEffectiveManagement( child )
+                            .size(), equalTo( 2 ) );
+    }
+
+    @Test
+    public void childBomBeatsParentBomButNotParentDeclarations()
+    {
+        final ProjectVersionRef parentBom = projectVersion( "org.test", "parent-bom", "1" );
+        final ProjectVersionRef childBom = projectVersion( "org.test", "child-bom", "1" );
+        final ProjectVersionRef parent = projectVersion( "org.test", "parent", "1" );
+        final ProjectVersionRef child = projectVersion( "org.test", "child", "1" );
+        final ProjectRef other = new SimpleProjectRef( "org.test", "other" );
+
+        graph.add( project( parentBom ).withDependencies( managed( parentBom, projectVersion( "org.test", "lib", "1.0" ),
+                                                                   DependencyScope.compile, 0 ) )
+                                       .build() );
+        graph.add( project( childBom ).withDependencies( managed( childBom, projectVersion( "org.test", "lib", "2.0" ),
+                                                                  DependencyScope.runtime, 0 ),
+                                                         managed( childBom, projectVersion( "org.test", "other", "5.0" ),
+                                                                  DependencyScope.compile, 1 ) )
+                                      .build() );
+        graph.add( project( parent ).withBoms( new SimpleBomRelationship( source, parent, parentBom, 0, false, false ) )
+                                    .withDependencies( managed( parent, projectVersion( "org.test", "other", "1.0" ),
+                                                                DependencyScope.compile, 0 ) )
+                                    .build() );
+        graph.add( project( child ).withParent( parent )
+                                   .withBoms( new SimpleBomRelationship( source, child, childBom, 0, false, false ) )
+                                   .build() );
+
+        final EffectiveManagementResolver resolver = new EffectiveManagementResolver( graph );
+
+        assertThat( resolver.getManagedVersion( child, lib )
+                            .getVersionString(), equalTo( "2.0" ) );
+        assertThat( resolver.getManagedScope( child, lib ), equalTo( DependencyScope.runtime ) );
+        assertThat( resolver.getManagedVersion( child, other )
+                            .getVersionString(), equalTo( "1.0" ) );
+        assertThat( resolver.getManagedVersion( parent, lib )
+                            .getVersionString(), equalTo( "1.0" ) );
+    }
+
+    @Test
+    public void graphChangeInvalidatesDescendants()
+    {
+        final ProjectVersionRef parent = projectVersion( "org.test", "parent", "1" );
+        final ProjectVersionRef child = projectVersion( "org.test", "child", "1" );
+
+        graph.add( project( parent ).withDependencies( managed( parent, projectVersion( "org.test", "lib", "1.0" ),
+                                                                DependencyScope.compile, 0 ) )
+                                    .build() );
+        graph.add( project( child ).withParent( parent )
+                                   .build() );
+
+        final EffectiveManagementResolver resolver = new EffectiveManagementResolver( graph );
+        graph.addListener( resolver );
+
+        assertThat( resolver.getManagedVersion( child, lib )
+                            .getVersionString(), equalTo( "1.0" ) );
+
+        graph.add( project( parent ).withDependencies( managed( parent, projectVersion( "org.test", "lib", "1.1" ),
+                                                                DependencyScope.compile, 0 ) )
+                                    .build() );
+
+        assertThat( resolver.getManagedVersion( child, lib )
+                            .getVersionString(), equalTo( "1.1" ) );
+    }
+
+    @Test
+    public void parentCycleDoesNotRecurseForever()
+    {
+        final ProjectVersionRef a = projectVersion( "org.test", "a", "1" );
+        final ProjectVersionRef b = projectVersion( "org.test", "b", "1" );
+
+        graph.add( project( a ).withParent( b )
+                               .withDependencies( managed( a, projectVersion( "org.test", "lib", "1.0" ),
+                                                           DependencyScope.compile, 0 ) )
+                               .build() );
+        graph.add( project( b ).withParent( a )
+                               .build() );
+
+        final EffectiveManagementResolver resolver = new EffectiveManagementResolver( graph );
+
+        assertThat( resolver.getManagedVersion( a, lib )
+                            .getVersionString(), equalTo( "1.0" ) );
+    }
+
+}
@@ -0,0 +1,141 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.graph.index;
+
+import static org.commonjava.maven.atlas.graph.GraphFixtures.SOURCE;
+import static org.commonjava.maven.atlas.graph.GraphFixtures.project;
+import static org.commonjava.maven.atlas.ident.util.IdentityUtils.projectVersion;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.commonjava.maven.atlas.graph.model.SimpleEProjectGraph;
+import org.commonjava.maven.atlas.graph.rel.ProjectRelationship;
+import org.commonjava.maven.atlas.graph.rel.RelationshipType;
+import org.commonjava.maven.atlas.graph.rel.SimpleDependencyRelationship;
+import org.commonjava.maven.atlas.ident.DependencyScope;
+import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
+import org.junit.Test;
+
+public class ProjectAncestryIndexTest
+{
+
+    private final URI source = SOURCE;
+
+    private final SimpleEProjectGraph graph = new SimpleEProjectGraph();
+
+    private final ProjectVersionRef root = projectVersion( "org.test", "root", "1" );
+
+    private final ProjectVersionRef parent = projectVersion( "org.test", "parent", "1" );
+
+    private final ProjectVersionRef childA = projectVersion( "org.test", "child-a", "1" );
+
+    private final ProjectVersionRef childB = projectVersion( "org.test", "child-b", "1" );
+
+    private SimpleDependencyRelationship dep( final ProjectVersionRef from, final String artifactId )
+    {
+        return new SimpleDependencyRelationship( source, from, projectVersion( "org.test", artifactId, "1" ).asJarArtifact(),
+                                                 DependencyScope.compile, 0, false, false, false );
+    }
+
+    private void buildFamily()
+    {
+        graph.add( project( root ).withDependencies( dep( root, "from-root" ) )
+                                  .build() );
+        graph.add( project( parent ).withParent( root )
+                                    .withDependencies( dep( parent, "from-parent" ) )
+                                    .build() );
+        graph.add( project( childA ).withParent( parent )
+                                    .build() );
+        graph.add( project( childB ).withParent( parent )
+                                    .build() );
+    }
+
+    @Test
+    public void siblingsShareAncestry()
+    {
+        buildFamily();
+        final ProjectAncestryIndex index = new ProjectAncestryIndex( graph );
+
+        final ProjectAncestry a = index.getAncestry( childA );
+        final ProjectAncestry b = index.getAncestry( childB );
+
+        assertThat( a.toList(), equalTo( Arrays.asList( childA, parent, root ) ) );
+        assertThat( a.isComplete(), equalTo( true ) );
+        assertThat( a.getRootProject(), equalTo( root ) );
+        assertThat( b.getParent(), sameInstance( a.getParent() ) );
+    }
+
+    @Test
+    public void missingParentAndCycleAreReported()
+    {
+        final ProjectVersionRef missing = projectVersion( "org.test", "missing", "1" );
+        final ProjectVersionRef x = projectVersion( "org.test", "x", "1" );
+        final ProjectVersionRef y = projectVersion( "org.test", "y", "1" );
+
+        graph.add( project( childA ).withParent( missing )
+                                    .build() );
+        graph.add( project( x ).withParent( y )
+                               .build() );
+        graph.add( project( y ).withParent( x )
+                               .build() );
+
+        final ProjectAncestryIndex index = new ProjectAncestryIndex( graph );
+
+        final ProjectAncestry a = index.getAncestry( childA );
+        assertThat( a.size(), equalTo( 1 ) );
+        assertThat( a.getMissingParent(), equalTo( missing ) );
+
+        final ProjectAncestry cyc = index.getAncestry( x );
+        assertThat( cyc.toList(), equalTo( Arrays.asList( x, y ) ) );
+        assertThat( cyc.isCyclic(), equalTo( true ) );
+    }
+
+    @Test
+    public void inheritedViewTracksGraphChanges()
+    {
+        buildFamily();
+        final ProjectAncestryIndex index = new ProjectAncestryIndex( graph );
+        graph.addListener( index );
+
+        final Collection<ProjectRelationship<?, ?>> inherited =
+            index.getInheritedRelationships( childA, RelationshipType.DEPENDENCY );
+        assertThat( inherited.size(), equalTo( 2 ) );
+
+        final List<String> targets = new ArrayList<String>();
+        for ( final ProjectRelationship<?, ?> rel : inherited )
+        {
+            targets.add( rel.getTarget()
+                            .getArtifactId() );
+        }
+        assertThat( targets, equalTo( Arrays.asList( "from-parent", "from-root" ) ) );
+
+        graph.add( project( childA ).withParent( root )
+                                    .build() );
+
+        assertThat( index.getAncestry( childA )
+                         .toList(), equalTo( Arrays.asList( childA, root ) ) );
+        assertThat( index.getInheritedRelationships( childA )
+                         .size(), equalTo( 1 ) );
+    }
+
+}
@@ -0,0 +1,121 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.graph.index;
+
+import static org.commonjava.maven.atlas.ident.util.IdentityUtils.projectVersion;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.net.URI;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.commonjava.maven.atlas.graph.model.EProjectDirectRelationships;
+import org.commonjava.maven.atlas.graph.model.SimpleEProjectGraph;
+import org.commonjava.maven.atlas.graph.rel.SimpleDependencyRelationship;
+import org.commonjava.maven.atlas.ident.DependencyScope;
+import org.commonjava.maven.atlas.ident.ref.ProjectRef;
+import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
+import org.commonjava.maven.atlas.ident.ref.SimpleProjectRef;
+import org.junit.Test;
+
+public class ReverseDependencyIndexTest
+{
+
+    private final URI source = URI.create( "test:source" );
+
+    private final SimpleEProjectGraph graph = new SimpleEProjectGraph();
+
+    private final ProjectRef lib = new SimpleProjectRef( "org.foo", "bar" );
+
+    private void declare( final String artifactId, final String libVersion, final boolean managed )
+    {
+        final ProjectVersionRef from = projectVersion( "org.test", artifactId, "1" );
+        final SimpleDependencyRelationship dep =
+            new SimpleDependencyRelationship( source, from, projectVersion( "org.foo", "bar", libVersion ).asJarArtifact(),
+                                              DependencyScope.compile, 0, managed, false, false );
+
+        graph.add( new EProjectDirectRelationships.Builder( source, from ).withDependencies( dep )
+                                                                          .build() );
+    }
+
+    private Set<String> declaring( final List<ReverseDependency> deps )
+    {
+        final Set<String> result = new HashSet<String>();
+        for ( final ReverseDependency dep : deps )
+        {
+            result.add( dep.getDeclaring()
+                           .getArtifactId() );
+        }
+
+        return result;
+    }
+
+    private Set<String> set( final String... values )
+    {
+        final Set<String> result = new HashSet<String>();
+        for ( final String value : values )
+        {
+            result.add( value );
+        }
+
+        return result;
+    }
+
+    @Test
+    public void versionQueriesRespectRanges()
+    {
+        declare( "exact", "1.2", false );
+        declare( "open-range", "[1.0,)", false );
+        declare( "bounded-range", "[1.0,1.2)", false );
+        declare( "upper-only", "(,2.0]", false );
+        declare( "later-range", "[1.5,2.0]", false );
+        declare( "managed", "1.2", true );
+
+        final ReverseDependencyIndex index = new ReverseDependencyIndex( graph );
+
+        assertThat( declaring( index.getDependents( lib ) ),
+                    equalTo( set( "exact", "open-range", "bounded-range", "upper-only", "later-range" ) ) );
+        assertThat( declaring( index.getDependents( projectVersion( "org.foo", "bar", "1.2" ) ) ),
+                    equalTo( set( "exact", "open-range", "upper-only" ) ) );
+        assertThat( declaring( index.getDependents( projectVersion( "org.foo", "bar", "1.1" ) ) ),
+                    equalTo( set( "open-range", "bounded-range", "upper-only" ) ) );
+        assertThat( declaring( index.getDependents( projectVersion( "org.foo", "bar", "3.0" ) ) ),
+                    equalTo( set( "open-range" ) ) );
+    }
+
+    @Test
+    public void indexFollowsGraphChanges()
+    {
+        declare( "a", "1.0", false );
+
+        final ReverseDependencyIndex index = new ReverseDependencyIndex( graph );
+        graph.addListener( index );
+
+        declare( "b", "[1.0,2.0)", false );
+        assertThat( declaring( index.getDependents( projectVersion( "org.foo", "bar", "1.0" ) ) ),
+                    equalTo( set( "a", "b" ) ) );
+
+        declare( "a", "2.0", false );
+        graph.remove( projectVersion( "org.test", "b", "1" ) );
+
+        assertThat( declaring( index.getDependents( projectVersion( "org.foo", "bar", "1.0" ) ) ), equalTo( set() ) );
+        assertThat( declaring( index.getDependents( lib ) ), equalTo( set( "a" ) ) );
+        assertThat( index.getTargetCount(), equalTo( 1 ) );
+    }
+
+}
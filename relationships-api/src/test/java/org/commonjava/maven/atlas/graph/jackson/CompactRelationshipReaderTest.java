@@ -0,0 +1,234 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.graph.jackson;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.commonjava.maven.atlas.graph.model.EProjectDirectRelationships;
+import org.commonjava.maven.atlas.graph.model.SimpleEProjectGraph;
+import org.commonjava.maven.atlas.graph.rel.DependencyRelationship;
+import org.commonjava.maven.atlas.graph.rel.ProjectRelationship;
+import org.commonjava.maven.atlas.graph.rel.SimpleBomRelationship;
+import org.commonjava.maven.atlas.graph.rel.SimpleDependencyRelationship;
+import org.commonjava.maven.atlas.graph.rel.SimplePluginDependencyRelationship;
+import org.commonjava.maven.atlas.graph.rel.SimplePluginRelationship;
+import org.commonjava.maven.atlas.ident.DependencyScope;
+import org.commonjava.maven.atlas.ident.jackson.ProjectVersionRefSerializerModule;
+import org.commonjava.maven.atlas.ident.ref.ProjectRef;
+import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
+import org.commonjava.maven.atlas.ident.ref.SimpleProjectRef;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import static org.commonjava.maven.atlas.ident.util.IdentityUtils.projectVersion;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class CompactRelationshipReaderTest
+{
+
+    @Test
+    public void graphRoundTripsThroughCompactFormat()
+            throws Exception
+    {
+        final SimpleEProjectGraph graph = buildGraph();
+        final Set<ProjectRelationship<?, ?>> expected = new HashSet<ProjectRelationship<?, ?>>();
+        for ( final ProjectVersionRef ref : graph.getProjects() )
+        {
+            expected.addAll( graph.getDirectRelationships( ref ).getExactAllRelationships() );
+        }
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final long written = CompactRelationshipWriter.write( graph, out );
+
+        final List<ProjectRelationship<?, ?>> read =
+                CompactRelationshipReader.readAll( new ByteArrayInputStream( out.toByteArray() ) );
+
+        assertThat( written, equalTo( (long) expected.size() ) );
+        assertThat( read.size(), equalTo( expected.size() ) );
+        assertThat( new HashSet<ProjectRelationship<?, ?>>( read ), equalTo( expected ) );
+    }
+
+    @Test
+    public void dependencyDetailsSurviveRoundTrip()
+            throws Exception
+    {
+        final ProjectVersionRef ref = projectVersion( "org.test", "p", "1" );
+        final ProjectRef exclude = new SimpleProjectRef( "org.excluded", "ex" );
+        final DependencyRelationship dep =
+                new SimpleDependencyRelationship( Arrays.asList( URI.create( "test:a" ), URI.create( "test:b" ) ),
+                                                  URI.create( "pom:profile:p1" ), ref,
+                                                  projectVersion( "org.dep", "d", "1" ).asJarArtifact(),
+                                                  DependencyScope.provided, 3, true, true, true, exclude );
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CompactRelationshipWriter.write( Arrays.<ProjectRelationship<?, ?>> asList( dep ), out );
+
+        final List<ProjectRelationship<?, ?>> read =
+                CompactRelationshipReader.readAll( new ByteArrayInputStream( out.toByteArray() ) );
+
+        assertThat( read.size(), equalTo( 1 ) );
+
+        final DependencyRelationship result = (DependencyRelationship) read.get( 0 );
+        assertThat( result, equalTo( dep ) );
+        assertThat( result.getSources(), equalTo( dep.getSources() ) );
+        assertThat( result.getPomLocation(), equalTo( dep.getPomLocation() ) );
+        assertThat( result.getScope(), equalTo( DependencyScope.provided ) );
+        assertThat( result.getIndex(), equalTo( 3 ) );
+        assertThat( result.isManaged(), equalTo( true ) );
+        assertThat( result.isInherited(), equalTo( true ) );
+        assertThat( result.isOptional(), equalTo( true ) );
+        assertThat( result.getExcludes(), equalTo( dep.getExcludes() ) );
+    }
+
+    @Test
+    public void stringUsedAsBothUriAndRefRoundTrips()
+            throws Exception
+    {
+        // "org.excluded:ex" is both a valid URI and the exclude's ref, so both land on the same string table entry
+        final ProjectVersionRef ref = projectVersion( "org.test", "p", "1" );
+        final ProjectRef exclude = new SimpleProjectRef( "org.excluded", "ex" );
+        final URI same = URI.create( exclude.toString() );
+        final DependencyRelationship dep =
+                new SimpleDependencyRelationship( same, same, ref,
+                                                  projectVersion( "org.dep", "d", "1" ).asJarArtifact(),
+                                                  DependencyScope.compile, 0, false, false, false, exclude );
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CompactRelationshipWriter.write( Arrays.<ProjectRelationship<?, ?>> asList( dep ), out );
+
+        final List<ProjectRelationship<?, ?>> read =
+                CompactRelationshipReader.readAll( new ByteArrayInputStream( out.toByteArray() ) );
+
+        final DependencyRelationship result = (DependencyRelationship) read.get( 0 );
+        assertThat( result.getSources(), equalTo( dep.getSources() ) );
+        assertThat( result.getPomLocation(), equalTo( same ) );
+        assertThat( result.getExcludes(), equalTo( dep.getExcludes() ) );
+    }
+
+    @Test( expected = IOException.class )
+    public void oneShotIterableIsRejected()
+            throws Exception
+    {
+        final List<ProjectRelationship<?, ?>> rels = new ArrayList<ProjectRelationship<?, ?>>();
+        for ( final ProjectVersionRef ref : buildGraph().getProjects() )
+        {
+            rels.add( new SimpleBomRelationship( URI.create( "test:source" ), ref,
+                                                 projectVersion( "org.test", "bom", "1" ), 0, false, false ) );
+        }
+
+        final Iterator<ProjectRelationship<?, ?>> once = rels.iterator();
+        CompactRelationshipWriter.write( new Iterable<ProjectRelationship<?, ?>>()
+        {
+            @Override
+            public Iterator<ProjectRelationship<?, ?>> iterator()
+            {
+                return once;
+            }
+        }, new ByteArrayOutputStream() );
+    }
+
+    @Test( expected = IOException.class )
+    public void iterableThatChangesBetweenPassesIsRejected()
+            throws Exception
+    {
+        final URI source = URI.create( "test:source" );
+        final ProjectVersionRef ref = projectVersion( "org.test", "p", "1" );
+        final int[] pass = { 0 };
+
+        CompactRelationshipWriter.write( new Iterable<ProjectRelationship<?, ?>>()
+        {
+            @Override
+            public Iterator<ProjectRelationship<?, ?>> iterator()
+            {
+                final ProjectVersionRef bom = projectVersion( "org.test", "bom", String.valueOf( ++pass[0] ) );
+                return Collections.<ProjectRelationship<?, ?>> singletonList(
+                        new SimpleBomRelationship( source, ref, bom, 0, false, false ) )
+                                  .iterator();
+            }
+        }, new ByteArrayOutputStream() );
+    }
+
+    @Test
+    public void compactOutputIsSmallerThanPlainJson()
+            throws Exception
+    {
+        final SimpleEProjectGraph graph = buildGraph();
+
+        final ObjectMapper mapper = new ObjectMapper();
+        mapper.registerModules( new ProjectVersionRefSerializerModule(), new ProjectRelationshipSerializerModule() );
+
+        final ByteArrayOutputStream plain = new ByteArrayOutputStream();
+        final ProjectRelationshipWriter writer = new ProjectRelationshipWriter( mapper, plain );
+        writer.writeAll( graph );
+        writer.close();
+
+        final ByteArrayOutputStream compact = new ByteArrayOutputStream();
+        CompactRelationshipWriter.write( graph, compact );
+
+        assertThat( compact.size() < plain.size() / 2, equalTo( true ) );
+    }
+
+    private SimpleEProjectGraph buildGraph()
+    {
+        final URI source = URI.create( "test:source" );
+        final ProjectVersionRef parent = projectVersion( "org.test", "parent", "1" );
+        final ProjectVersionRef plugin = projectVersion( "org.plugins", "plugin", "1" );
+        final ProjectVersionRef bom = projectVersion( "org.test", "bom", "1" );
+
+        final SimpleEProjectGraph graph = new SimpleEProjectGraph();
+        for ( int p = 0; p < 20; p++ )
+        {
+            final ProjectVersionRef ref = projectVersion( "org.test", "p" + p, "1" );
+            graph.add( new EProjectDirectRelationships.Builder( source, ref ).withParent( parent )
+                                                                             .withBoms( new SimpleBomRelationship(
+                                                                                     source, ref, bom, 0, false,
+                                                                                     false ) )
+                                                                             .withDependencies(
+                                                                                     new SimpleDependencyRelationship(
+                                                                                             source, ref,
+                                                                                             projectVersion( "org.dep",
+                                                                                                             "d" + p,
+                                                                                                             "1" ).asJarArtifact(),
+                                                                                             DependencyScope.test, 0,
+                                                                                             false, false, false ) )
+                                                                             .withPlugins( new SimplePluginRelationship(
+                                                                                     source, ref, plugin, 0, false,
+                                                                                     false ) )
+                                                                             .withPluginDependencies(
+                                                                                     new SimplePluginDependencyRelationship(
+                                                                                             source, ref,
+                                                                                             plugin.asProjectRef(),
+                                                                                             projectVersion( "org.dep",
+                                                                                                             "pd",
+                                                                                                             "1" ).asJarArtifact(),
+                                                                                             0, false, false ) )
+                                                                             .build() );
+        }
+
+        return graph;
+    }
+}
@@ -0,0 +1,204 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.graph.jackson;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.commonjava.maven.atlas.graph.diff.GraphDelta;
+import org.commonjava.maven.atlas.graph.diff.GraphDeltaRecorder;
+import org.commonjava.maven.atlas.graph.diff.RelationshipDiffer;
+import org.commonjava.maven.atlas.graph.model.EProjectDirectRelationships;
+import org.commonjava.maven.atlas.graph.model.PersistentEProjectGraph;
+import org.commonjava.maven.atlas.graph.model.SimpleEProjectGraph;
+import org.commonjava.maven.atlas.graph.rel.SimpleDependencyRelationship;
+import org.commonjava.maven.atlas.graph.rel.SimplePluginDependencyRelationship;
+import org.commonjava.maven.atlas.graph.rel.SimplePluginRelationship;
+import org.commonjava.maven.atlas.ident.DependencyScope;
+import org.commonjava.maven.atlas.ident.jackson.ProjectVersionRefSerializerModule;
+import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.commonjava.maven.atlas.ident.util.IdentityUtils.projectVersion;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class GraphDeltaReaderTest
+{
+
+    private final URI source = URI.create( "test:source" );
+
+    private ObjectMapper mapper;
+
+    @Before
+    public void before()
+    {
+        mapper = new ObjectMapper();
+        mapper.registerModules( new ProjectVersionRefSerializerModule(), new ProjectRelationshipSerializerModule() );
+    }
+
+    @Test
+    public void shippedDeltasBringReplicaUpToDate()
+            throws Exception
+    {
+        final SimpleEProjectGraph graph = new SimpleEProjectGraph();
+        final GraphDeltaRecorder recorder = new GraphDeltaRecorder( graph, 0 );
+
+        for ( int p = 0; p < 5; p++ )
+        {
+            graph.add( project( p, "1" ) );
+        }
+
+        final byte[] first = write( recorder.drain() );
+
+        graph.add( project( 2, "2" ) );
+        graph.remove( projectVersion( "org.test", "p4", "1" ) );
+        graph.add( project( 0, "1", URI.create( "test:mirror" ) ) );
+
+        final byte[] second = write( recorder.drain() );
+
+        final SimpleEProjectGraph replica = new SimpleEProjectGraph();
+        GraphDeltaReader reader = new GraphDeltaReader( mapper, new ByteArrayInputStream( first ), 0 );
+        reader.applyTo( replica );
+        final long shipped = reader.getLastSequence();
+        reader.close();
+
+        // the second shipment is read after re-reading the tail of the first, which must be skipped
+        final ByteArrayOutputStream both = new ByteArrayOutputStream();
+        both.write( first );
+        both.write( second );
+
+        reader = new GraphDeltaReader( mapper, new ByteArrayInputStream( both.toByteArray() ), shipped );
+        reader.applyTo( replica );
+        reader.close();
+
+        assertThat( reader.getLastSequence(), equalTo( recorder.getSequence() ) );
+        assertThat( replica.getProjects(), equalTo( graph.getProjects() ) );
+        assertThat( RelationshipDiffer.diff( graph, replica )
+                                      .isEmpty(), equalTo( true ) );
+
+        final ProjectVersionRef p0 = projectVersion( "org.test", "p0", "1" );
+        assertThat( replica.getDirectRelationships( p0 )
+                           .getDependencies()
+                           .get( 0 )
+                           .getSources(), equalTo( graph.getDirectRelationships( p0 )
+                                                        .getDependencies()
+                                                        .get( 0 )
+                                                        .getSources() ) );
+
+        final PersistentEProjectGraph persistent =
+                new GraphDeltaReader( mapper, new ByteArrayInputStream( both.toByteArray() ), 0 ).applyTo(
+                        PersistentEProjectGraph.empty() );
+        assertThat( RelationshipDiffer.diff( graph, persistent )
+                                      .isEmpty(), equalTo( true ) );
+    }
+
+    @Test( expected = IOException.class )
+    public void gapInSequenceFailsRead()
+            throws Exception
+    {
+        final ProjectVersionRef ref = projectVersion( "org.test", "p", "1" );
+        final byte[] data = write( Arrays.asList( GraphDelta.addProject( 5, ref, source ),
+                                                  GraphDelta.removeProject( 6, ref ) ) );
+
+        new GraphDeltaReader( mapper, new ByteArrayInputStream( data ), 3 ).read();
+    }
+
+    @Test
+    public void failedBatchIsNotCountedAsApplied()
+            throws Exception
+    {
+        final ProjectVersionRef a = projectVersion( "org.test", "a", "1" );
+        final ProjectVersionRef b = projectVersion( "org.test", "b", "1" );
+        final ProjectVersionRef c = projectVersion( "org.test", "c", "1" );
+
+        // b's plugin dependency has no plugin, so b's batch can't be applied
+        final byte[] data = write( Arrays.asList( GraphDelta.addProject( 1, a, source ), GraphDelta.add( 2,
+                new SimpleDependencyRelationship( source, a, projectVersion( "org.dep", "d", "1" ).asJarArtifact(),
+                                                  DependencyScope.compile, 0, false, false, false ) ),
+                                                  GraphDelta.addProject( 3, b, source ), GraphDelta.add( 4,
+                new SimplePluginDependencyRelationship( source, b, projectVersion( "org.plugins", "plugin", "1" ),
+                                                        projectVersion( "org.dep", "pd", "1" ).asJarArtifact(), 0,
+                                                        false, false ) ),
+                                                  GraphDelta.addProject( 5, c, source ) ) );
+
+        final SimpleEProjectGraph replica = new SimpleEProjectGraph();
+        final GraphDeltaReader reader = new GraphDeltaReader( mapper, new ByteArrayInputStream( data ), 0 );
+        try
+        {
+            reader.applyTo( replica );
+            fail( "Orphaned plugin dependency should fail to apply" );
+        }
+        catch ( final IllegalArgumentException e )
+        {
+            // expected
+        }
+
+        assertThat( reader.getLastSequence(), equalTo( 2L ) );
+        assertThat( replica.getProjects(), equalTo( Collections.singleton( a ) ) );
+
+        final GraphDeltaReader persistent = new GraphDeltaReader( mapper, new ByteArrayInputStream( data ), 0 );
+        try
+        {
+            persistent.applyTo( PersistentEProjectGraph.empty() );
+            fail( "Orphaned plugin dependency should fail to apply" );
+        }
+        catch ( final IllegalArgumentException e )
+        {
+            // expected
+        }
+
+        assertThat( persistent.getLastSequence(), equalTo( 0L ) );
+    }
+
+    private EProjectDirectRelationships project( final int p, final String depVersion, final URI... extraSources )
+    {
+        final ProjectVersionRef ref = projectVersion( "org.test", "p" + p, "1" );
+        final ProjectVersionRef plugin = projectVersion( "org.plugins", "plugin", "1" );
+
+        return new EProjectDirectRelationships.Builder( source, ref ).withParent( projectVersion( "org.test", "parent", "1" ) )
+                                                                     .withDependencies( new SimpleDependencyRelationship(
+                                                                             source, ref, projectVersion( "org.dep", "d", depVersion ).asJarArtifact(),
+                                                                             DependencyScope.test, 0, false, false, false,
+                                                                             projectVersion( "org.ex", "cluded", "1" ).asProjectRef() ).addSources(
+                                                                             Arrays.asList( extraSources ) ) )
+                                                                     .withPlugins( new SimplePluginRelationship( source, ref, plugin, 0, false, false ) )
+                                                                     .withPluginDependencies( new SimplePluginDependencyRelationship(
+                                                                             source, ref, plugin.asProjectRef(),
+                                                                             projectVersion( "org.dep", "pd", "1" ).asJarArtifact(), 0, false, false ) )
+                                                                     .build();
+    }
+
+    private byte[] write( final List<GraphDelta> deltas )
+            throws IOException
+    {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final GraphDeltaWriter writer = new GraphDeltaWriter( mapper, out );
+        writer.writeAll( deltas );
+        writer.close();
+
+        return out.toByteArray();
+    }
+
+}
@@ -0,0 +1,196 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.graph.jackson;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.commonjava.maven.atlas.graph.rel.ProjectRelationship;
+import org.commonjava.maven.atlas.graph.rel.SimpleDependencyRelationship;
+import org.commonjava.maven.atlas.graph.rel.SimplePluginDependencyRelationship;
+import org.commonjava.maven.atlas.ident.DependencyScope;
+import org.commonjava.maven.atlas.ident.jackson.ProjectVersionRefSerializerModule;
+import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
+import org.commonjava.maven.atlas.ident.ref.SimpleProjectRef;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.commonjava.maven.atlas.ident.util.IdentityUtils.projectVersion;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class NdjsonRelationshipReaderTest
+{
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private ObjectMapper mapper;
+
+    private List<ProjectRelationship<?, ?>> rels;
+
+    @Before
+    public void before()
+    {
+        mapper = new ObjectMapper();
+        mapper.registerModules( new ProjectVersionRefSerializerModule(), new ProjectRelationshipSerializerModule() );
+
+        final URI source = URI.create( "test:source" );
+        rels = new ArrayList<ProjectRelationship<?, ?>>();
+        for ( int p = 0; p < 25; p++ )
+        {
+            final ProjectVersionRef ref = projectVersion( "org.test", "p" + p, "1" );
+            rels.add( new SimpleDependencyRelationship( source, ref,
+                                                        projectVersion( "org.dep", "d" + p, "1" ).asJarArtifact(),
+                                                        DependencyScope.runtime, p, false, false, false ) );
+            rels.add( new SimplePluginDependencyRelationship( source, ref,
+                                                              new SimpleProjectRef( "org.plugins", "plugin" ),
+                                                              projectVersion( "org.dep", "pd", "1" ).asJarArtifact(),
+                                                              0, false, false ) );
+        }
+    }
+
+    @Test
+    public void lineDelimitedOutputReadsBackThroughIterator()
+            throws Exception
+    {
+        final byte[] data = write();
+        assertThat( count( data, '\n' ), equalTo( rels.size() ) );
+
+        final NdjsonRelationshipReader reader =
+                new NdjsonRelationshipReader( mapper, Channels.newChannel( new ByteArrayInputStream( data ) ), 16 );
+
+        final List<ProjectRelationship<?, ?>> read = new ArrayList<ProjectRelationship<?, ?>>();
+        while ( reader.hasNext() )
+        {
+            read.add( reader.next() );
+        }
+        reader.close();
+
+        assertThat( read, equalTo( rels ) );
+        assertThat( reader.getLineNumber(), equalTo( (long) rels.size() ) );
+        assertThat( reader.getErrorCount(), equalTo( 0L ) );
+    }
+
+    @Test
+    public void badLinesAreReportedAndSkipped()
+            throws Exception
+    {
+        final String first = mapper.writeValueAsString( rels.get( 0 ) );
+        final String second = mapper.writeValueAsString( rels.get( 1 ) );
+        final String input = first + "\r\n{\"not json\n\n   \n{\"rel\":\"dependency\"}\n" + second;
+
+        final List<Long> badLines = new ArrayList<Long>();
+        final NdjsonRelationshipReader reader =
+                new NdjsonRelationshipReader( mapper, new ByteArrayInputStream( input.getBytes( "UTF-8" ) ) ).onError(
+                        new NdjsonRelationshipReader.ErrorHandler()
+                        {
+                            @Override
+                            public void badLine( final long lineNumber, final String line, final Exception error )
+                            {
+                                badLines.add( lineNumber );
+                            }
+                        } );
+
+        assertThat( reader.read(), equalTo( (ProjectRelationship) rels.get( 0 ) ) );
+        assertThat( reader.read(), equalTo( (ProjectRelationship) rels.get( 1 ) ) );
+        assertThat( reader.read() == null, equalTo( true ) );
+        reader.close();
+
+        assertThat( badLines.size(), equalTo( 2 ) );
+        assertThat( badLines.get( 0 ), equalTo( 2L ) );
+        assertThat( badLines.get( 1 ), equalTo( 5L ) );
+        assertThat( reader.getErrorCount(), equalTo( 2L ) );
+        assertThat( reader.getLineNumber(), equalTo( 6L ) );
+    }
+
+    @Test
+    public void fileChannelReadsInBatches()
+            throws Exception
+    {
+        final File file = temp.newFile( "rels.ndjson" );
+        final FileOutputStream out = new FileOutputStream( file );
+        try
+        {
+            out.write( write() );
+        }
+        finally
+        {
+            out.close();
+        }
+
+        final List<Integer> sizes = new ArrayList<Integer>();
+        final List<ProjectRelationship<?, ?>> read = new ArrayList<ProjectRelationship<?, ?>>();
+
+        final FileInputStream in = new FileInputStream( file );
+        final NdjsonRelationshipReader reader = new NdjsonRelationshipReader( mapper, in.getChannel() );
+        final long total = reader.readBatches( 20, new NdjsonRelationshipReader.BatchHandler()
+        {
+            @Override
+            public void handle( final List<ProjectRelationship<?, ?>> batch )
+                    throws IOException
+            {
+                sizes.add( batch.size() );
+                read.addAll( batch );
+            }
+        } );
+        reader.close();
+
+        assertThat( total, equalTo( 50L ) );
+        assertThat( sizes.toString(), equalTo( "[20, 20, 10]" ) );
+        assertThat( read, equalTo( rels ) );
+    }
+
+    private byte[] write()
+            throws IOException
+    {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final ProjectRelationshipWriter writer = ProjectRelationshipWriter.lineDelimited( mapper, out );
+        for ( final ProjectRelationship<?, ?> rel : rels )
+        {
+            writer.write( rel );
+        }
+        writer.close();
+
+        return out.toByteArray();
+    }
+
+    private static int count( final byte[] data, final char c )
+    {
+        int count = 0;
+        for ( final byte b : data )
+        {
+            if ( b == c )
+            {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+}
@@ -0,0 +1,254 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.graph.jackson;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.commonjava.maven.atlas.graph.diff.RelationshipDiffer;
+import org.commonjava.maven.atlas.graph.model.EProjectDirectRelationships;
+import org.commonjava.maven.atlas.graph.model.PersistentEProjectGraph;
+import org.commonjava.maven.atlas.graph.model.SimpleEProjectGraph;
+import org.commonjava.maven.atlas.graph.rel.PluginRelationship;
+import org.commonjava.maven.atlas.graph.rel.ProjectRelationship;
+import org.commonjava.maven.atlas.graph.rel.SimpleDependencyRelationship;
+import org.commonjava.maven.atlas.graph.rel.SimplePluginDependencyRelationship;
+import org.commonjava.maven.atlas.graph.rel.SimplePluginRelationship;
+import org.commonjava.maven.atlas.ident.DependencyScope;
+import org.commonjava.maven.atlas.ident.jackson.ProjectVersionRefSerializerModule;
+import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.commonjava.maven.atlas.ident.util.IdentityUtils.projectVersion;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class ParallelNdjsonLoaderTest
+{
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private ObjectMapper mapper;
+
+    private SimpleEProjectGraph graph;
+
+    private List<ProjectRelationship<?, ?>> rels;
+
+    @Before
+    public void before()
+    {
+        mapper = new ObjectMapper();
+        mapper.registerModules( new ProjectVersionRefSerializerModule(), new ProjectRelationshipSerializerModule() );
+
+        final URI source = URI.create( "test:source" );
+        final ProjectVersionRef plugin = projectVersion( "org.plugins", "plugin", "1" );
+
+        graph = new SimpleEProjectGraph();
+        rels = new ArrayList<ProjectRelationship<?, ?>>();
+        for ( int p = 0; p < 40; p++ )
+        {
+            final ProjectVersionRef ref = projectVersion( "org.test", "p" + p, "1" );
+            final EProjectDirectRelationships.Builder builder =
+                    new EProjectDirectRelationships.Builder( source, ref ).withParent( projectVersion( "org.test", "parent", "1" ) )
+                                                                          .withPlugins( new SimplePluginRelationship( source, ref, plugin, 0, false, false ) )
+                                                                          .withPluginDependencies( new SimplePluginDependencyRelationship( source, ref, plugin,
+                                                                                                                                           projectVersion( "org.dep", "pd", "1" ).asJarArtifact(),
+                                                                                                                                           0, false, false ) );
+            for ( int d = 0; d < 5; d++ )
+            {
+                builder.withDependencies( new SimpleDependencyRelationship( source, ref,
+                                                                            projectVersion( "org.dep", "d" + d, "1" ).asJarArtifact(),
+                                                                            DependencyScope.compile, d, false, false, false ) );
+            }
+
+            final EProjectDirectRelationships built = builder.build();
+            graph.add( built );
+            rels.addAll( built.getExactAllRelationships() );
+        }
+
+        // projects interleave across chunks, so every project is assembled from several threads
+        Collections.shuffle( rels, new Random( 42 ) );
+    }
+
+    @Test
+    public void chunkedLoadMatchesSourceGraph()
+            throws Exception
+    {
+        final File file = write( null );
+
+        final PersistentEProjectGraph loaded = new ParallelNdjsonLoader( mapper, 4 ).withChunkSize( 512 )
+                                                                                   .load( file );
+
+        assertThat( loaded.size(), equalTo( graph.size() ) );
+        assertThat( RelationshipDiffer.diff( graph, loaded )
+                                      .isEmpty(), equalTo( true ) );
+    }
+
+    @Test
+    public void badLinesAreReportedFromEveryChunk()
+            throws Exception
+    {
+        final File file = write( "{\"broken\n" );
+
+        final AtomicInteger errors = new AtomicInteger();
+        final PersistentEProjectGraph loaded = new ParallelNdjsonLoader( mapper, 3 ).withChunkSize( 1024 )
+                                                                                   .onError( new NdjsonRelationshipReader.ErrorHandler()
+                                                                                   {
+                                                                                       @Override
+                                                                                       public void badLine( final long lineNumber,
+                                                                                                            final String line,
+                                                                                                            final Exception error )
+                                                                                       {
+                                                                                           errors.incrementAndGet();
+                                                                                       }
+                                                                                   } )
+                                                                                   .load( file );
+
+        assertThat( errors.get(), equalTo( rels.size() / 10 ) );
+        assertThat( RelationshipDiffer.diff( graph, loaded )
+                                      .isEmpty(), equalTo( true ) );
+    }
+
+    @Test
+    public void loadedGraphDoesNotDependOnChunking()
+            throws Exception
+    {
+        // some relationships are also found in a second source, which sorts before the first
+        final URI mirror = URI.create( "test:mirror" );
+        for ( int i = 0; i < rels.size(); i += 3 )
+        {
+            rels.add( rels.get( i )
+                          .addSource( mirror ) );
+        }
+        Collections.shuffle( rels, new Random( 7 ) );
+
+        final File file = write( null );
+
+        final String whole = describe( new ParallelNdjsonLoader( mapper, 1 ).load( file ) );
+
+        assertThat( describe( new ParallelNdjsonLoader( mapper, 4 ).withChunkSize( 512 )
+                                                                   .load( file ) ), equalTo( whole ) );
+        assertThat( describe( new ParallelNdjsonLoader( mapper, 3 ).withChunkSize( 700 )
+                                                                   .withRefInterning( 0 )
+                                                                   .load( file ) ), equalTo( whole ) );
+    }
+
+    @Test
+    public void refsAreInternedWithinAChunk()
+            throws Exception
+    {
+        final File file = write( null );
+
+        final PersistentEProjectGraph loaded = new ParallelNdjsonLoader( mapper, 1 ).load( file );
+
+        ProjectVersionRef plugin = null;
+        for ( final ProjectVersionRef ref : loaded.getProjects() )
+        {
+            final PluginRelationship rel = loaded.getDirectRelationships( ref )
+                                                 .getPlugins()
+                                                 .get( 0 );
+            if ( plugin == null )
+            {
+                plugin = rel.getTarget();
+            }
+
+            assertThat( rel.getTarget() == plugin, equalTo( true ) );
+        }
+    }
+
+    @Test
+    public void emptyFileLoadsEmptyGraph()
+            throws Exception
+    {
+        final File file = temp.newFile( "empty.ndjson" );
+
+        assertThat( new ParallelNdjsonLoader( mapper, 2 ).load( file )
+                                                         .size(), equalTo( 0 ) );
+    }
+
+    /**
+     * Everything about the graph the loader decides: each project's source, and its relationships in order, with their
+     * sources.
+     */
+    private static String describe( final PersistentEProjectGraph graph )
+    {
+        final Map<String, String> projects = new TreeMap<String, String>();
+        for ( final ProjectVersionRef ref : graph.getProjects() )
+        {
+            final EProjectDirectRelationships direct = graph.getDirectRelationships( ref );
+            final StringBuilder sb = new StringBuilder().append( direct.getSource() );
+
+            final Iterator<ProjectRelationship<?, ?>> it = direct.relationshipIterator();
+            while ( it.hasNext() )
+            {
+                final ProjectRelationship<?, ?> rel = it.next();
+                sb.append( '\n' )
+                  .append( rel )
+                  .append( ' ' )
+                  .append( rel.getSources() );
+            }
+
+            projects.put( ref.toString(), sb.toString() );
+        }
+
+        return projects.toString();
+    }
+
+    /**
+     * Write the shuffled relationships, adding the given bad line after every tenth one.
+     */
+    private File write( final String badLine )
+            throws IOException
+    {
+        final File file = temp.newFile( "rels.ndjson" );
+        final FileOutputStream out = new FileOutputStream( file );
+        final ProjectRelationshipWriter writer = ProjectRelationshipWriter.lineDelimited( mapper, out );
+        try
+        {
+            for ( int i = 0; i < rels.size(); i++ )
+            {
+                writer.write( rels.get( i ) );
+                if ( badLine != null && i % 10 == 9 )
+                {
+                    writer.flush();
+                    out.write( badLine.getBytes( "UTF-8" ) );
+                }
+            }
+        }
+        finally
+        {
+            writer.close();
+        }
+
+        return file;
+    }
+
+}
@@ -15,10 +15,13 @@
  */
 package org.commonjava.maven.atlas.graph.jackson;
 
+import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.commonjava.maven.atlas.graph.rel.*;
 import org.commonjava.maven.atlas.ident.DependencyScope;
 import org.commonjava.maven.atlas.ident.jackson.ProjectVersionRefSerializerModule;
+import org.commonjava.maven.atlas.ident.ref.ProjectRef;
+import org.commonjava.maven.atlas.ident.ref.SimpleProjectRef;
 import org.commonjava.maven.atlas.ident.ref.SimpleProjectVersionRef;
 import org.junit.Before;
 import org.junit.Test;
@@ -90,4 +93,33 @@ public class ProjectRelationshipSerializerModuleTest
 
         assertThat( (DependencyRelationship) result, equalTo( rel ) );
     }
+
+    @Test
+    public void read_PluginDependencyWithUnknownFields()
+            throws Exception
+    {
+        String json = "{\"extra\":{\"nested\":[1,{\"deep\":true}]},\"type\":\"PLUGIN_DEP\","
+                + "\"source-uris\":[\"test:one\",\"test:two\"],\"declaring\":\"org.foo:bar:1\","
+                + "\"target\":\"org.foo:dep:jar:1.1\",\"plugin\":\"org.foo:plugin\",\"managed\":true,"
+                + "\"idx\":3,\"trailing\":[\"x\"]}";
+
+        PluginDependencyRelationship result =
+                (PluginDependencyRelationship) mapper.readValue( json, ProjectRelationship.class );
+
+        assertThat( result.getPlugin(), equalTo( (ProjectRef) new SimpleProjectRef( "org.foo", "plugin" ) ) );
+        assertThat( result.isManaged(), equalTo( true ) );
+        assertThat( result.getIndex(), equalTo( 3 ) );
+        assertThat( result.getSources().size(), equalTo( 2 ) );
+        assertThat( result.getPomLocation(), equalTo( RelationshipConstants.POM_ROOT_URI ) );
+    }
+
+    @Test( expected = JsonParseException.class )
+    public void read_InvalidSourceUriFails()
+            throws Exception
+    {
+        String json = "{\"type\":\"PARENT\",\"source-uris\":[\"not a uri\"],\"declaring\":\"org.foo:bar:1\","
+                + "\"target\":\"org.foo:parent:1\"}";
+
+        mapper.readValue( json, ProjectRelationship.class );
+    }
 }
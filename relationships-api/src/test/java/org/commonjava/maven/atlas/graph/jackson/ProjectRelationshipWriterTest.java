@@ -0,0 +1,119 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.graph.jackson;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.commonjava.maven.atlas.graph.model.EProjectDirectRelationships;
+import org.commonjava.maven.atlas.graph.model.SimpleEProjectGraph;
+import org.commonjava.maven.atlas.graph.rel.ProjectRelationship;
+import org.commonjava.maven.atlas.graph.rel.SimpleDependencyRelationship;
+import org.commonjava.maven.atlas.graph.rel.SimplePluginDependencyRelationship;
+import org.commonjava.maven.atlas.graph.rel.SimplePluginRelationship;
+import org.commonjava.maven.atlas.ident.DependencyScope;
+import org.commonjava.maven.atlas.ident.jackson.ProjectVersionRefSerializerModule;
+import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
+import org.commonjava.maven.atlas.ident.ref.SimpleProjectRef;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.commonjava.maven.atlas.ident.util.IdentityUtils.projectVersion;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class ProjectRelationshipWriterTest
+{
+
+    private ObjectMapper mapper;
+
+    @Before
+    public void before()
+    {
+        mapper = new ObjectMapper();
+        mapper.registerModules( new ProjectVersionRefSerializerModule(), new ProjectRelationshipSerializerModule() );
+    }
+
+    @Test
+    public void writtenGraphReadsBackAsRelationshipList()
+            throws Exception
+    {
+        final URI source = URI.create( "test:source" );
+        final SimpleEProjectGraph graph = new SimpleEProjectGraph();
+        final Set<ProjectRelationship<?, ?>> expected = new HashSet<ProjectRelationship<?, ?>>();
+
+        for ( int p = 0; p < 20; p++ )
+        {
+            final ProjectVersionRef ref = projectVersion( "org.test", "p" + p, "1" );
+            final ProjectVersionRef plugin = projectVersion( "org.plugins", "plugin", "1" );
+            final EProjectDirectRelationships rels =
+                    new EProjectDirectRelationships.Builder( source, ref ).withParent( projectVersion( "org.test", "parent", "1" ) )
+                                                                          .withDependencies( new SimpleDependencyRelationship(
+                                                                                  source, ref, projectVersion( "org.dep", "d" + p, "1" ).asJarArtifact(),
+                                                                                  DependencyScope.test, 0, false, false, true ) )
+                                                                          .withPlugins( new SimplePluginRelationship( source, ref, plugin, 0,
+                                                                                                                      false, false ) )
+                                                                          .withPluginDependencies( new SimplePluginDependencyRelationship(
+                                                                                  source, ref, new SimpleProjectRef( "org.plugins", "plugin" ),
+                                                                                  projectVersion( "org.dep", "pd", "1" ).asJarArtifact(), 0,
+                                                                                  false, false ) )
+                                                                          .build();
+            graph.add( rels );
+            expected.addAll( rels.getExactAllRelationships() );
+        }
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final ProjectRelationshipWriter writer = new ProjectRelationshipWriter( mapper, out );
+        final long written = writer.writeAll( graph );
+        writer.close();
+
+        assertThat( written, equalTo( 80L ) );
+        assertThat( writer.getCount(), equalTo( 80L ) );
+
+        final List<ProjectRelationship<?, ?>> read =
+                mapper.readValue( out.toByteArray(), new TypeReference<List<ProjectRelationship<?, ?>>>()
+                {
+                } );
+
+        assertThat( read.size(), equalTo( 80 ) );
+        assertThat( new HashSet<ProjectRelationship<?, ?>>( read ), equalTo( expected ) );
+    }
+
+    @Test
+    public void writerMatchesSerializerOutput()
+            throws Exception
+    {
+        final ProjectVersionRef ref = projectVersion( "org.test", "p", "1" );
+        final ProjectRelationship<?, ?> rel =
+                new SimplePluginDependencyRelationship( URI.create( "test:source" ), ref,
+                                                        new SimpleProjectRef( "org.plugins", "plugin" ),
+                                                        projectVersion( "org.dep", "pd", "1" ).asJarArtifact(), 2,
+                                                        true, false );
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final ProjectRelationshipWriter writer = new ProjectRelationshipWriter( mapper, out );
+        writer.write( rel );
+        writer.close();
+
+        assertThat( new String( out.toByteArray(), "UTF-8" ),
+                    equalTo( "[" + mapper.writeValueAsString( rel ) + "]" ) );
+    }
+}
@@ -0,0 +1,234 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.graph.model;
+
+import static org.commonjava.maven.atlas.ident.util.IdentityUtils.projectVersion;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.commonjava.maven.atlas.graph.rel.DependencyRelationship;
+import org.commonjava.maven.atlas.graph.rel.ProjectRelationship;
+import org.commonjava.maven.atlas.graph.rel.SimpleDependencyRelationship;
+import org.commonjava.maven.atlas.graph.rel.SimpleParentRelationship;
+import org.commonjava.maven.atlas.graph.rel.SimplePluginDependencyRelationship;
+import org.commonjava.maven.atlas.graph.rel.SimplePluginRelationship;
+import org.commonjava.maven.atlas.ident.DependencyScope;
+import org.commonjava.maven.atlas.ident.ref.ProjectRef;
+import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
+import org.commonjava.maven.atlas.ident.ref.SimpleProjectRef;
+import org.junit.Test;
+
+public class ConcurrentEProjectGraphBuilderTest
+{
+
+    private static final int PROJECTS = 50;
+
+    private static final int DEPS = 10;
+
+    private final ProjectRef excluded = new SimpleProjectRef( "org.test", "excluded" );
+
+    private EProjectDirectRelationships project( final URI source, final int p )
+    {
+        final ProjectVersionRef ref = projectVersion( "org.test", "p" + p, "1" );
+        final List<DependencyRelationship> deps = new ArrayList<DependencyRelationship>();
+        for ( int d = 0; d < DEPS; d++ )
+        {
+            deps.add( new SimpleDependencyRelationship( source, ref, projectVersion( "org.dep", "d" + d, "1" ).asJarArtifact(),
+                                                        DependencyScope.compile, d, false, false, false, excluded ) );
+        }
+
+        return new EProjectDirectRelationships.Builder( source, ref ).withDependencies( deps )
+                                                                     .build();
+    }
+
+    @Test
+    public void overlappingContributionsAreMergedOnce()
+        throws Exception
+    {
+        final ConcurrentEProjectGraphBuilder builder = new ConcurrentEProjectGraphBuilder( 4 );
+        final int threads = 4;
+
+        final List<Thread> workers = new ArrayList<Thread>();
+        for ( int t = 0; t < threads; t++ )
+        {
+            final URI source = URI.create( "test:source-" + t );
+            final Thread worker = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    for ( int p = 0; p < PROJECTS; p++ )
+                    {
+                        builder.add( project( source, p ) );
+                    }
+                }
+            };
+            workers.add( worker );
+            worker.start();
+        }
+
+        for ( final Thread worker : workers )
+        {
+            worker.join();
+        }
+
+        final PersistentEProjectGraph graph = builder.freeze();
+        assertThat( graph.size(), equalTo( PROJECTS ) );
+
+        for ( int p = 0; p < PROJECTS; p++ )
+        {
+            final List<DependencyRelationship> deps =
+                graph.getDirectRelationships( projectVersion( "org.test", "p" + p, "1" ) )
+                     .getDependencies();
+
+            assertThat( deps.size(), equalTo( DEPS ) );
+            for ( int d = 0; d < DEPS; d++ )
+            {
+                final DependencyRelationship dep = deps.get( d );
+                assertThat( dep.getIndex(), equalTo( d ) );
+                assertThat( dep.getSources()
+                               .size(), equalTo( threads ) );
+                assertThat( dep.getExcludes(), equalTo( Collections.singleton( excluded ) ) );
+            }
+        }
+    }
+
+    @Test( expected = IllegalStateException.class )
+    public void frozenBuilderRejectsContributions()
+    {
+        final ConcurrentEProjectGraphBuilder builder = new ConcurrentEProjectGraphBuilder();
+        builder.add( project( URI.create( "test:source" ), 0 ) );
+        builder.freeze();
+
+        builder.add( project( URI.create( "test:source" ), 1 ) );
+    }
+
+    @Test
+    public void frozenGraphDoesNotDependOnContributionOrder()
+    {
+        final ProjectVersionRef ref = projectVersion( "org.test", "p", "1" );
+        final URI first = URI.create( "test:first" );
+        final URI second = URI.create( "test:second" );
+
+        // the same two dependencies, declared in opposite orders and with different scopes
+        final EProjectDirectRelationships one =
+            new EProjectDirectRelationships.Builder( first, ref ).withDependencies( dep( first, ref, "a", 0, DependencyScope.compile ),
+                                                                                    dep( first, ref, "b", 1, DependencyScope.compile ) )
+                                                                 .build();
+        final EProjectDirectRelationships two =
+            new EProjectDirectRelationships.Builder( second, ref ).withDependencies( dep( second, ref, "b", 0, DependencyScope.test ),
+                                                                                     dep( second, ref, "a", 1, DependencyScope.test ) )
+                                                                  .build();
+
+        final ConcurrentEProjectGraphBuilder forward = new ConcurrentEProjectGraphBuilder();
+        forward.add( one );
+        forward.add( two );
+
+        final ConcurrentEProjectGraphBuilder backward = new ConcurrentEProjectGraphBuilder();
+        backward.add( two );
+        backward.add( one );
+
+        final EProjectDirectRelationships a = forward.freeze()
+                                                     .getDirectRelationships( ref );
+        final EProjectDirectRelationships b = backward.freeze()
+                                                      .getDirectRelationships( ref );
+
+        assertThat( a.getSource(), equalTo( b.getSource() ) );
+        assertThat( a.getDependencies(), equalTo( b.getDependencies() ) );
+        for ( int i = 0; i < a.getDependencies()
+                              .size(); i++ )
+        {
+            final DependencyRelationship depA = a.getDependencies()
+                                                 .get( i );
+            final DependencyRelationship depB = b.getDependencies()
+                                                 .get( i );
+            assertThat( depA.getIndex(), equalTo( depB.getIndex() ) );
+            assertThat( depA.getScope(), equalTo( depB.getScope() ) );
+            assertThat( new ArrayList<URI>( depA.getSources() ), equalTo( new ArrayList<URI>( depB.getSources() ) ) );
+        }
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void conflictingParentsAreRejected()
+    {
+        final ProjectVersionRef ref = projectVersion( "org.test", "p", "1" );
+        final URI source = URI.create( "test:source" );
+
+        final ConcurrentEProjectGraphBuilder builder = new ConcurrentEProjectGraphBuilder();
+        builder.add( new EProjectDirectRelationships.Builder( source, ref ).withParent( projectVersion( "org.test", "parent", "1" ) )
+                                                                           .build() );
+        builder.add( new EProjectDirectRelationships.Builder( source, ref ).withParent( projectVersion( "org.test", "parent", "2" ) )
+                                                                           .build() );
+    }
+
+    @Test
+    public void looseRelationshipsMergeLikeContributions()
+    {
+        final ProjectVersionRef ref = projectVersion( "org.test", "p", "1" );
+        final ProjectVersionRef plugin = projectVersion( "org.plugins", "plugin", "1" );
+        final URI a = URI.create( "test:a" );
+        final URI b = URI.create( "test:b" );
+
+        final ConcurrentEProjectGraphBuilder builder = new ConcurrentEProjectGraphBuilder();
+
+        // the plugin dependency arrives before its plugin, and the dependency twice in one contribution
+        builder.add( b, ref, Collections.singletonList(
+                new SimplePluginDependencyRelationship( b, ref, plugin, projectVersion( "org.dep", "pd", "1" ).asJarArtifact(),
+                                                        0, false, false ) ) );
+        final List<ProjectRelationship<?, ?>> loose = new ArrayList<ProjectRelationship<?, ?>>();
+        loose.add( dep( b, ref, "d", 0, DependencyScope.compile ) );
+        loose.add( dep( a, ref, "d", 0, DependencyScope.compile ) );
+        loose.add( new SimplePluginRelationship( a, ref, plugin, 0, false, false ) );
+        builder.add( a, ref, loose );
+
+        final EProjectDirectRelationships rels = builder.freeze()
+                                                        .getDirectRelationships( ref );
+
+        assertThat( rels.getSource(), equalTo( a ) );
+        assertThat( rels.getDependencies()
+                        .get( 0 )
+                        .getSources(), equalTo( (Set<URI>) new HashSet<URI>( Arrays.asList( a, b ) ) ) );
+        assertThat( rels.getPluginDependencies( plugin, false, false )
+                        .size(), equalTo( 1 ) );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void conflictingParentsInOneLooseContributionAreRejected()
+    {
+        final ProjectVersionRef ref = projectVersion( "org.test", "p", "1" );
+        final URI source = URI.create( "test:source" );
+
+        new ConcurrentEProjectGraphBuilder().add( source, ref, Arrays.asList(
+                new SimpleParentRelationship( source, ref, projectVersion( "org.test", "parent", "1" ) ),
+                new SimpleParentRelationship( source, ref, projectVersion( "org.test", "parent", "2" ) ) ) );
+    }
+
+    private DependencyRelationship dep( final URI source, final ProjectVersionRef ref, final String artifact,
+                                        final int index, final DependencyScope scope )
+    {
+        return new SimpleDependencyRelationship( source, ref, projectVersion( "org.dep", artifact, "1" ).asJarArtifact(),
+                                                 scope, index, false, false, false );
+    }
+
+}
@@ -0,0 +1,219 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.graph.model;
+
+import static org.commonjava.maven.atlas.ident.util.IdentityUtils.projectVersion;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.commonjava.maven.atlas.graph.rel.BomRelationship;
+import org.commonjava.maven.atlas.graph.rel.DependencyRelationship;
+import org.commonjava.maven.atlas.graph.rel.ExtensionRelationship;
+import org.commonjava.maven.atlas.graph.rel.ParentRelationship;
+import org.commonjava.maven.atlas.graph.rel.PluginDependencyRelationship;
+import org.commonjava.maven.atlas.graph.rel.PluginRelationship;
+import org.commonjava.maven.atlas.graph.rel.ProjectRelationship;
+import org.commonjava.maven.atlas.graph.rel.SimpleDependencyRelationship;
+import org.commonjava.maven.atlas.graph.rel.SimplePluginDependencyRelationship;
+import org.commonjava.maven.atlas.graph.rel.SimplePluginRelationship;
+import org.commonjava.maven.atlas.ident.DependencyScope;
+import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
+import org.commonjava.maven.atlas.ident.ref.SimpleProjectRef;
+import org.junit.Test;
+
+public class EProjectDirectRelationshipsTest
+{
+
+    private final URI source = URI.create( "test:source" );
+
+    private final ProjectVersionRef project = projectVersion( "org.test", "project", "1" );
+
+    @Test
+    public void duplicatesAreDroppedAndOrderIsKept()
+    {
+        final List<ProjectRelationship<?, ?>> rels = new ArrayList<ProjectRelationship<?, ?>>();
+        for ( int i = 0; i < 1000; i++ )
+        {
+            rels.add( dependency( i, false ) );
+            rels.add( dependency( i, true ) );
+        }
+
+        // same relationships again, declared by another project; the builder re-targets and drops them
+        for ( int i = 0; i < 1000; i++ )
+        {
+            rels.add( dependency( i, false ).cloneFor( projectVersion( "org.test", "other", "1" ) ) );
+        }
+
+        final EProjectDirectRelationships result =
+            new EProjectDirectRelationships.Builder( source, project ).withRelationships( rels )
+                                                                      .build();
+
+        assertThat( result.getDependencies()
+                          .size(), equalTo( 1000 ) );
+        assertThat( result.getManagedDependencies()
+                          .size(), equalTo( 1000 ) );
+
+        for ( int i = 0; i < 1000; i++ )
+        {
+            assertThat( result.getDependencies()
+                              .get( i )
+                              .getTarget()
+                              .getArtifactId(), equalTo( "dep" + i ) );
+        }
+    }
+
+    @Test
+    public void pluginDependenciesAttachToFirstMatchingPlugin()
+    {
+        final ProjectVersionRef plugin = projectVersion( "org.plugins", "plugin", "1" );
+        final List<ProjectRelationship<?, ?>> rels = new ArrayList<ProjectRelationship<?, ?>>();
+
+        final PluginDependencyRelationship pdr =
+            new SimplePluginDependencyRelationship( source, project, new SimpleProjectRef( "org.plugins", "plugin" ),
+                                                    projectVersion( "org.dep", "pdep", "1" ).asJarArtifact(), 0,
+                                                    false, false );
+
+        // plugin deps ahead of their plugin, and duplicated
+        rels.add( pdr );
+        rels.add( pdr );
+        rels.add( new SimplePluginRelationship( source, project, plugin, 0, false, false ) );
+        rels.add( new SimplePluginRelationship( source, project, projectVersion( "org.plugins", "plugin", "2" ), 1,
+                                                false, false ) );
+
+        final EProjectDirectRelationships result =
+            new EProjectDirectRelationships.Builder( source, project ).withRelationships( rels )
+                                                                      .build();
+
+        assertThat( result.getPlugins()
+                          .size(), equalTo( 2 ) );
+        assertThat( result.getPluginDependencies( plugin, false, false )
+                          .size(), equalTo( 1 ) );
+        assertThat( result.getPluginDependencies( projectVersion( "org.plugins", "plugin", "2" ), false, false ),
+                    nullValue() );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void orphanedPluginDependencyIsRejected()
+    {
+        final PluginDependencyRelationship pdr =
+            new SimplePluginDependencyRelationship( source, project, new SimpleProjectRef( "org.plugins", "missing" ),
+                                                    projectVersion( "org.dep", "pdep", "1" ).asJarArtifact(), 0,
+                                                    false, false );
+
+        new EProjectDirectRelationships.Builder( source, project ).withPluginDependencies( pdr );
+    }
+
+    @Test
+    public void combinedViewsAreCachedAndMatchIteration()
+    {
+        final ProjectVersionRef plugin = projectVersion( "org.plugins", "plugin", "1" );
+        final PluginDependencyRelationship pdr =
+            new SimplePluginDependencyRelationship( source, project, plugin,
+                                                    projectVersion( "org.dep", "pdep", "1" ).asJarArtifact(), 0,
+                                                    false, false );
+
+        final EProjectDirectRelationships result =
+            new EProjectDirectRelationships.Builder( source, project ).withDependencies( dependency( 0, false ),
+                                                                                         dependency( 1, true ) )
+                                                                      .withPlugin( plugin, false, false )
+                                                                      .withPluginDependencies( pdr )
+                                                                      .build();
+
+        // terminal parent, two deps, one plugin, one plugin dep
+        assertThat( result.getRelationshipCount(), equalTo( 5 ) );
+        assertThat( result.getPluginDependencyCount(), equalTo( 1 ) );
+        assertThat( result.getExactAllRelationships(), sameInstance( result.getExactAllRelationships() ) );
+        assertThat( result.getExactAllRelationships()
+                          .size(), equalTo( 5 ) );
+        assertThat( result.getAllRelationships()
+                          .size(), equalTo( 4 ) );
+
+        final List<ProjectRelationship<?, ?>> iterated = new ArrayList<ProjectRelationship<?, ?>>();
+        final Iterator<ProjectRelationship<?, ?>> it = result.relationshipIterator();
+        while ( it.hasNext() )
+        {
+            iterated.add( it.next() );
+        }
+
+        final List<ProjectRelationship<?, ?>> viewed =
+            new ArrayList<ProjectRelationship<?, ?>>( result.getExactAllRelationships() );
+        assertThat( iterated, equalTo( viewed ) );
+
+        final int[] visited = new int[1];
+        result.accept( new EProjectRelationshipVisitor()
+        {
+            @Override
+            public void visitParent( final ParentRelationship rel )
+            {
+                visited[0]++;
+            }
+
+            @Override
+            public void visitBom( final BomRelationship rel )
+            {
+                visited[0]++;
+            }
+
+            @Override
+            public void visitDependency( final DependencyRelationship rel )
+            {
+                visited[0]++;
+            }
+
+            @Override
+            public void visitPlugin( final PluginRelationship rel )
+            {
+                visited[0]++;
+            }
+
+            @Override
+            public void visitPluginDependency( final PluginDependencyRelationship rel )
+            {
+                visited[0]++;
+            }
+
+            @Override
+            public void visitExtension( final ExtensionRelationship rel )
+            {
+                visited[0]++;
+            }
+        } );
+
+        assertThat( visited[0], equalTo( 5 ) );
+    }
+
+    @Test( expected = UnsupportedOperationException.class )
+    public void combinedViewIsReadOnly()
+    {
+        new EProjectDirectRelationships.Builder( source, project ).build()
+                                                                  .getAllRelationships()
+                                                                  .clear();
+    }
+
+    private DependencyRelationship dependency( final int i, final boolean managed )
+    {
+        return new SimpleDependencyRelationship( source, project, projectVersion( "org.dep", "dep" + i, "1" ).asJarArtifact(),
+                                                 DependencyScope.compile, i, managed, false, false );
+    }
+
+}
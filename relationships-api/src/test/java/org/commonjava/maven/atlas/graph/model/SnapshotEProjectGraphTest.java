@@ -0,0 +1,99 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.graph.model;
+
+import static org.commonjava.maven.atlas.ident.util.IdentityUtils.projectVersion;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
+import org.junit.Test;
+
+public class SnapshotEProjectGraphTest
+{
+
+    private final URI source = URI.create( "test:source" );
+
+    private EProjectDirectRelationships project( final String artifactId )
+    {
+        return new EProjectDirectRelationships.Builder( source, projectVersion( "org.test", artifactId, "1" ) ).build();
+    }
+
+    @Test
+    public void snapshotIsUnaffectedByLaterWrites()
+    {
+        final SnapshotEProjectGraph graph = new SnapshotEProjectGraph();
+        final EProjectDirectRelationships a = project( "a" );
+        graph.add( a );
+
+        final PersistentEProjectGraph before = graph.snapshot();
+
+        graph.add( project( "b" ) );
+        graph.remove( a.getProjectRef() );
+
+        assertThat( before.size(), equalTo( 1 ) );
+        assertThat( before.getDirectRelationships( a.getProjectRef() ), sameInstance( a ) );
+        assertThat( graph.size(), equalTo( 1 ) );
+        assertThat( graph.getDirectRelationships( a.getProjectRef() ), nullValue() );
+        assertThat( graph.snapshot()
+                         .getVersion(), equalTo( 3L ) );
+    }
+
+    @Test
+    public void concurrentWritersAllPublish()
+        throws Exception
+    {
+        final SnapshotEProjectGraph graph = new SnapshotEProjectGraph();
+        final int threads = 4;
+        final int perThread = 250;
+
+        final List<Thread> workers = new ArrayList<Thread>();
+        for ( int t = 0; t < threads; t++ )
+        {
+            final int offset = t * perThread;
+            final Thread worker = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    for ( int i = 0; i < perThread; i++ )
+                    {
+                        graph.add( project( "p" + ( offset + i ) ) );
+                    }
+                }
+            };
+            workers.add( worker );
+            worker.start();
+        }
+
+        for ( final Thread worker : workers )
+        {
+            worker.join();
+        }
+
+        assertThat( graph.size(), equalTo( threads * perThread ) );
+
+        final ProjectVersionRef last = projectVersion( "org.test", "p" + ( threads * perThread - 1 ), "1" );
+        assertThat( graph.containsProject( last ), equalTo( true ) );
+    }
+
+}
@@ -0,0 +1,112 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.graph.rel;
+
+import static org.commonjava.maven.atlas.ident.util.IdentityUtils.projectVersion;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.commonjava.maven.atlas.ident.DependencyScope;
+import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
+import org.commonjava.maven.atlas.ident.ref.SimpleArtifactRef;
+import org.commonjava.maven.atlas.ident.ref.SimpleProjectRef;
+import org.junit.Test;
+
+public class AbstractSimpleProjectRelationshipTest
+{
+
+    private final ProjectVersionRef declaring = projectVersion( "org.test", "project", "1" );
+
+    private final ProjectVersionRef target = projectVersion( "org.dep", "dep", "1" );
+
+    private DependencyRelationship dependency( final URI source, final String type, final boolean managed )
+    {
+        return new SimpleDependencyRelationship( source, declaring, new SimpleArtifactRef( target, type, null ),
+                                                 DependencyScope.compile, 0, managed, false, false );
+    }
+
+    @Test
+    public void equalRelationshipsShareIdentityKey()
+    {
+        // sources, index, scope and flags outside equals() don't affect the key
+        final DependencyRelationship one = dependency( URI.create( "test:one" ), "jar", false );
+        final DependencyRelationship two =
+            new SimpleDependencyRelationship( URI.create( "test:two" ), declaring, target.asJarArtifact(),
+                                              DependencyScope.test, 3, false, true, true );
+
+        assertThat( one, equalTo( two ) );
+        assertThat( one.hashCode(), equalTo( two.hashCode() ) );
+        assertThat( ( (AbstractSimpleProjectRelationship<?, ?>) one ).getIdentityKey(),
+                    equalTo( ( (AbstractSimpleProjectRelationship<?, ?>) two ).getIdentityKey() ) );
+    }
+
+    @Test
+    public void identityKeyCoversEqualityFields()
+    {
+        final AbstractSimpleProjectRelationship<?, ?> jar =
+            (AbstractSimpleProjectRelationship<?, ?>) dependency( URI.create( "test:one" ), "jar", false );
+
+        final AbstractSimpleProjectRelationship<?, ?> pom =
+            (AbstractSimpleProjectRelationship<?, ?>) dependency( URI.create( "test:one" ), "pom", false );
+
+        final AbstractSimpleProjectRelationship<?, ?> managed =
+            (AbstractSimpleProjectRelationship<?, ?>) dependency( URI.create( "test:one" ), "jar", true );
+
+        final AbstractSimpleProjectRelationship<?, ?> plugin =
+            new SimplePluginRelationship( URI.create( "test:one" ), declaring, target, 0, false, false );
+
+        final AbstractSimpleProjectRelationship<?, ?> pluginDep =
+            new SimplePluginDependencyRelationship( URI.create( "test:one" ), declaring,
+                                                    new SimpleProjectRef( "org.plugins", "plugin" ),
+                                                    target.asJarArtifact(), 0, false, false );
+
+        assertThat( jar.getIdentityKey(), not( equalTo( pom.getIdentityKey() ) ) );
+        assertThat( jar.getIdentityKey(), not( equalTo( managed.getIdentityKey() ) ) );
+        assertThat( jar.getIdentityKey(), not( equalTo( plugin.getIdentityKey() ) ) );
+        assertThat( jar.getIdentityKey(), not( equalTo( pluginDep.getIdentityKey() ) ) );
+        assertThat( jar.equals( pom ), equalTo( false ) );
+    }
+
+    @Test
+    public void equivalentVersionSpellingsShareIdentityKey()
+    {
+        // refs compare parsed versions, so "1" and "1.0.0" are the same target
+        final DependencyRelationship one =
+            new SimpleDependencyRelationship( URI.create( "test:one" ), declaring,
+                                              projectVersion( "org.dep", "dep", "1" ).asJarArtifact(),
+                                              DependencyScope.compile, 0, false, false, false );
+        final DependencyRelationship two =
+            new SimpleDependencyRelationship( URI.create( "test:one" ), projectVersion( "org.test", "project", "1.0" ),
+                                              projectVersion( "org.dep", "dep", "1.0.0" ).asJarArtifact(),
+                                              DependencyScope.compile, 0, false, false, false );
+
+        assertThat( one, equalTo( two ) );
+        assertThat( two, equalTo( one ) );
+        assertThat( one.hashCode(), equalTo( two.hashCode() ) );
+        assertThat( ( (AbstractSimpleProjectRelationship<?, ?>) one ).getIdentityKey(),
+                    equalTo( ( (AbstractSimpleProjectRelationship<?, ?>) two ).getIdentityKey() ) );
+
+        final Set<DependencyRelationship> set = new HashSet<DependencyRelationship>( Arrays.asList( one ) );
+        assertThat( set.contains( two ), equalTo( true ) );
+    }
+
+}
@@ -21,6 +21,8 @@ import static org.commonjava.maven.atlas.ident.util.IdentityUtils.projectVersion
 import static org.hamcrest.CoreMatchers.*;
 import static org.junit.Assert.*;
 
+import java.net.URI;
+
 import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
 import org.junit.Test;
 
@@ -61,4 +63,22 @@ public class RelationshipComparatorTest
                     compare, equalTo( -1 ) );
     }
 
+    @Test
+    public void cachedPrefixOrdersByTypeThenRootLocation()
+    {
+        final ProjectVersionRef declaring = projectVersion( "w", "w", "1.0" );
+        final ProjectVersionRef target = projectVersion( "x", "x", "1.0" );
+
+        final ParentRelationship parent = new SimpleParentRelationship( POM_ROOT_URI, declaring, target );
+        final DependencyRelationship root = dependency( POM_ROOT_URI, declaring, target, 5, false, false );
+        final DependencyRelationship profile =
+            new SimpleDependencyRelationship( POM_ROOT_URI, URI.create( "pom:profile:test" ), declaring,
+                                              target.asJarArtifact(), null, 0, false, false, false );
+
+        assertThat( RelationshipComparator.INSTANCE.compare( parent, root ) < 0, equalTo( true ) );
+        assertThat( RelationshipComparator.INSTANCE.compare( root, profile ) < 0, equalTo( true ) );
+        assertThat( RelationshipComparator.INSTANCE.compare( profile, root ) > 0, equalTo( true ) );
+        assertThat( RelationshipComparator.INSTANCE.compare( root, root ), equalTo( 0 ) );
+    }
+
 }
@@ -0,0 +1,143 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.graph.rel;
+
+import static org.commonjava.maven.atlas.graph.GraphFixtures.DECLARING;
+import static org.commonjava.maven.atlas.graph.GraphFixtures.dependency;
+import static org.commonjava.maven.atlas.ident.util.IdentityUtils.projectVersion;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.commonjava.maven.atlas.ident.DependencyScope;
+import org.commonjava.maven.atlas.ident.ref.ArtifactRef;
+import org.commonjava.maven.atlas.ident.ref.ProjectRef;
+import org.commonjava.maven.atlas.ident.ref.SimpleProjectRef;
+import org.junit.Test;
+
+public class RelationshipInternerTest
+{
+
+    @Test
+    public void relationshipsShareSourcesAndLocation()
+    {
+        final DependencyRelationship a = dependency( URI.create( "test:one" ), "a", false );
+        final DependencyRelationship b = dependency( URI.create( "test:one" ), "b", true );
+
+        assertThat( a.getSources(), sameInstance( b.getSources() ) );
+        assertThat( a.getPomLocation(), sameInstance( b.getPomLocation() ) );
+
+        final DependencyRelationship merged = a.addSources( Arrays.asList( URI.create( "test:two" ) ) );
+        final DependencyRelationship mergedAgain = b.addSource( URI.create( "test:two" ) );
+
+        assertThat( merged.getSources(), sameInstance( mergedAgain.getSources() ) );
+        final Set<URI> expected =
+            new LinkedHashSet<URI>( Arrays.asList( URI.create( "test:one" ), URI.create( "test:two" ) ) );
+        assertThat( merged.getSources(), equalTo( expected ) );
+        assertThat( a.getSources()
+                     .size(), equalTo( 1 ) );
+    }
+
+    @Test
+    public void packedFlagsRoundTrip()
+    {
+        final DependencyRelationship managed =
+            new SimpleDependencyRelationship( URI.create( "test:one" ), DECLARING,
+                                              projectVersion( "org.dep", "a", "1" ).asJarArtifact(),
+                                              DependencyScope.test, 0, true, true, false );
+        assertThat( managed.isManaged(), equalTo( true ) );
+        assertThat( managed.isInherited(), equalTo( true ) );
+        assertThat( managed.isMixin(), equalTo( false ) );
+
+        final DependencyRelationship copy = new SimpleDependencyRelationship( managed );
+        assertThat( copy.isManaged(), equalTo( true ) );
+        assertThat( copy.isInherited(), equalTo( true ) );
+        assertThat( copy.getSources(), sameInstance( managed.getSources() ) );
+
+        final DependencyRelationship optional =
+            new SimpleDependencyRelationship( URI.create( "test:one" ), DECLARING,
+                                              projectVersion( "org.dep", "o", "1" ).asJarArtifact(),
+                                              DependencyScope.test, 0, false, false, true );
+        assertThat( optional.isOptional(), equalTo( true ) );
+        assertThat( optional.addSource( URI.create( "test:two" ) )
+                            .isOptional(), equalTo( true ) );
+        assertThat( new SimpleDependencyRelationship( optional ).isOptional(), equalTo( true ) );
+        assertThat( managed.isOptional(), equalTo( false ) );
+
+        final PluginRelationship reporting =
+            new SimplePluginRelationship( URI.create( "test:one" ), DECLARING,
+                                          projectVersion( "org.plugins", "p", "1" ), 0, true, true, false );
+        assertThat( reporting.isReporting(), equalTo( true ) );
+        assertThat( reporting.isManaged(), equalTo( true ) );
+        assertThat( reporting.isInherited(), equalTo( false ) );
+        assertThat( reporting.selectDeclaring( projectVersion( "org.test", "other", "1" ) )
+                             .isReporting(), equalTo( true ) );
+        assertThat( new SimplePluginRelationship( reporting ).isReporting(), equalTo( true ) );
+    }
+
+    @Test
+    public void excludesAreShared()
+    {
+        final ProjectRef ex = new SimpleProjectRef( "org.ex", "cluded" );
+        final ArtifactRef target = projectVersion( "org.dep", "a", "1" ).asJarArtifact();
+
+        final DependencyRelationship one =
+            new SimpleDependencyRelationship( URI.create( "test:one" ), DECLARING, target, DependencyScope.test, 0,
+                                              false, false, false, ex );
+        final DependencyRelationship two =
+            new SimpleDependencyRelationship( URI.create( "test:two" ), DECLARING, target, DependencyScope.test, 1,
+                                              false, false, false, ex );
+
+        assertThat( one.getExcludes(), sameInstance( two.getExcludes() ) );
+        assertThat( one.getExcludes(), equalTo( Collections.singleton( ex ) ) );
+        assertThat( one.addSource( URI.create( "test:three" ) )
+                       .getExcludes(), sameInstance( one.getExcludes() ) );
+
+        final Set<ProjectRef> none = dependency( URI.create( "test:one" ), "a", false ).getExcludes();
+        assertThat( none, sameInstance( Collections.<ProjectRef> emptySet() ) );
+    }
+
+    @Test( expected = UnsupportedOperationException.class )
+    public void sourcesAreReadOnly()
+    {
+        dependency( URI.create( "test:one" ), "a", false ).getSources()
+                                                          .add( URI.create( "test:two" ) );
+    }
+
+    @Test
+    public void sourcesKeepTheCallersOrder()
+    {
+        final URI one = URI.create( "test:one" );
+        final URI two = URI.create( "test:two" );
+
+        final Set<URI> forward = RelationshipInterner.internSources( Arrays.asList( one, two ) );
+        final Set<URI> backward = RelationshipInterner.internSources( Arrays.asList( two, one, two ) );
+
+        assertThat( new ArrayList<URI>( forward ), equalTo( Arrays.asList( one, two ) ) );
+        assertThat( new ArrayList<URI>( backward ), equalTo( Arrays.asList( two, one ) ) );
+        assertThat( backward, equalTo( forward ) );
+        assertThat( RelationshipInterner.internSources( new LinkedHashSet<URI>( Arrays.asList( two, one ) ) ),
+                    sameInstance( backward ) );
+    }
+
+}
@@ -0,0 +1,199 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.graph.store;
+
+import static org.commonjava.maven.atlas.ident.util.IdentityUtils.projectVersion;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.commonjava.maven.atlas.graph.diff.RelationshipDiffer;
+import org.commonjava.maven.atlas.graph.jackson.ProjectRelationshipSerializerModule;
+import org.commonjava.maven.atlas.graph.model.EProjectDirectRelationships;
+import org.commonjava.maven.atlas.graph.model.SimpleEProjectGraph;
+import org.commonjava.maven.atlas.graph.rel.DependencyRelationship;
+import org.commonjava.maven.atlas.graph.rel.ProjectRelationship;
+import org.commonjava.maven.atlas.graph.rel.SimpleBomRelationship;
+import org.commonjava.maven.atlas.graph.rel.SimpleDependencyRelationship;
+import org.commonjava.maven.atlas.graph.rel.SimpleExtensionRelationship;
+import org.commonjava.maven.atlas.graph.rel.SimplePluginDependencyRelationship;
+import org.commonjava.maven.atlas.graph.rel.SimplePluginRelationship;
+import org.commonjava.maven.atlas.ident.DependencyScope;
+import org.commonjava.maven.atlas.ident.jackson.ProjectVersionRefSerializerModule;
+import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class BinaryRelationshipCodecTest
+{
+
+    private final URI source = URI.create( "test:source" );
+
+    private final ProjectVersionRef parent = projectVersion( "org.test", "parent", "1" );
+
+    private final ProjectVersionRef project = projectVersion( "org.test", "project", "1.0-SNAPSHOT" );
+
+    private final ProjectVersionRef plugin =
+        projectVersion( "org.apache.maven.plugins", "maven-compiler-plugin", "3.1" );
+
+    private final SimpleDependencyRelationship dep =
+        new SimpleDependencyRelationship( source, URI.create( "pom:profile:it" ), project,
+                                          projectVersion( "org.test", "lib", "[1.0,2.0)" ).asArtifactRef( "jar",
+                                                                                                          "tests" ),
+                                          DependencyScope.test, 0, false, true, true,
+                                          projectVersion( "org.ex", "cluded", "1" ).asProjectRef() );
+
+    @Test
+    public void graphRoundTripsThroughBinaryStream()
+        throws Exception
+    {
+        final SimpleEProjectGraph graph = buildGraph();
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final long written = BinaryRelationshipWriter.write( graph, out );
+        assertThat( written, equalTo( 8L ) );
+
+        final SimpleEProjectGraph read = BinaryRelationshipReader.readGraph( new ByteArrayInputStream( out.toByteArray() ) );
+
+        assertThat( read.getProjects(), equalTo( graph.getProjects() ) );
+        assertThat( RelationshipDiffer.diff( graph, read )
+                                      .isEmpty(), equalTo( true ) );
+
+        final DependencyRelationship readDep = read.getDirectRelationships( project )
+                                                   .getDependencies()
+                                                   .get( 0 );
+        assertThat( readDep.getTargetArtifact()
+                           .getClassifier(), equalTo( "tests" ) );
+        assertThat( readDep.getPomLocation(), equalTo( dep.getPomLocation() ) );
+        assertThat( readDep.isOptional(), equalTo( true ) );
+        assertThat( readDep.getExcludes(), equalTo( dep.getExcludes() ) );
+        assertThat( readDep.getSources(), equalTo( dep.getSources() ) );
+    }
+
+    @Test
+    public void decodedRelationshipsMatchJacksonRepresentation()
+        throws Exception
+    {
+        final ObjectMapper mapper = new ObjectMapper();
+        mapper.registerModules( new ProjectVersionRefSerializerModule(), new ProjectRelationshipSerializerModule() );
+
+        final List<ProjectRelationship<?, ?>> expected =
+            new ArrayList<ProjectRelationship<?, ?>>( buildGraph().getDirectRelationships( project )
+                                                                  .getExactAllRelationships() );
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final BinaryRelationshipWriter writer = new BinaryRelationshipWriter( out );
+        writer.writeAll( expected );
+        writer.close();
+
+        final List<ProjectRelationship<?, ?>> read =
+            BinaryRelationshipReader.readAll( new ByteArrayInputStream( out.toByteArray() ) );
+
+        assertThat( read.size(), equalTo( expected.size() ) );
+        for ( int i = 0; i < expected.size(); i++ )
+        {
+            final String json = mapper.writeValueAsString( expected.get( i ) );
+            assertThat( mapper.writeValueAsString( read.get( i ) ), equalTo( json ) );
+            assertThat( read.get( i ), equalTo( mapper.readValue( json, ProjectRelationship.class ) ) );
+        }
+    }
+
+    @Test
+    public void relationshipReadsFlattenProjectRecords()
+        throws Exception
+    {
+        final SimpleEProjectGraph graph = buildGraph();
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final BinaryRelationshipWriter writer = new BinaryRelationshipWriter( out );
+        writer.write( dep );
+        writer.write( graph.getDirectRelationships( project ) );
+        writer.close();
+
+        assertThat( writer.getCount(), equalTo( 8L ) );
+
+        final BinaryRelationshipReader reader =
+            new BinaryRelationshipReader( new ByteArrayInputStream( out.toByteArray() ) );
+        try
+        {
+            reader.readProject();
+            fail( "Bare relationship should not read as a project" );
+        }
+        catch ( final IOException e )
+        {
+            // expected
+        }
+        finally
+        {
+            reader.close();
+        }
+
+        final List<ProjectRelationship<?, ?>> read =
+            BinaryRelationshipReader.readAll( new ByteArrayInputStream( out.toByteArray() ) );
+        assertThat( read.size(), equalTo( 8 ) );
+        assertThat( (SimpleDependencyRelationship) read.get( 0 ), equalTo( dep ) );
+    }
+
+    @Test
+    public void emptyStreamReadsNothing()
+        throws Exception
+    {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new BinaryRelationshipWriter( out ).close();
+
+        final BinaryRelationshipReader reader =
+            new BinaryRelationshipReader( new ByteArrayInputStream( out.toByteArray() ) );
+        assertThat( reader.readRelationship(), nullValue() );
+        assertThat( reader.readProject(), nullValue() );
+        reader.close();
+    }
+
+    private SimpleEProjectGraph buildGraph()
+    {
+        final ProjectVersionRef bom = projectVersion( "org.test", "bom", "2" );
+        final ProjectVersionRef ext = projectVersion( "org.test", "ext", "1" );
+
+        final SimpleDependencyRelationship managed =
+            new SimpleDependencyRelationship( source, project, projectVersion( "org.test", "managed", "3" ).asJarArtifact(),
+                                              DependencyScope.runtime, 0, true, false, false );
+        final SimplePluginDependencyRelationship pdep =
+            new SimplePluginDependencyRelationship( source, project, plugin.asProjectRef(),
+                                                    projectVersion( "org.test", "pdep", "1" ).asJarArtifact(), 0, false,
+                                                    false );
+
+        final SimpleEProjectGraph graph = new SimpleEProjectGraph();
+        graph.add( new EProjectDirectRelationships.Builder( source, parent ).build() );
+        graph.add( new EProjectDirectRelationships.Builder( source, project ).withParent( parent )
+                                                                             .withBoms( new SimpleBomRelationship( source, project, bom, 0, false, true ) )
+                                                                             .withDependencies( dep, managed )
+                                                                             .withPlugins( new SimplePluginRelationship( source, project, plugin, 0, false, true, false ) )
+                                                                             .withPluginDependencies( pdep )
+                                                                             .withExtensions( new SimpleExtensionRelationship( source, project, ext, 0, false ) )
+                                                                             .build() );
+
+        return graph;
+    }
+
+}
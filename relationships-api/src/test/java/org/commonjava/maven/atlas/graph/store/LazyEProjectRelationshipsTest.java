@@ -0,0 +1,157 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.graph.store;
+
+import static org.commonjava.maven.atlas.ident.util.IdentityUtils.projectVersion;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Arrays;
+
+import org.commonjava.maven.atlas.graph.model.EProjectDirectRelationships;
+import org.commonjava.maven.atlas.graph.rel.SimpleBomRelationship;
+import org.commonjava.maven.atlas.graph.rel.SimpleDependencyRelationship;
+import org.commonjava.maven.atlas.graph.rel.SimpleExtensionRelationship;
+import org.commonjava.maven.atlas.graph.rel.SimplePluginDependencyRelationship;
+import org.commonjava.maven.atlas.graph.rel.SimplePluginRelationship;
+import org.commonjava.maven.atlas.ident.DependencyScope;
+import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
+import org.junit.Test;
+
+public class LazyEProjectRelationshipsTest
+{
+
+    private final URI source = URI.create( "test:source" );
+
+    private final ProjectVersionRef parent = projectVersion( "org.test", "parent", "1" );
+
+    private final ProjectVersionRef project = projectVersion( "org.test", "project", "1.0-SNAPSHOT" );
+
+    private final ProjectVersionRef plugin =
+        projectVersion( "org.apache.maven.plugins", "maven-compiler-plugin", "3.1" );
+
+    @Test
+    public void onlyRequestedCategoriesAreDecoded()
+        throws Exception
+    {
+        final EProjectDirectRelationships rels = buildProject();
+        final LazyEProjectRelationships lazy =
+            LazyEProjectRelationships.fromBytes( LazyEProjectRelationships.encode( rels )
+                                                                          .toByteArray() );
+
+        assertThat( lazy.getProjectRef(), equalTo( project ) );
+        assertThat( lazy.getSource(), equalTo( source ) );
+        assertThat( lazy.getParent(), equalTo( rels.getParent() ) );
+        assertThat( lazy.getDecodedCount(), equalTo( 0 ) );
+
+        assertThat( lazy.getDependencies(), equalTo( rels.getDependencies() ) );
+        assertThat( lazy.getDecodedCount(), equalTo( 1 ) );
+
+        assertThat( lazy.getDependencies()
+                        .get( 0 )
+                        .getExcludes(), equalTo( rels.getDependencies()
+                                                     .get( 0 )
+                                                     .getExcludes() ) );
+        assertThat( lazy.getDecodedCount(), equalTo( 1 ) );
+    }
+
+    @Test
+    public void decodedCategoriesMatchDirectRelationships()
+        throws Exception
+    {
+        final EProjectDirectRelationships rels = buildProject();
+        final LazyEProjectRelationships lazy =
+            LazyEProjectRelationships.fromBytes( LazyEProjectRelationships.encode( rels )
+                                                                          .toByteArray() );
+
+        assertThat( lazy.getBoms(), equalTo( rels.getBoms() ) );
+        assertThat( lazy.getManagedDependencies(), equalTo( rels.getManagedDependencies() ) );
+        assertThat( lazy.getPlugins(), equalTo( rels.getPlugins() ) );
+        assertThat( lazy.getManagedPlugins(), equalTo( rels.getManagedPlugins() ) );
+        assertThat( lazy.getPluginDependencies(), equalTo( rels.getPluginDependencies() ) );
+        assertThat( lazy.getExtensions(), equalTo( rels.getExtensions() ) );
+
+        assertThat( Arrays.asList( lazy.getExactAllRelationships()
+                                       .toArray() ), equalTo( Arrays.asList( rels.getExactAllRelationships()
+                                                                                 .toArray() ) ) );
+        assertThat( lazy.getAllRelationships(), equalTo( rels.getAllRelationships() ) );
+        assertThat( lazy.toDirectRelationships()
+                        .getExactAllRelationships(), equalTo( rels.getExactAllRelationships() ) );
+    }
+
+    @Test
+    public void projectWithoutRelationshipsKeepsTerminalParent()
+        throws Exception
+    {
+        final EProjectDirectRelationships rels = new EProjectDirectRelationships.Builder( source, parent ).build();
+        final LazyEProjectRelationships lazy =
+            LazyEProjectRelationships.fromBytes( LazyEProjectRelationships.encode( rels )
+                                                                          .toByteArray() );
+
+        assertThat( lazy.getParent(), equalTo( rels.getParent() ) );
+        assertThat( lazy.getDependencies()
+                        .isEmpty(), equalTo( true ) );
+        assertThat( lazy.getAllRelationships()
+                        .isEmpty(), equalTo( true ) );
+        assertThat( lazy.getExactAllRelationships(), equalTo( rels.getExactAllRelationships() ) );
+    }
+
+    @Test
+    public void truncatedDataIsRejected()
+        throws Exception
+    {
+        final byte[] data = LazyEProjectRelationships.encode( buildProject() )
+                                                     .toByteArray();
+
+        try
+        {
+            LazyEProjectRelationships.fromBytes( Arrays.copyOf( data, data.length - 1 ) );
+            fail( "Truncated data should not load" );
+        }
+        catch ( final IOException e )
+        {
+            // expected
+        }
+    }
+
+    private EProjectDirectRelationships buildProject()
+    {
+        final SimpleDependencyRelationship dep =
+            new SimpleDependencyRelationship( source, project,
+                                              projectVersion( "org.test", "lib", "1.0" ).asArtifactRef( "jar", "tests" ),
+                                              DependencyScope.test, 0, false, false, true,
+                                              projectVersion( "org.ex", "cluded", "1" ).asProjectRef() );
+        final SimpleDependencyRelationship managed =
+            new SimpleDependencyRelationship( source, project, projectVersion( "org.test", "managed", "3" ).asJarArtifact(),
+                                              DependencyScope.runtime, 0, true, false, false );
+        final SimplePluginDependencyRelationship pdep =
+            new SimplePluginDependencyRelationship( source, project, plugin.asProjectRef(),
+                                                    projectVersion( "org.test", "pdep", "1" ).asJarArtifact(), 0, false,
+                                                    false );
+
+        return new EProjectDirectRelationships.Builder( source, project ).withParent( parent )
+                                                                         .withBoms( new SimpleBomRelationship( source, project, projectVersion( "org.test", "bom", "2" ), 0, false, true ) )
+                                                                         .withDependencies( dep, managed )
+                                                                         .withPlugins( new SimplePluginRelationship( source, project, plugin, 0, false, true, false ) )
+                                                                         .withPluginDependencies( pdep )
+                                                                         .withExtensions( new SimpleExtensionRelationship( source, project, projectVersion( "org.test", "ext", "1" ), 0, false ) )
+                                                                         .build();
+    }
+
+}
@@ -0,0 +1,147 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.graph.store;
+
+import static org.commonjava.maven.atlas.ident.util.IdentityUtils.projectVersion;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.net.URI;
+
+import org.commonjava.maven.atlas.graph.diff.RelationshipDiffer;
+import org.commonjava.maven.atlas.graph.model.EProjectDirectRelationships;
+import org.commonjava.maven.atlas.graph.model.SimpleEProjectGraph;
+import org.commonjava.maven.atlas.graph.rel.DependencyRelationship;
+import org.commonjava.maven.atlas.graph.rel.SimpleBomRelationship;
+import org.commonjava.maven.atlas.graph.rel.SimpleDependencyRelationship;
+import org.commonjava.maven.atlas.graph.rel.SimpleExtensionRelationship;
+import org.commonjava.maven.atlas.graph.rel.SimplePluginDependencyRelationship;
+import org.commonjava.maven.atlas.graph.rel.SimplePluginRelationship;
+import org.commonjava.maven.atlas.ident.DependencyScope;
+import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MappedEProjectGraphTest
+{
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private final URI source = URI.create( "test:source" );
+
+    @Test
+    public void roundTripsAllRelationshipTypes()
+        throws Exception
+    {
+        final ProjectVersionRef parent = projectVersion( "org.test", "parent", "1" );
+        final ProjectVersionRef project = projectVersion( "org.test", "project", "1.0-SNAPSHOT" );
+        final ProjectVersionRef bom = projectVersion( "org.test", "bom", "2" );
+        final ProjectVersionRef plugin = projectVersion( "org.apache.maven.plugins", "maven-compiler-plugin", "3.1" );
+        final ProjectVersionRef ext = projectVersion( "org.test", "ext", "1" );
+
+        final SimpleEProjectGraph graph = new SimpleEProjectGraph();
+        graph.add( new EProjectDirectRelationships.Builder( source, parent ).build() );
+        final SimpleDependencyRelationship dep =
+            new SimpleDependencyRelationship( source, project, projectVersion( "org.test", "lib", "[1.0,2.0)" ).asArtifactRef( "jar", "tests" ),
+                                              DependencyScope.test, 0, false, true, true,
+                                              projectVersion( "org.ex", "cluded", "1" ).asProjectRef() );
+        final SimpleDependencyRelationship managed =
+            new SimpleDependencyRelationship( source, project, projectVersion( "org.test", "managed", "3" ).asJarArtifact(),
+                                              DependencyScope.runtime, 0, true, false, false );
+        final SimplePluginDependencyRelationship pdep =
+            new SimplePluginDependencyRelationship( source, project, plugin.asProjectRef(),
+                                                    projectVersion( "org.test", "pdep", "1" ).asJarArtifact(), 0, false,
+                                                    false );
+
+        graph.add( new EProjectDirectRelationships.Builder( source, project ).withParent( parent )
+                                                                             .withBoms( new SimpleBomRelationship( source, project, bom, 0, false, true ) )
+                                                                             .withDependencies( dep, managed )
+                                                                             .withPlugins( new SimplePluginRelationship( source, project, plugin, 0, false, true, false ) )
+                                                                             .withPluginDependencies( pdep )
+                                                                             .withExtensions( new SimpleExtensionRelationship( source, project, ext, 0, false ) )
+                                                                             .build() );
+
+        final File dir = temp.newFolder( "graph" );
+        MappedEProjectGraphWriter.write( graph, dir );
+
+        final MappedEProjectGraph mapped = new MappedEProjectGraph( dir );
+        try
+        {
+            assertThat( mapped.size(), equalTo( 2 ) );
+            assertThat( mapped.getProjects(), equalTo( graph.getProjects() ) );
+            assertThat( mapped.getRelationshipCount( project ), equalTo( 7 ) );
+            assertThat( mapped.getDirectRelationships( projectVersion( "org.test", "project", "2" ) ), nullValue() );
+
+            assertThat( RelationshipDiffer.diff( graph, mapped )
+                                          .isEmpty(), equalTo( true ) );
+
+            final DependencyRelationship read = mapped.getDirectRelationships( project )
+                                                      .getDependencies()
+                                                      .get( 0 );
+            assertThat( read.getTargetArtifact()
+                            .getClassifier(), equalTo( "tests" ) );
+            assertThat( read.getExcludes(), equalTo( dep.getExcludes() ) );
+            assertThat( read.getSources(), equalTo( dep.getSources() ) );
+        }
+        finally
+        {
+            mapped.close();
+        }
+    }
+
+    @Test
+    public void readsAcrossSegmentBoundaries()
+        throws Exception
+    {
+        final SimpleEProjectGraph graph = new SimpleEProjectGraph();
+        for ( int p = 0; p < 40; p++ )
+        {
+            final ProjectVersionRef project = projectVersion( "org.test", "project-" + p, "1." + p );
+            final EProjectDirectRelationships.Builder builder = new EProjectDirectRelationships.Builder( source, project );
+            for ( int d = 0; d < 15; d++ )
+            {
+                builder.withDependencies( new SimpleDependencyRelationship( URI.create( "test:source-" + ( d % 3 ) ),
+                                                                            project,
+                                                                            projectVersion( "org.lib", "lib-" + d, "2." + p ).asJarArtifact(),
+                                                                            DependencyScope.compile, d, false, false,
+                                                                            false,
+                                                                            projectVersion( "org.ex", "ex-" + d, "1" ).asProjectRef() ) );
+            }
+            graph.add( builder.build() );
+        }
+
+        final File dir = temp.newFolder( "segmented" );
+        MappedEProjectGraphWriter.write( graph, dir );
+
+        // 64-byte segments: every file spans many of them, and strings straddle the boundaries
+        final MappedEProjectGraph mapped = new MappedEProjectGraph( dir, 6 );
+        try
+        {
+            assertThat( mapped.size(), equalTo( 40 ) );
+            assertThat( RelationshipDiffer.diff( graph, mapped )
+                                          .isEmpty(), equalTo( true ) );
+        }
+        finally
+        {
+            mapped.close();
+        }
+    }
+
+}
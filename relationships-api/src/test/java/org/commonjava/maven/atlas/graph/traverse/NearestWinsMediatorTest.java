@@ -0,0 +1,141 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.graph.traverse;
+
+import static org.commonjava.maven.atlas.graph.GraphFixtures.SOURCE;
+import static org.commonjava.maven.atlas.graph.GraphFixtures.project;
+import static org.commonjava.maven.atlas.ident.util.IdentityUtils.projectVersion;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.net.URI;
+import java.util.List;
+
+import org.commonjava.maven.atlas.graph.model.SimpleEProjectGraph;
+import org.commonjava.maven.atlas.graph.rel.ProjectRelationship;
+import org.commonjava.maven.atlas.graph.rel.SimpleDependencyRelationship;
+import org.commonjava.maven.atlas.ident.DependencyScope;
+import org.commonjava.maven.atlas.ident.ref.ProjectRef;
+import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
+import org.commonjava.maven.atlas.ident.ref.SimpleProjectRef;
+import org.junit.Test;
+
+public class NearestWinsMediatorTest
+{
+
+    private final URI source = SOURCE;
+
+    private final SimpleEProjectGraph graph = new SimpleEProjectGraph();
+
+    private SimpleDependencyRelationship dep( final ProjectVersionRef from, final ProjectVersionRef to, final int idx,
+                                              final boolean optional, final ProjectRef... excludes )
+    {
+        return new SimpleDependencyRelationship( source, from, to.asJarArtifact(), DependencyScope.compile, idx, false,
+                                                 false, optional, excludes );
+    }
+
+    @Test
+    public void nearerVersionWinsOverDeeperVersion()
+    {
+        final ProjectVersionRef root = projectVersion( "org.test", "root", "1" );
+        final ProjectVersionRef a = projectVersion( "org.test", "a", "1" );
+        final ProjectVersionRef lib1 = projectVersion( "org.test", "lib", "1.0" );
+        final ProjectVersionRef lib2 = projectVersion( "org.test", "lib", "2.0" );
+
+        graph.add( project( root ).withDependencies( dep( root, a, 0, false ), dep( root, lib1, 1, false ) )
+                                  .build() );
+        graph.add( project( a ).withDependencies( dep( a, lib2, 0, false ) )
+                               .build() );
+
+        final MediationResult result = new NearestWinsMediator( graph ).mediate( root );
+
+        final ProjectRef lib = new SimpleProjectRef( "org.test", "lib" );
+        assertThat( result.getSelected( lib ), equalTo( lib1 ) );
+        assertThat( result.getDepth( lib ), equalTo( 1 ) );
+        assertThat( result.getDropped()
+                          .size(), equalTo( 1 ) );
+
+        final DroppedCandidate drop = result.getDropped()
+                                            .get( 0 );
+        assertThat( drop.getCandidate(), equalTo( lib2 ) );
+        assertThat( drop.getReason(), equalTo( DroppedCandidate.Reason.NEARER_SELECTED ) );
+        assertThat( drop.getSelected(), equalTo( lib1 ) );
+    }
+
+    @Test
+    public void sameLevelConflictResolvedByPathOrder()
+    {
+        final ProjectVersionRef root = projectVersion( "org.test", "root", "1" );
+        final ProjectVersionRef a = projectVersion( "org.test", "a", "1" );
+        final ProjectVersionRef b = projectVersion( "org.test", "b", "1" );
+        final ProjectVersionRef lib1 = projectVersion( "org.test", "lib", "1.0" );
+        final ProjectVersionRef lib2 = projectVersion( "org.test", "lib", "2.0" );
+
+        // declared second, so the path through b must lose even though b is expanded first
+        graph.add( project( root ).withDependencies( dep( root, b, 1, false ), dep( root, a, 0, false ) )
+                                  .build() );
+        graph.add( project( a ).withDependencies( dep( a, lib1, 0, false ) )
+                               .build() );
+        graph.add( project( b ).withDependencies( dep( b, lib2, 0, false ) )
+                               .build() );
+
+        final MediationResult result = new NearestWinsMediator( graph ).mediate( root );
+
+        final ProjectRef lib = new SimpleProjectRef( "org.test", "lib" );
+        assertThat( result.getSelected( lib ), equalTo( lib1 ) );
+
+        final List<ProjectRelationship<?, ?>> path = result.getPath( lib );
+        assertThat( path.size(), equalTo( 2 ) );
+        assertThat( path.get( 0 )
+                        .getTarget()
+                        .asProjectVersionRef(), equalTo( a ) );
+
+        assertThat( result.getDropped()
+                          .size(), equalTo( 1 ) );
+        assertThat( result.getDropped()
+                          .get( 0 )
+                          .getReason(), equalTo( DroppedCandidate.Reason.PATH_ORDER ) );
+    }
+
+    @Test
+    public void optionalAndExcludedTransitivesAreDropped()
+    {
+        final ProjectVersionRef root = projectVersion( "org.test", "root", "1" );
+        final ProjectVersionRef a = projectVersion( "org.test", "a", "1" );
+        final ProjectVersionRef opt = projectVersion( "org.test", "opt", "1" );
+        final ProjectVersionRef excl = projectVersion( "org.test", "excl", "1" );
+
+        graph.add( project( root ).withDependencies( dep( root, a, 0, false, excl.asProjectRef() ) )
+                                  .build() );
+        graph.add( project( a ).withDependencies( dep( a, opt, 0, true ), dep( a, excl, 1, false ) )
+                               .build() );
+
+        final MediationResult result = new NearestWinsMediator( graph ).mediate( root );
+
+        assertThat( result.getSelected( opt ), nullValue() );
+        assertThat( result.getSelected( excl ), nullValue() );
+        assertThat( result.getDropped()
+                          .get( 0 )
+                          .getReason(), equalTo( DroppedCandidate.Reason.OPTIONAL ) );
+        assertThat( result.getDropped()
+                          .get( 1 )
+                          .getReason(), equalTo( DroppedCandidate.Reason.EXCLUDED ) );
+        assertThat( result.getMissing()
+                          .contains( root ), equalTo( false ) );
+    }
+
+}
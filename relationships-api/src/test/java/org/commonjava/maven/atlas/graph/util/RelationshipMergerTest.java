@@ -0,0 +1,111 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.atlas.graph.util;
+
+import static org.commonjava.maven.atlas.graph.GraphFixtures.DECLARING;
+import static org.commonjava.maven.atlas.graph.GraphFixtures.dependency;
+import static org.commonjava.maven.atlas.ident.util.IdentityUtils.projectVersion;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.commonjava.maven.atlas.graph.rel.DependencyRelationship;
+import org.commonjava.maven.atlas.graph.rel.ProjectRelationship;
+import org.commonjava.maven.atlas.graph.rel.SimpleDependencyRelationship;
+import org.commonjava.maven.atlas.ident.DependencyScope;
+import org.junit.Test;
+
+public class RelationshipMergerTest
+{
+
+    @Test
+    public void groupsByIdentityAndUnionsSources()
+    {
+        final List<ProjectRelationship<?, ?>> rels = new ArrayList<ProjectRelationship<?, ?>>();
+        for ( int repo = 0; repo < 50; repo++ )
+        {
+            final URI source = URI.create( "test:repo-" + repo );
+            rels.add( dependency( source, "a", false ) );
+            rels.add( dependency( source, "a", true ) );
+            rels.add( dependency( source, "b", false ) );
+        }
+
+        final List<ProjectRelationship<?, ?>> merged = RelationshipMerger.merge( rels );
+
+        assertThat( merged.size(), equalTo( 3 ) );
+        assertThat( merged.get( 0 )
+                          .getTarget()
+                          .getArtifactId(), equalTo( "a" ) );
+        assertThat( merged.get( 0 )
+                          .isManaged(), equalTo( false ) );
+        assertThat( merged.get( 1 )
+                          .isManaged(), equalTo( true ) );
+        assertThat( merged.get( 2 )
+                          .getTarget()
+                          .getArtifactId(), equalTo( "b" ) );
+
+        for ( final ProjectRelationship<?, ?> rel : merged )
+        {
+            assertThat( rel.getSources()
+                           .size(), equalTo( 50 ) );
+        }
+    }
+
+    @Test
+    public void unchangedRelationshipIsNotRebuilt()
+    {
+        final DependencyRelationship dep = dependency( URI.create( "test:repo" ), "a", false );
+
+        final List<ProjectRelationship<?, ?>> merged =
+            new RelationshipMerger().add( dep )
+                                    .add( dependency( URI.create( "test:repo" ), "a", false ) )
+                                    .merge();
+
+        assertThat( merged.size(), equalTo( 1 ) );
+        assertThat( merged.get( 0 ) == dep, equalTo( true ) );
+    }
+
+    @Test
+    public void mergeDoesNotDependOnOrder()
+    {
+        final URI one = URI.create( "test:repo-1" );
+        final URI two = URI.create( "test:repo-2" );
+        final List<ProjectRelationship<?, ?>> rels = new ArrayList<ProjectRelationship<?, ?>>();
+        rels.add( dependency( two, "b", false ) );
+        rels.add( new SimpleDependencyRelationship( one, DECLARING, projectVersion( "org.dep", "a", "1" ).asJarArtifact(),
+                                                    DependencyScope.test, 0, false, false, false ) );
+        rels.add( dependency( two, "a", false ) );
+
+        final List<ProjectRelationship<?, ?>> reversed = new ArrayList<ProjectRelationship<?, ?>>( rels );
+        Collections.reverse( reversed );
+
+        final List<ProjectRelationship<?, ?>> merged = RelationshipMerger.merge( rels );
+        assertThat( merged, equalTo( RelationshipMerger.merge( reversed ) ) );
+        assertThat( merged.get( 0 )
+                          .getTarget()
+                          .getArtifactId(), equalTo( "a" ) );
+        assertThat( ( (DependencyRelationship) merged.get( 0 ) ).getScope(), equalTo( DependencyScope.compile ) );
+        assertThat( merged.get( 0 )
+                          .getSources(), equalTo( RelationshipMerger.merge( reversed )
+                                                                    .get( 0 )
+                                                                    .getSources() ) );
+    }
+
+}